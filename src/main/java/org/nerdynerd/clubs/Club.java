@@ -1,5 +1,7 @@
 package org.nerdynerd.clubs;
 
+import org.nerdynerd.clubs.comparator.ClubNameCollator;
+
 import java.util.Objects;
 
 /**
@@ -16,6 +18,12 @@ public class Club
 
     private ClubPresident clubPresident;
 
+    private volatile CachedCollationKey nameCollationKey;
+
+    private ClubManagement owner;
+
+    private int ownerGeneration;
+
     /**
      * Instantiates a new Club.
      */
@@ -71,7 +79,54 @@ public class Club
      */
     public void setClubName(String clubName)
     {
+        String oldClubName = this.clubName;
         this.clubName = clubName;
+        this.nameCollationKey = null;
+        clubNameChanged(oldClubName);
+    }
+
+    /**
+     * Gets the collation key of the club name for the given collator.
+     * The key is generated on first use and cached until the club name
+     * or the collator changes; the returned array is a copy of it.
+     *
+     * @param collator the club name collator
+     * @return the collation key as bytes
+     */
+    public byte[] getNameCollationKey(ClubNameCollator collator)
+    {
+        return nameCollationKey(collator).clone();
+    }
+
+    /**
+     * Compares the club name to the name of another club by their cached
+     * collation keys, without copying them.
+     *
+     * @param other    the other club
+     * @param collator the club name collator
+     * @return a negative integer, zero, or a positive integer as the name of this club sorts before, with or after the other name.
+     */
+    public int compareNameTo(Club other, ClubNameCollator collator)
+    {
+        return ClubNameCollator.compareKeys(nameCollationKey(collator), other.nameCollationKey(collator));
+    }
+
+    /**
+     * Gets the cached collation key of the club name, which callers must
+     * not change.
+     *
+     * @param collator the club name collator
+     * @return the cached collation key
+     */
+    protected byte[] nameCollationKey(ClubNameCollator collator)
+    {
+        CachedCollationKey cached = nameCollationKey;
+        if(cached == null || cached.collator != collator)
+        {
+            cached = new CachedCollationKey(collator, collator.collationKey(getClubName()));
+            nameCollationKey = cached;
+        }
+        return cached.key;
     }
 
     /**
@@ -115,7 +170,86 @@ public class Club
         {
             throw new IllegalArgumentException("IllegalArgumentException on Club.setMemberNumber: " + " member count must be greater than or equal to zero.");
         }
+        int oldMemberNumber = this.memberNumber;
         this.memberNumber = memberNumber;
+        memberNumberChanged(oldMemberNumber, memberNumber);
+    }
+
+    /**
+     * Reports a changed member count to the club management storing this
+     * club, so it can update its statistics and indexes. Subclasses that
+     * store the club elsewhere call this and the other change reports
+     * from their setters.
+     *
+     * @param oldMemberNumber the previous member count
+     * @param newMemberNumber the new member count
+     */
+    protected final void memberNumberChanged(int oldMemberNumber, int newMemberNumber)
+    {
+        ClubManagement clubManagement = owner;
+        if(clubManagement != null && oldMemberNumber != newMemberNumber)
+        {
+            clubManagement.memberNumberChanged(this, ownerGeneration, oldMemberNumber, newMemberNumber);
+        }
+    }
+
+    /**
+     * Reports a changed club name to the club management storing this club.
+     *
+     * @param oldClubName the previous club name
+     */
+    protected final void clubNameChanged(String oldClubName)
+    {
+        ClubManagement clubManagement = owner;
+        if(clubManagement != null)
+        {
+            clubManagement.clubNameChanged(this, ownerGeneration, oldClubName);
+        }
+    }
+
+    /**
+     * Lets the club management storing this club check a new president
+     * before it replaces the current one.
+     *
+     * @param clubPresident the new president
+     * @throws IllegalArgumentException if the president leads another stored club under other names
+     */
+    protected final void clubPresidentChanging(ClubPresident clubPresident)
+    {
+        ClubManagement clubManagement = owner;
+        if(clubManagement != null)
+        {
+            clubManagement.checkPresidentChange(this, ownerGeneration, clubPresident);
+        }
+    }
+
+    /**
+     * Reports a changed club president to the club management storing this club.
+     */
+    protected final void clubPresidentChanged()
+    {
+        ClubManagement clubManagement = owner;
+        if(clubManagement != null)
+        {
+            clubManagement.clubPresidentChanged(this, ownerGeneration);
+        }
+    }
+
+    /**
+     * Sets the club management storing this club.
+     *
+     * @param owner      the club management, or null if the club was removed
+     * @param generation the generation of the club management, which changes when it is cleared
+     */
+    void setOwner(ClubManagement owner, int generation)
+    {
+        this.owner = owner;
+        this.ownerGeneration = generation;
+    }
+
+    ClubManagement getOwner()
+    {
+        return owner;
     }
 
     /**
@@ -131,9 +265,12 @@ public class Club
      * Sets the club president.
      *
      * @param clubPresident the club president
+     * @throws IllegalArgumentException if the club is stored and the president leads another stored club under other names
      */
     public void setClubPresident(ClubPresident clubPresident) {
+        clubPresidentChanging(clubPresident);
         this.clubPresident = clubPresident;
+        clubPresidentChanged();
     }
 
     @Override
@@ -156,11 +293,27 @@ public class Club
     public String toString()
     {
         String stringBuilder = "Club name: " +
-                clubName + "\n" +
+                getClubName() + "\n" +
                 "Club president: " +
-                clubPresident + "\n" +
+                getClubPresident() + "\n" +
                 "Member count: " +
-                memberNumber;
+                getMemberNumber();
         return stringBuilder;
     }
+
+    /**
+     * A collation key along with the collator that generated it.
+     */
+    private static final class CachedCollationKey
+    {
+        private final ClubNameCollator collator;
+
+        private final byte[] key;
+
+        private CachedCollationKey(ClubNameCollator collator, byte[] key)
+        {
+            this.collator = collator;
+            this.key = key;
+        }
+    }
 }
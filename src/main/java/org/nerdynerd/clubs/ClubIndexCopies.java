@@ -0,0 +1,205 @@
+package org.nerdynerd.clubs;
+
+import org.nerdynerd.clubs.index.ClubIndex;
+import org.nerdynerd.clubs.storage.ClubStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Fills indexes from the clubs of a {@link ClubManagement} without holding
+ * its lock for longer than a bounded step.
+ * <p>
+ * The {@link ClubVersion} the indexes are filled from is opened in steps of
+ * a bounded number of clubs. The indexes then receive its clubs without
+ * the lock, and the changes made meanwhile are recorded and replayed to
+ * them in rounds, also without the lock. Once a round leaves few enough
+ * changes, the rest are replayed under the lock and the indexes are
+ * installed in the same step.
+ */
+final class ClubIndexCopies
+{
+    private ClubIndexCopies()
+    {
+    }
+
+    /**
+     * Fills indexes not kept up to date by a club management, which never
+     * read its store, and installs them while holding its lock.
+     *
+     * @param clubManagement the club management
+     * @param copies         the empty indexes to fill
+     * @param stepSize       the number of clubs read per step opening the version
+     * @param catchUpLimit   the largest number of changes replayed under the lock
+     * @param catchUpRounds  the number of rounds replaying changes before giving up
+     * @param install        called under the lock once the indexes are up to date
+     * @return true if the indexes were installed, false if the filling was given up because it did not catch up with the writers or the thread was interrupted
+     */
+    static boolean fill(ClubManagement clubManagement, List<ClubIndex> copies, int stepSize, int catchUpLimit, int catchUpRounds, Runnable install)
+    {
+        ChangeRecorder recorder = new ChangeRecorder();
+        ClubVersion clubs;
+        int buildSteps;
+        synchronized (clubManagement)
+        {
+            // the recorder sees every change made after the version was opened
+            clubManagement.addIndex(recorder);
+            buildSteps = clubManagement.size() / stepSize + catchUpRounds;
+            clubs = clubManagement.tryOpenVersion(stepSize);
+        }
+        try
+        {
+            for(int step = 0; clubs == null; step++)
+            {
+                Thread.yield();
+                synchronized (clubManagement)
+                {
+                    if(Thread.currentThread().isInterrupted() || step == buildSteps)
+                    {
+                        clubManagement.abandonVersion();
+                        return false;
+                    }
+                    // changes to clubs not built yet are read with them, not replayed
+                    recorder.drain();
+                    clubs = clubManagement.tryOpenVersion(stepSize);
+                }
+            }
+            try (ClubVersion version = clubs)
+            {
+                for(ClubRecord record : version)
+                {
+                    Club club = record.toClub();
+                    for(int i = 0; i < copies.size(); i++)
+                    {
+                        copies.get(i).clubAdded(club);
+                    }
+                }
+            }
+            for(int round = 0; ; round++)
+            {
+                if(Thread.currentThread().isInterrupted())
+                {
+                    return false;
+                }
+                List<Consumer<ClubIndex>> changes;
+                synchronized (clubManagement)
+                {
+                    changes = recorder.drain();
+                    if(changes.size() <= catchUpLimit)
+                    {
+                        replay(changes, copies);
+                        install.run();
+                        return true;
+                    }
+                    if(round == catchUpRounds)
+                    {
+                        return false;
+                    }
+                }
+                replay(changes, copies);
+            }
+        }
+        finally
+        {
+            synchronized (clubManagement)
+            {
+                clubManagement.removeIndex(recorder);
+            }
+        }
+    }
+
+    private static void replay(List<Consumer<ClubIndex>> changes, List<ClubIndex> copies)
+    {
+        for(Consumer<ClubIndex> change : changes)
+        {
+            for(int i = 0; i < copies.size(); i++)
+            {
+                change.accept(copies.get(i));
+            }
+        }
+    }
+
+    /**
+     * Records the changes reported to indexes as calls to replay on the
+     * copies being rebuilt. Stored clubs change after they are reported,
+     * so every change keeps a copy of its club.
+     */
+    private static final class ChangeRecorder implements ClubIndex
+    {
+        private List<Consumer<ClubIndex>> changes = new ArrayList<>();
+
+        /**
+         * Returns the changes recorded since the last call.
+         */
+        private List<Consumer<ClubIndex>> drain()
+        {
+            List<Consumer<ClubIndex>> drained = changes;
+            changes = new ArrayList<>();
+            return drained;
+        }
+
+        @Override
+        public void rebuild(ClubStore store)
+        {
+        }
+
+        @Override
+        public void clubAdded(Club club)
+        {
+            Club copy = copyOf(club);
+            changes.add(index -> index.clubAdded(copy));
+        }
+
+        @Override
+        public void clubRemoved(Club club)
+        {
+            Club copy = copyOf(club);
+            changes.add(index -> index.clubRemoved(copy));
+        }
+
+        @Override
+        public void memberNumberChanged(Club club, int oldMemberNumber, int newMemberNumber)
+        {
+            Club copy = copyOf(club);
+            changes.add(index -> index.memberNumberChanged(copy, oldMemberNumber, newMemberNumber));
+        }
+
+        @Override
+        public void clubRenamed(Club club, String oldClubName)
+        {
+            Club copy = copyOf(club);
+            changes.add(index -> index.clubRenamed(copy, oldClubName));
+        }
+
+        @Override
+        public void clubPresidentChanged(Club club)
+        {
+            Club copy = copyOf(club);
+            changes.add(index -> index.clubPresidentChanged(copy));
+        }
+
+        @Override
+        public void batchStarted()
+        {
+            changes.add(ClubIndex::batchStarted);
+        }
+
+        @Override
+        public void batchFinished()
+        {
+            changes.add(ClubIndex::batchFinished);
+        }
+
+        @Override
+        public void cleared()
+        {
+            changes.add(ClubIndex::cleared);
+        }
+
+        private static Club copyOf(Club club)
+        {
+            return ClubRecord.of(club, 0).toClub();
+        }
+    }
+}
@@ -50,7 +50,7 @@ public class ClubIterator implements Iterator<Club>
     @Override
     public Club next()
     {
-        if(index < clubs.getMaxSize() || clubs.get(index) == null)
+        if(index >= clubs.size())
         {
             throw new NoSuchElementException("NoSuchElementException on ClubIterator.next: " + " no more elements in this iteration.");
         }
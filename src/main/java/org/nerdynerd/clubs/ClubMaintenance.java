@@ -0,0 +1,420 @@
+package org.nerdynerd.clubs;
+
+import org.nerdynerd.clubs.index.ClubIndex;
+import org.nerdynerd.clubs.index.CopyableClubIndex;
+import org.nerdynerd.clubs.storage.StoreCompaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compacts the store and rebuilds the indexes of a {@link ClubManagement}
+ * in the background, while readers and writers keep using it.
+ * <p>
+ * Every pass first compacts the store once at least a share of it is
+ * garbage, as left behind by removed and renamed clubs. The store is
+ * compacted in steps of a bounded number of clubs, each holding the lock
+ * of the club management, so no reader or writer waits for more than one
+ * step; the compacted storage is swapped in by the last step.
+ * <p>
+ * The pass then rebuilds the {@linkplain CopyableClubIndex copyable indexes}
+ * with at least that share of stale entries, such as the
+ * {@linkplain ClubManagement#setNameFilter name filter} and the index of
+ * similar club names. The copies are filled from a {@link ClubVersion}
+ * without holding the lock, and the changes made meanwhile are recorded
+ * and replayed to them in rounds, also without holding the lock. The
+ * version itself is opened in steps of the same bounded number of clubs. Once a round leaves few enough changes, the rest are
+ * replayed under the lock and the copies replace the content of the
+ * indexes at once.
+ * <p>
+ * Catching up is bounded: a pass whose compaction or rebuild has not
+ * caught up with the writers after the given number of steps or rounds
+ * gives up, leaving the store and indexes as they were, and the next pass
+ * starts over.
+ */
+public final class ClubMaintenance implements AutoCloseable
+{
+    private final ClubManagement clubManagement;
+
+    private final long intervalMillis;
+
+    private final double garbageRatio;
+
+    private final int stepSize;
+
+    private final int catchUpLimit;
+
+    private final int catchUpRounds;
+
+    private final Object passLock = new Object();
+
+    private final AtomicLong compactions = new AtomicLong();
+
+    private final AtomicLong indexRebuilds = new AtomicLong();
+
+    private final AtomicLong abortedPasses = new AtomicLong();
+
+    private Thread thread;
+
+    private ClubMaintenance(Builder builder)
+    {
+        this.clubManagement = builder.clubManagement;
+        this.intervalMillis = builder.intervalMillis;
+        this.garbageRatio = builder.garbageRatio;
+        this.stepSize = builder.stepSize;
+        this.catchUpLimit = builder.catchUpLimit;
+        this.catchUpRounds = builder.catchUpRounds;
+    }
+
+    /**
+     * Returns a builder of the maintenance of a club management.
+     *
+     * @param clubManagement the club management
+     * @return the builder
+     */
+    public static Builder builder(ClubManagement clubManagement)
+    {
+        if(clubManagement == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubMaintenance.builder: " + " clubManagement must not be null.");
+        }
+        return new Builder(clubManagement);
+    }
+
+    /**
+     * Starts a daemon thread running a pass at every interval, until closed.
+     *
+     * @return this maintenance
+     * @throws IllegalStateException if it was started before
+     */
+    public synchronized ClubMaintenance start()
+    {
+        if(thread != null)
+        {
+            throw new IllegalStateException("IllegalStateException on ClubMaintenance.start: " + " maintenance was started before.");
+        }
+        thread = new Thread(this::runPasses, "club-maintenance");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Runs a pass in the calling thread: compacts the store, then rebuilds
+     * the indexes, each only if enough of it is garbage. Passes never run
+     * at the same time.
+     */
+    public void runOnce()
+    {
+        synchronized (passLock)
+        {
+            compactStore();
+            rebuildIndexes();
+        }
+    }
+
+    /**
+     * Returns the number of compactions of the store that were swapped in.
+     *
+     * @return the number of compactions
+     */
+    public long getCompactions()
+    {
+        return compactions.get();
+    }
+
+    /**
+     * Returns the number of indexes whose rebuilt copies replaced their content.
+     *
+     * @return the number of index rebuilds
+     */
+    public long getIndexRebuilds()
+    {
+        return indexRebuilds.get();
+    }
+
+    /**
+     * Returns the number of compactions and rebuilds given up because they
+     * did not catch up with the writers, or failed.
+     *
+     * @return the number of aborted passes
+     */
+    public long getAbortedPasses()
+    {
+        return abortedPasses.get();
+    }
+
+    /**
+     * Stops the thread started by {@link #start()} and waits for its pass
+     * to end. A compaction or rebuild that was not swapped in is given up.
+     */
+    @Override
+    public void close()
+    {
+        Thread running;
+        synchronized (this)
+        {
+            running = thread;
+        }
+        if(running == null)
+        {
+            return;
+        }
+        running.interrupt();
+        try
+        {
+            running.join();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runPasses()
+    {
+        while(!Thread.currentThread().isInterrupted())
+        {
+            try
+            {
+                Thread.sleep(intervalMillis);
+            }
+            catch (InterruptedException ex)
+            {
+                return;
+            }
+            try
+            {
+                runOnce();
+            }
+            catch (RuntimeException ex)
+            {
+                abortedPasses.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Compacts the store in steps, each holding the lock of the club management.
+     */
+    private void compactStore()
+    {
+        StoreCompaction compaction = clubManagement.startCompaction(garbageRatio);
+        if(compaction == null)
+        {
+            return;
+        }
+        int catchUpSteps = 0;
+        while(true)
+        {
+            synchronized (clubManagement)
+            {
+                if(Thread.currentThread().isInterrupted() || compaction.isCatchingUp() && catchUpSteps++ == catchUpRounds)
+                {
+                    compaction.abort();
+                    abortedPasses.incrementAndGet();
+                    return;
+                }
+                if(compaction.step(stepSize))
+                {
+                    compactions.incrementAndGet();
+                    return;
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Builds copies of the indexes with enough stale entries from a
+     * version, catches them up with the changes made since, and lets
+     * them replace the content of the indexes.
+     */
+    private void rebuildIndexes()
+    {
+        List<Rebuild<?>> rebuilds = new ArrayList<>();
+        List<ClubIndex> copies = new ArrayList<>();
+        synchronized (clubManagement)
+        {
+            for(ClubIndex index : clubManagement.getIndexes())
+            {
+                double indexGarbageRatio = index.getGarbageRatio();
+                if(index instanceof CopyableClubIndex && indexGarbageRatio > 0 && indexGarbageRatio >= garbageRatio)
+                {
+                    Rebuild<?> rebuild = Rebuild.of((CopyableClubIndex<?>) index);
+                    rebuilds.add(rebuild);
+                    copies.add(rebuild.copy);
+                }
+            }
+        }
+        if(rebuilds.isEmpty())
+        {
+            return;
+        }
+        boolean built = ClubIndexCopies.fill(clubManagement, copies, stepSize, catchUpLimit, catchUpRounds, () ->
+        {
+            List<ClubIndex> current = clubManagement.getIndexes();
+            for(Rebuild<?> rebuild : rebuilds)
+            {
+                if(current.contains(rebuild.index))
+                {
+                    rebuild.takeOver();
+                    indexRebuilds.incrementAndGet();
+                }
+            }
+        });
+        if(!built)
+        {
+            abortedPasses.incrementAndGet();
+        }
+    }
+
+    /**
+     * A copyable index and the copy being built to replace its content.
+     */
+    private static final class Rebuild<T extends CopyableClubIndex<T>>
+    {
+        final T index;
+
+        final T copy;
+
+        private Rebuild(T index)
+        {
+            this.index = index;
+            this.copy = index.emptyCopy();
+        }
+
+        static <T extends CopyableClubIndex<T>> Rebuild<T> of(CopyableClubIndex<T> index)
+        {
+            @SuppressWarnings("unchecked")
+            T self = (T) index;
+            return new Rebuild<>(self);
+        }
+
+        void takeOver()
+        {
+            index.takeOver(copy);
+        }
+    }
+
+    /**
+     * A builder of club maintenance.
+     */
+    public static final class Builder
+    {
+        private final ClubManagement clubManagement;
+
+        private long intervalMillis = 10_000;
+
+        private double garbageRatio = 0.1;
+
+        private int stepSize = 4_096;
+
+        private int catchUpLimit = 256;
+
+        private int catchUpRounds = 16;
+
+        private Builder(ClubManagement clubManagement)
+        {
+            this.clubManagement = clubManagement;
+        }
+
+        /**
+         * Sets the time between passes of the thread started by
+         * {@link ClubMaintenance#start()}, ten seconds by default.
+         *
+         * @param intervalMillis the interval in milliseconds
+         * @return this builder
+         */
+        public Builder interval(long intervalMillis)
+        {
+            if(intervalMillis < 1)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubMaintenance.interval: " + " interval must be positive.");
+            }
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * Sets the share of garbage at which the store is compacted, and
+         * the share of stale entries at which an index is rebuilt, a tenth
+         * by default.
+         *
+         * @param garbageRatio the share of garbage
+         * @return this builder
+         */
+        public Builder garbageRatio(double garbageRatio)
+        {
+            if(!(garbageRatio >= 0))
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubMaintenance.garbageRatio: " + " garbage ratio must not be negative.");
+            }
+            this.garbageRatio = garbageRatio;
+            return this;
+        }
+
+        /**
+         * Sets the number of clubs a step of a compaction copies while
+         * holding the lock of the club management.
+         *
+         * @param stepSize the number of clubs per step
+         * @return this builder
+         */
+        public Builder stepSize(int stepSize)
+        {
+            if(stepSize < 1)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubMaintenance.stepSize: " + " step size must be at least one.");
+            }
+            this.stepSize = stepSize;
+            return this;
+        }
+
+        /**
+         * Sets the largest number of changes replayed to rebuilt indexes
+         * while holding the lock of the club management.
+         *
+         * @param catchUpLimit the number of changes
+         * @return this builder
+         */
+        public Builder catchUpLimit(int catchUpLimit)
+        {
+            if(catchUpLimit < 0)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubMaintenance.catchUpLimit: " + " catch up limit must not be negative.");
+            }
+            this.catchUpLimit = catchUpLimit;
+            return this;
+        }
+
+        /**
+         * Sets the number of rounds replaying changes to rebuilt indexes,
+         * and of steps copying changed clubs once a compaction has copied
+         * every club, before the pass gives up.
+         *
+         * @param catchUpRounds the number of rounds
+         * @return this builder
+         */
+        public Builder catchUpRounds(int catchUpRounds)
+        {
+            if(catchUpRounds < 0)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubMaintenance.catchUpRounds: " + " catch up rounds must not be negative.");
+            }
+            this.catchUpRounds = catchUpRounds;
+            return this;
+        }
+
+        /**
+         * Builds the maintenance, which does nothing until started or run.
+         *
+         * @return the maintenance
+         */
+        public ClubMaintenance build()
+        {
+            return new ClubMaintenance(this);
+        }
+    }
+}
@@ -1,42 +1,1263 @@
 package org.nerdynerd.clubs;
 
 import com.sun.istack.internal.Nullable;
-import org.nerdynerd.clubs.comparator.ClubNameComparator;
-import org.nerdynerd.clubs.comparator.CurrentPresidentComparator;
-import org.nerdynerd.clubs.comparator.MemberNumberComparator;
+import org.nerdynerd.clubs.cache.ClubCache;
+import org.nerdynerd.clubs.flow.ClubPublisher;
+import org.nerdynerd.clubs.flow.Flow;
+import org.nerdynerd.clubs.index.ClubCursor;
+import org.nerdynerd.clubs.index.ClubIndex;
+import org.nerdynerd.clubs.index.ClubNameBkTree;
+import org.nerdynerd.clubs.index.ClubNameBloomFilter;
+import org.nerdynerd.clubs.index.ClubOrderIndex;
+import org.nerdynerd.clubs.index.MembershipStatistics;
+import org.nerdynerd.clubs.io.ClubExporter;
+import org.nerdynerd.clubs.journal.ClubJournal;
+import org.nerdynerd.clubs.journal.ClubMutation;
+import org.nerdynerd.clubs.sort.ClubSortOrder;
+import org.nerdynerd.clubs.sort.SortKey;
+import org.nerdynerd.clubs.storage.ClubSnapshot;
+import org.nerdynerd.clubs.storage.CompressedClubSnapshot;
+import org.nerdynerd.clubs.storage.ClubStore;
+import org.nerdynerd.clubs.storage.HeapClubStore;
+import org.nerdynerd.clubs.storage.MappedClubStore;
+import org.nerdynerd.clubs.storage.StoreCompaction;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /**
  * A component used to store, manage, and query a list of clubs.
+ * The clubs are held by a {@link ClubStore}, on the heap by default.
+ * <p>
+ * All methods lock this instance, so a club management can be shared
+ * between threads, and several changes can be applied atomically with
+ * a {@link ClubTransaction}. Long reads can open a {@link ClubVersion}
+ * instead, which does not change while other threads change clubs.
  */
 public class ClubManagement extends AbstractList<Club>
 {
-    private int numberOfClubs;
+    private static final ClubSortOrder MEMBER_NUMBER_ORDER = ClubSortOrder.by(SortKey.memberNumber());
+
+    private static final ClubSortOrder CLUB_NAME_ORDER = ClubSortOrder.by(SortKey.clubName());
+
+    private static final ClubSortOrder CLUB_PRESIDENT_ORDER = ClubSortOrder.by(SortKey.presidentLastName());
+
+    /**
+     * The number of clubs read per locked step, the largest number of changes
+     * replayed under the lock, and the rounds catching up with writers, while
+     * versions and indexes are built without holding the lock.
+     */
+    private static final int STEP_SIZE = 4_096;
+
+    private static final int CATCH_UP_LIMIT = 256;
+
+    private static final int CATCH_UP_ROUNDS = 16;
+
+    /**
+     * The largest number of sort orders {@link #page} keeps an index for.
+     */
+    private static final int MAX_ORDER_INDEXES = 8;
 
     private int maxSize;
 
-    private Club[] clubList;
+    private ClubStore store;
+
+    private ClubCache cache;
+
+    private final MembershipStatistics statistics = new MembershipStatistics();
+
+    private final PresidentRegistry presidents = new PresidentRegistry(this);
+
+    private ClubNameBloomFilter nameFilter;
+
+    private ClubNameBkTree similarNames;
+
+    private final Object similarNamesBuild = new Object();
+
+    /**
+     * The order indexes by sort order object, least recently paged first.
+     * Sort orders do not override equals, so they are told apart by identity.
+     */
+    private final LinkedHashMap<ClubSortOrder, ClubOrderIndex> orderIndexes = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final List<ClubIndex> indexes = new ArrayList<>();
+
+    private ClubJournal journal;
+
+    private final ClubVersions versions = new ClubVersions();
+
+    /**
+     * Changes whenever all clubs are removed, so clubs removed
+     * by {@link #clear()} no longer report changes.
+     */
+    private int generation;
+
+    /**
+     * Incremented on every change to the stored clubs or their order.
+     */
+    private long version;
+
+    private List<ClubRecord> records;
+
+    private long recordsVersion = -1;
+
+    /**
+     * Instantiates a new Club management, keeping the clubs on the heap in a
+     * {@link HeapClubStore}, which does not store repeated names once.
+     *
+     * @param maxSize the max size
+     */
+    public ClubManagement(int maxSize)
+    {
+        setMaxSize(maxSize);
+        store = new HeapClubStore(maxSize);
+        indexes.add(statistics);
+        indexes.add(presidents);
+    }
+
+    /**
+     * Instantiates a new Club management backed by the given store,
+     * such as an {@link org.nerdynerd.clubs.storage.OffHeapClubStore}.
+     * The max size is the capacity of the store.
+     *
+     * @param store the store holding the clubs
+     */
+    public ClubManagement(ClubStore store)
+    {
+        setMaxSize(store.getCapacity());
+        this.store = store;
+        indexes.add(statistics);
+        indexes.add(presidents);
+        statistics.rebuild(store);
+        presidents.rebuild(store);
+    }
+
+    /**
+     * Opens a club management from a snapshot file written by {@link #writeSnapshot(Path)}.
+     * The snapshot is memory-mapped and every club is only decoded when
+     * it is first read, so opening takes the same time for any number of clubs.
+     *
+     * @param snapshot the snapshot file
+     * @param maxSize  the max size, at least the number of clubs in the snapshot
+     * @return the club management
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static ClubManagement openSnapshot(Path snapshot, int maxSize) throws IOException
+    {
+        return new ClubManagement(MappedClubStore.open(snapshot, maxSize));
+    }
+
+    /**
+     * Writes all stored clubs to a snapshot file. The clubs are written
+     * from a {@link ClubVersion} without holding the lock of this instance,
+     * so other threads keep reading and changing clubs meanwhile.
+     *
+     * @param snapshot the snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeSnapshot(Path snapshot) throws IOException
+    {
+        try (ClubVersion clubs = openVersionInSteps())
+        {
+            ClubSnapshot.write(clubs.asClubs(), snapshot);
+        }
+    }
+
+    /**
+     * Loads a club management from a compressed snapshot file written by
+     * {@link #writeCompressedSnapshot(Path)}. Clubs are decoded in one pass
+     * and held on the heap, in id order.
+     *
+     * @param snapshot the compressed snapshot file
+     * @param maxSize  the max size, at least the number of clubs in the snapshot
+     * @return the club management
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static ClubManagement loadCompressedSnapshot(Path snapshot, int maxSize) throws IOException
+    {
+        try (CompressedClubSnapshot.Reader reader = CompressedClubSnapshot.open(snapshot))
+        {
+            if(reader.getCount() > maxSize)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubManagement.loadCompressedSnapshot: " + " snapshot holds " + reader.getCount() + " clubs, more than " + maxSize + ".");
+            }
+            HeapClubStore store = new HeapClubStore(maxSize);
+            while(reader.hasNext())
+            {
+                store.add(reader.next());
+            }
+            return new ClubManagement(store);
+        }
+    }
+
+    /**
+     * Writes all stored clubs to a compressed snapshot file, which takes a
+     * fraction of the space of {@link #writeSnapshot(Path)} but can only
+     * be loaded as a whole. The clubs are written from a {@link ClubVersion}
+     * without holding the lock of this instance.
+     *
+     * @param snapshot the compressed snapshot file
+     * @return the size of the snapshot in bytes
+     * @throws IOException if the snapshot cannot be written
+     */
+    public long writeCompressedSnapshot(Path snapshot) throws IOException
+    {
+        try (ClubVersion clubs = openVersionInSteps())
+        {
+            return CompressedClubSnapshot.write(clubs.asClubs(), snapshot);
+        }
+    }
+
+    /**
+     * Exports all stored clubs to a file, replacing the file if it exists.
+     * Clubs are streamed to the file, so exporting takes the same memory
+     * for any number of clubs. They are read from a {@link ClubVersion}
+     * without holding the lock of this instance.
+     *
+     * @param file     the export file
+     * @param exporter the exporter, such as a {@link org.nerdynerd.clubs.io.CsvClubExporter}
+     * @return the number of exported clubs
+     * @throws IOException if the file cannot be written
+     */
+    public long export(Path file, ClubExporter exporter) throws IOException
+    {
+        try (ClubVersion clubs = openVersionInSteps();
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            return exporter.export(clubs.asClubs(), channel);
+        }
+    }
+
+    /**
+     * Opens a version in steps that each hold the lock of this instance for
+     * a bounded number of clubs, or at once if writers keep it from catching up.
+     */
+    private ClubVersion openVersionInSteps()
+    {
+        int steps = size() / STEP_SIZE + CATCH_UP_ROUNDS;
+        for(int step = 0; step < steps; step++)
+        {
+            ClubVersion clubs = tryOpenVersion(STEP_SIZE);
+            if(clubs != null)
+            {
+                return clubs;
+            }
+            Thread.yield();
+        }
+        return openVersion();
+    }
+
+    /**
+     * Gets the store holding the clubs.
+     *
+     * @return the club store
+     */
+    public ClubStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * Gets the cache of recently looked up clubs.
+     *
+     * @return the club cache, or null if lookups are not cached.
+     */
+    @Nullable
+    public synchronized ClubCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * Sets a cache of clubs in front of the store, used by lookups by
+     * club name such as {@link #clubExists(String)}.
+     *
+     * @param cache the club cache, or null to stop caching lookups.
+     */
+    public synchronized void setCache(@Nullable ClubCache cache)
+    {
+        if(cache != null)
+        {
+            cache.clear();
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * Gets the filter answering lookups of club names that are not stored.
+     *
+     * @return the name filter, or null if lookups are not filtered.
+     */
+    @Nullable
+    public synchronized ClubNameBloomFilter getNameFilter()
+    {
+        return nameFilter;
+    }
+
+    /**
+     * Sets a Bloom filter over the stored club names. Lookups by club name,
+     * including the check for duplicates when adding a club, ask the filter
+     * first and skip the store for names it rejects. The filter is built
+     * from the clubs stored now and kept up to date from then on.
+     *
+     * @param nameFilter the name filter, or null to stop filtering lookups.
+     */
+    public synchronized void setNameFilter(@Nullable ClubNameBloomFilter nameFilter)
+    {
+        if(this.nameFilter != null)
+        {
+            indexes.remove(this.nameFilter);
+        }
+        this.nameFilter = null;
+        if(nameFilter != null)
+        {
+            addIndex(nameFilter);
+        }
+        this.nameFilter = nameFilter;
+    }
+
+    /**
+     * Gets the journal receiving every change to the stored clubs.
+     *
+     * @return the journal, or null if changes are not journaled.
+     */
+    @Nullable
+    public synchronized ClubJournal getJournal()
+    {
+        return journal;
+    }
+
+    /**
+     * Sets a journal receiving every change to the stored clubs from now on.
+     * Single changes are appended as a batch of one mutation, and the changes
+     * of a transaction as one batch.
+     *
+     * @param journal the journal, or null to stop journaling changes.
+     */
+    public synchronized void setJournal(@Nullable ClubJournal journal)
+    {
+        this.journal = journal;
+    }
+
+    /**
+     * Gets the statistics over the member counts of the stored clubs.
+     * They are kept up to date as clubs are added, removed or change
+     * their member count, so every query takes constant time.
+     *
+     * @return the membership statistics
+     */
+    public synchronized MembershipStatistics getMembershipStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Gets the registry of the presidents of the stored clubs, which joins
+     * clubs and presidents both ways.
+     *
+     * @return the president registry
+     */
+    public synchronized PresidentRegistry getPresidents()
+    {
+        return presidents;
+    }
+
+    /**
+     * Changes the names and middle initial of a president for all clubs
+     * they lead, as one transaction. Every club keeps the term dates of its
+     * president; those of the given record are not used.
+     *
+     * @param president the new details of the president, whose id names the president
+     * @return the number of clubs changed, zero if the president leads no stored club.
+     */
+    public synchronized int updatePresident(PresidentRecord president)
+    {
+        if(president == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubManagement.updatePresident: " + " president must not be null.");
+        }
+        List<String> clubNames = presidents.getClubNames(president.getId());
+        ClubTransaction transaction = begin();
+        for(String clubName : clubNames)
+        {
+            transaction.update(clubName, record ->
+            {
+                PresidentRecord term = record.getPresident();
+                return record.toBuilder().president(president.toBuilder()
+                                                             .startDate(term.getStartDate())
+                                                             .endDate(term.getEndDate())
+                                                             .build()).build();
+            });
+        }
+        transaction.commit();
+        return clubNames.size();
+    }
+
+    /**
+     * Returns the records of the clubs a president leads, in store order.
+     * The clubs are found by their names in the president registry, in one
+     * pass over the store comparing name hashes.
+     *
+     * @param presidentId the president id
+     * @return the club records, empty if the president leads no stored club.
+     */
+    public synchronized List<ClubRecord> getClubsOf(int presidentId)
+    {
+        List<String> clubNames = presidents.getClubNames(presidentId);
+        if(clubNames.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        Set<String> wanted = new HashSet<>();
+        int[] hashes = new int[clubNames.size()];
+        for(int i = 0; i < hashes.length; i++)
+        {
+            wanted.add(ClubNames.normalize(clubNames.get(i)));
+            hashes[i] = ClubNames.hash(clubNames.get(i));
+        }
+        Arrays.sort(hashes);
+        List<ClubRecord> clubs = new ArrayList<>(clubNames.size());
+        for(int i = 0, size = store.size(); i < size && clubs.size() < clubNames.size(); i++)
+        {
+            String clubName = store.getClubName(i);
+            if(clubName != null && Arrays.binarySearch(hashes, ClubNames.hash(clubName)) >= 0 && wanted.contains(ClubNames.normalize(clubName)))
+            {
+                clubs.add(ClubRecord.of(store.get(i), version));
+            }
+        }
+        return clubs;
+    }
+
+    /**
+     * Adds an index to be kept up to date with the stored clubs.
+     * The index is built from the clubs stored now.
+     *
+     * @param index the index
+     */
+    public synchronized void addIndex(ClubIndex index)
+    {
+        index.rebuild(store);
+        indexes.add(index);
+    }
+
+    /**
+     * Stops keeping an index up to date. The indexes used by this
+     * instance itself, such as the membership statistics, cannot be
+     * removed this way.
+     *
+     * @param index the index
+     * @return true if the index was kept up to date by this instance
+     */
+    public synchronized boolean removeIndex(ClubIndex index)
+    {
+        if(index == statistics || index == presidents || index == nameFilter || index == similarNames || orderIndexes.containsValue(index))
+        {
+            return false;
+        }
+        return indexes.remove(index);
+    }
+
+    /**
+     * Returns the indexes kept up to date, for {@link ClubMaintenance}.
+     */
+    synchronized List<ClubIndex> getIndexes()
+    {
+        return new ArrayList<>(indexes);
+    }
+
+    /**
+     * Starts compacting the store if at least a share of its storage is garbage, for {@link ClubMaintenance}.
+     *
+     * @return the compaction, or null if there is too little garbage or the store cannot be compacted.
+     */
+    @Nullable
+    synchronized StoreCompaction startCompaction(double garbageRatio)
+    {
+        double storeGarbageRatio = store.getGarbageRatio();
+        if(storeGarbageRatio == 0 || storeGarbageRatio < garbageRatio)
+        {
+            return null;
+        }
+        return store.startCompaction();
+    }
+
+    /**
+     * Reads a page of clubs in a sort order, continuing after a cursor
+     * taken from the previous page. Unlike positions in this list, cursors
+     * are not affected by clubs added or removed between pages, and reading
+     * a page takes {@code O(log n + page size)} however deep it is.
+     * <p>
+     * The first page read in a sort order builds an index of all clubs in
+     * that order, which is kept up to date from then on. Indexes are kept
+     * per sort order object, so the same object should be used for every
+     * page. Only the indexes of the {@value #MAX_ORDER_INDEXES} sort orders
+     * paged most recently are kept; paging in another order drops the index
+     * of the least recently paged one, which is built again if that order
+     * is paged later.
+     *
+     * @param order    the sort order
+     * @param after    the cursor of the previous page, or null for the first page
+     * @param pageSize the largest number of clubs on the page
+     * @return the page
+     * @throws IllegalArgumentException if the cursor belongs to another sort order
+     */
+    public synchronized ClubPage page(ClubSortOrder order, @Nullable ClubCursor after, int pageSize)
+    {
+        ClubOrderIndex orderIndex = orderIndexes.get(order);
+        if(orderIndex == null)
+        {
+            if(orderIndexes.size() == MAX_ORDER_INDEXES)
+            {
+                Iterator<ClubOrderIndex> eldest = orderIndexes.values().iterator();
+                indexes.remove(eldest.next());
+                eldest.remove();
+            }
+            orderIndex = new ClubOrderIndex(order);
+            addIndex(orderIndex);
+            orderIndexes.put(order, orderIndex);
+        }
+        List<Club> clubs = new ArrayList<>(Math.min(pageSize, 1024));
+        ClubCursor next = orderIndex.page(after, pageSize, clubs);
+        ClubRecord[] page = new ClubRecord[clubs.size()];
+        for(int i = 0; i < page.length; i++)
+        {
+            page[i] = ClubRecord.of(clubs.get(i), version);
+        }
+        return new ClubPage(Collections.unmodifiableList(Arrays.asList(page)), next);
+    }
+
+    /**
+     * Returns the names of stored clubs that are spelled like the given
+     * name, within a number of inserted, deleted or replaced characters,
+     * ignoring case and surrounding whitespace. The closest names come first.
+     * <p>
+     * The first search builds an index of all club names, which is kept up
+     * to date from then on, so searches do not compare against every club.
+     * The index is built without holding the lock of this instance for longer
+     * than a bounded step, so other threads keep reading and changing clubs
+     * meanwhile; other first searches wait for it.
+     *
+     * @param clubName    the club name, possibly misspelled
+     * @param maxDistance the largest number of changed characters
+     * @param limit       the largest number of names to return
+     * @return the similar club names
+     */
+    public List<String> findSimilarClubNames(String clubName, int maxDistance, int limit)
+    {
+        ClubNameBkTree names;
+        synchronized (this)
+        {
+            names = similarNames;
+        }
+        if(names == null)
+        {
+            names = buildSimilarNames();
+        }
+        synchronized (this)
+        {
+            return names.findSimilar(clubName, maxDistance, limit);
+        }
+    }
+
+    private ClubNameBkTree buildSimilarNames()
+    {
+        if(Thread.holdsLock(this))
+        {
+            // other threads cannot change clubs meanwhile, so nothing is gained by building in steps
+            return installSimilarNames(null);
+        }
+        synchronized (similarNamesBuild)
+        {
+            synchronized (this)
+            {
+                if(similarNames != null)
+                {
+                    return similarNames;
+                }
+            }
+            ClubNameBkTree names = new ClubNameBkTree();
+            List<ClubIndex> built = Collections.singletonList(names);
+            if(ClubIndexCopies.fill(this, built, STEP_SIZE, CATCH_UP_LIMIT, CATCH_UP_ROUNDS, () -> installSimilarNames(names)))
+            {
+                return names;
+            }
+            // the writers outpaced the build, so it is done under the lock
+            synchronized (this)
+            {
+                return installSimilarNames(null);
+            }
+        }
+    }
+
+    /**
+     * Keeps an index of similar club names up to date, or one built from
+     * the stored clubs if null, unless an index is kept already.
+     */
+    private synchronized ClubNameBkTree installSimilarNames(@Nullable ClubNameBkTree names)
+    {
+        if(similarNames == null)
+        {
+            if(names == null)
+            {
+                names = new ClubNameBkTree();
+                names.rebuild(store);
+            }
+            similarNames = names;
+            indexes.add(names);
+        }
+        return similarNames;
+    }
+
+    /**
+     * Returns the version of the stored clubs. The version changes whenever
+     * a club is added, removed, updated or changed, or the clubs are sorted,
+     * so a result derived from the clubs is still valid while the version
+     * it was derived at is the current one.
+     *
+     * @return the version
+     */
+    public synchronized long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Returns an immutable record of the club with the given name.
+     *
+     * @param clubName the club name
+     * @return the record stamped with the current version, or null if there is no such club.
+     */
+    @Nullable
+    public synchronized ClubRecord getRecord(String clubName)
+    {
+        Club club = findClub(clubName);
+        return club == null ? null : ClubRecord.of(club, version);
+    }
+
+    /**
+     * Returns immutable records of all stored clubs, in their stored order.
+     * The list is built once per version and shared until the clubs change.
+     *
+     * @return an unmodifiable list of records
+     */
+    public synchronized List<ClubRecord> getRecords()
+    {
+        if(records == null || recordsVersion != version)
+        {
+            ClubRecord[] built = new ClubRecord[store.size()];
+            for(int i = 0; i < built.length; i++)
+            {
+                built[i] = ClubRecord.of(store.get(i), version);
+            }
+            records = Collections.unmodifiableList(Arrays.asList(built));
+            recordsVersion = version;
+        }
+        return records;
+    }
+
+    /**
+     * Opens the clubs as they are now, as a list of records that does not
+     * change while clubs are added, removed or changed, and can be read
+     * without locking this instance. The version must be closed once read.
+     * <p>
+     * Versions share the records of unchanged clubs. The first version
+     * opened reads all clubs; while versions are open, opening another one
+     * takes time proportional to the number of clubs divided by
+     * {@value ClubVersions#CHUNK_SIZE}, and changes made through
+     * {@link #add(Club)}, {@link #remove(Object)}, {@link #update(String, UnaryOperator)}
+     * and transactions copy at most that many records per changed club.
+     * Changes made through the setters of a stored club look the club up by
+     * name, and sorting reads all clubs again.
+     *
+     * @return the open version
+     */
+    public synchronized ClubVersion openVersion()
+    {
+        return versions.open(this, store, version);
+    }
+
+    /**
+     * Builds the records behind versions for at most a number of clubs, and
+     * opens a version once they are built for all clubs, so a version can be
+     * opened in steps that each hold the lock of this instance briefly.
+     *
+     * @return the open version, or null if clubs are left to build by later calls
+     */
+    synchronized ClubVersion tryOpenVersion(int maxClubs)
+    {
+        return versions.tryOpen(this, store, version, maxClubs);
+    }
+
+    /**
+     * Drops the records built by {@link #tryOpenVersion(int)} calls that
+     * gave up before a version was opened, unless other versions are open.
+     */
+    synchronized void abandonVersion()
+    {
+        versions.abandon();
+    }
+
+    /**
+     * Returns a publisher streaming all clubs in store order, each subscriber
+     * receiving copies of the clubs of one version at the pace it requests
+     * them. Use {@link ClubPublisher#builder(ClubManagement)} to choose the
+     * chunk size or the executor calling subscribers.
+     *
+     * @return the publisher
+     */
+    public Flow.Publisher<Club> publish()
+    {
+        return ClubPublisher.builder(this).build();
+    }
+
+    /**
+     * Returns a publisher streaming the clubs passing a filter, in store order.
+     *
+     * @param filter the filter, tested on copies of the clubs
+     * @return the publisher
+     * @see #publish()
+     */
+    public Flow.Publisher<Club> publish(Predicate<? super Club> filter)
+    {
+        return ClubPublisher.builder(this).filter(filter).build();
+    }
+
+    /**
+     * Returns a publisher streaming the clubs passing a filter in a sort
+     * order. Clubs are read a page at a time, as by {@link #page(ClubSortOrder, ClubCursor, int)}.
+     *
+     * @param order  the sort order
+     * @param filter the filter, tested on copies of the clubs, or null for all clubs
+     * @return the publisher
+     * @see #publish()
+     */
+    public Flow.Publisher<Club> publish(ClubSortOrder order, @Nullable Predicate<? super Club> filter)
+    {
+        return ClubPublisher.builder(this).order(order).filter(filter).build();
+    }
+
+    /**
+     * Called by a version that was closed, while holding the lock of this instance.
+     */
+    void versionClosed()
+    {
+        versions.closed();
+    }
+
+    /**
+     * Updates a stored club by swapping it for a club built from a changed
+     * record. The change receives the current record of the club and returns
+     * the record to store; the club keeps its position.
+     *
+     * @param clubName the name of the club to update
+     * @param change   the change, returning the new record
+     * @return the stored record stamped with the new version, or null if there is no such club.
+     * @throws IllegalArgumentException if the new record renames the club to the name of another club
+     */
+    @Nullable
+    public synchronized ClubRecord update(String clubName, UnaryOperator<ClubRecord> change)
+    {
+        int index = indexOf(clubName);
+        if(index < 0)
+        {
+            return null;
+        }
+        Club oldClub = store.get(index);
+        ClubRecord oldRecord = ClubRecord.of(oldClub, version);
+        ClubRecord newRecord = change.apply(oldRecord);
+        int existing = indexOf(newRecord.getClubName());
+        if(existing >= 0 && existing != index)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubManagement.update: " + " club name " + newRecord.getClubName() + " is already in use.");
+        }
+        checkPresident(newRecord.getPresident(), Collections.singleton(ClubNames.normalize(oldRecord.getClubName())), "update");
+        if(oldClub.getOwner() == this)
+        {
+            oldClub.setOwner(null, 0);
+        }
+        Club newClub = newRecord.toClub();
+        store.set(index, newClub);
+        Club stored = store.get(index);
+        if(stored == newClub)
+        {
+            newClub.setOwner(this, generation);
+        }
+        if(cache != null)
+        {
+            cache.invalidate(ClubNames.normalize(oldRecord.getClubName()));
+        }
+        // the old club may be a view of the new values, so indexes see a copy
+        Club removed = oldRecord.toClub();
+        for(int i = 0; i < indexes.size(); i++)
+        {
+            indexes.get(i).batchStarted();
+            indexes.get(i).clubRemoved(removed);
+            indexes.get(i).clubAdded(stored);
+            indexes.get(i).batchFinished();
+        }
+        version++;
+        ClubRecord updated = newRecord.toBuilder().version(version).build();
+        versions.set(index, updated);
+        if(journal != null)
+        {
+            journal(ClubMutation.updated(oldRecord.getClubName(), updated));
+        }
+        return updated;
+    }
+
+    /**
+     * Starts a transaction, staging changes that are applied all at once
+     * or not at all.
+     *
+     * @return the transaction
+     * @see ClubTransaction
+     */
+    public ClubTransaction begin()
+    {
+        return new ClubTransaction(this);
+    }
+
+    /**
+     * Applies the changes of a transaction. The clubs the changes refer to
+     * are looked up in one pass over the store and the changes are checked
+     * against them before anything is changed.
+     */
+    synchronized long commit(List<ClubTransaction.Operation> operations)
+    {
+        if(operations.isEmpty())
+        {
+            return version;
+        }
+        long newVersion = version + 1;
+        List<Slot> storedSlots = new ArrayList<>();
+        Map<String, Slot> slots = lookUp(operations, storedSlots, newVersion);
+        List<Slot> addedSlots = new ArrayList<>();
+        List<ClubMutation> mutations = journal == null ? null : new ArrayList<ClubMutation>(operations.size());
+        int numberOfClubs = store.size();
+        for(ClubTransaction.Operation operation : operations)
+        {
+            String clubName = ClubNames.normalize(operation.clubName);
+            if(operation.kind == ClubTransaction.Operation.ADD)
+            {
+                if(slotOf(slots, storedSlots, clubName, operation.clubName, newVersion) != null)
+                {
+                    throw new IllegalArgumentException("IllegalArgumentException on ClubManagement.commit: " + " club name " + operation.clubName + " is already in use.");
+                }
+                Slot slot = new Slot(-1, ClubRecord.of(operation.club, newVersion));
+                slot.added = operation.club;
+                slots.put(clubName, slot);
+                addedSlots.add(slot);
+                numberOfClubs++;
+                if(mutations != null)
+                {
+                    mutations.add(ClubMutation.added(slot.record));
+                }
+                continue;
+            }
+            Slot slot = slotOf(slots, storedSlots, clubName, operation.clubName, newVersion);
+            if(slot == null)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubManagement.commit: " + " there is no club named " + operation.clubName + ".");
+            }
+            if(operation.kind == ClubTransaction.Operation.REMOVE)
+            {
+                slot.removed = true;
+                slots.put(clubName, null);
+                numberOfClubs--;
+                if(mutations != null)
+                {
+                    mutations.add(ClubMutation.removed(slot.record.getClubName()));
+                }
+                continue;
+            }
+            ClubRecord newRecord = operation.kind == ClubTransaction.Operation.RENAME
+                    ? slot.record.toBuilder().clubName(operation.newClubName).build()
+                    : operation.change.apply(slot.record);
+            String newClubName = ClubNames.normalize(newRecord.getClubName());
+            if(!newClubName.equals(clubName))
+            {
+                if(slotOf(slots, storedSlots, newClubName, newRecord.getClubName(), newVersion) != null)
+                {
+                    throw new IllegalArgumentException("IllegalArgumentException on ClubManagement.commit: " + " club name " + newRecord.getClubName() + " is already in use.");
+                }
+                slots.put(clubName, null);
+                slots.put(newClubName, slot);
+            }
+            if(mutations != null)
+            {
+                mutations.add(ClubMutation.updated(slot.record.getClubName(), newRecord));
+            }
+            slot.record = newRecord;
+            slot.added = null;
+        }
+        if(numberOfClubs > maxSize)
+        {
+            throw new IllegalStateException("IllegalStateException on ClubManagement.commit : " + " not enough room for new element." );
+        }
+        checkPresidents(storedSlots, addedSlots);
+        BitSet removed = removedPositions(storedSlots);
+        apply(storedSlots, addedSlots, removed);
+        version = newVersion;
+        for(Slot slot : storedSlots)
+        {
+            if(!slot.removed && slot.record != slot.original)
+            {
+                versions.set(slot.position, slot.record);
+            }
+        }
+        versions.removedAll(removed);
+        for(Slot slot : addedSlots)
+        {
+            if(!slot.removed)
+            {
+                versions.added(slot.record);
+            }
+        }
+        if(mutations != null)
+        {
+            journal.append(version, mutations);
+        }
+        return version;
+    }
+
+    /**
+     * Checks the presidents of the clubs a transaction leaves stored, so
+     * that the clubs of a president keep one identity: the clubs it changes
+     * must agree, and agree with the other clubs of their presidents.
+     */
+    private void checkPresidents(List<Slot> storedSlots, List<Slot> addedSlots)
+    {
+        Set<String> changed = new HashSet<>();
+        for(Slot slot : storedSlots)
+        {
+            changed.add(ClubNames.normalize(slot.original.getClubName()));
+        }
+        Map<Integer, PresidentRecord> identities = new HashMap<>();
+        for(List<Slot> slots : Arrays.asList(storedSlots, addedSlots))
+        {
+            for(Slot slot : slots)
+            {
+                PresidentRecord president = slot.removed ? null : slot.record.getPresident();
+                if(president == null)
+                {
+                    continue;
+                }
+                PresidentRecord identity = PresidentRegistry.identityOf(president);
+                PresidentRecord other = identities.put(president.getId(), identity);
+                if(other != null && !other.equals(identity))
+                {
+                    throw new IllegalArgumentException("IllegalArgumentException on ClubManagement.commit: " + " president " + president.getId() + " is given different names by the changes.");
+                }
+                checkPresident(president, changed, "commit");
+            }
+        }
+    }
+
+    /**
+     * Checks that a president about to be stored with a club carries the
+     * names and middle initial registered for their id, unless they lead no
+     * stored club besides those being replaced.
+     *
+     * @param president   the president, or null if the club has none
+     * @param exceptClubs the normalized names of the stored clubs being replaced
+     * @param method      the name of the method reporting a mismatch
+     * @throws IllegalArgumentException if the president carries other names than registered
+     */
+    private void checkPresident(@Nullable PresidentRecord president, Collection<String> exceptClubs, String method)
+    {
+        if(president == null)
+        {
+            return;
+        }
+        PresidentRecord registered = presidents.identityOf(president.getId(), exceptClubs);
+        if(registered != null && !registered.equals(PresidentRegistry.identityOf(president)))
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubManagement." + method + ": " + " president " + president.getId() + " is registered with other names; change them with updatePresident.");
+        }
+    }
+
+    /**
+     * Called by a stored club before its president is replaced.
+     *
+     * @throws IllegalArgumentException if the new president carries other names than registered
+     */
+    synchronized void checkPresidentChange(Club club, int clubGeneration, @Nullable ClubPresident clubPresident)
+    {
+        if(clubGeneration != generation)
+        {
+            return;
+        }
+        String clubName = club.getClubName();
+        checkPresident(PresidentRecord.of(clubPresident),
+                clubName == null ? Collections.<String>emptySet() : Collections.singleton(ClubNames.normalize(clubName)),
+                "setClubPresident");
+    }
+
+    /**
+     * Finds the stored clubs named by a batch of changes in one pass over
+     * the store, comparing name hashes and normalizing only names whose
+     * hash matches.
+     */
+    private Map<String, Slot> lookUp(List<ClubTransaction.Operation> operations, List<Slot> storedSlots, long newVersion)
+    {
+        Map<String, Slot> slots = new HashMap<>();
+        int[] hashes = new int[operations.size() * 2];
+        int wanted = 0;
+        for(ClubTransaction.Operation operation : operations)
+        {
+            wanted = want(slots, operation.clubName, hashes, wanted);
+            if(operation.newClubName != null)
+            {
+                wanted = want(slots, operation.newClubName, hashes, wanted);
+            }
+        }
+        Arrays.sort(hashes, 0, wanted);
+        for(int i = 0, size = store.size(); i < size && wanted > 0; i++)
+        {
+            String clubName = store.getClubName(i);
+            if(clubName != null && Arrays.binarySearch(hashes, 0, wanted, ClubNames.hash(clubName)) >= 0)
+            {
+                String normalizedName = ClubNames.normalize(clubName);
+                if(slots.containsKey(normalizedName) && slots.get(normalizedName) == null)
+                {
+                    Slot slot = new Slot(i, ClubRecord.of(store.get(i), newVersion));
+                    slots.put(normalizedName, slot);
+                    storedSlots.add(slot);
+                }
+            }
+        }
+        return slots;
+    }
 
-    private MemberNumberComparator memberNumberComparator;
+    private static BitSet removedPositions(List<Slot> storedSlots)
+    {
+        BitSet removed = new BitSet();
+        for(Slot slot : storedSlots)
+        {
+            if(slot.removed)
+            {
+                removed.set(slot.position);
+            }
+        }
+        return removed;
+    }
 
-    private CurrentPresidentComparator clubPresidentComparator;
+    private int want(Map<String, Slot> slots, String clubName, int[] hashes, int wanted)
+    {
+        String normalizedName = ClubNames.normalize(clubName);
+        if(slots.containsKey(normalizedName) || (nameFilter != null && !nameFilter.mightContain(clubName)))
+        {
+            return wanted;
+        }
+        slots.put(normalizedName, null);
+        hashes[wanted] = normalizedName.hashCode();
+        return wanted + 1;
+    }
 
-    private ClubNameComparator clubNameComparator;
+    /**
+     * Returns the club holding a name at this point of a transaction,
+     * looking up names no change of the transaction referred to up front,
+     * such as a name given by an update.
+     */
+    @Nullable
+    private Slot slotOf(Map<String, Slot> slots, List<Slot> storedSlots, String normalizedName, String clubName, long newVersion)
+    {
+        if(slots.containsKey(normalizedName))
+        {
+            return slots.get(normalizedName);
+        }
+        int index = indexOf(clubName);
+        Slot slot = null;
+        if(index >= 0)
+        {
+            slot = new Slot(index, ClubRecord.of(store.get(index), newVersion));
+            storedSlots.add(slot);
+        }
+        slots.put(normalizedName, slot);
+        return slot;
+    }
 
     /**
-     * Instantiates a new Club management.
-     *
-     * @param maxSize the max size
+     * Applies checked changes: stored clubs are swapped in place, removed
+     * clubs are removed in one pass and added clubs appended. Indexes see
+     * all removals before all additions, so names moving between clubs are
+     * never removed after they were added.
      */
-    public ClubManagement(int maxSize)
+    private void apply(List<Slot> storedSlots, List<Slot> addedSlots, BitSet removed)
     {
-        setMaxSize(maxSize);
-        numberOfClubs = 0;
-        clubList = new Club[maxSize];
-        memberNumberComparator = new MemberNumberComparator();
-        clubNameComparator = new ClubNameComparator();
-        clubPresidentComparator = new CurrentPresidentComparator();
+        List<Slot> changed = new ArrayList<>();
+        for(Slot slot : storedSlots)
+        {
+            if(!slot.removed && slot.record == slot.original)
+            {
+                continue;
+            }
+            Club club = store.get(slot.position);
+            if(club.getOwner() == this)
+            {
+                club.setOwner(null, 0);
+            }
+            if(!slot.removed)
+            {
+                Club newClub = slot.record.toClub();
+                store.set(slot.position, newClub);
+                slot.stored = store.get(slot.position);
+                if(slot.stored == newClub)
+                {
+                    newClub.setOwner(this, generation);
+                }
+            }
+            changed.add(slot);
+        }
+        store.removeAll(removed);
+        for(Slot slot : addedSlots)
+        {
+            if(!slot.removed)
+            {
+                Club club = slot.added != null ? slot.added : slot.record.toClub();
+                store.add(club);
+                slot.stored = store.get(store.size() - 1);
+                if(slot.stored == club)
+                {
+                    club.setOwner(this, generation);
+                }
+            }
+        }
+        for(int i = 0; i < indexes.size(); i++)
+        {
+            indexes.get(i).batchStarted();
+        }
+        try
+        {
+            for(Slot slot : changed)
+            {
+                if(cache != null)
+                {
+                    cache.invalidate(ClubNames.normalize(slot.original.getClubName()));
+                }
+                // the stored club may be a view of the new values, so indexes see a copy
+                Club old = slot.original.toClub();
+                for(int i = 0; i < indexes.size(); i++)
+                {
+                    indexes.get(i).clubRemoved(old);
+                }
+            }
+            for(Slot slot : changed)
+            {
+                if(slot.stored != null)
+                {
+                    for(int i = 0; i < indexes.size(); i++)
+                    {
+                        indexes.get(i).clubAdded(slot.stored);
+                    }
+                }
+            }
+            for(Slot slot : addedSlots)
+            {
+                if(slot.stored != null)
+                {
+                    for(int i = 0; i < indexes.size(); i++)
+                    {
+                        indexes.get(i).clubAdded(slot.stored);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            for(int i = 0; i < indexes.size(); i++)
+            {
+                indexes.get(i).batchFinished();
+            }
+        }
+    }
+
+    /**
+     * Called by a stored club whose member count changed.
+     */
+    synchronized void memberNumberChanged(Club club, int clubGeneration, int oldMemberNumber, int newMemberNumber)
+    {
+        if(clubGeneration != generation)
+        {
+            return;
+        }
+        version++;
+        recordChanged(club);
+        for(int i = 0; i < indexes.size(); i++)
+        {
+            indexes.get(i).memberNumberChanged(club, oldMemberNumber, newMemberNumber);
+        }
+        if(journal != null)
+        {
+            journal(ClubMutation.updated(club.getClubName(), ClubRecord.of(club, version)));
+        }
+    }
+
+    /**
+     * Called by a stored club that was renamed.
+     */
+    synchronized void clubNameChanged(Club club, int clubGeneration, String oldClubName)
+    {
+        if(clubGeneration != generation)
+        {
+            return;
+        }
+        version++;
+        recordChanged(club);
+        if(cache != null && oldClubName != null)
+        {
+            cache.invalidate(ClubNames.normalize(oldClubName));
+        }
+        for(int i = 0; i < indexes.size(); i++)
+        {
+            indexes.get(i).clubRenamed(club, oldClubName);
+        }
+        if(journal != null)
+        {
+            journal(ClubMutation.updated(oldClubName, ClubRecord.of(club, version)));
+        }
+    }
+
+    /**
+     * Called by a stored club whose president changed.
+     */
+    synchronized void clubPresidentChanged(Club club, int clubGeneration)
+    {
+        if(clubGeneration != generation)
+        {
+            return;
+        }
+        version++;
+        recordChanged(club);
+        for(int i = 0; i < indexes.size(); i++)
+        {
+            indexes.get(i).clubPresidentChanged(club);
+        }
+        if(journal != null)
+        {
+            journal(ClubMutation.updated(club.getClubName(), ClubRecord.of(club, version)));
+        }
+    }
+
+    /**
+     * Replaces the version record of a club changed through its own setters.
+     */
+    private void recordChanged(Club club)
+    {
+        if(versions.isActive())
+        {
+            int index = store.indexOf(club.getClubName());
+            if(index >= 0)
+            {
+                versions.set(index, ClubRecord.of(club, version));
+            }
+        }
     }
 
     /**
@@ -64,9 +1285,13 @@ public class ClubManagement extends AbstractList<Club>
      * @param clubName the club name
      * @return true if the club is found in the system, else false.
      */
-    public boolean clubExists(String clubName)
+    public synchronized boolean clubExists(String clubName)
     {
-        return findClub(clubName) != null;
+        if(cache != null)
+        {
+            return findClub(clubName) != null;
+        }
+        return indexOf(clubName) >= 0;
     }
 
     /**
@@ -77,7 +1302,7 @@ public class ClubManagement extends AbstractList<Club>
      * @param clubPresident the club president
      * @return true if the club president is in charge of a stored club. False otherwise.
      */
-    public boolean currentPresidentExists(String clubName, ClubPresident clubPresident)
+    public synchronized boolean currentPresidentExists(String clubName, ClubPresident clubPresident)
     {
         Club club = findClub(clubName);
         if(club != null)
@@ -87,51 +1312,78 @@ public class ClubManagement extends AbstractList<Club>
         return false;
     }
 
+    /**
+     * Returns the position of the club with the given name, without
+     * looking at the store if the name filter rejects the name.
+     */
+    int indexOf(String clubName)
+    {
+        if(nameFilter != null && !nameFilter.mightContain(clubName))
+        {
+            return -1;
+        }
+        return store.indexOf(clubName);
+    }
+
     @Nullable
     private Club findClub(String clubName)
     {
-        if(numberOfClubs == 0 || clubList.length == 0)
+        if(cache == null)
+        {
+            int index = indexOf(clubName);
+            return index < 0 ? null : stored(index);
+        }
+        if(nameFilter != null && !nameFilter.mightContain(clubName))
         {
             return null;
         }
-        for (Club club: clubList)
+        String normalizedName = ClubNames.normalize(clubName);
+        Club club = cache.get(normalizedName);
+        if(club != null)
         {
-            if(club == null)
-            {
-                break;
-            }
-            if(club.getClubName().trim().equalsIgnoreCase(clubName.trim()))
+            if(ClubNames.sameName(club.getClubName(), clubName))
             {
                 return club;
             }
+            // the cached club was renamed since it was cached
+            cache.invalidate(normalizedName);
         }
-       return null;
-    }
-
-    private int findIndex(Club club)
-    {
-        if(club == null || numberOfClubs <= 0)
+        int index = indexOf(clubName);
+        if(index < 0)
         {
-            return -1;
+            return null;
         }
-       for(int i = 0; i< clubList.length; i++)
-       {
-           if(clubList[i].equals(club))
-           {
-               return i;
-           }
-       }
-       return -1;
+        club = stored(index);
+        cache.put(normalizedName, club);
+        return club;
     }
 
     private boolean addClub(Club club)
     {
-        if (findClub(club.getClubName()) == null)
+        if (indexOf(club.getClubName()) < 0)
         {
-            if (numberOfClubs < maxSize)
+            if (store.size() < maxSize)
             {
-                clubList[numberOfClubs] = club;
-                numberOfClubs++;
+                checkPresident(PresidentRecord.of(club.getClubPresident()), Collections.<String>emptySet(), "add");
+                store.add(club);
+                Club stored = store.get(store.size() - 1);
+                if(stored == club)
+                {
+                    club.setOwner(this, generation);
+                }
+                for(int i = 0; i < indexes.size(); i++)
+                {
+                    indexes.get(i).clubAdded(stored);
+                }
+                version++;
+                if(versions.isActive())
+                {
+                    versions.added(ClubRecord.of(stored, version));
+                }
+                if(journal != null)
+                {
+                    journal(ClubMutation.added(ClubRecord.of(stored, version)));
+                }
                 return true;
             }
             else
@@ -144,12 +1396,31 @@ public class ClubManagement extends AbstractList<Club>
 
     private boolean removeClub(String clubName)
     {
-        Club club = findClub(clubName);
-        if(club != null)
+        int index = indexOf(clubName);
+        if(index >= 0)
         {
-            int index = findIndex(club);
-            clubList[index] = null;
-            numberOfClubs--;
+            if(cache != null)
+            {
+                cache.invalidate(ClubNames.normalize(clubName));
+            }
+            Club club = store.get(index);
+            // a view stops reading its record once the club is removed, so indexes see a copy
+            Club removed = ClubRecord.of(club, version).toClub();
+            store.remove(index);
+            if(club.getOwner() == this)
+            {
+                club.setOwner(null, 0);
+            }
+            for(int i = 0; i < indexes.size(); i++)
+            {
+                indexes.get(i).clubRemoved(removed);
+            }
+            version++;
+            versions.removed(index);
+            if(journal != null)
+            {
+                journal(ClubMutation.removed(removed.getClubName()));
+            }
             return true;
         }
         return false;
@@ -161,33 +1432,62 @@ public class ClubManagement extends AbstractList<Club>
      *
      * @return the number of clubs
      */
-    public int getNumberOfClubs()
+    public synchronized int getNumberOfClubs()
     {
-        return numberOfClubs;
+        return store.size();
     }
 
     /**
      * Sort  all club entries in ascending by the number of members.
      */
-    public void sortByMemberNumbers()
+    public synchronized void sortByMemberNumbers()
     {
-        Arrays.sort(clubList,memberNumberComparator);
+        sort(MEMBER_NUMBER_ORDER);
     }
 
     /**
      * Sorts all club entries in descending by the names of the clubs.
      */
-    public void sortByClubNames()
+    public synchronized void sortByClubNames()
     {
-        Arrays.sort(clubList,clubNameComparator);
+        sort(CLUB_NAME_ORDER);
     }
 
     /**
      * Sorts all club entries in descending order by the last names of the club presidents.
+     * Clubs without a president are placed last.
+     */
+    public synchronized void sortByClubPresidents()
+    {
+        sort(CLUB_PRESIDENT_ORDER);
+    }
+
+    /**
+     * Sorts all club entries by a chain of sort keys. The keys are
+     * extracted once per club before sorting.
+     *
+     * @param order the sort order
+     * @see ClubSortOrder
+     */
+    public synchronized void sort(ClubSortOrder order)
+    {
+        store.sort(order);
+        version++;
+        versions.reordered(store, version);
+    }
+
+    /**
+     * Sorts all club entries with the given comparator, which may be
+     * a chain built with {@link Comparator#thenComparing(Comparator)}.
+     *
+     * @param c the comparator used to compare clubs
      */
-    public void sortByClubPresidents()
+    @Override
+    public synchronized void sort(Comparator<? super Club> c)
     {
-        Arrays.sort(clubList,clubPresidentComparator);
+        store.sort(c);
+        version++;
+        versions.reordered(store, version);
     }
 
     /**
@@ -196,22 +1496,21 @@ public class ClubManagement extends AbstractList<Club>
      *
      * @return a string representing the list of clubs.
      */
-    public String listClubs()
+    public synchronized String listClubs()
     {
         return toString();
     }
 
-    public String toString()
+    public synchronized String toString()
     {
         StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append(clubList[0]);
-        for (int i = 1; i < maxSize - 1; i++)
+        for (int i = 0; i < store.size(); i++)
         {
-            if(clubList[i] == null)
+            if(i > 0)
             {
-                break;
+                stringBuilder.append("\n");
             }
-            stringBuilder.append("\n").append(clubList[i]);
+            stringBuilder.append(store.get(i));
         }
         return stringBuilder.toString();
     }
@@ -243,9 +1542,9 @@ public class ClubManagement extends AbstractList<Club>
      * @return the number of elements in this collection
      */
     @Override
-    public int size()
+    public synchronized int size()
     {
-        return numberOfClubs;
+        return store.size();
     }
 
     /**
@@ -254,9 +1553,9 @@ public class ClubManagement extends AbstractList<Club>
      * @return <tt>true</tt> if this collection contains no elements
      */
     @Override
-    public boolean isEmpty()
+    public synchronized boolean isEmpty()
     {
-        return numberOfClubs == 0;
+        return store.size() == 0;
     }
 
     /**
@@ -276,7 +1575,7 @@ public class ClubManagement extends AbstractList<Club>
      *                              (<a href="#optional-restrictions">optional</a>)
      */
     @Override
-    public boolean contains(Object o)
+    public synchronized boolean contains(Object o)
     {
         if(o instanceof Club)
         {
@@ -308,9 +1607,14 @@ public class ClubManagement extends AbstractList<Club>
      * @return an array containing all of the elements in this collection
      */
     @Override
-    public Object[] toArray()
+    public synchronized Object[] toArray()
     {
-        return Arrays.copyOf(clubList,maxSize);
+        Object[] clubs = new Object[maxSize];
+        for (int i = 0; i < store.size(); i++)
+        {
+            clubs[i] = store.get(i);
+        }
+        return clubs;
     }
 
 
@@ -348,7 +1652,7 @@ public class ClubManagement extends AbstractList<Club>
      *                                       time due to insertion restrictions
      */
     @Override
-    public boolean add(Club club)
+    public synchronized boolean add(Club club)
     {
         return addClub(club);
     }
@@ -360,13 +1664,27 @@ public class ClubManagement extends AbstractList<Club>
      * @throws IndexOutOfBoundsException {@inheritDoc}
      */
     @Override
-    public Club get(int index)
+    public synchronized Club get(int index)
     {
         if(index >= maxSize)
         {
             throw new IndexOutOfBoundsException("IndexOutOfBoundsException on ClubManagement.get: " + "index of " + index + " greater than array size.");
         }
-        return clubList[index];
+        return index < store.size() ? stored(index) : null;
+    }
+
+    /**
+     * Returns the club at a position of the store, which reports
+     * changes to its member count to this instance.
+     */
+    private Club stored(int index)
+    {
+        Club club = store.get(index);
+        if(club.getOwner() != this)
+        {
+            club.setOwner(this, generation);
+        }
+        return club;
     }
 
     /**
@@ -390,7 +1708,7 @@ public class ClubManagement extends AbstractList<Club>
      *                                       is not supported by this collection
      */
     @Override
-    public boolean remove(Object o)
+    public synchronized boolean remove(Object o)
     {
         if(o instanceof Club)
         {
@@ -422,7 +1740,7 @@ public class ClubManagement extends AbstractList<Club>
      * @see #contains(Object)
      */
     @Override
-    public boolean containsAll(Collection<?> c)
+    public synchronized boolean containsAll(Collection<?> c)
     {
         for (Object o: c)
         {
@@ -536,9 +1854,59 @@ public class ClubManagement extends AbstractList<Club>
      *                                       is not supported by this collection
      */
     @Override
-    public void clear()
+    public synchronized void clear()
+    {
+        store.clear();
+        generation++;
+        version++;
+        versions.cleared();
+        if(cache != null)
+        {
+            cache.clear();
+        }
+        for(int i = 0; i < indexes.size(); i++)
+        {
+            indexes.get(i).cleared();
+        }
+        if(journal != null)
+        {
+            journal(ClubMutation.cleared());
+        }
+    }
+
+    private void journal(ClubMutation mutation)
+    {
+        journal.append(version, Collections.singletonList(mutation));
+    }
+
+    /**
+     * A club affected by a transaction, as it is at the current change.
+     */
+    private static final class Slot
     {
-        numberOfClubs = 0;
-        clubList = new Club[maxSize];
+        /**
+         * The position of the stored club, or -1 for a club added by the transaction.
+         */
+        final int position;
+
+        final ClubRecord original;
+
+        ClubRecord record;
+
+        /**
+         * The added club, while it is unchanged by later changes.
+         */
+        Club added;
+
+        Club stored;
+
+        boolean removed;
+
+        Slot(int position, ClubRecord original)
+        {
+            this.position = position;
+            this.original = original;
+            this.record = original;
+        }
     }
 }
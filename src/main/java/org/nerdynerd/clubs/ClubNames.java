@@ -0,0 +1,119 @@
+package org.nerdynerd.clubs;
+
+/**
+ * Helpers for club names as {@link ClubManagement} compares them:
+ * surrounding whitespace is ignored, and so is case.
+ * <p>
+ * {@link #hash(String)} hashes a name the same way without creating a
+ * normalized copy of it, so it can be used on lookup paths.
+ */
+public final class ClubNames
+{
+    private ClubNames()
+    {
+    }
+
+    /**
+     * Returns the normalized form of a club name. Two names are the same
+     * club name if and only if their normalized forms are equal.
+     *
+     * @param clubName the club name
+     * @return the normalized name
+     */
+    public static String normalize(String clubName)
+    {
+        int start = start(clubName);
+        int end = end(clubName, start);
+        char[] normalized = new char[end - start];
+        for(int i = start; i < end; i++)
+        {
+            normalized[i - start] = fold(clubName.charAt(i));
+        }
+        return new String(normalized);
+    }
+
+    /**
+     * Returns if two club names are the same club name.
+     *
+     * @param first  the first club name
+     * @param second the second club name
+     * @return true if the names are the same, else false.
+     */
+    public static boolean sameName(String first, String second)
+    {
+        int firstStart = start(first);
+        int firstEnd = end(first, firstStart);
+        int secondStart = start(second);
+        int secondEnd = end(second, secondStart);
+        int length = firstEnd - firstStart;
+        return length == secondEnd - secondStart && first.regionMatches(true, firstStart, second, secondStart, length);
+    }
+
+    /**
+     * Hashes a club name so that names that are the same club name
+     * have the same hash. This is equal to {@code normalize(clubName).hashCode()}
+     * but does not allocate.
+     *
+     * @param clubName the club name
+     * @return the hash of the name
+     */
+    public static int hash(String clubName)
+    {
+        int start = start(clubName);
+        int end = end(clubName, start);
+        int hash = 0;
+        for(int i = start; i < end; i++)
+        {
+            hash = 31 * hash + fold(clubName.charAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Spreads the bits of a name hash so that its low bits can be
+     * used to pick a shard or a bucket.
+     *
+     * @param hash the name hash
+     * @return the mixed hash
+     */
+    public static int mix(int hash)
+    {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Folds a character the way {@link String#equalsIgnoreCase(String)} compares them.
+     *
+     * @param c the character
+     * @return the folded character
+     */
+    static char fold(char c)
+    {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static int start(String clubName)
+    {
+        int start = 0;
+        while(start < clubName.length() && clubName.charAt(start) <= ' ')
+        {
+            start++;
+        }
+        return start;
+    }
+
+    private static int end(String clubName, int start)
+    {
+        int end = clubName.length();
+        while(end > start && clubName.charAt(end - 1) <= ' ')
+        {
+            end--;
+        }
+        return end;
+    }
+}
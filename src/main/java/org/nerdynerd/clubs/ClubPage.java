@@ -0,0 +1,54 @@
+package org.nerdynerd.clubs;
+
+import com.sun.istack.internal.Nullable;
+import org.nerdynerd.clubs.index.ClubCursor;
+
+import java.util.List;
+
+/**
+ * A page of clubs in a sort order, read with
+ * {@link ClubManagement#page(org.nerdynerd.clubs.sort.ClubSortOrder, ClubCursor, int)}.
+ */
+public final class ClubPage
+{
+    private final List<ClubRecord> clubs;
+
+    private final ClubCursor next;
+
+    ClubPage(List<ClubRecord> clubs, @Nullable ClubCursor next)
+    {
+        this.clubs = clubs;
+        this.next = next;
+    }
+
+    /**
+     * Gets the clubs of this page, in order.
+     *
+     * @return an unmodifiable list of club records
+     */
+    public List<ClubRecord> getClubs()
+    {
+        return clubs;
+    }
+
+    /**
+     * Gets the cursor to read the next page from.
+     *
+     * @return the cursor after the last club of this page, or null if this is the last page.
+     */
+    @Nullable
+    public ClubCursor getNext()
+    {
+        return next;
+    }
+
+    /**
+     * Returns if more clubs follow this page.
+     *
+     * @return true if there is a next page
+     */
+    public boolean hasNext()
+    {
+        return next != null;
+    }
+}
@@ -0,0 +1,276 @@
+package org.nerdynerd.clubs;
+
+import com.sun.istack.internal.Nullable;
+
+import java.util.Objects;
+
+/**
+ * An immutable form of a {@link Club}, stamped with the version of the
+ * {@link ClubManagement} it was read from or written to.
+ * <p>
+ * Unlike a club, a record never changes once built, so it can be kept in
+ * indexes, caches and memoized results. Stored clubs are changed by
+ * passing a changed record to {@link ClubManagement#update(String, java.util.function.UnaryOperator)},
+ * which swaps the stored club. The version is not part of
+ * {@link #equals(Object)}: two records with the same values are equal.
+ */
+public final class ClubRecord
+{
+    private final int id;
+
+    private final String clubName;
+
+    private final int memberNumber;
+
+    private final PresidentRecord president;
+
+    private final long version;
+
+    private ClubRecord(Builder builder)
+    {
+        if(builder.clubName == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubRecord.build: " + " club name must not be null.");
+        }
+        if(builder.memberNumber < 0)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubRecord.build: " + " member count must be greater than or equal to zero.");
+        }
+        this.id = builder.id;
+        this.clubName = builder.clubName;
+        this.memberNumber = builder.memberNumber;
+        this.president = builder.president;
+        this.version = builder.version;
+    }
+
+    /**
+     * Returns a new builder of club records.
+     *
+     * @return the builder
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Returns the record of a club.
+     *
+     * @param club    the club
+     * @param version the version stamp
+     * @return the record
+     */
+    public static ClubRecord of(Club club, long version)
+    {
+        return builder()
+                .id(club.getId())
+                .clubName(club.getClubName())
+                .memberNumber(club.getMemberNumber())
+                .president(PresidentRecord.of(club.getClubPresident()))
+                .version(version)
+                .build();
+    }
+
+    /**
+     * Returns a builder initialized with the values of this record.
+     *
+     * @return the builder
+     */
+    public Builder toBuilder()
+    {
+        Builder builder = new Builder();
+        builder.id = id;
+        builder.clubName = clubName;
+        builder.memberNumber = memberNumber;
+        builder.president = president;
+        builder.version = version;
+        return builder;
+    }
+
+    /**
+     * Creates a new mutable club with the values of this record.
+     *
+     * @return the club
+     */
+    public Club toClub()
+    {
+        Club club = new Club(id, clubName);
+        if(president != null)
+        {
+            club.setClubPresident(president.toClubPresident());
+        }
+        if(memberNumber > 0)
+        {
+            club.setMemberNumber(memberNumber);
+        }
+        return club;
+    }
+
+    /**
+     * Gets the id of the club.
+     *
+     * @return the id
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Gets the club name.
+     *
+     * @return the club name
+     */
+    public String getClubName()
+    {
+        return clubName;
+    }
+
+    /**
+     * Gets the member count.
+     *
+     * @return the member count
+     */
+    public int getMemberNumber()
+    {
+        return memberNumber;
+    }
+
+    /**
+     * Gets the club president.
+     *
+     * @return the club president, or null if there is none.
+     */
+    @Nullable
+    public PresidentRecord getPresident()
+    {
+        return president;
+    }
+
+    /**
+     * Gets the version of the club management this record was read from or written to.
+     *
+     * @return the version
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof ClubRecord)) return false;
+        ClubRecord that = (ClubRecord) o;
+        return id == that.id &&
+                memberNumber == that.memberNumber &&
+                clubName.equals(that.clubName) &&
+                Objects.equals(president, that.president);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(id, clubName, memberNumber, president);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Club name: " + clubName + "\n" +
+                "Club president: " + president + "\n" +
+                "Member count: " + memberNumber;
+    }
+
+    /**
+     * A builder of {@link ClubRecord}s.
+     */
+    public static final class Builder
+    {
+        private int id;
+
+        private String clubName;
+
+        private int memberNumber;
+
+        private PresidentRecord president;
+
+        private long version;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Sets the id.
+         *
+         * @param id the id
+         * @return this builder
+         */
+        public Builder id(int id)
+        {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * Sets the club name.
+         *
+         * @param clubName the club name
+         * @return this builder
+         */
+        public Builder clubName(String clubName)
+        {
+            this.clubName = clubName;
+            return this;
+        }
+
+        /**
+         * Sets the member count.
+         *
+         * @param memberNumber the member count
+         * @return this builder
+         */
+        public Builder memberNumber(int memberNumber)
+        {
+            this.memberNumber = memberNumber;
+            return this;
+        }
+
+        /**
+         * Sets the club president.
+         *
+         * @param president the club president, or null for none
+         * @return this builder
+         */
+        public Builder president(@Nullable PresidentRecord president)
+        {
+            this.president = president;
+            return this;
+        }
+
+        /**
+         * Sets the version stamp.
+         *
+         * @param version the version
+         * @return this builder
+         */
+        public Builder version(long version)
+        {
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * Builds the record.
+         *
+         * @return the club record
+         * @throws IllegalArgumentException if the club name is missing or the member count is negative
+         */
+        public ClubRecord build()
+        {
+            return new ClubRecord(this);
+        }
+    }
+}
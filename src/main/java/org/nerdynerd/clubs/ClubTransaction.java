@@ -0,0 +1,188 @@
+package org.nerdynerd.clubs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A batch of changes to the clubs of a {@link ClubManagement}, applied
+ * all at once or not at all.
+ * <p>
+ * Changes are only staged until {@link #commit()}, which checks them in
+ * the order they were staged, as if they were applied one after the
+ * other, and then applies all of them while holding the lock of the club
+ * management. Readers therefore see the clubs either before or after the
+ * whole transaction. Committing looks up all affected clubs in a single
+ * pass over the store, removes clubs in a single pass, changes the version
+ * once and reports all changes to indexes and the journal as one batch.
+ * <pre>
+ * clubManagement.begin()
+ *               .rename("Chess club", "Board games club")
+ *               .remove("Checkers club")
+ *               .add(new Club(7, "Go club"))
+ *               .commit();
+ * </pre>
+ * A transaction is not thread safe and can be committed once.
+ */
+public final class ClubTransaction
+{
+    private final ClubManagement clubManagement;
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    private boolean finished;
+
+    ClubTransaction(ClubManagement clubManagement)
+    {
+        this.clubManagement = clubManagement;
+    }
+
+    /**
+     * Stages adding a club.
+     *
+     * @param club the club
+     * @return this transaction
+     */
+    public ClubTransaction add(Club club)
+    {
+        if(club == null || club.getClubName() == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubTransaction.add: " + " club and club name must not be null.");
+        }
+        return stage(new Operation(Operation.ADD, club.getClubName(), null, club, null));
+    }
+
+    /**
+     * Stages removing a club.
+     *
+     * @param clubName the club name
+     * @return this transaction
+     */
+    public ClubTransaction remove(String clubName)
+    {
+        return stage(new Operation(Operation.REMOVE, clubName, null, null, null));
+    }
+
+    /**
+     * Stages renaming a club.
+     *
+     * @param clubName    the club name
+     * @param newClubName the new club name
+     * @return this transaction
+     */
+    public ClubTransaction rename(String clubName, String newClubName)
+    {
+        if(newClubName == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubTransaction.rename: " + " new club name must not be null.");
+        }
+        return stage(new Operation(Operation.RENAME, clubName, newClubName, null, null));
+    }
+
+    /**
+     * Stages changing a club, as {@link ClubManagement#update(String, UnaryOperator)} does.
+     * The change receives the club as left by the changes staged before it.
+     *
+     * @param clubName the club name
+     * @param change   the change, returning the new record
+     * @return this transaction
+     */
+    public ClubTransaction update(String clubName, UnaryOperator<ClubRecord> change)
+    {
+        if(change == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubTransaction.update: " + " change must not be null.");
+        }
+        return stage(new Operation(Operation.UPDATE, clubName, null, null, change));
+    }
+
+    /**
+     * Returns the number of staged changes.
+     *
+     * @return the number of changes
+     */
+    public int size()
+    {
+        return operations.size();
+    }
+
+    /**
+     * Applies all staged changes.
+     *
+     * @return the version of the club management after the changes
+     * @throws IllegalArgumentException if a change refers to a club that does not exist at that
+     *                                  point, or would store two clubs with the same name. No change is applied.
+     * @throws IllegalStateException    if the changes would store more clubs than allowed, or the
+     *                                  transaction was already committed or rolled back. No change is applied.
+     */
+    public long commit()
+    {
+        finish("commit");
+        return clubManagement.commit(operations);
+    }
+
+    /**
+     * Discards all staged changes.
+     */
+    public void rollback()
+    {
+        finish("rollback");
+        operations.clear();
+    }
+
+    private ClubTransaction stage(Operation operation)
+    {
+        if(finished)
+        {
+            throw new IllegalStateException("IllegalStateException on ClubTransaction.stage: " + " transaction is already finished.");
+        }
+        if(operation.clubName == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubTransaction.stage: " + " club name must not be null.");
+        }
+        operations.add(operation);
+        return this;
+    }
+
+    private void finish(String method)
+    {
+        if(finished)
+        {
+            throw new IllegalStateException("IllegalStateException on ClubTransaction." + method + ": " + " transaction is already finished.");
+        }
+        finished = true;
+    }
+
+    /**
+     * A staged change.
+     */
+    static final class Operation
+    {
+        static final int ADD = 0;
+
+        static final int REMOVE = 1;
+
+        static final int RENAME = 2;
+
+        static final int UPDATE = 3;
+
+        final int kind;
+
+        final String clubName;
+
+        final String newClubName;
+
+        final Club club;
+
+        final UnaryOperator<ClubRecord> change;
+
+        private Operation(int kind, String clubName, String newClubName, Club club, UnaryOperator<ClubRecord> change)
+        {
+            this.kind = kind;
+            this.clubName = clubName;
+            this.newClubName = newClubName;
+            this.club = club;
+            this.change = change;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.nerdynerd.clubs;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The clubs of a {@link ClubManagement} as they were at one version,
+ * opened with {@link ClubManagement#openVersion()}.
+ * <p>
+ * A version is an unmodifiable list of club records that does not change
+ * while clubs are added, removed or changed, so a long report can read it
+ * without seeing clubs twice or missing clubs, and without locking the
+ * club management. A version must be closed once read, so the club
+ * management can stop keeping the records of old versions:
+ * <pre>
+ * try (ClubVersion clubs = clubManagement.openVersion())
+ * {
+ *     for (ClubRecord club : clubs)
+ *     {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * A version can be read by several threads.
+ */
+public final class ClubVersion extends AbstractList<ClubRecord> implements AutoCloseable
+{
+    private final ClubManagement clubManagement;
+
+    private final ClubVersions.Published published;
+
+    private volatile boolean closed;
+
+    ClubVersion(ClubManagement clubManagement, ClubVersions.Published published)
+    {
+        this.clubManagement = clubManagement;
+        this.published = published;
+    }
+
+    /**
+     * Gets the version of the club management this is a view of.
+     *
+     * @return the version
+     * @see ClubManagement#getVersion()
+     */
+    public long getVersion()
+    {
+        return published.version;
+    }
+
+    /**
+     * Returns if this version was closed.
+     *
+     * @return true if closed
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    @Override
+    public int size()
+    {
+        checkOpen("size");
+        return published.size();
+    }
+
+    @Override
+    public ClubRecord get(int index)
+    {
+        checkOpen("get");
+        if(index < 0 || index >= published.size())
+        {
+            throw new IndexOutOfBoundsException("IndexOutOfBoundsException on ClubVersion.get: " + "index of " + index + " outside of the clubs of this version.");
+        }
+        int chunk = Arrays.binarySearch(published.ends, index + 1);
+        if(chunk < 0)
+        {
+            chunk = -chunk - 1;
+        }
+        int start = chunk == 0 ? 0 : published.ends[chunk - 1];
+        return published.chunks[chunk][index - start];
+    }
+
+    /**
+     * Returns this version as a list of clubs, each read as a new club built
+     * from its record, for writers taking clubs rather than records.
+     */
+    List<Club> asClubs()
+    {
+        return new AbstractList<Club>()
+        {
+            @Override
+            public int size()
+            {
+                return ClubVersion.this.size();
+            }
+
+            @Override
+            public Club get(int index)
+            {
+                return ClubVersion.this.get(index).toClub();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<ClubRecord> iterator()
+    {
+        checkOpen("iterator");
+        return new Iterator<ClubRecord>()
+        {
+            private int chunk;
+
+            private int position;
+
+            @Override
+            public boolean hasNext()
+            {
+                return chunk < published.ends.length;
+            }
+
+            @Override
+            public ClubRecord next()
+            {
+                if(!hasNext())
+                {
+                    throw new NoSuchElementException("NoSuchElementException on ClubVersion.next: " + " no more clubs.");
+                }
+                int start = chunk == 0 ? 0 : published.ends[chunk - 1];
+                ClubRecord record = published.chunks[chunk][position - start];
+                position++;
+                if(position == published.ends[chunk])
+                {
+                    chunk++;
+                }
+                return record;
+            }
+        };
+    }
+
+    /**
+     * Closes this version. Once the last open version of a club management
+     * is closed, it stops keeping records for versions. Closing a version
+     * twice has no effect.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (clubManagement)
+        {
+            if(!closed)
+            {
+                closed = true;
+                clubManagement.versionClosed();
+            }
+        }
+    }
+
+    private void checkOpen(String method)
+    {
+        if(closed)
+        {
+            throw new IllegalStateException("IllegalStateException on ClubVersion." + method + ": " + " version is closed.");
+        }
+    }
+}
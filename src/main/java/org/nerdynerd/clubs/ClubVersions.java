@@ -0,0 +1,379 @@
+package org.nerdynerd.clubs;
+
+import org.nerdynerd.clubs.storage.ClubStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The copy-on-write records behind the {@link ClubVersion}s of a
+ * {@link ClubManagement}, used while holding its lock.
+ * <p>
+ * Records of the stored clubs are kept in chunks of up to {@value #CHUNK_SIZE}
+ * records, in stored order. Opening a version shares the current chunks with
+ * it and starts a new epoch; a chunk of an older epoch is never written
+ * again but copied when a club in it changes, so opening a version copies
+ * one reference per chunk and a change copies at most one chunk.
+ * <p>
+ * Records are only kept while a version is open: they are built when the
+ * first version is opened and dropped when the last one is closed. They can
+ * also be built in bounded steps by {@link #tryOpen}, in stored order: while
+ * building, only the positions already built are kept up to date, and the
+ * clubs after them are read from the store by the following steps. Clubs
+ * changed through their own setters are located by name, and sorting builds
+ * the records again while sorting holds the lock anyway.
+ */
+final class ClubVersions
+{
+    static final int CHUNK_SIZE = 512;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    private int size;
+
+    private boolean active;
+
+    /**
+     * Set once records are kept for all stored clubs, unset while they are built.
+     */
+    private boolean complete;
+
+    private int epoch;
+
+    private Published latest;
+
+    private int openVersions;
+
+    /**
+     * Set by {@link #locate(int)} to the offset within the located chunk.
+     */
+    private int offset;
+
+    /**
+     * Returns if the records are kept up to date.
+     */
+    boolean isActive()
+    {
+        return active;
+    }
+
+    /**
+     * Returns the number of versions opened and not yet closed.
+     */
+    int getOpenVersions()
+    {
+        return openVersions;
+    }
+
+    ClubVersion open(ClubManagement clubManagement, ClubStore store, long version)
+    {
+        build(store, version, Integer.MAX_VALUE);
+        return opened(clubManagement, version);
+    }
+
+    /**
+     * Builds the records of at most a number of clubs, and opens a version
+     * once records are kept for all of them.
+     *
+     * @return the version, or null if clubs are left to build by later calls.
+     */
+    ClubVersion tryOpen(ClubManagement clubManagement, ClubStore store, long version, int maxClubs)
+    {
+        if(!build(store, version, maxClubs))
+        {
+            return null;
+        }
+        return opened(clubManagement, version);
+    }
+
+    /**
+     * Drops records built by {@link #tryOpen} that no version was opened with.
+     */
+    void abandon()
+    {
+        if(openVersions == 0)
+        {
+            drop();
+        }
+    }
+
+    private ClubVersion opened(ClubManagement clubManagement, long version)
+    {
+        if(latest == null || latest.version != version)
+        {
+            latest = publish(version);
+        }
+        openVersions++;
+        return new ClubVersion(clubManagement, latest);
+    }
+
+    void closed()
+    {
+        openVersions--;
+        if(openVersions == 0)
+        {
+            drop();
+        }
+    }
+
+    void added(ClubRecord record)
+    {
+        if(complete)
+        {
+            append(record);
+        }
+    }
+
+    private void append(ClubRecord record)
+    {
+        int last = chunks.size() - 1;
+        if(last < 0 || chunks.get(last).length == CHUNK_SIZE)
+        {
+            chunks.add(new Chunk(epoch, new ClubRecord[CHUNK_SIZE], 0));
+            last++;
+        }
+        Chunk chunk = own(last);
+        chunk.records[chunk.length++] = record;
+        size++;
+    }
+
+    void set(int position, ClubRecord record)
+    {
+        if(position >= size)
+        {
+            return;
+        }
+        Chunk chunk = own(locate(position));
+        chunk.records[offset] = record;
+    }
+
+    void removed(int position)
+    {
+        if(position >= size)
+        {
+            return;
+        }
+        int index = locate(position);
+        Chunk chunk = own(index);
+        System.arraycopy(chunk.records, offset + 1, chunk.records, offset, chunk.length - offset - 1);
+        chunk.records[--chunk.length] = null;
+        if(chunk.length == 0)
+        {
+            chunks.remove(index);
+        }
+        size--;
+        repackIfSparse();
+    }
+
+    void removedAll(BitSet positions)
+    {
+        if(!active)
+        {
+            return;
+        }
+        int start = 0;
+        int kept = 0;
+        for(int i = 0, count = chunks.size(); i < count; i++)
+        {
+            Chunk chunk = chunks.get(i);
+            int end = start + chunk.length;
+            int next = positions.nextSetBit(start);
+            if(next >= 0 && next < end)
+            {
+                chunk = chunk.epoch == epoch ? chunk : new Chunk(epoch, chunk.records.clone(), chunk.length);
+                int length = 0;
+                for(int j = 0; j < chunk.length; j++)
+                {
+                    if(!positions.get(start + j))
+                    {
+                        chunk.records[length++] = chunk.records[j];
+                    }
+                }
+                Arrays.fill(chunk.records, length, chunk.length, null);
+                size -= chunk.length - length;
+                chunk.length = length;
+            }
+            if(chunk.length > 0)
+            {
+                chunks.set(kept++, chunk);
+            }
+            start = end;
+        }
+        chunks.subList(kept, chunks.size()).clear();
+        repackIfSparse();
+    }
+
+    void cleared()
+    {
+        chunks.clear();
+        size = 0;
+    }
+
+    /**
+     * Builds the records again in the new order of the stored clubs, right
+     * away if they were complete, or by the following steps while building.
+     */
+    void reordered(ClubStore store, long version)
+    {
+        if(!active)
+        {
+            return;
+        }
+        boolean rebuild = complete;
+        chunks.clear();
+        size = 0;
+        if(rebuild)
+        {
+            build(store, version, Integer.MAX_VALUE);
+        }
+    }
+
+    private void drop()
+    {
+        active = false;
+        complete = false;
+        latest = null;
+        chunks.clear();
+        size = 0;
+    }
+
+    /**
+     * Builds the records of at most a number of the clubs not built yet.
+     *
+     * @return if records are kept for all stored clubs.
+     */
+    private boolean build(ClubStore store, long version, int maxClubs)
+    {
+        active = true;
+        int end = (int) Math.min(store.size(), (long) size + maxClubs);
+        while(size < end)
+        {
+            append(ClubRecord.of(store.get(size), version));
+        }
+        complete = size == store.size();
+        return complete;
+    }
+
+    private Published publish(long version)
+    {
+        Chunk[] published = chunks.toArray(new Chunk[0]);
+        int[] ends = new int[published.length];
+        int end = 0;
+        for(int i = 0; i < published.length; i++)
+        {
+            end += published[i].length;
+            ends[i] = end;
+        }
+        epoch++;
+        ClubRecord[][] records = new ClubRecord[published.length][];
+        for(int i = 0; i < published.length; i++)
+        {
+            records[i] = published[i].records;
+        }
+        return new Published(version, records, ends);
+    }
+
+    /**
+     * Returns the index of the chunk holding a position,
+     * and sets {@link #offset} to the offset within it.
+     */
+    private int locate(int position)
+    {
+        int start = 0;
+        for(int i = 0, count = chunks.size(); i < count; i++)
+        {
+            int length = chunks.get(i).length;
+            if(position < start + length)
+            {
+                offset = position - start;
+                return i;
+            }
+            start += length;
+        }
+        throw new IndexOutOfBoundsException("IndexOutOfBoundsException on ClubVersions.locate: " + "index of " + position + " outside of stored clubs.");
+    }
+
+    /**
+     * Returns the chunk at an index, copying it first if an open version shares it.
+     */
+    private Chunk own(int index)
+    {
+        Chunk chunk = chunks.get(index);
+        if(chunk.epoch != epoch)
+        {
+            chunk = new Chunk(epoch, chunk.records.clone(), chunk.length);
+            chunks.set(index, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Packs the records into full chunks again once removals left
+     * twice as many chunks as needed, so locating a position stays cheap.
+     */
+    private void repackIfSparse()
+    {
+        if(chunks.size() <= 2 * (size / CHUNK_SIZE) + 2)
+        {
+            return;
+        }
+        List<Chunk> sparse = new ArrayList<>(chunks);
+        chunks.clear();
+        size = 0;
+        for(Chunk chunk : sparse)
+        {
+            for(int i = 0; i < chunk.length; i++)
+            {
+                append(chunk.records[i]);
+            }
+        }
+    }
+
+    /**
+     * Up to {@value #CHUNK_SIZE} records, written in place only during the epoch it was created in.
+     */
+    private static final class Chunk
+    {
+        final int epoch;
+
+        final ClubRecord[] records;
+
+        int length;
+
+        Chunk(int epoch, ClubRecord[] records, int length)
+        {
+            this.epoch = epoch;
+            this.records = records;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The records of the clubs at a version, shared by all readers of that version.
+     */
+    static final class Published
+    {
+        final long version;
+
+        final ClubRecord[][] chunks;
+
+        /**
+         * The number of records in each chunk and all chunks before it.
+         */
+        final int[] ends;
+
+        Published(long version, ClubRecord[][] chunks, int[] ends)
+        {
+            this.version = version;
+            this.chunks = chunks;
+            this.ends = ends;
+        }
+
+        int size()
+        {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package org.nerdynerd.clubs;
+
+import com.sun.istack.internal.Nullable;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * An immutable form of a {@link ClubPresident}. Dates are copied
+ * on the way in and on the way out.
+ */
+public final class PresidentRecord
+{
+    private final int id;
+
+    private final String firstName;
+
+    private final char middleInitial;
+
+    private final String lastName;
+
+    private final Long startTime;
+
+    private final Long endTime;
+
+    private PresidentRecord(Builder builder)
+    {
+        this.id = builder.id;
+        this.firstName = builder.firstName;
+        this.middleInitial = builder.middleInitial;
+        this.lastName = builder.lastName;
+        this.startTime = builder.startTime;
+        this.endTime = builder.endTime;
+    }
+
+    /**
+     * Returns a new builder of president records.
+     *
+     * @return the builder
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Returns the record of a club president.
+     *
+     * @param clubPresident the club president
+     * @return the record, or null if there is no president.
+     */
+    @Nullable
+    public static PresidentRecord of(@Nullable ClubPresident clubPresident)
+    {
+        if(clubPresident == null)
+        {
+            return null;
+        }
+        return builder()
+                .id(clubPresident.getId())
+                .firstName(clubPresident.getFirstName())
+                .middleInitial(clubPresident.getMiddleInitial())
+                .lastName(clubPresident.getLastName())
+                .startDate(clubPresident.getStartDate())
+                .endDate(clubPresident.getEndDate())
+                .build();
+    }
+
+    /**
+     * Returns a builder initialized with the values of this record.
+     *
+     * @return the builder
+     */
+    public Builder toBuilder()
+    {
+        Builder builder = new Builder();
+        builder.id = id;
+        builder.firstName = firstName;
+        builder.middleInitial = middleInitial;
+        builder.lastName = lastName;
+        builder.startTime = startTime;
+        builder.endTime = endTime;
+        return builder;
+    }
+
+    /**
+     * Creates a new mutable club president with the values of this record.
+     *
+     * @return the club president
+     */
+    public ClubPresident toClubPresident()
+    {
+        return new ClubPresident(id, firstName, middleInitial, lastName, getStartDate(), getEndDate());
+    }
+
+    /**
+     * Gets the id of the club president.
+     *
+     * @return the id
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Gets the club president's first name.
+     *
+     * @return the first name
+     */
+    public String getFirstName()
+    {
+        return firstName;
+    }
+
+    /**
+     * Gets the club president's middle initial.
+     *
+     * @return the middle initial
+     */
+    public char getMiddleInitial()
+    {
+        return middleInitial;
+    }
+
+    /**
+     * Gets the club president's last name.
+     *
+     * @return the last name
+     */
+    public String getLastName()
+    {
+        return lastName;
+    }
+
+    /**
+     * Gets a copy of the start date of the term.
+     *
+     * @return the start date, or null if there is none.
+     */
+    @Nullable
+    public Date getStartDate()
+    {
+        return startTime == null ? null : new Date(startTime);
+    }
+
+    /**
+     * Gets a copy of the end date of the term.
+     *
+     * @return the end date, or null if the term has not ended.
+     */
+    @Nullable
+    public Date getEndDate()
+    {
+        return endTime == null ? null : new Date(endTime);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof PresidentRecord)) return false;
+        PresidentRecord that = (PresidentRecord) o;
+        return id == that.id &&
+                middleInitial == that.middleInitial &&
+                Objects.equals(firstName, that.firstName) &&
+                Objects.equals(lastName, that.lastName) &&
+                Objects.equals(startTime, that.startTime) &&
+                Objects.equals(endTime, that.endTime);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(id, firstName, middleInitial, lastName, startTime, endTime);
+    }
+
+    @Override
+    public String toString()
+    {
+        return lastName + "," + firstName;
+    }
+
+    /**
+     * A builder of {@link PresidentRecord}s.
+     */
+    public static final class Builder
+    {
+        private int id;
+
+        private String firstName;
+
+        private char middleInitial;
+
+        private String lastName;
+
+        private Long startTime;
+
+        private Long endTime;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Sets the id.
+         *
+         * @param id the id
+         * @return this builder
+         */
+        public Builder id(int id)
+        {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * Sets the first name.
+         *
+         * @param firstName the first name
+         * @return this builder
+         */
+        public Builder firstName(String firstName)
+        {
+            this.firstName = firstName;
+            return this;
+        }
+
+        /**
+         * Sets the middle initial.
+         *
+         * @param middleInitial the middle initial
+         * @return this builder
+         */
+        public Builder middleInitial(char middleInitial)
+        {
+            this.middleInitial = middleInitial;
+            return this;
+        }
+
+        /**
+         * Sets the last name.
+         *
+         * @param lastName the last name
+         * @return this builder
+         */
+        public Builder lastName(String lastName)
+        {
+            this.lastName = lastName;
+            return this;
+        }
+
+        /**
+         * Sets the start date of the term.
+         *
+         * @param startDate the start date
+         * @return this builder
+         */
+        public Builder startDate(@Nullable Date startDate)
+        {
+            this.startTime = startDate == null ? null : startDate.getTime();
+            return this;
+        }
+
+        /**
+         * Sets the end date of the term.
+         *
+         * @param endDate the end date
+         * @return this builder
+         */
+        public Builder endDate(@Nullable Date endDate)
+        {
+            this.endTime = endDate == null ? null : endDate.getTime();
+            return this;
+        }
+
+        /**
+         * Builds the record.
+         *
+         * @return the president record
+         */
+        public PresidentRecord build()
+        {
+            return new PresidentRecord(this);
+        }
+    }
+}
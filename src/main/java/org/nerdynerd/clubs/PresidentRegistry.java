@@ -0,0 +1,352 @@
+package org.nerdynerd.clubs;
+
+import com.sun.istack.internal.Nullable;
+import org.nerdynerd.clubs.index.ClubIndex;
+import org.nerdynerd.clubs.storage.ClubStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The presidents of the clubs of a {@link ClubManagement}, one record per
+ * president id, with the clubs each president leads.
+ * <p>
+ * The registry joins both ways in constant time per result: from a club
+ * name to the id and details of its president, and from a president id to
+ * the names of their clubs. The registry keeps the identity of every
+ * president, their names and middle initial, once for all their clubs,
+ * and the president of a club is resolved through it. Term dates belong
+ * to each club, so a president leading several clubs may have a
+ * different term with each.
+ * <p>
+ * The club management rejects storing a club whose president carries
+ * other names than the registered identity while they lead another club,
+ * so the clubs of a president never drift apart; use
+ * {@link ClubManagement#updatePresident(PresidentRecord)} to change the
+ * names of a president for all their clubs at once.
+ * <p>
+ * A president is registered while they lead at least one stored club.
+ * The registry is guarded by the lock of its club management, which its
+ * queries take and under which its club management reports changes.
+ */
+public final class PresidentRegistry implements ClubIndex
+{
+    private final ClubManagement clubManagement;
+
+    private final Map<Integer, Entry> presidents = new HashMap<>();
+
+    /**
+     * The president of every club led by one, by normalized club name.
+     */
+    private final Map<String, Link> links = new HashMap<>();
+
+    /**
+     * The store whose clubs are yet to be read, or null once read.
+     */
+    private ClubStore unread;
+
+    PresidentRegistry(ClubManagement clubManagement)
+    {
+        this.clubManagement = clubManagement;
+    }
+
+    /**
+     * Reads the presidents of the stored clubs on first use, so that
+     * opening a snapshot does not decode every club.
+     *
+     * @param store the store holding the clubs
+     */
+    @Override
+    public void rebuild(ClubStore store)
+    {
+        clear();
+        unread = store;
+    }
+
+    @Override
+    public void clubAdded(Club club)
+    {
+        read();
+        link(club.getClubName(), club.getClubPresident());
+    }
+
+    @Override
+    public void clubRemoved(Club club)
+    {
+        read();
+        unlink(club.getClubName());
+    }
+
+    @Override
+    public void clubRenamed(Club club, String oldClubName)
+    {
+        read();
+        unlink(oldClubName);
+        link(club.getClubName(), club.getClubPresident());
+    }
+
+    @Override
+    public void clubPresidentChanged(Club club)
+    {
+        read();
+        unlink(club.getClubName());
+        link(club.getClubName(), club.getClubPresident());
+    }
+
+    @Override
+    public void cleared()
+    {
+        clear();
+    }
+
+    /**
+     * Gets the identity of a president, without term dates.
+     *
+     * @param presidentId the president id
+     * @return the president, or null if they lead no stored club.
+     */
+    @Nullable
+    public PresidentRecord getPresident(int presidentId)
+    {
+        synchronized (clubManagement)
+        {
+            read();
+            Entry entry = presidents.get(presidentId);
+            return entry == null ? null : entry.president;
+        }
+    }
+
+    /**
+     * Gets the president of a club, with the registered identity and the
+     * term dates of that club.
+     *
+     * @param clubName the club name
+     * @return the president, or null if there is no such club or it has no president.
+     */
+    @Nullable
+    public PresidentRecord getPresidentOf(String clubName)
+    {
+        synchronized (clubManagement)
+        {
+            read();
+            Link link = links.get(ClubNames.normalize(clubName));
+            if(link == null)
+            {
+                return null;
+            }
+            return presidents.get(link.presidentId).president.toBuilder()
+                                                           .startDate(link.term.getStartDate())
+                                                           .endDate(link.term.getEndDate())
+                                                           .build();
+        }
+    }
+
+    /**
+     * Gets the names of the clubs a president leads, in the order they
+     * were stored.
+     *
+     * @param presidentId the president id
+     * @return the club names, empty if they lead no stored club.
+     */
+    public List<String> getClubNames(int presidentId)
+    {
+        synchronized (clubManagement)
+        {
+            read();
+            Entry entry = presidents.get(presidentId);
+            if(entry == null)
+            {
+                return Collections.emptyList();
+            }
+            List<String> clubNames = new ArrayList<>(entry.clubs.size());
+            for(Link link : entry.clubs.values())
+            {
+                clubNames.add(link.clubName);
+            }
+            return clubNames;
+        }
+    }
+
+    /**
+     * Gets the identity of all registered presidents.
+     *
+     * @return the presidents, in no particular order
+     */
+    public List<PresidentRecord> getPresidents()
+    {
+        synchronized (clubManagement)
+        {
+            read();
+            List<PresidentRecord> records = new ArrayList<>(presidents.size());
+            for(Entry entry : presidents.values())
+            {
+                records.add(entry.president);
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Returns the number of registered presidents.
+     *
+     * @return the number of presidents
+     */
+    public int size()
+    {
+        synchronized (clubManagement)
+        {
+            read();
+            return presidents.size();
+        }
+    }
+
+    /**
+     * Returns the registered identity of a president if they lead a stored
+     * club other than the given ones, which a change is about to replace.
+     *
+     * @param presidentId the president id
+     * @param exceptClubs the normalized names of the clubs to ignore
+     * @return the identity, or null if they lead no other stored club.
+     */
+    @Nullable
+    PresidentRecord identityOf(int presidentId, Collection<String> exceptClubs)
+    {
+        read();
+        Entry entry = presidents.get(presidentId);
+        if(entry == null)
+        {
+            return null;
+        }
+        for(String clubName : entry.clubs.keySet())
+        {
+            if(!exceptClubs.contains(clubName))
+            {
+                return entry.president;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the names and presidents of the clubs of the store given to
+     * {@link #rebuild(ClubStore)}, without reading the clubs themselves.
+     * The identity of a president stored with different names before
+     * they were rejected is the one of the club read last.
+     */
+    private void read()
+    {
+        ClubStore store = unread;
+        if(store == null)
+        {
+            return;
+        }
+        unread = null;
+        for(int i = 0, size = store.size(); i < size; i++)
+        {
+            link(store.getClubName(i), store.getClubPresident(i));
+        }
+    }
+
+    private void link(String clubName, @Nullable ClubPresident clubPresident)
+    {
+        if(clubName == null || clubPresident == null)
+        {
+            return;
+        }
+        PresidentRecord president = PresidentRecord.of(clubPresident);
+        PresidentRecord identity = identityOf(president);
+        Entry entry = presidents.get(president.getId());
+        if(entry == null)
+        {
+            entry = new Entry(identity);
+            presidents.put(president.getId(), entry);
+        }
+        else
+        {
+            // the club management only stores other names with every club of the president at once
+            entry.president = identity;
+        }
+        String normalizedName = ClubNames.normalize(clubName);
+        Link link = new Link(clubName, president.getId(), president);
+        links.put(normalizedName, link);
+        entry.clubs.put(normalizedName, link);
+    }
+
+    /**
+     * Returns a president record without the term dates of one club.
+     */
+    static PresidentRecord identityOf(PresidentRecord president)
+    {
+        if(president.getStartDate() == null && president.getEndDate() == null)
+        {
+            return president;
+        }
+        return president.toBuilder().startDate(null).endDate(null).build();
+    }
+
+    private void unlink(String clubName)
+    {
+        if(clubName == null)
+        {
+            return;
+        }
+        String normalizedName = ClubNames.normalize(clubName);
+        Link link = links.remove(normalizedName);
+        if(link == null)
+        {
+            return;
+        }
+        Entry entry = presidents.get(link.presidentId);
+        entry.clubs.remove(normalizedName);
+        if(entry.clubs.isEmpty())
+        {
+            presidents.remove(link.presidentId);
+        }
+    }
+
+    private void clear()
+    {
+        unread = null;
+        presidents.clear();
+        links.clear();
+    }
+
+    /**
+     * The identity of a registered president and the clubs they lead.
+     */
+    private static final class Entry
+    {
+        PresidentRecord president;
+
+        final Map<String, Link> clubs = new LinkedHashMap<>();
+
+        Entry(PresidentRecord president)
+        {
+            this.president = president;
+        }
+    }
+
+    /**
+     * A club and its president, with the term dates the club was stored with.
+     */
+    private static final class Link
+    {
+        final String clubName;
+
+        final int presidentId;
+
+        final PresidentRecord term;
+
+        Link(String clubName, int presidentId, PresidentRecord term)
+        {
+            this.clubName = clubName;
+            this.presidentId = presidentId;
+            this.term = term;
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package org.nerdynerd.clubs;
+
+import org.nerdynerd.clubs.index.ClubIndex;
+import org.nerdynerd.clubs.sort.ClubSortOrder;
+import org.nerdynerd.clubs.sort.ClubSorter;
+import org.nerdynerd.clubs.storage.ClubStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * A club registry partitioned across several independent {@link ClubManagement} shards.
+ * <p>
+ * A club belongs to the shard picked by the hash of its normalized name,
+ * so operations on a single club only lock the owning shard and writes to
+ * different shards run in parallel. Listing, sorting and aggregates are
+ * scattered to every shard and their results merged.
+ * <p>
+ * A stored club renamed through its setters, or through an update or a
+ * transaction of its shard, is moved to the shard owning its new name by
+ * the next point operation of this instance, which locks both shards in
+ * the order of their positions while moving it. A club renamed to a name
+ * taken in its new shard, or whose new shard is full, stays in its shard
+ * and is not found by its new name.
+ *
+ * @see ClubNames#hash(String)
+ */
+public class ShardedClubManagement
+{
+    private final ClubManagement[] shards;
+
+    private final int shardMaxSize;
+
+    /**
+     * The clubs renamed to a name owned by another shard, with the position
+     * of the shard storing them.
+     */
+    private final Queue<Move> moves = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Instantiates a new Sharded club management.
+     *
+     * @param shardCount   the number of shards
+     * @param shardMaxSize the max size of every shard
+     */
+    public ShardedClubManagement(int shardCount, int shardMaxSize)
+    {
+        if(shardCount <= 0)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ShardedClubManagement; shardCount must be greater than zero.");
+        }
+        this.shardMaxSize = shardMaxSize;
+        shards = new ClubManagement[shardCount];
+        for(int i = 0; i < shardCount; i++)
+        {
+            shards[i] = new ClubManagement(shardMaxSize);
+            shards[i].addIndex(new RenameTracker(i));
+        }
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return the shard count
+     */
+    public int getShardCount()
+    {
+        return shards.length;
+    }
+
+    /**
+     * Gets the shard at the given position. Callers must synchronize
+     * on the shard while using it.
+     *
+     * @param index the position of the shard
+     * @return the shard
+     */
+    public ClubManagement getShard(int index)
+    {
+        return shards[index];
+    }
+
+    /**
+     * Returns the position of the shard owning the given club name.
+     *
+     * @param clubName the club name
+     * @return the position of the shard
+     */
+    public int shardIndex(String clubName)
+    {
+        return (ClubNames.mix(ClubNames.hash(clubName)) & Integer.MAX_VALUE) % shards.length;
+    }
+
+    /**
+     * Returns the maximum number of clubs allowed to be stored
+     * across all shards. A single shard rejects clubs once it holds
+     * {@code shardMaxSize} clubs.
+     *
+     * @return the max size
+     */
+    public int getMaxSize()
+    {
+        return shardMaxSize * shards.length;
+    }
+
+    /**
+     * Adds a club to the shard owning its name.
+     *
+     * @param club the club
+     * @return true if the club was added, false if a club with the same name exists.
+     * @throws IllegalStateException if the owning shard is full
+     * @see ClubManagement#add(Club)
+     */
+    public boolean add(Club club)
+    {
+        moveRenamedClubs();
+        ClubManagement shard = shards[shardIndex(club.getClubName())];
+        synchronized (shard)
+        {
+            return shard.add(club);
+        }
+    }
+
+    /**
+     * Removes the club with the name of the given club from its shard.
+     *
+     * @param club the club
+     * @return true if a club was removed, else false.
+     */
+    public boolean remove(Club club)
+    {
+        moveRenamedClubs();
+        ClubManagement shard = shards[shardIndex(club.getClubName())];
+        synchronized (shard)
+        {
+            return shard.remove(club);
+        }
+    }
+
+    /**
+     * Returns if the given club is managed by this instance.
+     *
+     * @param clubName the club name
+     * @return true if the club is found in the system, else false.
+     */
+    public boolean clubExists(String clubName)
+    {
+        moveRenamedClubs();
+        ClubManagement shard = shards[shardIndex(clubName)];
+        synchronized (shard)
+        {
+            return shard.clubExists(clubName);
+        }
+    }
+
+    /**
+     * Determines if the provided club president is
+     * in charge of a stored club.
+     *
+     * @param clubName      the club name
+     * @param clubPresident the club president
+     * @return true if the club president is in charge of a stored club. False otherwise.
+     */
+    public boolean currentPresidentExists(String clubName, ClubPresident clubPresident)
+    {
+        moveRenamedClubs();
+        ClubManagement shard = shards[shardIndex(clubName)];
+        synchronized (shard)
+        {
+            return shard.currentPresidentExists(clubName, clubPresident);
+        }
+    }
+
+    /**
+     * Removes all clubs from every shard.
+     */
+    public void clear()
+    {
+        for(ClubManagement shard : shards)
+        {
+            synchronized (shard)
+            {
+                shard.clear();
+            }
+        }
+    }
+
+    /**
+     * Moves the clubs renamed since the last call to the shards owning their new names.
+     */
+    private void moveRenamedClubs()
+    {
+        Move move;
+        while((move = moves.poll()) != null)
+        {
+            int target = shardIndex(move.clubName);
+            if(target == move.shard)
+            {
+                continue;
+            }
+            ClubManagement from = shards[move.shard];
+            ClubManagement to = shards[target];
+            synchronized (shards[Math.min(move.shard, target)])
+            {
+                synchronized (shards[Math.max(move.shard, target)])
+                {
+                    int index = from.indexOf(move.clubName);
+                    if(index < 0 || to.clubExists(move.clubName) || to.getNumberOfClubs() >= shardMaxSize)
+                    {
+                        continue;
+                    }
+                    Club club = from.get(index);
+                    from.remove(club);
+                    to.add(club);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of clubs stored across all shards.
+     *
+     * @return the number of clubs
+     */
+    public int getNumberOfClubs()
+    {
+        return scatter(ClubManagement::getNumberOfClubs, Integer::sum);
+    }
+
+    /**
+     * Returns the number of members of all clubs across all shards.
+     *
+     * @return the total number of members
+     */
+    public long getTotalMemberNumber()
+    {
+        long total = 0;
+        for(ClubManagement shard : shards)
+        {
+            synchronized(shard)
+            {
+                total += shard.getMembershipStatistics().getTotalMembers();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Runs a query on every shard in parallel, each under the lock of its
+     * shard, and merges the per-shard results.
+     *
+     * @param <R>   the type of the result
+     * @param query the query run on every shard
+     * @param merge the function merging two results
+     * @return the merged result
+     */
+    public <R> R scatter(Function<ClubManagement, R> query, BinaryOperator<R> merge)
+    {
+        return IntStream.range(0, shards.length).parallel()
+                .mapToObj(i ->
+                {
+                    synchronized (shards[i])
+                    {
+                        return query.apply(shards[i]);
+                    }
+                })
+                .reduce(merge)
+                .orElseThrow(IllegalStateException::new);
+    }
+
+    /**
+     * Returns all clubs across all shards, shard by shard.
+     *
+     * @return the clubs
+     */
+    public List<Club> listClubs()
+    {
+        List<Club> clubs = new ArrayList<>();
+        for(Club[] shardClubs : gather(null))
+        {
+            clubs.addAll(Arrays.asList(shardClubs));
+        }
+        return clubs;
+    }
+
+    /**
+     * Returns all clubs across all shards in the given order. The clubs of
+     * every shard are sorted in parallel, then the sorted runs are merged.
+     * The order of the clubs stored in the shards is left untouched.
+     *
+     * @param order the sort order
+     * @return the sorted clubs
+     */
+    public List<Club> sortedClubs(ClubSortOrder order)
+    {
+        Club[][] runs = gather(order);
+        Comparator<Club> comparator = order.toComparator();
+        PriorityQueue<int[]> heads = new PriorityQueue<>((first, second) ->
+        {
+            int result = comparator.compare(runs[first[0]][first[1]], runs[second[0]][second[1]]);
+            return result != 0 ? result : Integer.compare(first[0], second[0]);
+        });
+        int total = 0;
+        for(int i = 0; i < runs.length; i++)
+        {
+            total += runs[i].length;
+            if(runs[i].length > 0)
+            {
+                heads.add(new int[] {i, 0});
+            }
+        }
+        List<Club> merged = new ArrayList<>(total);
+        while(!heads.isEmpty())
+        {
+            int[] head = heads.poll();
+            Club[] run = runs[head[0]];
+            merged.add(run[head[1]]);
+            if(++head[1] < run.length)
+            {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Copies the clubs of every shard in parallel, sorting each shard first if an order is given.
+     */
+    private Club[][] gather(ClubSortOrder order)
+    {
+        Club[][] runs = new Club[shards.length][];
+        IntStream.range(0, shards.length).parallel().forEach(i ->
+        {
+            ClubManagement shard = shards[i];
+            Club[] clubs;
+            synchronized (shard)
+            {
+                clubs = new Club[shard.getNumberOfClubs()];
+                for(int j = 0; j < clubs.length; j++)
+                {
+                    clubs[j] = shard.get(j);
+                }
+            }
+            if(order != null)
+            {
+                ClubSorter.sort(clubs, clubs.length, order);
+            }
+            runs[i] = clubs;
+        });
+        return runs;
+    }
+
+    /**
+     * Records the clubs of a shard that were renamed or updated to a name
+     * owned by another shard. Runs under the lock of the shard, so it only
+     * records them; they are moved by {@link #moveRenamedClubs()}.
+     */
+    private final class RenameTracker implements ClubIndex
+    {
+        private final int shard;
+
+        RenameTracker(int shard)
+        {
+            this.shard = shard;
+        }
+
+        @Override
+        public void rebuild(ClubStore store)
+        {
+        }
+
+        @Override
+        public void clubAdded(Club club)
+        {
+            track(club.getClubName());
+        }
+
+        @Override
+        public void clubRemoved(Club club)
+        {
+        }
+
+        @Override
+        public void clubRenamed(Club club, String oldClubName)
+        {
+            track(club.getClubName());
+        }
+
+        @Override
+        public void cleared()
+        {
+        }
+
+        private void track(String clubName)
+        {
+            if(clubName != null && shardIndex(clubName) != shard)
+            {
+                moves.add(new Move(shard, clubName));
+            }
+        }
+    }
+
+    /**
+     * A club to move from the shard at a position to the one owning its name.
+     */
+    private static final class Move
+    {
+        final int shard;
+
+        final String clubName;
+
+        Move(int shard, String clubName)
+        {
+            this.shard = shard;
+            this.clubName = clubName;
+        }
+    }
+
+    public String toString()
+    {
+        StringBuilder stringBuilder = new StringBuilder();
+        for(Club club : listClubs())
+        {
+            if(stringBuilder.length() > 0)
+            {
+                stringBuilder.append("\n");
+            }
+            stringBuilder.append(club);
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package org.nerdynerd.clubs.cache;
+
+import org.nerdynerd.clubs.Club;
+
+/**
+ * A size-bounded cache of clubs keyed by normalized club name, placed
+ * between a {@link org.nerdynerd.clubs.ClubManagement} and its store so
+ * that lookups of popular clubs do not reach the store.
+ *
+ * @see org.nerdynerd.clubs.ClubNames#normalize(String)
+ * @see LruClubCache
+ * @see TinyLfuClubCache
+ */
+public interface ClubCache
+{
+    /**
+     * Returns the cached club with the given name and records a hit or a miss.
+     *
+     * @param normalizedName the normalized club name
+     * @return the club, or null if it is not cached.
+     */
+    Club get(String normalizedName);
+
+    /**
+     * Offers a club to the cache. The cache may evict another club to
+     * make room, or decline to keep this one.
+     *
+     * @param normalizedName the normalized club name
+     * @param club           the club
+     */
+    void put(String normalizedName, Club club);
+
+    /**
+     * Removes the club with the given name from the cache.
+     *
+     * @param normalizedName the normalized club name
+     */
+    void invalidate(String normalizedName);
+
+    /**
+     * Removes all clubs from the cache. Statistics are kept.
+     */
+    void clear();
+
+    /**
+     * Returns the number of cached clubs.
+     *
+     * @return the number of clubs
+     */
+    int size();
+
+    /**
+     * Returns the maximum number of cached clubs.
+     *
+     * @return the maximum size
+     */
+    int getMaximumSize();
+
+    /**
+     * Returns the number of lookups that found their club in the cache.
+     *
+     * @return the hit count
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of lookups that did not find their club in the cache.
+     *
+     * @return the miss count
+     */
+    long getMissCount();
+
+    /**
+     * Returns the number of clubs evicted to make room for others.
+     *
+     * @return the eviction count
+     */
+    long getEvictionCount();
+
+    /**
+     * Returns the share of lookups that were hits.
+     *
+     * @return the hit rate between zero and one, or zero if there was no lookup.
+     */
+    default double getHitRate()
+    {
+        long lookups = getHitCount() + getMissCount();
+        return lookups == 0 ? 0 : (double) getHitCount() / lookups;
+    }
+}
@@ -0,0 +1,107 @@
+package org.nerdynerd.clubs.cache;
+
+import org.nerdynerd.clubs.ClubNames;
+
+import java.util.Arrays;
+
+/**
+ * A count-min sketch estimating how often each key was accessed
+ * recently, in a fixed amount of memory.
+ * <p>
+ * Counters saturate at 15. Once as many accesses as the sample size have
+ * been recorded, every counter is halved, so the estimates follow changes
+ * in popularity instead of growing forever.
+ */
+final class FrequencySketch
+{
+    private static final int DEPTH = 4;
+
+    private static final int MAXIMUM_COUNT = 15;
+
+    private static final int[] SEEDS = {0x97cb3127, 0xb8e0bf3f, 0x1c0b64e1, 0x4f8ba5c3};
+
+    private final byte[] counters;
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    /**
+     * Instantiates a new Frequency sketch.
+     *
+     * @param maximumSize the number of keys whose frequencies matter
+     */
+    FrequencySketch(int maximumSize)
+    {
+        int width = Integer.highestOneBit(Math.max(64, maximumSize * 8) - 1) << 1;
+        counters = new byte[width * DEPTH];
+        mask = width - 1;
+        sampleSize = Math.max(16, maximumSize * 10);
+    }
+
+    /**
+     * Records an access to a key.
+     *
+     * @param key the key
+     */
+    void increment(String key)
+    {
+        int hash = key.hashCode();
+        boolean incremented = false;
+        for(int row = 0; row < DEPTH; row++)
+        {
+            int index = indexOf(hash, row);
+            if(counters[index] < MAXIMUM_COUNT)
+            {
+                counters[index]++;
+                incremented = true;
+            }
+        }
+        if(incremented && ++additions >= sampleSize)
+        {
+            reset();
+        }
+    }
+
+    /**
+     * Estimates how often a key was accessed recently.
+     *
+     * @param key the key
+     * @return the estimated frequency, at most 15
+     */
+    int frequency(String key)
+    {
+        int hash = key.hashCode();
+        int frequency = MAXIMUM_COUNT;
+        for(int row = 0; row < DEPTH; row++)
+        {
+            frequency = Math.min(frequency, counters[indexOf(hash, row)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * Forgets all recorded accesses.
+     */
+    void clear()
+    {
+        Arrays.fill(counters, (byte) 0);
+        additions = 0;
+    }
+
+    private void reset()
+    {
+        for(int i = 0; i < counters.length; i++)
+        {
+            counters[i] = (byte) (counters[i] >>> 1);
+        }
+        additions = additions / 2;
+    }
+
+    private int indexOf(int hash, int row)
+    {
+        return row * (mask + 1) + (ClubNames.mix(hash * SEEDS[row]) & mask);
+    }
+}
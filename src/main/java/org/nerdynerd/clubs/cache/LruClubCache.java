@@ -0,0 +1,108 @@
+package org.nerdynerd.clubs.cache;
+
+import org.nerdynerd.clubs.Club;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link ClubCache} evicting the least recently used club.
+ */
+public class LruClubCache implements ClubCache
+{
+    private final int maximumSize;
+
+    private final LinkedHashMap<String, Club> clubs;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    /**
+     * Instantiates a new Lru club cache.
+     *
+     * @param maximumSize the maximum number of cached clubs
+     */
+    public LruClubCache(int maximumSize)
+    {
+        if(maximumSize <= 0)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on LruClubCache; maximumSize must be greater than zero.");
+        }
+        this.maximumSize = maximumSize;
+        this.clubs = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public synchronized Club get(String normalizedName)
+    {
+        Club club = clubs.get(normalizedName);
+        if(club == null)
+        {
+            missCount++;
+        }
+        else
+        {
+            hitCount++;
+        }
+        return club;
+    }
+
+    @Override
+    public synchronized void put(String normalizedName, Club club)
+    {
+        clubs.put(normalizedName, club);
+        if(clubs.size() > maximumSize)
+        {
+            Iterator<Map.Entry<String, Club>> eldest = clubs.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(String normalizedName)
+    {
+        clubs.remove(normalizedName);
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        clubs.clear();
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        return clubs.size();
+    }
+
+    @Override
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    @Override
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    @Override
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    @Override
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+}
@@ -0,0 +1,136 @@
+package org.nerdynerd.clubs.cache;
+
+import org.nerdynerd.clubs.Club;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link ClubCache} with a TinyLFU admission policy in front of an LRU cache.
+ * <p>
+ * Every lookup is counted in a {@link FrequencySketch}. When the cache is
+ * full, a new club is only admitted if it was looked up more often than the
+ * least recently used club it would evict. A burst of lookups of clubs that
+ * are never asked for again therefore cannot flush the popular clubs out.
+ */
+public class TinyLfuClubCache implements ClubCache
+{
+    private final int maximumSize;
+
+    private final LinkedHashMap<String, Club> clubs;
+
+    private final FrequencySketch sketch;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    private long rejectionCount;
+
+    /**
+     * Instantiates a new Tiny lfu club cache.
+     *
+     * @param maximumSize the maximum number of cached clubs
+     */
+    public TinyLfuClubCache(int maximumSize)
+    {
+        if(maximumSize <= 0)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on TinyLfuClubCache; maximumSize must be greater than zero.");
+        }
+        this.maximumSize = maximumSize;
+        this.clubs = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    @Override
+    public synchronized Club get(String normalizedName)
+    {
+        sketch.increment(normalizedName);
+        Club club = clubs.get(normalizedName);
+        if(club == null)
+        {
+            missCount++;
+        }
+        else
+        {
+            hitCount++;
+        }
+        return club;
+    }
+
+    @Override
+    public synchronized void put(String normalizedName, Club club)
+    {
+        if(clubs.containsKey(normalizedName) || clubs.size() < maximumSize)
+        {
+            clubs.put(normalizedName, club);
+            return;
+        }
+        Map.Entry<String, Club> victim = clubs.entrySet().iterator().next();
+        if(sketch.frequency(normalizedName) > sketch.frequency(victim.getKey()))
+        {
+            clubs.remove(victim.getKey());
+            clubs.put(normalizedName, club);
+            evictionCount++;
+        }
+        else
+        {
+            rejectionCount++;
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(String normalizedName)
+    {
+        clubs.remove(normalizedName);
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        clubs.clear();
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        return clubs.size();
+    }
+
+    @Override
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    @Override
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    @Override
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    @Override
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of clubs the admission policy declined to cache.
+     *
+     * @return the rejection count
+     */
+    public synchronized long getRejectionCount()
+    {
+        return rejectionCount;
+    }
+}
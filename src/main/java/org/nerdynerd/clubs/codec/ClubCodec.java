@@ -0,0 +1,342 @@
+package org.nerdynerd.clubs.codec;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * Encodes clubs and presidents as binary messages, for storing or sending
+ * them one at a time.
+ * <p>
+ * A message is a version byte, the length of its body and the body. The
+ * body is a list of fields, each a tag followed by a value; the tag is the
+ * field number shifted left by three bits, plus the wire type telling how
+ * long the value is:
+ * <ul>
+ * <li>{@value #VARINT}: a number of seven bits per byte, the high bit set
+ * on every byte but the last;</li>
+ * <li>{@value #FIXED64}: eight bytes;</li>
+ * <li>{@value #BYTES}: a length followed by that many bytes, for strings
+ * and nested messages;</li>
+ * <li>{@value #FIXED32}: four bytes.</li>
+ * </ul>
+ * Ids and dates are zigzag encoded so small negative values stay short,
+ * strings are UTF-8 and dates are milliseconds since the epoch. A field
+ * holding zero or null is left out, and a club's president is a nested
+ * president body without version and length.
+ * <p>
+ * Messages stay readable across versions: a reader skips the fields it
+ * does not know, so it reads messages written by newer versions, and
+ * gives fields that are missing their default, so it reads messages
+ * written by older versions. A new version only adds fields under new
+ * numbers, and never changes what an existing number means.
+ * <p>
+ * Encoding writes straight to a buffer without allocating. Decoding
+ * either creates a club, or reads a message in place through a reusable
+ * {@link ClubView} or {@link ClubPresidentView}.
+ */
+public final class ClubCodec
+{
+    /**
+     * The version of the messages written by this codec.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The wire type of numbers of seven bits per byte.
+     */
+    public static final int VARINT = 0;
+
+    /**
+     * The wire type of eight-byte values.
+     */
+    public static final int FIXED64 = 1;
+
+    /**
+     * The wire type of values preceded by their length.
+     */
+    public static final int BYTES = 2;
+
+    /**
+     * The wire type of four-byte values.
+     */
+    public static final int FIXED32 = 5;
+
+    /**
+     * The field number of the club id.
+     */
+    public static final int CLUB_ID = 1;
+
+    /**
+     * The field number of the club name.
+     */
+    public static final int CLUB_NAME = 2;
+
+    /**
+     * The field number of the member count.
+     */
+    public static final int MEMBER_NUMBER = 3;
+
+    /**
+     * The field number of the club president.
+     */
+    public static final int CLUB_PRESIDENT = 4;
+
+    /**
+     * The field number of the president id.
+     */
+    public static final int PRESIDENT_ID = 1;
+
+    /**
+     * The field number of the president's first name.
+     */
+    public static final int FIRST_NAME = 2;
+
+    /**
+     * The field number of the president's middle initial.
+     */
+    public static final int MIDDLE_INITIAL = 3;
+
+    /**
+     * The field number of the president's last name.
+     */
+    public static final int LAST_NAME = 4;
+
+    /**
+     * The field number of the start date of the president's term.
+     */
+    public static final int START_DATE = 5;
+
+    /**
+     * The field number of the end date of the president's term.
+     */
+    public static final int END_DATE = 6;
+
+    private ClubCodec()
+    {
+    }
+
+    /**
+     * Returns the size of the message of a club.
+     *
+     * @param club the club
+     * @return the size in bytes
+     */
+    public static int encodedSize(Club club)
+    {
+        return messageSize(bodySize(club));
+    }
+
+    /**
+     * Returns the size of the message of a president.
+     *
+     * @param clubPresident the president
+     * @return the size in bytes
+     */
+    public static int encodedSize(ClubPresident clubPresident)
+    {
+        return messageSize(bodySize(clubPresident));
+    }
+
+    /**
+     * Writes the message of a club at the position of a buffer, and moves
+     * the position after it.
+     *
+     * @param club   the club
+     * @param buffer the buffer
+     * @return the size of the message in bytes
+     * @throws BufferOverflowException if the buffer has less room than the message, in which case nothing is written
+     */
+    public static int encode(Club club, ByteBuffer buffer)
+    {
+        int bodySize = bodySize(club);
+        checkRoom(buffer, messageSize(bodySize));
+        buffer.put((byte) VERSION);
+        Encodings.writeVarLong(buffer, bodySize);
+        writeInt(buffer, CLUB_ID, Encodings.zigzag(club.getId()));
+        writeString(buffer, CLUB_NAME, club.getClubName());
+        if(club.getMemberNumber() != 0)
+        {
+            writeTag(buffer, MEMBER_NUMBER, VARINT);
+            Encodings.writeVarLong(buffer, club.getMemberNumber() & 0xFFFFFFFFL);
+        }
+        ClubPresident clubPresident = club.getClubPresident();
+        if(clubPresident != null)
+        {
+            writeTag(buffer, CLUB_PRESIDENT, BYTES);
+            Encodings.writeVarLong(buffer, bodySize(clubPresident));
+            writeBody(buffer, clubPresident);
+        }
+        return messageSize(bodySize);
+    }
+
+    /**
+     * Writes the message of a president at the position of a buffer, and
+     * moves the position after it.
+     *
+     * @param clubPresident the president
+     * @param buffer        the buffer
+     * @return the size of the message in bytes
+     * @throws BufferOverflowException if the buffer has less room than the message, in which case nothing is written
+     */
+    public static int encode(ClubPresident clubPresident, ByteBuffer buffer)
+    {
+        int bodySize = bodySize(clubPresident);
+        checkRoom(buffer, messageSize(bodySize));
+        buffer.put((byte) VERSION);
+        Encodings.writeVarLong(buffer, bodySize);
+        writeBody(buffer, clubPresident);
+        return messageSize(bodySize);
+    }
+
+    /**
+     * Encodes a club into a new array.
+     *
+     * @param club the club
+     * @return the message
+     */
+    public static byte[] encode(Club club)
+    {
+        byte[] message = new byte[encodedSize(club)];
+        encode(club, ByteBuffer.wrap(message));
+        return message;
+    }
+
+    /**
+     * Reads the club message at the position of a buffer, and moves the
+     * position after it.
+     *
+     * @param buffer the buffer
+     * @return a new club
+     * @throws IllegalArgumentException if the buffer does not hold a whole club message
+     */
+    public static Club decodeClub(ByteBuffer buffer)
+    {
+        ClubView view = new ClubView().wrap(buffer, buffer.position());
+        Club club = view.toClub();
+        buffer.position(buffer.position() + view.getLength());
+        return club;
+    }
+
+    /**
+     * Reads the president message at the position of a buffer, and moves
+     * the position after it.
+     *
+     * @param buffer the buffer
+     * @return a new president
+     * @throws IllegalArgumentException if the buffer does not hold a whole president message
+     */
+    public static ClubPresident decodePresident(ByteBuffer buffer)
+    {
+        ClubPresidentView view = new ClubPresidentView().wrap(buffer, buffer.position());
+        ClubPresident clubPresident = view.toClubPresident();
+        buffer.position(buffer.position() + view.getLength());
+        return clubPresident;
+    }
+
+    private static int bodySize(Club club)
+    {
+        int size = intSize(Encodings.zigzag(club.getId())) + stringSize(club.getClubName());
+        if(club.getMemberNumber() != 0)
+        {
+            size += 1 + Encodings.varLongSize(club.getMemberNumber() & 0xFFFFFFFFL);
+        }
+        ClubPresident clubPresident = club.getClubPresident();
+        if(clubPresident != null)
+        {
+            int presidentSize = bodySize(clubPresident);
+            size += 1 + Encodings.varLongSize(presidentSize) + presidentSize;
+        }
+        return size;
+    }
+
+    private static int bodySize(ClubPresident clubPresident)
+    {
+        return intSize(Encodings.zigzag(clubPresident.getId()))
+                + stringSize(clubPresident.getFirstName())
+                + intSize(clubPresident.getMiddleInitial())
+                + stringSize(clubPresident.getLastName())
+                + dateSize(clubPresident.getStartDate())
+                + dateSize(clubPresident.getEndDate());
+    }
+
+    private static void writeBody(ByteBuffer buffer, ClubPresident clubPresident)
+    {
+        writeInt(buffer, PRESIDENT_ID, Encodings.zigzag(clubPresident.getId()));
+        writeString(buffer, FIRST_NAME, clubPresident.getFirstName());
+        writeInt(buffer, MIDDLE_INITIAL, clubPresident.getMiddleInitial());
+        writeString(buffer, LAST_NAME, clubPresident.getLastName());
+        writeDate(buffer, START_DATE, clubPresident.getStartDate());
+        writeDate(buffer, END_DATE, clubPresident.getEndDate());
+    }
+
+    private static int messageSize(int bodySize)
+    {
+        return 1 + Encodings.varLongSize(bodySize) + bodySize;
+    }
+
+    private static int intSize(long value)
+    {
+        return value == 0 ? 0 : 1 + Encodings.varLongSize(value);
+    }
+
+    private static int stringSize(String value)
+    {
+        if(value == null)
+        {
+            return 0;
+        }
+        int length = Encodings.utf8Length(value);
+        return 1 + Encodings.varLongSize(length) + length;
+    }
+
+    private static int dateSize(Date date)
+    {
+        return date == null ? 0 : 1 + Encodings.varLongSize(Encodings.zigzag(date.getTime()));
+    }
+
+    private static void writeInt(ByteBuffer buffer, int field, long value)
+    {
+        if(value != 0)
+        {
+            writeTag(buffer, field, VARINT);
+            Encodings.writeVarLong(buffer, value);
+        }
+    }
+
+    private static void writeString(ByteBuffer buffer, int field, String value)
+    {
+        if(value == null)
+        {
+            return;
+        }
+        writeTag(buffer, field, BYTES);
+        Encodings.writeVarLong(buffer, Encodings.utf8Length(value));
+        Encodings.writeUtf8(buffer, value);
+    }
+
+    private static void writeDate(ByteBuffer buffer, int field, Date date)
+    {
+        if(date != null)
+        {
+            writeTag(buffer, field, VARINT);
+            Encodings.writeVarLong(buffer, Encodings.zigzag(date.getTime()));
+        }
+    }
+
+    private static void writeTag(ByteBuffer buffer, int field, int wireType)
+    {
+        buffer.put((byte) (field << 3 | wireType));
+    }
+
+    private static void checkRoom(ByteBuffer buffer, int size)
+    {
+        if(buffer.remaining() < size)
+        {
+            throw new BufferOverflowException();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package org.nerdynerd.clubs.codec;
+
+import com.sun.istack.internal.Nullable;
+import org.nerdynerd.clubs.ClubPresident;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * A flyweight view of a president encoded by {@link ClubCodec}, either a
+ * president message or the president of a {@link ClubView}.
+ * <p>
+ * Wrapping a message parses its fields in place, so numbers are read
+ * without allocating and names are only decoded when asked for; compare
+ * them with {@link #firstNameEquals(CharSequence)} and
+ * {@link #lastNameEquals(CharSequence)} to avoid decoding them at all.
+ * A view is reused by wrapping it again, and reads the buffer until then:
+ * changes to the buffer show through it.
+ */
+public final class ClubPresidentView extends CodecView
+{
+    private int offset;
+
+    private int length;
+
+    private int version;
+
+    private int id;
+
+    private char middleInitial;
+
+    private int firstNameOffset;
+
+    private int firstNameLength;
+
+    private int lastNameOffset;
+
+    private int lastNameLength;
+
+    private boolean hasStartDate;
+
+    private long startTime;
+
+    private boolean hasEndDate;
+
+    private long endTime;
+
+    /**
+     * Wraps the president message at an index of a buffer.
+     *
+     * @param buffer the buffer
+     * @param offset the index of the message
+     * @return this view
+     * @throws IllegalArgumentException if the buffer does not hold a whole president message at that index
+     */
+    public ClubPresidentView wrap(ByteBuffer buffer, int offset)
+    {
+        this.buffer = buffer;
+        position = offset;
+        int limit = buffer.limit();
+        int messageVersion = readByte(limit);
+        if(messageVersion == 0)
+        {
+            throw malformed("not a message");
+        }
+        int bodyLength = readLength(limit);
+        readBody(buffer, position, position + bodyLength, messageVersion);
+        this.offset = offset;
+        this.length = position - offset;
+        return this;
+    }
+
+    /**
+     * Wraps a president body nested in a club message.
+     */
+    void wrapBody(ByteBuffer buffer, int start, int end, int messageVersion)
+    {
+        readBody(buffer, start, end, messageVersion);
+        this.offset = start;
+        this.length = end - start;
+    }
+
+    private void readBody(ByteBuffer buffer, int start, int end, int messageVersion)
+    {
+        this.buffer = buffer;
+        version = messageVersion;
+        id = 0;
+        middleInitial = 0;
+        firstNameOffset = -1;
+        lastNameOffset = -1;
+        hasStartDate = false;
+        hasEndDate = false;
+        position = start;
+        while(position < end)
+        {
+            long tag = readVarLong(end);
+            int field = (int) (tag >>> 3);
+            int wireType = (int) (tag & 7);
+            if(field == ClubCodec.PRESIDENT_ID && wireType == ClubCodec.VARINT)
+            {
+                id = (int) Encodings.unzigzag(readVarLong(end));
+            }
+            else if(field == ClubCodec.FIRST_NAME && wireType == ClubCodec.BYTES)
+            {
+                firstNameLength = readLength(end);
+                firstNameOffset = position;
+                position += firstNameLength;
+            }
+            else if(field == ClubCodec.MIDDLE_INITIAL && wireType == ClubCodec.VARINT)
+            {
+                middleInitial = (char) readVarLong(end);
+            }
+            else if(field == ClubCodec.LAST_NAME && wireType == ClubCodec.BYTES)
+            {
+                lastNameLength = readLength(end);
+                lastNameOffset = position;
+                position += lastNameLength;
+            }
+            else if(field == ClubCodec.START_DATE && wireType == ClubCodec.VARINT)
+            {
+                startTime = Encodings.unzigzag(readVarLong(end));
+                hasStartDate = true;
+            }
+            else if(field == ClubCodec.END_DATE && wireType == ClubCodec.VARINT)
+            {
+                endTime = Encodings.unzigzag(readVarLong(end));
+                hasEndDate = true;
+            }
+            else
+            {
+                skip(wireType, end);
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the wrapped message or nested body in the buffer.
+     *
+     * @return the index
+     */
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Gets the size of the wrapped message or nested body.
+     *
+     * @return the size in bytes
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Gets the version of the codec that wrote the message.
+     *
+     * @return the version
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Gets the president id.
+     *
+     * @return the id
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Gets the middle initial.
+     *
+     * @return the middle initial
+     */
+    public char getMiddleInitial()
+    {
+        return middleInitial;
+    }
+
+    /**
+     * Decodes the first name.
+     *
+     * @return the first name, or null if it has none.
+     */
+    @Nullable
+    public String getFirstName()
+    {
+        return firstNameOffset < 0 ? null : readString(firstNameOffset, firstNameLength);
+    }
+
+    /**
+     * Compares the first name to a text without decoding it.
+     *
+     * @param text the text, or null
+     * @return true if the first name is the text, or both are null.
+     */
+    public boolean firstNameEquals(@Nullable CharSequence text)
+    {
+        return firstNameOffset < 0 ? text == null : text != null && stringEquals(firstNameOffset, firstNameLength, text);
+    }
+
+    /**
+     * Decodes the last name.
+     *
+     * @return the last name, or null if it has none.
+     */
+    @Nullable
+    public String getLastName()
+    {
+        return lastNameOffset < 0 ? null : readString(lastNameOffset, lastNameLength);
+    }
+
+    /**
+     * Compares the last name to a text without decoding it.
+     *
+     * @param text the text, or null
+     * @return true if the last name is the text, or both are null.
+     */
+    public boolean lastNameEquals(@Nullable CharSequence text)
+    {
+        return lastNameOffset < 0 ? text == null : text != null && stringEquals(lastNameOffset, lastNameLength, text);
+    }
+
+    /**
+     * Tells whether the term has a start date.
+     *
+     * @return true if it has one
+     */
+    public boolean hasStartDate()
+    {
+        return hasStartDate;
+    }
+
+    /**
+     * Gets the start date of the term.
+     *
+     * @return the start date in milliseconds since the epoch, or zero if it has none.
+     */
+    public long getStartTime()
+    {
+        return hasStartDate ? startTime : 0;
+    }
+
+    /**
+     * Tells whether the term has an end date.
+     *
+     * @return true if it has one
+     */
+    public boolean hasEndDate()
+    {
+        return hasEndDate;
+    }
+
+    /**
+     * Gets the end date of the term.
+     *
+     * @return the end date in milliseconds since the epoch, or zero if it has none.
+     */
+    public long getEndTime()
+    {
+        return hasEndDate ? endTime : 0;
+    }
+
+    /**
+     * Creates a president holding the values of this view.
+     *
+     * @return a new president
+     */
+    public ClubPresident toClubPresident()
+    {
+        return new ClubPresident(id, getFirstName(), middleInitial, getLastName(),
+                hasStartDate ? new Date(startTime) : null, hasEndDate ? new Date(endTime) : null);
+    }
+}
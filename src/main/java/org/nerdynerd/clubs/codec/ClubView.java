@@ -0,0 +1,228 @@
+package org.nerdynerd.clubs.codec;
+
+import com.sun.istack.internal.Nullable;
+import org.nerdynerd.clubs.Club;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A flyweight view of a club message encoded by {@link ClubCodec}.
+ * <p>
+ * Wrapping a message parses its fields in place, so numbers are read
+ * without allocating, the name is only decoded when asked for and the
+ * president only parsed when asked for. A view is reused by wrapping it
+ * again, together with the view of its president, so a buffer of many
+ * messages is read without allocating:
+ * <pre>
+ * for(int offset = 0; offset &lt; buffer.limit(); offset += view.getLength())
+ * {
+ *     view.wrap(buffer, offset);
+ * }
+ * </pre>
+ * A view reads the buffer until it is wrapped again: changes to the
+ * buffer show through it.
+ */
+public final class ClubView extends CodecView
+{
+    private final ClubPresidentView clubPresident = new ClubPresidentView();
+
+    private int offset;
+
+    private int length;
+
+    private int version;
+
+    private int id;
+
+    private int memberNumber;
+
+    private int clubNameOffset;
+
+    private int clubNameLength;
+
+    private int presidentOffset;
+
+    private int presidentLength;
+
+    /**
+     * Wraps the club message at an index of a buffer.
+     *
+     * @param buffer the buffer
+     * @param offset the index of the message
+     * @return this view
+     * @throws IllegalArgumentException if the buffer does not hold a whole club message at that index
+     */
+    public ClubView wrap(ByteBuffer buffer, int offset)
+    {
+        this.buffer = buffer;
+        position = offset;
+        int limit = buffer.limit();
+        int messageVersion = readByte(limit);
+        if(messageVersion == 0)
+        {
+            throw malformed("not a message");
+        }
+        int bodyLength = readLength(limit);
+        int end = position + bodyLength;
+        version = messageVersion;
+        id = 0;
+        memberNumber = 0;
+        clubNameOffset = -1;
+        presidentOffset = -1;
+        while(position < end)
+        {
+            long tag = readVarLong(end);
+            int field = (int) (tag >>> 3);
+            int wireType = (int) (tag & 7);
+            if(field == ClubCodec.CLUB_ID && wireType == ClubCodec.VARINT)
+            {
+                id = (int) Encodings.unzigzag(readVarLong(end));
+            }
+            else if(field == ClubCodec.CLUB_NAME && wireType == ClubCodec.BYTES)
+            {
+                clubNameLength = readLength(end);
+                clubNameOffset = position;
+                position += clubNameLength;
+            }
+            else if(field == ClubCodec.MEMBER_NUMBER && wireType == ClubCodec.VARINT)
+            {
+                memberNumber = (int) readVarLong(end);
+            }
+            else if(field == ClubCodec.CLUB_PRESIDENT && wireType == ClubCodec.BYTES)
+            {
+                presidentLength = readLength(end);
+                presidentOffset = position;
+                position += presidentLength;
+            }
+            else
+            {
+                skip(wireType, end);
+            }
+        }
+        this.offset = offset;
+        this.length = end - offset;
+        return this;
+    }
+
+    /**
+     * Gets the index of the wrapped message in the buffer.
+     *
+     * @return the index
+     */
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Gets the size of the wrapped message, so the index of the message
+     * following it is {@code getOffset() + getLength()}.
+     *
+     * @return the size in bytes
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Gets the version of the codec that wrote the message.
+     *
+     * @return the version
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Gets the club id.
+     *
+     * @return the id
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Gets the member count.
+     *
+     * @return the member count
+     */
+    public int getMemberNumber()
+    {
+        return memberNumber;
+    }
+
+    /**
+     * Decodes the club name.
+     *
+     * @return the club name, or null if it has none.
+     */
+    @Nullable
+    public String getClubName()
+    {
+        return clubNameOffset < 0 ? null : readString(clubNameOffset, clubNameLength);
+    }
+
+    /**
+     * Compares the club name to a text without decoding it. Unlike club
+     * names in a {@link org.nerdynerd.clubs.ClubManagement}, the case of
+     * letters matters.
+     *
+     * @param text the text, or null
+     * @return true if the club name is the text, or both are null.
+     */
+    public boolean clubNameEquals(@Nullable CharSequence text)
+    {
+        return clubNameOffset < 0 ? text == null : text != null && stringEquals(clubNameOffset, clubNameLength, text);
+    }
+
+    /**
+     * Tells whether the club has a president.
+     *
+     * @return true if it has one
+     */
+    public boolean hasClubPresident()
+    {
+        return presidentOffset >= 0;
+    }
+
+    /**
+     * Gets the president of the club, through a view owned by this view
+     * and wrapped again on every call.
+     *
+     * @return the view of the president, or null if the club has none.
+     * @throws IllegalArgumentException if the president is malformed
+     */
+    @Nullable
+    public ClubPresidentView getClubPresident()
+    {
+        if(presidentOffset < 0)
+        {
+            return null;
+        }
+        clubPresident.wrapBody(buffer, presidentOffset, presidentOffset + presidentLength, version);
+        return clubPresident;
+    }
+
+    /**
+     * Creates a club holding the values of this view.
+     *
+     * @return a new club
+     */
+    public Club toClub()
+    {
+        Club club = new Club(id, getClubName());
+        if(presidentOffset >= 0)
+        {
+            club.setClubPresident(getClubPresident().toClubPresident());
+        }
+        if(memberNumber > 0)
+        {
+            club.setMemberNumber(memberNumber);
+        }
+        return club;
+    }
+}
@@ -0,0 +1,177 @@
+package org.nerdynerd.clubs.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the fields of an encoded message in place, for the views of
+ * {@link ClubCodec} messages. A view reads the buffer with absolute gets
+ * only, so it never changes the position of the buffer and never copies
+ * bytes until a string is asked for.
+ */
+abstract class CodecView
+{
+    /**
+     * The buffer holding the message.
+     */
+    ByteBuffer buffer;
+
+    /**
+     * The index of the next byte to parse.
+     */
+    int position;
+
+    /**
+     * Reads the byte at the position.
+     *
+     * @param end the index after the last byte that may be read
+     */
+    final int readByte(int end)
+    {
+        if(position >= end)
+        {
+            throw truncated();
+        }
+        return buffer.get(position++) & 0xFF;
+    }
+
+    /**
+     * Reads a number of seven bits per byte at the position.
+     *
+     * @param end the index after the last byte that may be read
+     */
+    final long readVarLong(int end)
+    {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7)
+        {
+            if(position >= end)
+            {
+                throw truncated();
+            }
+            byte b = buffer.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0)
+            {
+                return value;
+            }
+        }
+        throw malformed("number longer than ten bytes");
+    }
+
+    /**
+     * Reads the length of a string or message at the position, checking
+     * that it ends before the given index.
+     *
+     * @param end the index after the last byte that may be read
+     */
+    final int readLength(int end)
+    {
+        long length = readVarLong(end);
+        if(length > end - position)
+        {
+            throw truncated();
+        }
+        return (int) length;
+    }
+
+    /**
+     * Skips the value of a field of an unknown number, so messages of
+     * newer versions can be read.
+     *
+     * @param wireType the wire type of the field
+     * @param end      the index after the last byte that may be read
+     */
+    final void skip(int wireType, int end)
+    {
+        switch (wireType)
+        {
+            case ClubCodec.VARINT:
+                readVarLong(end);
+                break;
+            case ClubCodec.FIXED64:
+                skipBytes(8, end);
+                break;
+            case ClubCodec.BYTES:
+                int length = readLength(end);
+                position += length;
+                break;
+            case ClubCodec.FIXED32:
+                skipBytes(4, end);
+                break;
+            default:
+                throw malformed("unknown wire type " + wireType);
+        }
+    }
+
+    private void skipBytes(int count, int end)
+    {
+        if(count > end - position)
+        {
+            throw truncated();
+        }
+        position += count;
+    }
+
+    /**
+     * Decodes a UTF-8 string of the buffer.
+     *
+     * @param offset the index of its first byte
+     * @param length its length in bytes
+     */
+    final String readString(int offset, int length)
+    {
+        if(buffer.hasArray())
+        {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++)
+        {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares a UTF-8 string of the buffer to a text without decoding it,
+     * by encoding the text a code point at a time as {@link Encodings} does.
+     *
+     * @param offset the index of its first byte
+     * @param length its length in bytes
+     * @param text   the text
+     */
+    final boolean stringEquals(int offset, int length, CharSequence text)
+    {
+        int index = offset;
+        int end = offset + length;
+        for(int i = 0; i < text.length(); )
+        {
+            int codePoint = Character.codePointAt(text, i);
+            i += Character.charCount(codePoint);
+            int bytes = Encodings.utf8Length(codePoint);
+            if(end - index < bytes)
+            {
+                return false;
+            }
+            for(int j = 0; j < bytes; j++)
+            {
+                if(buffer.get(index++) != Encodings.utf8Byte(codePoint, j))
+                {
+                    return false;
+                }
+            }
+        }
+        return index == end;
+    }
+
+    final IllegalArgumentException truncated()
+    {
+        return malformed("message ends within a field");
+    }
+
+    final IllegalArgumentException malformed(String reason)
+    {
+        return new IllegalArgumentException("IllegalArgumentException on " + getClass().getSimpleName() + ".wrap: " + " " + reason + ".");
+    }
+}
@@ -0,0 +1,231 @@
+package org.nerdynerd.clubs.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The byte encodings shared by the codec, the exporters, the snapshots
+ * and the membership history, so each is written once.
+ * <p>
+ * Variable-length numbers take seven bits per byte, lowest bits first,
+ * with the high bit set on all but the last byte. Signed numbers are
+ * zigzag encoded first, so small negative values stay short. Text is
+ * encoded to UTF-8 a code point at a time, without building a byte array.
+ */
+public final class Encodings
+{
+    /**
+     * The largest number of bytes a variable-length number takes.
+     */
+    public static final int MAX_VAR_LONG_SIZE = 10;
+
+    /**
+     * The largest number of bytes a code point takes as UTF-8.
+     */
+    public static final int MAX_CODE_POINT_SIZE = 4;
+
+    private Encodings()
+    {
+    }
+
+    /**
+     * Maps a signed number to an unsigned one, small negative and
+     * positive values alike to small numbers.
+     *
+     * @param value the signed number
+     * @return the zigzag encoded number
+     */
+    public static long zigzag(long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reverses {@link #zigzag(long)}.
+     *
+     * @param value the zigzag encoded number
+     * @return the signed number
+     */
+    public static long unzigzag(long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Returns the number of bytes a variable-length number takes.
+     *
+     * @param value the number, treated as unsigned
+     * @return the number of bytes
+     */
+    public static int varLongSize(long value)
+    {
+        int size = 1;
+        while((value & ~0x7FL) != 0)
+        {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a variable-length number at the position of a buffer,
+     * which must have room for {@value #MAX_VAR_LONG_SIZE} bytes.
+     *
+     * @param buffer the buffer
+     * @param value  the number, treated as unsigned
+     */
+    public static void writeVarLong(ByteBuffer buffer, long value)
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a variable-length number into an array, which must have room
+     * for {@value #MAX_VAR_LONG_SIZE} bytes after the offset.
+     *
+     * @param bytes  the array
+     * @param offset the index of the first byte to write
+     * @param value  the number, treated as unsigned
+     * @return the index after the last byte written
+     */
+    public static int writeVarLong(byte[] bytes, int offset, long value)
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            bytes[offset++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Reads a variable-length number from an array. The number takes
+     * {@link #varLongSize(long)} bytes if it was written by this class.
+     *
+     * @param bytes  the array
+     * @param offset the index of its first byte
+     * @return the number
+     */
+    public static long readVarLong(byte[] bytes, int offset)
+    {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = bytes[offset++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while(b < 0);
+        return value;
+    }
+
+    /**
+     * Returns the number of bytes a string takes as UTF-8.
+     *
+     * @param text the string
+     * @return the number of bytes
+     */
+    public static int utf8Length(CharSequence text)
+    {
+        int length = 0;
+        for(int i = 0; i < text.length(); )
+        {
+            int codePoint = Character.codePointAt(text, i);
+            length += utf8Length(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return length;
+    }
+
+    /**
+     * Returns the number of bytes a code point takes as UTF-8.
+     *
+     * @param codePoint the code point
+     * @return the number of bytes, one to four
+     */
+    public static int utf8Length(int codePoint)
+    {
+        return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    }
+
+    /**
+     * Returns a byte of the UTF-8 encoding of a code point, for comparing
+     * encoded text without encoding it into an array first.
+     *
+     * @param codePoint the code point
+     * @param index     the index of the byte, below {@link #utf8Length(int)} of the code point
+     * @return the byte
+     */
+    public static byte utf8Byte(int codePoint, int index)
+    {
+        int length = utf8Length(codePoint);
+        if(length == 1)
+        {
+            return (byte) codePoint;
+        }
+        int shift = 6 * (length - 1 - index);
+        if(index == 0)
+        {
+            return (byte) (0xFF00 >> length | codePoint >>> shift);
+        }
+        return (byte) (0x80 | codePoint >>> shift & 0x3F);
+    }
+
+    /**
+     * Writes a string as UTF-8 at the position of a buffer, which must
+     * have room for {@link #utf8Length(CharSequence)} bytes.
+     *
+     * @param buffer the buffer
+     * @param text   the string
+     */
+    public static void writeUtf8(ByteBuffer buffer, CharSequence text)
+    {
+        for(int i = 0; i < text.length(); )
+        {
+            int codePoint = Character.codePointAt(text, i);
+            writeCodePoint(buffer, codePoint);
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    /**
+     * Writes a code point as UTF-8 at the position of a buffer, which must
+     * have room for {@value #MAX_CODE_POINT_SIZE} bytes.
+     *
+     * @param buffer    the buffer
+     * @param codePoint the code point
+     */
+    public static void writeCodePoint(ByteBuffer buffer, int codePoint)
+    {
+        if(codePoint < 0x80)
+        {
+            buffer.put((byte) codePoint);
+        }
+        else if(codePoint < 0x800)
+        {
+            buffer.put((byte) (0xC0 | codePoint >>> 6));
+            buffer.put((byte) (0x80 | codePoint & 0x3F));
+        }
+        else if(codePoint < 0x10000)
+        {
+            buffer.put((byte) (0xE0 | codePoint >>> 12));
+            buffer.put((byte) (0x80 | codePoint >>> 6 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint & 0x3F));
+        }
+        else
+        {
+            buffer.put((byte) (0xF0 | codePoint >>> 18));
+            buffer.put((byte) (0x80 | codePoint >>> 12 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint >>> 6 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint & 0x3F));
+        }
+    }
+}
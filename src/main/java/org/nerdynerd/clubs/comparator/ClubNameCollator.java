@@ -0,0 +1,106 @@
+package org.nerdynerd.clubs.comparator;
+
+import java.text.Collator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Generates locale-aware collation keys for club names.
+ * <p>
+ * Names are collated ignoring case and surrounding whitespace, the same
+ * way {@link org.nerdynerd.clubs.ClubManagement} decides whether two club
+ * names are the same. A collation key is generated once per name and two
+ * keys are compared as unsigned bytes, which is much cheaper than asking
+ * a {@link Collator} to compare the names every time.
+ *
+ * @see org.nerdynerd.clubs.Club#getNameCollationKey(ClubNameCollator)
+ * @see ClubNameComparator
+ */
+public final class ClubNameCollator
+{
+    private static final ConcurrentMap<Locale, ClubNameCollator> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Locale locale;
+
+    private final Collator collator;
+
+    private ClubNameCollator(Locale locale)
+    {
+        this.locale = locale;
+        this.collator = Collator.getInstance(locale);
+        this.collator.setStrength(Collator.SECONDARY);
+    }
+
+    /**
+     * Returns the shared collator of the given locale.
+     *
+     * @param locale the locale
+     * @return the club name collator
+     */
+    public static ClubNameCollator forLocale(Locale locale)
+    {
+        if(locale == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubNameCollator.forLocale: " + " locale must not be null.");
+        }
+        return INSTANCES.computeIfAbsent(locale, ClubNameCollator::new);
+    }
+
+    /**
+     * Returns the shared collator of the default locale.
+     *
+     * @return the club name collator
+     */
+    public static ClubNameCollator getDefault()
+    {
+        return forLocale(Locale.getDefault());
+    }
+
+    /**
+     * Gets the locale names are collated for.
+     *
+     * @return the locale
+     */
+    public Locale getLocale()
+    {
+        return locale;
+    }
+
+    /**
+     * Generates the collation key of a club name.
+     *
+     * @param clubName the club name
+     * @return the collation key as bytes
+     */
+    public byte[] collationKey(String clubName)
+    {
+        String trimmed = clubName == null ? "" : clubName.trim();
+        // Collator instances are not safe to share between threads
+        synchronized (collator)
+        {
+            return collator.getCollationKey(trimmed).toByteArray();
+        }
+    }
+
+    /**
+     * Compares two collation keys as unsigned bytes.
+     *
+     * @param first  the first collation key
+     * @param second the second collation key
+     * @return a negative integer, zero, or a positive integer as the
+     * first key sorts before, together with, or after the second.
+     */
+    public static int compareKeys(byte[] first, byte[] second)
+    {
+        int length = Math.min(first.length, second.length);
+        for(int i = 0; i < length; i++)
+        {
+            if(first[i] != second[i])
+            {
+                return (first[i] & 0xFF) - (second[i] & 0xFF);
+            }
+        }
+        return first.length - second.length;
+    }
+}
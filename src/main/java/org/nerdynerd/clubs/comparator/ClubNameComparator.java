@@ -3,15 +3,37 @@ package org.nerdynerd.clubs.comparator;
 import org.nerdynerd.clubs.Club;
 
 import java.util.Comparator;
+import java.util.Locale;
 
 /**
  * A comparator that compares {@link Club}
  * to each other based on names.
+ * Names are ordered by their locale-aware collation keys, ignoring case.
  * @see org.nerdynerd.clubs.Club
  * @see java.util.Comparator
+ * @see ClubNameCollator
  */
 public final class ClubNameComparator implements Comparator<Club>
 {
+    private final ClubNameCollator collator;
+
+    /**
+     * Instantiates a new Club name comparator for the default locale.
+     */
+    public ClubNameComparator()
+    {
+        this(Locale.getDefault());
+    }
+
+    /**
+     * Instantiates a new Club name comparator for the given locale.
+     *
+     * @param locale the locale
+     */
+    public ClubNameComparator(Locale locale)
+    {
+        this.collator = ClubNameCollator.forLocale(locale);
+    }
 
     /**
      * Compares its two arguments for order.  Returns a negative integer,
@@ -56,7 +78,7 @@ public final class ClubNameComparator implements Comparator<Club>
     @Override
     public int compare(Club o1, Club o2)
     {
-        return o1.getClubName().compareTo(o2.getClubName());
+        return o1.compareNameTo(o2, collator);
     }
 
     /**
@@ -84,6 +106,12 @@ public final class ClubNameComparator implements Comparator<Club>
     @Override
     public boolean equals(Object obj)
     {
-        return obj instanceof ClubNameComparator;
+        return obj instanceof ClubNameComparator && ((ClubNameComparator) obj).collator == collator;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return collator.getLocale().hashCode();
     }
 }
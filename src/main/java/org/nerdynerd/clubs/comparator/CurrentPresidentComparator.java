@@ -9,6 +9,7 @@ import java.util.HashMap;
 /**
  * An Comparator for the type ClubManagement that compares
  * the club entries by the current president.
+ * Clubs without a president are placed last.
  * @see org.nerdynerd.clubs.Club
  * @see java.util.Comparator
  */
@@ -60,7 +61,17 @@ public final class CurrentPresidentComparator implements Comparator<Club>
     {
         ClubPresident clubOneClubPresident = o1.getClubPresident();
         ClubPresident clubTwoClubPresident = o2.getClubPresident();
-        return clubOneClubPresident.getLastName().compareTo(clubTwoClubPresident.getLastName());
+        String clubOneLastName = clubOneClubPresident == null ? null : clubOneClubPresident.getLastName();
+        String clubTwoLastName = clubTwoClubPresident == null ? null : clubTwoClubPresident.getLastName();
+        if(clubOneLastName == null || clubTwoLastName == null)
+        {
+            if(clubOneLastName == clubTwoLastName)
+            {
+                return 0;
+            }
+            return clubOneLastName == null ? 1 : -1;
+        }
+        return clubOneLastName.compareTo(clubTwoLastName);
     }
 
     /**
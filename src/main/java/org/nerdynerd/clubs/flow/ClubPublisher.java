@@ -0,0 +1,439 @@
+package org.nerdynerd.clubs.flow;
+
+import com.sun.istack.internal.Nullable;
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubManagement;
+import org.nerdynerd.clubs.ClubPage;
+import org.nerdynerd.clubs.ClubRecord;
+import org.nerdynerd.clubs.ClubVersion;
+import org.nerdynerd.clubs.index.ClubCursor;
+import org.nerdynerd.clubs.sort.ClubSortOrder;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Streams the clubs of a {@link ClubManagement} to subscribers, each at
+ * the pace it requests them.
+ * <p>
+ * Clubs are read in chunks, one lock of the club management per chunk, and
+ * a subscriber holds at most one chunk of clubs it has not received yet,
+ * so any number of clubs is streamed in bounded memory and a slow
+ * subscriber never blocks writers. Every subscriber receives copies of the
+ * clubs, as created by {@link ClubRecord#toClub()}; changing them does not
+ * change the stored clubs.
+ * <p>
+ * Without a sort order, a subscriber receives the clubs of the
+ * {@link ClubVersion} opened when it first requests clubs, in store order.
+ * The version is closed when the stream completes, fails or is cancelled.
+ * With a sort order, clubs are read a {@linkplain ClubManagement#page page}
+ * at a time; a club added or removed while the stream runs is received if
+ * it sorts after the clubs already sent, and every club is received at
+ * most once.
+ * <p>
+ * Subscribers are called from tasks run by the executor of the publisher,
+ * never at the same time for the same subscriber.
+ */
+public final class ClubPublisher implements Flow.Publisher<Club>
+{
+    /**
+     * The number of clubs read at once by default.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private final ClubManagement clubManagement;
+
+    private final Predicate<? super Club> filter;
+
+    private final ClubSortOrder order;
+
+    private final int chunkSize;
+
+    private final Executor executor;
+
+    private ClubPublisher(Builder builder)
+    {
+        this.clubManagement = builder.clubManagement;
+        this.filter = builder.filter;
+        this.order = builder.order;
+        this.chunkSize = builder.chunkSize;
+        this.executor = builder.executor;
+    }
+
+    /**
+     * Returns a builder of a publisher of all clubs of a club management.
+     *
+     * @param clubManagement the club management
+     * @return the builder
+     */
+    public static Builder builder(ClubManagement clubManagement)
+    {
+        if(clubManagement == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubPublisher.builder: " + " clubManagement must not be null.");
+        }
+        return new Builder(clubManagement);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Club> subscriber)
+    {
+        if(subscriber == null)
+        {
+            throw new NullPointerException("NullPointerException on ClubPublisher.subscribe: " + " subscriber must not be null.");
+        }
+        ClubSubscription subscription = new ClubSubscription(subscriber, order == null ? new VersionSource() : new PageSource());
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * The clubs a subscription reads, one chunk at a time.
+     */
+    private interface ClubSource
+    {
+        /**
+         * Reads the next chunk of clubs.
+         *
+         * @param chunk the queue to add the clubs that pass the filter to
+         * @return false if there are no more clubs after this chunk.
+         */
+        boolean read(ArrayDeque<Club> chunk);
+
+        /**
+         * Releases what the source holds; called once, after the last read.
+         */
+        void close();
+    }
+
+    /**
+     * Reads the clubs of one version, opened on the first read.
+     */
+    private final class VersionSource implements ClubSource
+    {
+        private ClubVersion version;
+
+        private Iterator<ClubRecord> records;
+
+        @Override
+        public boolean read(ArrayDeque<Club> chunk)
+        {
+            if(version == null)
+            {
+                version = clubManagement.openVersion();
+                records = version.iterator();
+            }
+            for(int i = 0; i < chunkSize && records.hasNext(); i++)
+            {
+                add(chunk, records.next());
+            }
+            return records.hasNext();
+        }
+
+        @Override
+        public void close()
+        {
+            if(version != null)
+            {
+                version.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the clubs one page in the sort order after the other.
+     */
+    private final class PageSource implements ClubSource
+    {
+        private ClubCursor after;
+
+        @Override
+        public boolean read(ArrayDeque<Club> chunk)
+        {
+            ClubPage page = clubManagement.page(order, after, chunkSize);
+            for(ClubRecord record : page.getClubs())
+            {
+                add(chunk, record);
+            }
+            after = page.getNext();
+            return page.hasNext();
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    private void add(ArrayDeque<Club> chunk, ClubRecord record)
+    {
+        Club club = record.toClub();
+        if(filter == null || filter.test(club))
+        {
+            chunk.add(club);
+        }
+    }
+
+    /**
+     * Sends the clubs of a source to one subscriber. Requests and
+     * cancellation only update counters and schedule a drain task; only
+     * one drain task runs at a time, and it alone reads the source and
+     * calls the subscriber.
+     */
+    private final class ClubSubscription implements Flow.Subscription, Runnable
+    {
+        private final Flow.Subscriber<? super Club> subscriber;
+
+        private final ClubSource source;
+
+        private final AtomicLong requested = new AtomicLong();
+
+        /**
+         * The number of times the drain task was asked to run and has not
+         * looked at the counters since.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        private volatile Throwable invalidRequest;
+
+        private final ArrayDeque<Club> chunk = new ArrayDeque<>();
+
+        private boolean exhausted;
+
+        private boolean finished;
+
+        private ClubSubscription(Flow.Subscriber<? super Club> subscriber, ClubSource source)
+        {
+            this.subscriber = subscriber;
+            this.source = source;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if(n <= 0)
+            {
+                invalidRequest = new IllegalArgumentException("IllegalArgumentException on ClubPublisher.request: " + " " + n + " clubs requested, must be greater than zero.");
+            }
+            else
+            {
+                long current;
+                do
+                {
+                    current = requested.get();
+                }
+                while(current != Long.MAX_VALUE && !requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule()
+        {
+            if(pending.getAndIncrement() == 0)
+            {
+                try
+                {
+                    executor.execute(this);
+                }
+                catch(RuntimeException e)
+                {
+                    // the executor was shut down; nothing can be sent any more
+                    cancelled = true;
+                    finish();
+                    pending.set(0);
+                }
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            int missed = 1;
+            do
+            {
+                if(!finished)
+                {
+                    try
+                    {
+                        drain();
+                    }
+                    catch(RuntimeException e)
+                    {
+                        // the subscriber failed; stop as if it had cancelled
+                        cancelled = true;
+                        finish();
+                    }
+                }
+                missed = pending.addAndGet(-missed);
+            }
+            while(missed != 0);
+        }
+
+        private void drain()
+        {
+            long sent = 0;
+            long demand = requested.get();
+            while(true)
+            {
+                if(cancelled)
+                {
+                    finish();
+                    return;
+                }
+                if(invalidRequest != null)
+                {
+                    finish();
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                if(chunk.isEmpty() && !exhausted)
+                {
+                    try
+                    {
+                        exhausted = !source.read(chunk);
+                    }
+                    catch(RuntimeException e)
+                    {
+                        finish();
+                        subscriber.onError(e);
+                        return;
+                    }
+                    continue;
+                }
+                if(chunk.isEmpty())
+                {
+                    finish();
+                    subscriber.onComplete();
+                    return;
+                }
+                if(sent == demand)
+                {
+                    demand = demand == Long.MAX_VALUE ? demand : requested.addAndGet(-sent);
+                    sent = 0;
+                    if(demand == 0)
+                    {
+                        return;
+                    }
+                }
+                subscriber.onNext(chunk.poll());
+                sent++;
+            }
+        }
+
+        private void finish()
+        {
+            if(finished)
+            {
+                return;
+            }
+            finished = true;
+            chunk.clear();
+            source.close();
+        }
+    }
+
+    /**
+     * A builder of club publishers.
+     */
+    public static final class Builder
+    {
+        private final ClubManagement clubManagement;
+
+        private Predicate<? super Club> filter;
+
+        private ClubSortOrder order;
+
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+        private Executor executor = ForkJoinPool.commonPool();
+
+        private Builder(ClubManagement clubManagement)
+        {
+            this.clubManagement = clubManagement;
+        }
+
+        /**
+         * Sends only the clubs passing a filter. The filter is tested on
+         * the copies sent, from the threads of the executor.
+         *
+         * @param filter the filter, or null to send all clubs
+         * @return this builder
+         */
+        public Builder filter(@Nullable Predicate<? super Club> filter)
+        {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Sends the clubs in a sort order instead of store order. The same
+         * sort order object should be used by every publisher, as
+         * {@link ClubManagement#page} keeps an index per sort order object.
+         *
+         * @param order the sort order, or null for store order
+         * @return this builder
+         */
+        public Builder order(@Nullable ClubSortOrder order)
+        {
+            this.order = order;
+            return this;
+        }
+
+        /**
+         * Sets the number of clubs read at once, which is also the most
+         * clubs a subscriber holds before receiving them.
+         *
+         * @param chunkSize the chunk size
+         * @return this builder
+         */
+        public Builder chunkSize(int chunkSize)
+        {
+            if(chunkSize < 1)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubPublisher.chunkSize: " + " chunk size must be at least one.");
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Sets the executor running the tasks that call subscribers,
+         * the common fork join pool by default.
+         *
+         * @param executor the executor
+         * @return this builder
+         */
+        public Builder executor(Executor executor)
+        {
+            if(executor == null)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubPublisher.executor: " + " executor must not be null.");
+            }
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Builds the publisher.
+         *
+         * @return the publisher
+         */
+        public ClubPublisher build()
+        {
+            return new ClubPublisher(this);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.nerdynerd.clubs.flow;
+
+/**
+ * Interfaces for streams of items with flow control, in which a subscriber
+ * asks for the number of items it can take and a publisher never sends
+ * more.
+ * <p>
+ * These are the interfaces of {@code java.util.concurrent.Flow}, which
+ * this library cannot use while it targets Java 8, with the same methods
+ * and rules. A publisher is adapted to {@code java.util.concurrent.Flow}
+ * or to Reactive Streams by forwarding each method.
+ */
+public final class Flow
+{
+    private Flow()
+    {
+    }
+
+    /**
+     * A producer of items received by subscribers.
+     *
+     * @param <T> the type of the items
+     */
+    @FunctionalInterface
+    public interface Publisher<T>
+    {
+        /**
+         * Adds a subscriber, which receives {@link Subscriber#onSubscribe(Subscription)}
+         * first and then items as it requests them.
+         *
+         * @param subscriber the subscriber
+         * @throws NullPointerException if the subscriber is null
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items. Its methods are called one at a time, in order.
+     *
+     * @param <T> the type of the items
+     */
+    public interface Subscriber<T>
+    {
+        /**
+         * Called before any other method, with the subscription to request
+         * items from.
+         *
+         * @param subscription the subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next item, at most as often as items were requested.
+         *
+         * @param item the item
+         */
+        void onNext(T item);
+
+        /**
+         * Called once when the publisher failed, after which nothing else is called.
+         *
+         * @param throwable the failure
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once when all items were sent, after which nothing else is called.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a publisher and one subscriber.
+     */
+    public interface Subscription
+    {
+        /**
+         * Requests more items. Requests add up; a subscriber requesting
+         * {@link Long#MAX_VALUE} items receives all of them.
+         *
+         * @param n the number of items, greater than zero; otherwise the subscriber receives an error
+         */
+        void request(long n);
+
+        /**
+         * Stops sending items, possibly after some that are already on their way.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,47 @@
+package org.nerdynerd.clubs.index;
+
+import org.nerdynerd.clubs.sort.ClubSortOrder;
+
+/**
+ * An opaque position in a sort order, just after a given club.
+ * <p>
+ * A cursor holds the sort keys and the name of the club it was taken at,
+ * not its position in a list, so a page read from it continues after that
+ * club even if clubs were added or removed in the meantime, or the club
+ * itself was removed.
+ */
+public final class ClubCursor
+{
+    private final ClubSortOrder order;
+
+    private final Object[] keys;
+
+    private final String normalizedName;
+
+    ClubCursor(ClubSortOrder order, Object[] keys, String normalizedName)
+    {
+        this.order = order;
+        this.keys = keys;
+        this.normalizedName = normalizedName;
+    }
+
+    /**
+     * Gets the sort order this cursor is a position in.
+     *
+     * @return the sort order
+     */
+    public ClubSortOrder getOrder()
+    {
+        return order;
+    }
+
+    Object[] getKeys()
+    {
+        return keys;
+    }
+
+    String getNormalizedName()
+    {
+        return normalizedName;
+    }
+}
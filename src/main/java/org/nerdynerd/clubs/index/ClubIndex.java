@@ -0,0 +1,95 @@
+package org.nerdynerd.clubs.index;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.storage.ClubStore;
+
+/**
+ * A structure derived from the clubs of a {@link org.nerdynerd.clubs.ClubManagement}
+ * and kept up to date by it. The club management calls these methods
+ * after every change, under the same locking as the change itself.
+ */
+public interface ClubIndex
+{
+    /**
+     * Discards the content of the index and builds it again from all clubs of a store.
+     *
+     * @param store the store holding the clubs
+     */
+    void rebuild(ClubStore store);
+
+    /**
+     * Called after a club was added.
+     *
+     * @param club the added club, as held by the store
+     */
+    void clubAdded(Club club);
+
+    /**
+     * Called after a club was removed.
+     *
+     * @param club the removed club
+     */
+    void clubRemoved(Club club);
+
+    /**
+     * Called after the member count of a stored club changed.
+     *
+     * @param club              the club
+     * @param oldMemberNumber   the previous member count
+     * @param newMemberNumber   the new member count
+     */
+    default void memberNumberChanged(Club club, int oldMemberNumber, int newMemberNumber)
+    {
+    }
+
+    /**
+     * Called after a stored club was renamed.
+     *
+     * @param club        the club
+     * @param oldClubName the previous club name
+     */
+    default void clubRenamed(Club club, String oldClubName)
+    {
+    }
+
+    /**
+     * Called after the president of a stored club was replaced.
+     *
+     * @param club the club
+     */
+    default void clubPresidentChanged(Club club)
+    {
+    }
+
+    /**
+     * Called before the changes of a committed transaction, or the removal
+     * and addition reporting an update, are reported. An index may defer
+     * expensive work, such as rebuilding itself, until {@link #batchFinished()}.
+     */
+    default void batchStarted()
+    {
+    }
+
+    /**
+     * Called after all changes of a committed transaction or an update were reported.
+     */
+    default void batchFinished()
+    {
+    }
+
+    /**
+     * Called after all clubs were removed.
+     */
+    void cleared();
+
+    /**
+     * Returns the share of the entries of the index left behind by clubs
+     * that were removed or renamed, which building the index again drops.
+     *
+     * @return the share of stale entries, zero if the index keeps none
+     */
+    default double getGarbageRatio()
+    {
+        return 0;
+    }
+}
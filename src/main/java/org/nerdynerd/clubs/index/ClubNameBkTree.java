@@ -0,0 +1,375 @@
+package org.nerdynerd.clubs.index;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubNames;
+import org.nerdynerd.clubs.storage.ClubStore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A BK-tree over the normalized names of the stored clubs, finding the
+ * names within an edit distance of a misspelled name.
+ * <p>
+ * Every node holds a name, and its children are grouped by their edit
+ * distance to it. By the triangle inequality, a search for names within
+ * distance {@code k} of a query at distance {@code d} from a node only has
+ * to visit the children at distances {@code d - k} to {@code d + k}, so a
+ * small {@code k} visits a small part of the tree. Removed names stay in
+ * the tree as tombstones, and the tree is rebuilt from the store once
+ * tombstones outnumber the stored names.
+ */
+public class ClubNameBkTree implements CopyableClubIndex<ClubNameBkTree>
+{
+    private Node root;
+
+    private int names;
+
+    private int tombstones;
+
+    private ClubStore store;
+
+    private boolean inBatch;
+
+    @Override
+    public void rebuild(ClubStore store)
+    {
+        this.store = store;
+        cleared();
+        for(int i = 0; i < store.size(); i++)
+        {
+            insert(store.getClubName(i));
+        }
+    }
+
+    @Override
+    public void clubAdded(Club club)
+    {
+        insert(club.getClubName());
+    }
+
+    @Override
+    public void clubRemoved(Club club)
+    {
+        delete(club.getClubName());
+    }
+
+    @Override
+    public void clubRenamed(Club club, String oldClubName)
+    {
+        delete(oldClubName);
+        insert(club.getClubName());
+    }
+
+    @Override
+    public void batchStarted()
+    {
+        inBatch = true;
+    }
+
+    @Override
+    public void batchFinished()
+    {
+        inBatch = false;
+        if(tombstones > names && store != null)
+        {
+            rebuild(store);
+        }
+    }
+
+    @Override
+    public void cleared()
+    {
+        root = null;
+        names = 0;
+        tombstones = 0;
+    }
+
+    @Override
+    public double getGarbageRatio()
+    {
+        return (double) tombstones / Math.max(1, names);
+    }
+
+    @Override
+    public ClubNameBkTree emptyCopy()
+    {
+        return new ClubNameBkTree();
+    }
+
+    @Override
+    public void takeOver(ClubNameBkTree copy)
+    {
+        root = copy.root;
+        names = copy.names;
+        tombstones = copy.tombstones;
+    }
+
+    /**
+     * Returns the number of names in the tree.
+     *
+     * @return the number of names
+     */
+    public int size()
+    {
+        return names;
+    }
+
+    /**
+     * Returns the number of removed names still held by the tree.
+     *
+     * @return the number of tombstones
+     */
+    public int getTombstones()
+    {
+        return tombstones;
+    }
+
+    /**
+     * Returns the stored club names within an edit distance of a club name,
+     * ignoring case and surrounding whitespace. The closest names come
+     * first, and names at the same distance are in alphabetical order.
+     *
+     * @param clubName    the club name, possibly misspelled
+     * @param maxDistance the largest number of inserted, deleted or replaced characters
+     * @param limit       the largest number of names to return
+     * @return the similar club names
+     */
+    public List<String> findSimilar(String clubName, int maxDistance, int limit)
+    {
+        if(root == null || limit <= 0 || maxDistance < 0)
+        {
+            return Collections.emptyList();
+        }
+        char[] query = ClubNames.normalize(clubName).toCharArray();
+        Distance distance = new Distance();
+        List<Match> matches = new ArrayList<>();
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while(!pending.isEmpty())
+        {
+            Node node = pending.pop();
+            // beyond this bound neither the node nor any of its children can match
+            int d = distance.between(query, node.key, node.maxDistance + maxDistance);
+            if(d <= maxDistance && node.clubName != null)
+            {
+                matches.add(new Match(d, node.clubName));
+            }
+            for(int i = 0; i < node.childCount; i++)
+            {
+                if(Math.abs(node.distances[i] - d) <= maxDistance)
+                {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+        Collections.sort(matches);
+        List<String> similar = new ArrayList<>(Math.min(limit, matches.size()));
+        for(int i = 0; i < matches.size() && i < limit; i++)
+        {
+            similar.add(matches.get(i).clubName);
+        }
+        return similar;
+    }
+
+    private void insert(String clubName)
+    {
+        if(clubName == null)
+        {
+            return;
+        }
+        char[] key = ClubNames.normalize(clubName).toCharArray();
+        if(root == null)
+        {
+            root = new Node(key, clubName);
+            names++;
+            return;
+        }
+        Distance distance = new Distance();
+        Node node = root;
+        while(true)
+        {
+            int d = distance.between(key, node.key);
+            if(d == 0)
+            {
+                if(node.clubName == null)
+                {
+                    tombstones--;
+                    names++;
+                }
+                node.clubName = clubName;
+                return;
+            }
+            Node child = node.child(d);
+            if(child == null)
+            {
+                node.addChild(d, new Node(key, clubName));
+                names++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    private void delete(String clubName)
+    {
+        if(clubName == null || root == null)
+        {
+            return;
+        }
+        char[] key = ClubNames.normalize(clubName).toCharArray();
+        Distance distance = new Distance();
+        Node node = root;
+        while(node != null)
+        {
+            int d = distance.between(key, node.key);
+            if(d == 0)
+            {
+                if(node.clubName != null)
+                {
+                    node.clubName = null;
+                    names--;
+                    tombstones++;
+                    if(tombstones > names && store != null && !inBatch)
+                    {
+                        rebuild(store);
+                    }
+                }
+                return;
+            }
+            node = node.child(d);
+        }
+    }
+
+    /**
+     * A node of the tree; a node whose club name is null is a tombstone.
+     */
+    private static final class Node
+    {
+        private final char[] key;
+
+        private String clubName;
+
+        private int[] distances = new int[0];
+
+        private Node[] children = new Node[0];
+
+        private int childCount;
+
+        private int maxDistance;
+
+        private Node(char[] key, String clubName)
+        {
+            this.key = key;
+            this.clubName = clubName;
+        }
+
+        private Node child(int distance)
+        {
+            for(int i = 0; i < childCount; i++)
+            {
+                if(distances[i] == distance)
+                {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private void addChild(int distance, Node child)
+        {
+            if(childCount == children.length)
+            {
+                int size = Math.max(2, childCount * 2);
+                distances = Arrays.copyOf(distances, size);
+                children = Arrays.copyOf(children, size);
+            }
+            distances[childCount] = distance;
+            children[childCount] = child;
+            childCount++;
+            maxDistance = Math.max(maxDistance, distance);
+        }
+    }
+
+    /**
+     * A name found by a search, ordered by distance and then by name.
+     */
+    private static final class Match implements Comparable<Match>
+    {
+        private final int distance;
+
+        private final String clubName;
+
+        private Match(int distance, String clubName)
+        {
+            this.distance = distance;
+            this.clubName = clubName;
+        }
+
+        @Override
+        public int compareTo(Match other)
+        {
+            int byDistance = Integer.compare(distance, other.distance);
+            return byDistance != 0 ? byDistance : clubName.compareToIgnoreCase(other.clubName);
+        }
+    }
+
+    /**
+     * Computes Levenshtein distances, reusing its rows from one computation to the next.
+     */
+    private static final class Distance
+    {
+        private int[] previous = new int[32];
+
+        private int[] current = new int[32];
+
+        private int between(char[] first, char[] second)
+        {
+            return between(first, second, Integer.MAX_VALUE - 1);
+        }
+
+        /**
+         * Returns the distance, or {@code bound + 1} as soon as it is known to exceed the bound.
+         */
+        private int between(char[] first, char[] second, int bound)
+        {
+            if(Math.abs(first.length - second.length) > bound)
+            {
+                return bound + 1;
+            }
+            int columns = second.length + 1;
+            if(previous.length < columns)
+            {
+                previous = new int[columns];
+                current = new int[columns];
+            }
+            for(int j = 0; j < columns; j++)
+            {
+                previous[j] = j;
+            }
+            for(int i = 1; i <= first.length; i++)
+            {
+                current[0] = i;
+                int rowMinimum = i;
+                char c = first[i - 1];
+                for(int j = 1; j < columns; j++)
+                {
+                    int replace = previous[j - 1] + (c == second[j - 1] ? 0 : 1);
+                    current[j] = Math.min(replace, Math.min(previous[j], current[j - 1]) + 1);
+                    rowMinimum = Math.min(rowMinimum, current[j]);
+                }
+                if(rowMinimum > bound)
+                {
+                    return bound + 1;
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return Math.min(previous[columns - 1], bound + 1);
+        }
+    }
+}
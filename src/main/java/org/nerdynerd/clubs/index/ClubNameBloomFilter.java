@@ -0,0 +1,300 @@
+package org.nerdynerd.clubs.index;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubNames;
+import org.nerdynerd.clubs.storage.ClubStore;
+
+import java.util.Arrays;
+
+/**
+ * A Bloom filter over the normalized names of the stored clubs, answering
+ * whether a club name might be stored without looking at the store.
+ * <p>
+ * A name the filter rejects is certainly not stored; a name it accepts is
+ * stored or a false positive. Names are hashed with {@link ClubNames#hash(String)},
+ * so a probe neither normalizes nor allocates. A Bloom filter cannot forget
+ * names, so removed and renamed clubs leave stale bits behind; once they make
+ * up a given share of the filter, or more clubs are stored than it was sized
+ * for, the filter is rebuilt from the store.
+ */
+public class ClubNameBloomFilter implements CopyableClubIndex<ClubNameBloomFilter>
+{
+    private static final double LN2 = Math.log(2);
+
+    private static final int MAX_HASHES = 16;
+
+    private final double falsePositiveRate;
+
+    private final double staleRatio;
+
+    private int expectedClubs;
+
+    private long[] bits;
+
+    private int mask;
+
+    private int hashCount;
+
+    private int names;
+
+    private int staleNames;
+
+    private int rebuildCount;
+
+    private ClubStore store;
+
+    private boolean inBatch;
+
+    /**
+     * Instantiates a new Club name bloom filter, rebuilt once a quarter
+     * of its names are stale.
+     *
+     * @param expectedClubs     the number of clubs expected to be stored
+     * @param falsePositiveRate the share of names not stored that may be accepted
+     */
+    public ClubNameBloomFilter(int expectedClubs, double falsePositiveRate)
+    {
+        this(expectedClubs, falsePositiveRate, 0.25);
+    }
+
+    /**
+     * Instantiates a new Club name bloom filter.
+     *
+     * @param expectedClubs     the number of clubs expected to be stored
+     * @param falsePositiveRate the share of names not stored that may be accepted
+     * @param staleRatio        the share of stale names at which the filter is rebuilt
+     */
+    public ClubNameBloomFilter(int expectedClubs, double falsePositiveRate, double staleRatio)
+    {
+        if(expectedClubs < 0)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubNameBloomFilter: " + " expected clubs must not be negative.");
+        }
+        if(!(falsePositiveRate > 0 && falsePositiveRate < 1))
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubNameBloomFilter: " + " false positive rate must be between zero and one.");
+        }
+        if(!(staleRatio > 0 && staleRatio <= 1))
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubNameBloomFilter: " + " stale ratio must be greater than zero and at most one.");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.staleRatio = staleRatio;
+        allocate(expectedClubs);
+    }
+
+    /**
+     * Returns if a club with the given name might be stored, ignoring case
+     * and surrounding whitespace.
+     *
+     * @param clubName the club name
+     * @return false if no such club is stored, true if one might be.
+     */
+    public boolean mightContain(String clubName)
+    {
+        int hash = ClubNames.mix(ClubNames.hash(clubName));
+        int step = ClubNames.mix(hash + 0x9E3779B9) | 1;
+        for(int i = 0; i < hashCount; i++)
+        {
+            int bit = hash & mask;
+            if((bits[bit >>> 6] & (1L << bit)) == 0)
+            {
+                return false;
+            }
+            hash += step;
+        }
+        return true;
+    }
+
+    @Override
+    public void rebuild(ClubStore store)
+    {
+        this.store = store;
+        int size = store.size();
+        if(size > expectedClubs)
+        {
+            allocate(Math.max(size, expectedClubs * 2));
+        }
+        else
+        {
+            Arrays.fill(bits, 0);
+        }
+        names = 0;
+        staleNames = 0;
+        for(int i = 0; i < size; i++)
+        {
+            put(store.getClubName(i));
+        }
+        rebuildCount++;
+    }
+
+    @Override
+    public void clubAdded(Club club)
+    {
+        put(club.getClubName());
+        if(names > expectedClubs)
+        {
+            rebuildFromStore();
+        }
+    }
+
+    @Override
+    public void clubRemoved(Club club)
+    {
+        stale();
+    }
+
+    @Override
+    public void clubRenamed(Club club, String oldClubName)
+    {
+        put(club.getClubName());
+        stale();
+    }
+
+    @Override
+    public void batchStarted()
+    {
+        inBatch = true;
+    }
+
+    @Override
+    public void batchFinished()
+    {
+        inBatch = false;
+        if(names > expectedClubs || tooStale())
+        {
+            rebuildFromStore();
+        }
+    }
+
+    @Override
+    public void cleared()
+    {
+        Arrays.fill(bits, 0);
+        names = 0;
+        staleNames = 0;
+    }
+
+    @Override
+    public double getGarbageRatio()
+    {
+        return (double) staleNames / Math.max(1, names);
+    }
+
+    /**
+     * Creates an empty filter with the same settings, sized for the clubs
+     * stored now if they outnumber the expected clubs.
+     *
+     * @return the empty copy
+     */
+    @Override
+    public ClubNameBloomFilter emptyCopy()
+    {
+        return new ClubNameBloomFilter(Math.max(expectedClubs, store == null ? 0 : store.size()), falsePositiveRate, staleRatio);
+    }
+
+    @Override
+    public void takeOver(ClubNameBloomFilter copy)
+    {
+        expectedClubs = copy.expectedClubs;
+        bits = copy.bits;
+        mask = copy.mask;
+        hashCount = copy.hashCount;
+        names = copy.names;
+        staleNames = copy.staleNames;
+        rebuildCount++;
+    }
+
+    /**
+     * Returns the number of bits of the filter.
+     *
+     * @return the number of bits
+     */
+    public int getBitCount()
+    {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of bits set for every name.
+     *
+     * @return the number of hash functions
+     */
+    public int getHashCount()
+    {
+        return hashCount;
+    }
+
+    /**
+     * Returns the number of names added since the last rebuild that no longer belong to a stored club.
+     *
+     * @return the number of stale names
+     */
+    public int getStaleNames()
+    {
+        return staleNames;
+    }
+
+    /**
+     * Returns how often the filter was built from the store.
+     *
+     * @return the number of rebuilds
+     */
+    public int getRebuildCount()
+    {
+        return rebuildCount;
+    }
+
+    private void put(String clubName)
+    {
+        if(clubName == null)
+        {
+            return;
+        }
+        int hash = ClubNames.mix(ClubNames.hash(clubName));
+        int step = ClubNames.mix(hash + 0x9E3779B9) | 1;
+        for(int i = 0; i < hashCount; i++)
+        {
+            int bit = hash & mask;
+            bits[bit >>> 6] |= 1L << bit;
+            hash += step;
+        }
+        names++;
+    }
+
+    private void stale()
+    {
+        staleNames++;
+        if(tooStale())
+        {
+            rebuildFromStore();
+        }
+    }
+
+    private boolean tooStale()
+    {
+        return staleNames > 0 && staleNames >= Math.max(1, (int) (names * staleRatio));
+    }
+
+    private void rebuildFromStore()
+    {
+        if(store != null && !inBatch)
+        {
+            rebuild(store);
+        }
+    }
+
+    /**
+     * Sizes the filter for a number of names at the false positive rate.
+     */
+    private void allocate(int expected)
+    {
+        expectedClubs = Math.max(1, expected);
+        double optimalBits = -expectedClubs * Math.log(falsePositiveRate) / (LN2 * LN2);
+        long roundedBits = Long.highestOneBit(Math.max(64, (long) Math.ceil(optimalBits)) - 1) << 1;
+        int bitCount = (int) Math.min(1 << 30, roundedBits);
+        bits = new long[bitCount >>> 6];
+        mask = bitCount - 1;
+        hashCount = Math.max(1, Math.min(MAX_HASHES, (int) Math.round((double) bitCount / expectedClubs * LN2)));
+    }
+}
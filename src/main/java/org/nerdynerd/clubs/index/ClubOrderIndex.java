@@ -0,0 +1,175 @@
+package org.nerdynerd.clubs.index;
+
+import com.sun.istack.internal.Nullable;
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubNames;
+import org.nerdynerd.clubs.sort.ClubSortOrder;
+import org.nerdynerd.clubs.storage.ClubStore;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The stored clubs ordered by a {@link ClubSortOrder}, for reading them
+ * page by page.
+ * <p>
+ * Clubs are held in a skip list keyed by their extracted sort keys, with
+ * ties broken by the normalized club name, so every club has a unique
+ * position. Reading a page after a {@link ClubCursor} seeks to the cursor
+ * and walks forward, which takes {@code O(log n + page size)} however deep
+ * the page is. A club whose keys change is moved to its new position.
+ */
+public class ClubOrderIndex implements ClubIndex
+{
+    private final ClubSortOrder order;
+
+    private final ConcurrentSkipListMap<ClubCursor, Club> clubs;
+
+    private final Map<String, ClubCursor> positions = new HashMap<>();
+
+    /**
+     * Instantiates a new Club order index.
+     *
+     * @param order the sort order
+     */
+    public ClubOrderIndex(ClubSortOrder order)
+    {
+        this.order = order;
+        this.clubs = new ConcurrentSkipListMap<>(this::compare);
+    }
+
+    /**
+     * Gets the sort order of this index.
+     *
+     * @return the sort order
+     */
+    public ClubSortOrder getOrder()
+    {
+        return order;
+    }
+
+    /**
+     * Returns the number of indexed clubs.
+     *
+     * @return the number of clubs
+     */
+    public int size()
+    {
+        return clubs.size();
+    }
+
+    /**
+     * Reads the clubs following a cursor, in order.
+     *
+     * @param after    the cursor to continue from, or null to start with the first club
+     * @param pageSize the largest number of clubs to read
+     * @param page     the list the clubs are added to
+     * @return the cursor after the last club read, or null if no clubs follow it.
+     * @throws IllegalArgumentException if the cursor belongs to another sort order
+     */
+    @Nullable
+    public ClubCursor page(@Nullable ClubCursor after, int pageSize, List<Club> page)
+    {
+        if(after != null && after.getOrder() != order)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubOrderIndex.page: " + " cursor belongs to another sort order.");
+        }
+        if(pageSize <= 0)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubOrderIndex.page: " + " page size must be greater than zero.");
+        }
+        NavigableMap<ClubCursor, Club> following = after == null ? clubs : clubs.tailMap(after, false);
+        ClubCursor last = null;
+        for(Map.Entry<ClubCursor, Club> entry : following.entrySet())
+        {
+            if(page.size() == pageSize)
+            {
+                return last;
+            }
+            page.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return null;
+    }
+
+    @Override
+    public void rebuild(ClubStore store)
+    {
+        cleared();
+        for(int i = 0; i < store.size(); i++)
+        {
+            clubAdded(store.get(i));
+        }
+    }
+
+    @Override
+    public void clubAdded(Club club)
+    {
+        ClubCursor position = positionOf(club, ClubNames.normalize(club.getClubName()));
+        positions.put(position.getNormalizedName(), position);
+        clubs.put(position, club);
+    }
+
+    @Override
+    public void clubRemoved(Club club)
+    {
+        ClubCursor position = positions.remove(ClubNames.normalize(club.getClubName()));
+        if(position != null)
+        {
+            clubs.remove(position);
+        }
+    }
+
+    @Override
+    public void memberNumberChanged(Club club, int oldMemberNumber, int newMemberNumber)
+    {
+        reposition(club.getClubName(), club);
+    }
+
+    @Override
+    public void clubRenamed(Club club, String oldClubName)
+    {
+        reposition(oldClubName, club);
+    }
+
+    @Override
+    public void clubPresidentChanged(Club club)
+    {
+        reposition(club.getClubName(), club);
+    }
+
+    @Override
+    public void cleared()
+    {
+        clubs.clear();
+        positions.clear();
+    }
+
+    /**
+     * Moves a club whose keys or name may have changed to its new position.
+     */
+    private void reposition(String oldClubName, Club changed)
+    {
+        ClubCursor old = oldClubName == null ? null : positions.remove(ClubNames.normalize(oldClubName));
+        Club club = old == null ? changed : clubs.remove(old);
+        if(club == null)
+        {
+            club = changed;
+        }
+        clubAdded(club);
+    }
+
+    private ClubCursor positionOf(Club club, String normalizedName)
+    {
+        return new ClubCursor(order, order.extractKeys(club), normalizedName);
+    }
+
+    private int compare(ClubCursor first, ClubCursor second)
+    {
+        int result = order.compareKeys(first.getKeys(), second.getKeys());
+        return result != 0 ? result : first.getNormalizedName().compareTo(second.getNormalizedName());
+    }
+}
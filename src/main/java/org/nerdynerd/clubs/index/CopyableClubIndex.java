@@ -0,0 +1,29 @@
+package org.nerdynerd.clubs.index;
+
+/**
+ * An index that can be built again without holding the lock of the
+ * {@link org.nerdynerd.clubs.ClubManagement}: an empty copy receives the
+ * clubs of a version and the changes made since, and then replaces the
+ * content of the index. A copy never reads a store, so indexes holding
+ * the stored clubs themselves cannot be copyable.
+ *
+ * @param <T> the type of the index and its copies
+ */
+public interface CopyableClubIndex<T extends CopyableClubIndex<T>> extends ClubIndex
+{
+    /**
+     * Creates an empty index of the same kind and settings.
+     *
+     * @return the empty copy
+     */
+    T emptyCopy();
+
+    /**
+     * Replaces the content of this index with the content of a copy
+     * created by {@link #emptyCopy()} and brought up to date with the
+     * stored clubs.
+     *
+     * @param copy the copy
+     */
+    void takeOver(T copy);
+}
@@ -0,0 +1,465 @@
+package org.nerdynerd.clubs.index;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubNames;
+import org.nerdynerd.clubs.codec.Encodings;
+import org.nerdynerd.clubs.storage.ClubStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * The history of the member count of every club, recorded as clubs are
+ * added and their member count changes.
+ * <p>
+ * The history of a club is an append-only list of samples, each a time and
+ * the member count from then on. Samples are stored as the difference to
+ * the previous sample, time in units of the resolution and member count
+ * zigzag encoded, each as a variable-length number of seven bits per byte.
+ * A daily sample of a slowly changing club thus takes four bytes, and a
+ * sample is only recorded when the member count changes. Every
+ * {@value #CHECKPOINT_INTERVAL}th sample is also kept in full as a
+ * checkpoint, so the member count at any time is found by a binary search
+ * over the checkpoints and decoding at most {@value #CHECKPOINT_INTERVAL}
+ * samples.
+ * <p>
+ * Histories are kept by club name, ignoring case and surrounding
+ * whitespace, and outlive their clubs: a removed club keeps its history
+ * until it is {@linkplain #forget(String) forgotten}, and a club added
+ * again under the same name continues it. A club renamed with
+ * {@link Club#setClubName(String)} takes its history along, and so does
+ * a club renamed by an update or a transaction, which is reported as the
+ * removal of the club and the addition of a club with the same id in one
+ * batch.
+ */
+public class MembershipHistory implements ClubIndex
+{
+    /**
+     * The number of samples between two checkpoints.
+     */
+    public static final int CHECKPOINT_INTERVAL = 32;
+
+    private final LongSupplier clock;
+
+    private final long resolutionMillis;
+
+    private final Map<String, History> histories = new HashMap<>();
+
+    /**
+     * The histories of the clubs removed in the current batch, taken out
+     * until the end of the batch in case a club with the same id is added.
+     */
+    private final List<Detached> detached = new ArrayList<>();
+
+    private boolean inBatch;
+
+    /**
+     * Instantiates a new Membership history, recording the system time
+     * in seconds.
+     */
+    public MembershipHistory()
+    {
+        this(System::currentTimeMillis, 1000);
+    }
+
+    /**
+     * Instantiates a new Membership history.
+     *
+     * @param clock            the clock giving the time of changes, in milliseconds
+     * @param resolutionMillis the resolution times are recorded at; times are rounded down to it
+     */
+    public MembershipHistory(LongSupplier clock, long resolutionMillis)
+    {
+        if(resolutionMillis < 1)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on MembershipHistory.MembershipHistory: " + " resolution must be at least one millisecond.");
+        }
+        this.clock = clock;
+        this.resolutionMillis = resolutionMillis;
+    }
+
+    /**
+     * Records the current member count of every club. Histories cannot be
+     * derived from the clubs, so existing histories are kept.
+     *
+     * @param store the store holding the clubs
+     */
+    @Override
+    public synchronized void rebuild(ClubStore store)
+    {
+        long time = clock.getAsLong();
+        for(int i = 0; i < store.size(); i++)
+        {
+            String clubName = store.getClubName(i);
+            if(clubName != null)
+            {
+                append(clubName, time, store.getMemberNumber(i), false);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clubAdded(Club club)
+    {
+        if(club.getClubName() == null)
+        {
+            return;
+        }
+        if(!detached.isEmpty())
+        {
+            attach(club);
+        }
+        append(club.getClubName(), clock.getAsLong(), club.getMemberNumber(), false);
+    }
+
+    @Override
+    public synchronized void clubRemoved(Club club)
+    {
+        if(!inBatch || club.getClubName() == null)
+        {
+            return;
+        }
+        String normalizedName = ClubNames.normalize(club.getClubName());
+        History history = histories.remove(normalizedName);
+        if(history != null)
+        {
+            detached.add(new Detached(club.getId(), normalizedName, history));
+        }
+    }
+
+    @Override
+    public synchronized void memberNumberChanged(Club club, int oldMemberNumber, int newMemberNumber)
+    {
+        if(club.getClubName() != null)
+        {
+            append(club.getClubName(), clock.getAsLong(), newMemberNumber, false);
+        }
+    }
+
+    @Override
+    public synchronized void clubRenamed(Club club, String oldClubName)
+    {
+        if(oldClubName == null || club.getClubName() == null)
+        {
+            return;
+        }
+        History history = histories.remove(ClubNames.normalize(oldClubName));
+        if(history != null)
+        {
+            histories.put(ClubNames.normalize(club.getClubName()), history);
+        }
+    }
+
+    @Override
+    public synchronized void batchStarted()
+    {
+        inBatch = true;
+    }
+
+    /**
+     * Puts the histories of clubs removed in the batch, and not taken over
+     * by a club added with the same id, back under their names.
+     */
+    @Override
+    public synchronized void batchFinished()
+    {
+        inBatch = false;
+        for(Detached removed : detached)
+        {
+            histories.putIfAbsent(removed.normalizedName, removed.history);
+        }
+        detached.clear();
+    }
+
+    /**
+     * Keeps all histories; see {@link #forget(String)}.
+     */
+    @Override
+    public void cleared()
+    {
+    }
+
+    /**
+     * Records a sample, such as one taken from an earlier record of the club.
+     * Samples of a club must be recorded in time order.
+     *
+     * @param clubName     the club name
+     * @param timeMillis   the time of the sample
+     * @param memberNumber the member count from then on
+     * @throws IllegalArgumentException if the club has a later sample already
+     */
+    public synchronized void record(String clubName, long timeMillis, int memberNumber)
+    {
+        append(clubName, timeMillis, memberNumber, true);
+    }
+
+    /**
+     * Returns the member count of a club at a time.
+     *
+     * @param clubName   the club name
+     * @param timeMillis the time
+     * @return the member count at that time, or -1 if the club has no sample at or before it.
+     */
+    public synchronized int getMemberNumberAt(String clubName, long timeMillis)
+    {
+        History history = histories.get(ClubNames.normalize(clubName));
+        return history == null ? -1 : history.memberNumberAt(Math.floorDiv(timeMillis, resolutionMillis));
+    }
+
+    /**
+     * Returns by how many members a club grew between two times, counting
+     * a club without a sample at the first time as having had no members.
+     *
+     * @param clubName the club name
+     * @param fromMillis the start of the range
+     * @param toMillis   the end of the range
+     * @return the member count at the end minus the member count at the start, negative if the club shrank
+     */
+    public synchronized int getGrowth(String clubName, long fromMillis, long toMillis)
+    {
+        History history = histories.get(ClubNames.normalize(clubName));
+        if(history == null)
+        {
+            return 0;
+        }
+        int from = history.memberNumberAt(Math.floorDiv(fromMillis, resolutionMillis));
+        int to = history.memberNumberAt(Math.floorDiv(toMillis, resolutionMillis));
+        return Math.max(0, to) - Math.max(0, from);
+    }
+
+    /**
+     * Returns the number of samples recorded for a club.
+     *
+     * @param clubName the club name
+     * @return the number of samples
+     */
+    public synchronized int getSampleCount(String clubName)
+    {
+        History history = histories.get(ClubNames.normalize(clubName));
+        return history == null ? 0 : history.samples;
+    }
+
+    /**
+     * Returns the number of bytes taken by the samples and checkpoints of
+     * all histories, not counting the map from club names to histories.
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getHistoryBytes()
+    {
+        long bytes = 0;
+        for(History history : histories.values())
+        {
+            bytes += history.data.length + (long) history.checkpointTimes.length * (8 + 4 + 4);
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops the history of a club.
+     *
+     * @param clubName the club name
+     * @return true if the club had a history
+     */
+    public synchronized boolean forget(String clubName)
+    {
+        return histories.remove(ClubNames.normalize(clubName)) != null;
+    }
+
+    /**
+     * Shrinks the arrays of all histories to the space they use,
+     * such as after recording a long history at once.
+     */
+    public synchronized void trimToSize()
+    {
+        for(History history : histories.values())
+        {
+            history.trimToSize();
+        }
+    }
+
+    /**
+     * Gives an added club the history of a club removed in the same batch,
+     * the one with the same id if any, else the one with the same name.
+     */
+    private void attach(Club club)
+    {
+        String normalizedName = ClubNames.normalize(club.getClubName());
+        int match = -1;
+        for(int i = 0; i < detached.size(); i++)
+        {
+            Detached removed = detached.get(i);
+            if(removed.id == club.getId())
+            {
+                match = i;
+                break;
+            }
+            if(match < 0 && removed.normalizedName.equals(normalizedName))
+            {
+                match = i;
+            }
+        }
+        if(match >= 0)
+        {
+            histories.put(normalizedName, detached.remove(match).history);
+        }
+    }
+
+    private void append(String clubName, long timeMillis, int memberNumber, boolean strict)
+    {
+        String normalizedName = ClubNames.normalize(clubName);
+        History history = histories.get(normalizedName);
+        if(history == null)
+        {
+            history = new History();
+            histories.put(normalizedName, history);
+        }
+        long time = Math.floorDiv(timeMillis, resolutionMillis);
+        if(history.samples > 0 && time < history.lastTime)
+        {
+            if(strict)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on MembershipHistory.record: " + " club " + clubName + " has a sample later than " + timeMillis + ".");
+            }
+            // the clock went back; keep the history in time order
+            time = history.lastTime;
+        }
+        history.append(time, memberNumber);
+    }
+
+    /**
+     * The history of a club removed in the current batch.
+     */
+    private static final class Detached
+    {
+        final int id;
+
+        final String normalizedName;
+
+        final History history;
+
+        Detached(int id, String normalizedName, History history)
+        {
+            this.id = id;
+            this.normalizedName = normalizedName;
+            this.history = history;
+        }
+    }
+
+    /**
+     * The encoded samples of one club.
+     */
+    private static final class History
+    {
+        byte[] data = new byte[8];
+
+        int length;
+
+        int samples;
+
+        long lastTime;
+
+        int lastMemberNumber;
+
+        long[] checkpointTimes = new long[1];
+
+        int[] checkpointMemberNumbers = new int[1];
+
+        /**
+         * The offset of the sample following each checkpoint.
+         */
+        int[] checkpointOffsets = new int[1];
+
+        int checkpoints;
+
+        void append(long time, int memberNumber)
+        {
+            if(samples > 0 && memberNumber == lastMemberNumber)
+            {
+                return;
+            }
+            writeVarLong(time - lastTime);
+            writeVarLong(Encodings.zigzag(memberNumber - (long) lastMemberNumber));
+            lastTime = time;
+            lastMemberNumber = memberNumber;
+            if(samples % CHECKPOINT_INTERVAL == 0)
+            {
+                if(checkpoints == checkpointTimes.length)
+                {
+                    int grown = checkpoints * 2;
+                    checkpointTimes = Arrays.copyOf(checkpointTimes, grown);
+                    checkpointMemberNumbers = Arrays.copyOf(checkpointMemberNumbers, grown);
+                    checkpointOffsets = Arrays.copyOf(checkpointOffsets, grown);
+                }
+                checkpointTimes[checkpoints] = time;
+                checkpointMemberNumbers[checkpoints] = memberNumber;
+                checkpointOffsets[checkpoints] = length;
+                checkpoints++;
+            }
+            samples++;
+        }
+
+        int memberNumberAt(long time)
+        {
+            int low = 0;
+            int high = checkpoints - 1;
+            int checkpoint = -1;
+            while(low <= high)
+            {
+                int middle = (low + high) >>> 1;
+                if(checkpointTimes[middle] <= time)
+                {
+                    checkpoint = middle;
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle - 1;
+                }
+            }
+            if(checkpoint < 0)
+            {
+                return -1;
+            }
+            long sampleTime = checkpointTimes[checkpoint];
+            long memberNumber = checkpointMemberNumbers[checkpoint];
+            int position = checkpointOffsets[checkpoint];
+            while(position < length)
+            {
+                long delta = Encodings.readVarLong(data, position);
+                if(sampleTime + delta > time)
+                {
+                    break;
+                }
+                position += Encodings.varLongSize(delta);
+                sampleTime += delta;
+                long zigzag = Encodings.readVarLong(data, position);
+                position += Encodings.varLongSize(zigzag);
+                memberNumber += Encodings.unzigzag(zigzag);
+            }
+            return (int) memberNumber;
+        }
+
+        void trimToSize()
+        {
+            data = Arrays.copyOf(data, length);
+            checkpointTimes = Arrays.copyOf(checkpointTimes, Math.max(1, checkpoints));
+            checkpointMemberNumbers = Arrays.copyOf(checkpointMemberNumbers, Math.max(1, checkpoints));
+            checkpointOffsets = Arrays.copyOf(checkpointOffsets, Math.max(1, checkpoints));
+        }
+
+        private void writeVarLong(long value)
+        {
+            if(length + Encodings.MAX_VAR_LONG_SIZE > data.length)
+            {
+                data = Arrays.copyOf(data, Math.max(length + Encodings.MAX_VAR_LONG_SIZE, data.length + (data.length >> 1)));
+            }
+            length = Encodings.writeVarLong(data, length, value);
+        }
+
+    }
+}
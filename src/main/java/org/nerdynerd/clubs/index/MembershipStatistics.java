@@ -0,0 +1,194 @@
+package org.nerdynerd.clubs.index;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.storage.ClubStore;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics over the member counts of all stored clubs: the total, mean,
+ * minimum, maximum and a histogram. The statistics are updated on every
+ * change, so every query takes constant time.
+ * <p>
+ * The histogram has one bucket per power of two: bucket 0 counts clubs
+ * without members, and bucket {@code b} counts clubs with between
+ * {@code 2^(b-1)} and {@code 2^b - 1} members.
+ */
+public class MembershipStatistics implements ClubIndex
+{
+    /**
+     * The number of histogram buckets.
+     */
+    public static final int BUCKETS = Integer.SIZE;
+
+    private final TreeMap<Integer, Integer> clubsByMemberNumber = new TreeMap<>();
+
+    private final long[] histogram = new long[BUCKETS];
+
+    private int numberOfClubs;
+
+    private long totalMembers;
+
+    private int minimum;
+
+    private int maximum;
+
+    @Override
+    public void rebuild(ClubStore store)
+    {
+        cleared();
+        for(int i = 0; i < store.size(); i++)
+        {
+            add(store.getMemberNumber(i));
+        }
+    }
+
+    @Override
+    public void clubAdded(Club club)
+    {
+        add(club.getMemberNumber());
+    }
+
+    @Override
+    public void clubRemoved(Club club)
+    {
+        remove(club.getMemberNumber());
+    }
+
+    @Override
+    public void memberNumberChanged(Club club, int oldMemberNumber, int newMemberNumber)
+    {
+        remove(oldMemberNumber);
+        add(newMemberNumber);
+    }
+
+    @Override
+    public void cleared()
+    {
+        clubsByMemberNumber.clear();
+        Arrays.fill(histogram, 0);
+        numberOfClubs = 0;
+        totalMembers = 0;
+        minimum = 0;
+        maximum = 0;
+    }
+
+    /**
+     * Returns the number of clubs.
+     *
+     * @return the number of clubs
+     */
+    public int getNumberOfClubs()
+    {
+        return numberOfClubs;
+    }
+
+    /**
+     * Returns the number of members of all clubs.
+     *
+     * @return the total number of members
+     */
+    public long getTotalMembers()
+    {
+        return totalMembers;
+    }
+
+    /**
+     * Returns the mean number of members per club.
+     *
+     * @return the mean, or zero if there are no clubs.
+     */
+    public double getMeanMembers()
+    {
+        return numberOfClubs == 0 ? 0 : (double) totalMembers / numberOfClubs;
+    }
+
+    /**
+     * Returns the smallest member count of any club.
+     *
+     * @return the minimum, or zero if there are no clubs.
+     */
+    public int getMinimumMembers()
+    {
+        return minimum;
+    }
+
+    /**
+     * Returns the largest member count of any club.
+     *
+     * @return the maximum, or zero if there are no clubs.
+     */
+    public int getMaximumMembers()
+    {
+        return maximum;
+    }
+
+    /**
+     * Returns a copy of the histogram of member counts.
+     *
+     * @return the number of clubs in each bucket
+     */
+    public long[] getHistogram()
+    {
+        return histogram.clone();
+    }
+
+    /**
+     * Returns the histogram bucket of a member count.
+     *
+     * @param memberNumber the member count
+     * @return the bucket
+     */
+    public static int bucketOf(int memberNumber)
+    {
+        return memberNumber <= 0 ? 0 : Math.min(BUCKETS - 1, BUCKETS - Integer.numberOfLeadingZeros(memberNumber));
+    }
+
+    private void add(int memberNumber)
+    {
+        clubsByMemberNumber.merge(memberNumber, 1, Integer::sum);
+        histogram[bucketOf(memberNumber)]++;
+        if(numberOfClubs == 0 || memberNumber < minimum)
+        {
+            minimum = memberNumber;
+        }
+        if(numberOfClubs == 0 || memberNumber > maximum)
+        {
+            maximum = memberNumber;
+        }
+        numberOfClubs++;
+        totalMembers += memberNumber;
+    }
+
+    private void remove(int memberNumber)
+    {
+        Integer count = clubsByMemberNumber.get(memberNumber);
+        if(count == null)
+        {
+            return;
+        }
+        if(count == 1)
+        {
+            clubsByMemberNumber.remove(memberNumber);
+        }
+        else
+        {
+            clubsByMemberNumber.put(memberNumber, count - 1);
+        }
+        histogram[bucketOf(memberNumber)]--;
+        numberOfClubs--;
+        totalMembers -= memberNumber;
+        if(numberOfClubs == 0)
+        {
+            minimum = 0;
+            maximum = 0;
+            return;
+        }
+        Map.Entry<Integer, Integer> first = clubsByMemberNumber.firstEntry();
+        Map.Entry<Integer, Integer> last = clubsByMemberNumber.lastEntry();
+        minimum = first.getKey();
+        maximum = last.getKey();
+    }
+}
@@ -0,0 +1,126 @@
+package org.nerdynerd.clubs.io;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+import org.nerdynerd.clubs.codec.Encodings;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Exports clubs in a compact binary format.
+ * <p>
+ * The export starts with the four bytes {@code CLBX} and a version byte.
+ * Every club follows as the byte {@value #CLUB}, then its id, member count
+ * and name, and a flags byte telling whether a president, a start date
+ * and an end date follow. The export ends with the byte {@value #END}.
+ * <p>
+ * Numbers are variable-length, seven bits per byte, with ids and dates
+ * zigzag encoded so small negative values stay short. Strings are their
+ * UTF-8 length plus one followed by their bytes, and a null string is a
+ * length of zero.
+ */
+public class BinaryClubExporter extends ClubExporter
+{
+    /**
+     * The version of the format written by this exporter.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The byte preceding every club.
+     */
+    public static final int CLUB = 1;
+
+    /**
+     * The byte following the last club.
+     */
+    public static final int END = 0;
+
+    /**
+     * Flag set if the club has a president.
+     */
+    public static final int HAS_PRESIDENT = 1;
+
+    /**
+     * Flag set if the president has a start date.
+     */
+    public static final int HAS_START_DATE = 2;
+
+    /**
+     * Flag set if the president has an end date.
+     */
+    public static final int HAS_END_DATE = 4;
+
+    /**
+     * Instantiates a new uncompressed Binary club exporter.
+     */
+    public BinaryClubExporter()
+    {
+        this(false);
+    }
+
+    /**
+     * Instantiates a new Binary club exporter.
+     *
+     * @param gzip true to compress the export with gzip
+     */
+    public BinaryClubExporter(boolean gzip)
+    {
+        super(gzip);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException
+    {
+        writeAscii("CLBX");
+        writeByte(VERSION);
+    }
+
+    @Override
+    protected void writeClub(Club club) throws IOException
+    {
+        writeByte(CLUB);
+        writeVarLong(Encodings.zigzag(club.getId()));
+        writeVarLong(club.getMemberNumber() & 0xFFFFFFFFL);
+        writeString(club.getClubName());
+        ClubPresident clubPresident = club.getClubPresident();
+        if(clubPresident == null)
+        {
+            writeByte(0);
+            return;
+        }
+        Date startDate = clubPresident.getStartDate();
+        Date endDate = clubPresident.getEndDate();
+        writeByte(HAS_PRESIDENT | (startDate == null ? 0 : HAS_START_DATE) | (endDate == null ? 0 : HAS_END_DATE));
+        writeVarLong(Encodings.zigzag(clubPresident.getId()));
+        writeString(clubPresident.getFirstName());
+        writeVarLong(clubPresident.getMiddleInitial());
+        writeString(clubPresident.getLastName());
+        if(startDate != null)
+        {
+            writeVarLong(Encodings.zigzag(startDate.getTime()));
+        }
+        if(endDate != null)
+        {
+            writeVarLong(Encodings.zigzag(endDate.getTime()));
+        }
+    }
+
+    @Override
+    protected void writeFooter() throws IOException
+    {
+        writeByte(END);
+    }
+
+    private void writeString(String value) throws IOException
+    {
+        if(value == null)
+        {
+            writeVarLong(0);
+            return;
+        }
+        writeVarLong(Encodings.utf8Length(value) + 1L);
+        writeUtf8(value);
+    }
+}
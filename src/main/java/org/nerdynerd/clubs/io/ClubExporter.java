@@ -0,0 +1,267 @@
+package org.nerdynerd.clubs.io;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.codec.Encodings;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams clubs and their presidents to a {@link WritableByteChannel}.
+ * <p>
+ * An exporter encodes every club straight into a direct buffer, which is
+ * written to the channel whenever it fills up, so exporting any number of
+ * clubs takes the same memory and no string is built per club. Text is
+ * encoded to UTF-8 one code point at a time, and numbers digit by digit.
+ * The buffer is kept for the next export, so an exporter must not be used
+ * by two threads at once. The channel is not closed by an export.
+ *
+ * @see CsvClubExporter
+ * @see JsonLinesClubExporter
+ * @see BinaryClubExporter
+ */
+public abstract class ClubExporter
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int LONGEST_NUMBER = 20;
+
+    private final boolean gzip;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private final byte[] digits = new byte[LONGEST_NUMBER];
+
+    private WritableByteChannel channel;
+
+    /**
+     * Instantiates a new Club exporter.
+     *
+     * @param gzip true to compress the export with gzip
+     */
+    protected ClubExporter(boolean gzip)
+    {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Returns if exports are compressed with gzip.
+     *
+     * @return true if exports are compressed
+     */
+    public boolean isGzip()
+    {
+        return gzip;
+    }
+
+    /**
+     * Exports clubs to a channel.
+     *
+     * @param clubs   the clubs, such as a {@link org.nerdynerd.clubs.ClubManagement}
+     * @param channel the channel written to
+     * @return the number of exported clubs
+     * @throws IOException if the channel cannot be written
+     */
+    public long export(Iterable<? extends Club> clubs, WritableByteChannel channel) throws IOException
+    {
+        GZIPOutputStream compressed = null;
+        if(gzip)
+        {
+            compressed = new GZIPOutputStream(uncloseable(Channels.newOutputStream(channel)), BUFFER_SIZE);
+            channel = Channels.newChannel(compressed);
+        }
+        this.channel = channel;
+        buffer.clear();
+        long count = 0;
+        try
+        {
+            writeHeader();
+            for(Club club : clubs)
+            {
+                writeClub(club);
+                count++;
+            }
+            writeFooter();
+            flush();
+            // closing the gzip stream writes its trailer but leaves the channel open
+            if(compressed != null)
+            {
+                compressed.close();
+            }
+        }
+        finally
+        {
+            this.channel = null;
+        }
+        return count;
+    }
+
+    /**
+     * Writes what precedes the first club. Writes nothing by default.
+     *
+     * @throws IOException if the channel cannot be written
+     */
+    protected void writeHeader() throws IOException
+    {
+    }
+
+    /**
+     * Writes one club and its president.
+     *
+     * @param club the club
+     * @throws IOException if the channel cannot be written
+     */
+    protected abstract void writeClub(Club club) throws IOException;
+
+    /**
+     * Writes what follows the last club. Writes nothing by default.
+     *
+     * @throws IOException if the channel cannot be written
+     */
+    protected void writeFooter() throws IOException
+    {
+    }
+
+    /**
+     * Writes a byte.
+     *
+     * @param b the byte
+     * @throws IOException if the channel cannot be written
+     */
+    protected final void writeByte(int b) throws IOException
+    {
+        ensure(1);
+        buffer.put((byte) b);
+    }
+
+    /**
+     * Writes a string of ASCII characters, such as a field name.
+     *
+     * @param ascii the characters
+     * @throws IOException if the channel cannot be written
+     */
+    protected final void writeAscii(String ascii) throws IOException
+    {
+        for(int i = 0; i < ascii.length(); i++)
+        {
+            writeByte(ascii.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a string as UTF-8.
+     *
+     * @param text the string
+     * @throws IOException if the channel cannot be written
+     */
+    protected final void writeUtf8(String text) throws IOException
+    {
+        for(int i = 0; i < text.length(); )
+        {
+            int codePoint = text.codePointAt(i);
+            writeCodePoint(codePoint);
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    /**
+     * Writes a code point as UTF-8.
+     *
+     * @param codePoint the code point
+     * @throws IOException if the channel cannot be written
+     */
+    protected final void writeCodePoint(int codePoint) throws IOException
+    {
+        ensure(Encodings.MAX_CODE_POINT_SIZE);
+        Encodings.writeCodePoint(buffer, codePoint);
+    }
+
+    /**
+     * Writes a number in decimal.
+     *
+     * @param value the number
+     * @throws IOException if the channel cannot be written
+     */
+    protected final void writeDecimal(long value) throws IOException
+    {
+        ensure(LONGEST_NUMBER);
+        if(value == Long.MIN_VALUE)
+        {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if(value < 0)
+        {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int count = 0;
+        do
+        {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        while(value != 0);
+        while(count > 0)
+        {
+            buffer.put(digits[--count]);
+        }
+    }
+
+    /**
+     * Writes an unsigned variable-length number, seven bits per byte,
+     * lowest bits first, with the high bit set on all but the last byte.
+     *
+     * @param value the number, treated as unsigned
+     * @throws IOException if the channel cannot be written
+     */
+    protected final void writeVarLong(long value) throws IOException
+    {
+        ensure(Encodings.MAX_VAR_LONG_SIZE);
+        Encodings.writeVarLong(buffer, value);
+    }
+
+    private void ensure(int bytes) throws IOException
+    {
+        if(buffer.remaining() < bytes)
+        {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Keeps the gzip stream from closing the channel of the caller.
+     */
+    private static OutputStream uncloseable(OutputStream out)
+    {
+        return new FilterOutputStream(out)
+        {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException
+            {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,123 @@
+package org.nerdynerd.clubs.io;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Exports clubs as comma separated values, one club per line after a
+ * header line. Values containing commas, quotes or line breaks are quoted
+ * as described in RFC 4180. Clubs without a president leave the president
+ * columns empty, and dates are written as ISO-8601 instants.
+ */
+public class CsvClubExporter extends ClubExporter
+{
+    private static final String HEADER = "id,club_name,member_number,president_id,president_first_name,"
+            + "president_middle_initial,president_last_name,president_start_date,president_end_date\r\n";
+
+    /**
+     * Instantiates a new uncompressed Csv club exporter.
+     */
+    public CsvClubExporter()
+    {
+        this(false);
+    }
+
+    /**
+     * Instantiates a new Csv club exporter.
+     *
+     * @param gzip true to compress the export with gzip
+     */
+    public CsvClubExporter(boolean gzip)
+    {
+        super(gzip);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException
+    {
+        writeAscii(HEADER);
+    }
+
+    @Override
+    protected void writeClub(Club club) throws IOException
+    {
+        writeDecimal(club.getId());
+        writeByte(',');
+        writeValue(club.getClubName());
+        writeByte(',');
+        writeDecimal(club.getMemberNumber());
+        writeByte(',');
+        ClubPresident clubPresident = club.getClubPresident();
+        if(clubPresident == null)
+        {
+            writeAscii(",,,,,");
+        }
+        else
+        {
+            writeDecimal(clubPresident.getId());
+            writeByte(',');
+            writeValue(clubPresident.getFirstName());
+            writeByte(',');
+            if(clubPresident.getMiddleInitial() != 0)
+            {
+                writeValue(String.valueOf(clubPresident.getMiddleInitial()));
+            }
+            writeByte(',');
+            writeValue(clubPresident.getLastName());
+            writeByte(',');
+            writeDate(clubPresident.getStartDate());
+            writeByte(',');
+            writeDate(clubPresident.getEndDate());
+        }
+        writeAscii("\r\n");
+    }
+
+    private void writeDate(Date date) throws IOException
+    {
+        if(date != null)
+        {
+            writeAscii(date.toInstant().toString());
+        }
+    }
+
+    private void writeValue(String value) throws IOException
+    {
+        if(value == null)
+        {
+            return;
+        }
+        if(!needsQuotes(value))
+        {
+            writeUtf8(value);
+            return;
+        }
+        writeByte('"');
+        for(int i = 0; i < value.length(); )
+        {
+            int codePoint = value.codePointAt(i);
+            if(codePoint == '"')
+            {
+                writeByte('"');
+            }
+            writeCodePoint(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        writeByte('"');
+    }
+
+    private static boolean needsQuotes(String value)
+    {
+        for(int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if(c == ',' || c == '"' || c == '\r' || c == '\n')
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
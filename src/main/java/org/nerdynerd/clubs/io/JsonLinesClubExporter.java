@@ -0,0 +1,130 @@
+package org.nerdynerd.clubs.io;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Exports clubs as JSON lines: one JSON object per club, each on its own line.
+ * <pre>
+ * {"id":1,"clubName":"Chess club","memberNumber":12,"president":{"id":3,"firstName":"Anna",
+ *  "middleInitial":"M","lastName":"Smith","startDate":"2019-01-01T00:00:00Z","endDate":null}}
+ * </pre>
+ * A club without a president has a {@code null} president, and dates are
+ * written as ISO-8601 instants.
+ */
+public class JsonLinesClubExporter extends ClubExporter
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Instantiates a new uncompressed Json lines club exporter.
+     */
+    public JsonLinesClubExporter()
+    {
+        this(false);
+    }
+
+    /**
+     * Instantiates a new Json lines club exporter.
+     *
+     * @param gzip true to compress the export with gzip
+     */
+    public JsonLinesClubExporter(boolean gzip)
+    {
+        super(gzip);
+    }
+
+    @Override
+    protected void writeClub(Club club) throws IOException
+    {
+        writeAscii("{\"id\":");
+        writeDecimal(club.getId());
+        writeAscii(",\"clubName\":");
+        writeString(club.getClubName());
+        writeAscii(",\"memberNumber\":");
+        writeDecimal(club.getMemberNumber());
+        writeAscii(",\"president\":");
+        ClubPresident clubPresident = club.getClubPresident();
+        if(clubPresident == null)
+        {
+            writeAscii("null");
+        }
+        else
+        {
+            writeAscii("{\"id\":");
+            writeDecimal(clubPresident.getId());
+            writeAscii(",\"firstName\":");
+            writeString(clubPresident.getFirstName());
+            writeAscii(",\"middleInitial\":");
+            writeString(clubPresident.getMiddleInitial() == 0 ? null : String.valueOf(clubPresident.getMiddleInitial()));
+            writeAscii(",\"lastName\":");
+            writeString(clubPresident.getLastName());
+            writeAscii(",\"startDate\":");
+            writeDate(clubPresident.getStartDate());
+            writeAscii(",\"endDate\":");
+            writeDate(clubPresident.getEndDate());
+            writeByte('}');
+        }
+        writeAscii("}\n");
+    }
+
+    private void writeDate(Date date) throws IOException
+    {
+        if(date == null)
+        {
+            writeAscii("null");
+            return;
+        }
+        writeByte('"');
+        writeAscii(date.toInstant().toString());
+        writeByte('"');
+    }
+
+    private void writeString(String value) throws IOException
+    {
+        if(value == null)
+        {
+            writeAscii("null");
+            return;
+        }
+        writeByte('"');
+        for(int i = 0; i < value.length(); )
+        {
+            int codePoint = value.codePointAt(i);
+            switch(codePoint)
+            {
+                case '"':
+                    writeAscii("\\\"");
+                    break;
+                case '\\':
+                    writeAscii("\\\\");
+                    break;
+                case '\n':
+                    writeAscii("\\n");
+                    break;
+                case '\r':
+                    writeAscii("\\r");
+                    break;
+                case '\t':
+                    writeAscii("\\t");
+                    break;
+                default:
+                    if(codePoint < 0x20)
+                    {
+                        writeAscii("\\u00");
+                        writeByte(HEX[codePoint >>> 4]);
+                        writeByte(HEX[codePoint & 0xF]);
+                    }
+                    else
+                    {
+                        writeCodePoint(codePoint);
+                    }
+            }
+            i += Character.charCount(codePoint);
+        }
+        writeByte('"');
+    }
+}
@@ -0,0 +1,23 @@
+package org.nerdynerd.clubs.journal;
+
+import java.util.List;
+
+/**
+ * Receives every change to the clubs of a {@link org.nerdynerd.clubs.ClubManagement}.
+ * <p>
+ * The club management appends each change, or all changes of a committed
+ * {@link org.nerdynerd.clubs.ClubTransaction}, as one batch while holding
+ * its lock, so batches arrive in the order they were applied and a batch
+ * is never interleaved with another. The order of the clubs, as changed
+ * by sorting, is not journaled.
+ */
+public interface ClubJournal
+{
+    /**
+     * Appends a batch of mutations.
+     *
+     * @param version   the version of the club management after the batch
+     * @param mutations the mutations, in the order they were applied
+     */
+    void append(long version, List<ClubMutation> mutations);
+}
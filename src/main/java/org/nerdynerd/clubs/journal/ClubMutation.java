@@ -0,0 +1,135 @@
+package org.nerdynerd.clubs.journal;
+
+import com.sun.istack.internal.Nullable;
+import org.nerdynerd.clubs.ClubRecord;
+
+/**
+ * One change to the clubs of a {@link org.nerdynerd.clubs.ClubManagement},
+ * as recorded in a {@link ClubJournal}. Replaying the mutations of a journal
+ * in order on an empty club management reproduces its clubs.
+ */
+public final class ClubMutation
+{
+    /**
+     * The kind of a mutation.
+     */
+    public enum Type
+    {
+        /**
+         * A club was added.
+         */
+        ADD,
+
+        /**
+         * A club was removed.
+         */
+        REMOVE,
+
+        /**
+         * A stored club was changed, and possibly renamed.
+         */
+        UPDATE,
+
+        /**
+         * All clubs were removed.
+         */
+        CLEAR
+    }
+
+    private static final ClubMutation CLEARED = new ClubMutation(Type.CLEAR, null, null);
+
+    private final Type type;
+
+    private final String clubName;
+
+    private final ClubRecord club;
+
+    private ClubMutation(Type type, String clubName, ClubRecord club)
+    {
+        this.type = type;
+        this.clubName = clubName;
+        this.club = club;
+    }
+
+    /**
+     * Returns the mutation adding a club.
+     *
+     * @param club the added club
+     * @return the mutation
+     */
+    public static ClubMutation added(ClubRecord club)
+    {
+        return new ClubMutation(Type.ADD, club.getClubName(), club);
+    }
+
+    /**
+     * Returns the mutation removing a club.
+     *
+     * @param clubName the name of the removed club
+     * @return the mutation
+     */
+    public static ClubMutation removed(String clubName)
+    {
+        return new ClubMutation(Type.REMOVE, clubName, null);
+    }
+
+    /**
+     * Returns the mutation changing a club.
+     *
+     * @param clubName the name of the club before the change
+     * @param club     the club after the change
+     * @return the mutation
+     */
+    public static ClubMutation updated(String clubName, ClubRecord club)
+    {
+        return new ClubMutation(Type.UPDATE, clubName, club);
+    }
+
+    /**
+     * Returns the mutation removing all clubs.
+     *
+     * @return the mutation
+     */
+    public static ClubMutation cleared()
+    {
+        return CLEARED;
+    }
+
+    /**
+     * Gets the kind of this mutation.
+     *
+     * @return the type
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Gets the name of the club this mutation applies to, before the mutation.
+     *
+     * @return the club name, or null for {@link Type#CLEAR}.
+     */
+    @Nullable
+    public String getClubName()
+    {
+        return clubName;
+    }
+
+    /**
+     * Gets the club after this mutation.
+     *
+     * @return the club, or null for {@link Type#REMOVE} and {@link Type#CLEAR}.
+     */
+    @Nullable
+    public ClubRecord getClub()
+    {
+        return club;
+    }
+
+    @Override
+    public String toString()
+    {
+        return type + (clubName == null ? "" : " " + clubName);
+    }
+}
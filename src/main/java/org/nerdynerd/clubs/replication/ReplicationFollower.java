@@ -0,0 +1,353 @@
+package org.nerdynerd.clubs.replication;
+
+import org.nerdynerd.clubs.ClubManagement;
+import org.nerdynerd.clubs.ClubRecord;
+import org.nerdynerd.clubs.ClubTransaction;
+import org.nerdynerd.clubs.journal.ClubMutation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Keeps a {@link ClubManagement} a read replica of the club management of a
+ * {@link ReplicationLeader}, applying every batch the leader journals as one
+ * {@link ClubTransaction}.
+ * <p>
+ * The follower connects from its own thread, and reconnects after losing
+ * the connection, telling the leader the last version it applied, so it is
+ * sent only the batches it missed, or a snapshot of all clubs if the leader
+ * no longer has them. A leader sends a heartbeat whenever it has nothing
+ * else to send, so a connection that stays silent for longer than the
+ * timeout is taken as lost, as when the leader machine went away without
+ * closing it. Lookups can be served from the replica at any time,
+ * but it must not be changed other than by the follower. Like on the
+ * leader, a {@link org.nerdynerd.clubs.index.ClubNameBloomFilter} on the
+ * replica saves looking through all clubs for every added club.
+ * <p>
+ * Versions are those of the leader. Replication lag is reported both as a
+ * number of versions and as the time between the leader journaling a batch
+ * and the follower applying it, which assumes the clocks of both machines
+ * agree.
+ */
+public class ReplicationFollower implements Closeable
+{
+    private static final int DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    private final ClubManagement replica;
+
+    private final InetSocketAddress leader;
+
+    private final long retryMillis;
+
+    private final int timeoutMillis;
+
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    private volatile Socket socket;
+
+    private volatile boolean connected;
+
+    private volatile long leaderId;
+
+    private volatile long appliedVersion = -1;
+
+    private volatile long leaderVersion = -1;
+
+    private volatile long lagMillis;
+
+    private volatile long batchesApplied;
+
+    private volatile long snapshotsLoaded;
+
+    /**
+     * Starts following a leader, reconnecting after {@value #DEFAULT_TIMEOUT_MILLIS}
+     * milliseconds without any message from it.
+     *
+     * @param replica     the club management to keep a replica of the leader
+     * @param leader      the address of the leader
+     * @param retryMillis the time to wait before reconnecting to the leader
+     */
+    public ReplicationFollower(ClubManagement replica, InetSocketAddress leader, long retryMillis)
+    {
+        this(replica, leader, retryMillis, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Starts following a leader.
+     *
+     * @param replica       the club management to keep a replica of the leader
+     * @param leader        the address of the leader
+     * @param retryMillis   the time to wait before reconnecting to the leader
+     * @param timeoutMillis the time to connect, and without any message from the leader after which the follower reconnects, best a few heartbeat intervals of the leader
+     */
+    public ReplicationFollower(ClubManagement replica, InetSocketAddress leader, long retryMillis, int timeoutMillis)
+    {
+        if(timeoutMillis < 1)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ReplicationFollower.ReplicationFollower: " + " timeout must be positive.");
+        }
+        this.replica = replica;
+        this.leader = leader;
+        this.retryMillis = retryMillis;
+        this.timeoutMillis = timeoutMillis;
+        thread = new Thread(this::follow, "club-replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the replica.
+     *
+     * @return the club management kept up to date by this follower
+     */
+    public ClubManagement getReplica()
+    {
+        return replica;
+    }
+
+    /**
+     * Returns if the follower is connected to the leader.
+     *
+     * @return true if connected
+     */
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+    /**
+     * Gets the version of the leader that the replica is at.
+     *
+     * @return the applied version, or -1 before the first snapshot was loaded.
+     */
+    public long getAppliedVersion()
+    {
+        return appliedVersion;
+    }
+
+    /**
+     * Gets the latest version the leader reported.
+     *
+     * @return the leader version, or -1 before the leader reported one.
+     */
+    public long getLeaderVersion()
+    {
+        return leaderVersion;
+    }
+
+    /**
+     * Returns how many versions the replica is behind the leader,
+     * as far as the leader last reported.
+     *
+     * @return the version lag
+     */
+    public long getVersionLag()
+    {
+        return Math.max(0, leaderVersion - appliedVersion);
+    }
+
+    /**
+     * Returns the time between the leader journaling the latest applied
+     * batch and the follower applying it, or zero once the leader reported
+     * having nothing more to send.
+     *
+     * @return the lag in milliseconds
+     */
+    public long getLagMillis()
+    {
+        return lagMillis;
+    }
+
+    /**
+     * Returns the number of batches applied.
+     *
+     * @return the number of batches
+     */
+    public long getBatchesApplied()
+    {
+        return batchesApplied;
+    }
+
+    /**
+     * Returns the number of snapshots loaded from the leader.
+     *
+     * @return the number of snapshots
+     */
+    public long getSnapshotsLoaded()
+    {
+        return snapshotsLoaded;
+    }
+
+    /**
+     * Stops following the leader. The replica keeps the clubs it has.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        thread.interrupt();
+        Socket current = socket;
+        if(current != null)
+        {
+            current.close();
+        }
+    }
+
+    private void follow()
+    {
+        while(!closed)
+        {
+            try (Socket current = new Socket())
+            {
+                socket = current;
+                if(closed)
+                {
+                    return;
+                }
+                current.connect(leader, timeoutMillis);
+                current.setSoTimeout(timeoutMillis);
+                current.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(current.getOutputStream()));
+                out.writeInt(ReplicationProtocol.HELLO);
+                out.writeLong(leaderId);
+                out.writeLong(appliedVersion);
+                out.flush();
+                connected = true;
+                receive(new DataInputStream(new BufferedInputStream(current.getInputStream(), 1 << 16)));
+            }
+            catch (IOException ex)
+            {
+                // the leader is unreachable, went away or stayed silent for longer than the timeout
+            }
+            finally
+            {
+                connected = false;
+                socket = null;
+            }
+            try
+            {
+                Thread.sleep(retryMillis);
+            }
+            catch (InterruptedException ex)
+            {
+                return;
+            }
+        }
+    }
+
+    private void receive(DataInputStream in) throws IOException
+    {
+        while(!closed)
+        {
+            byte type = in.readByte();
+            if(type == ReplicationProtocol.SNAPSHOT)
+            {
+                loadSnapshot(in);
+            }
+            else if(type == ReplicationProtocol.BATCH)
+            {
+                long version = in.readLong();
+                long timestamp = in.readLong();
+                List<ClubMutation> mutations = ReplicationProtocol.readMutations(in, version);
+                if(version > appliedVersion)
+                {
+                    try
+                    {
+                        apply(mutations);
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        // the replica no longer matches the leader; reconnect for a snapshot
+                        leaderId = 0;
+                        throw new IOException("IOException on ReplicationFollower.receive: " + " batch of version " + version + " does not apply to the replica.", ex);
+                    }
+                    appliedVersion = version;
+                    leaderVersion = Math.max(leaderVersion, version);
+                    lagMillis = Math.max(0, System.currentTimeMillis() - timestamp);
+                    batchesApplied++;
+                }
+            }
+            else if(type == ReplicationProtocol.HEARTBEAT)
+            {
+                leaderVersion = in.readLong();
+                in.readLong();
+                if(appliedVersion >= leaderVersion)
+                {
+                    lagMillis = 0;
+                }
+            }
+            else
+            {
+                throw new IOException("IOException on ReplicationFollower.receive: " + " unknown message " + type + ".");
+            }
+        }
+    }
+
+    /**
+     * Replaces all clubs of the replica with a snapshot, in one transaction.
+     */
+    private void loadSnapshot(DataInputStream in) throws IOException
+    {
+        long snapshotLeader = in.readLong();
+        long version = in.readLong();
+        int count = in.readInt();
+        ClubRecord[] clubs = new ClubRecord[count];
+        for(int i = 0; i < count; i++)
+        {
+            clubs[i] = ReplicationProtocol.readRecord(in, version);
+        }
+        synchronized (replica)
+        {
+            ClubTransaction transaction = replica.begin();
+            for(ClubRecord club : replica.getRecords())
+            {
+                transaction.remove(club.getClubName());
+            }
+            for(ClubRecord club : clubs)
+            {
+                transaction.add(club.toClub());
+            }
+            transaction.commit();
+        }
+        leaderId = snapshotLeader;
+        appliedVersion = version;
+        leaderVersion = Math.max(leaderVersion, version);
+        snapshotsLoaded++;
+    }
+
+    private void apply(List<ClubMutation> mutations)
+    {
+        ClubTransaction transaction = replica.begin();
+        for(ClubMutation mutation : mutations)
+        {
+            switch (mutation.getType())
+            {
+                case ADD:
+                    transaction.add(mutation.getClub().toClub());
+                    break;
+                case REMOVE:
+                    transaction.remove(mutation.getClubName());
+                    break;
+                case UPDATE:
+                    ClubRecord club = mutation.getClub();
+                    transaction.update(mutation.getClubName(), record -> club);
+                    break;
+                default:
+                    transaction.commit();
+                    replica.clear();
+                    transaction = replica.begin();
+                    break;
+            }
+        }
+        transaction.commit();
+    }
+}
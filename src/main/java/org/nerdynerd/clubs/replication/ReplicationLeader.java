@@ -0,0 +1,354 @@
+package org.nerdynerd.clubs.replication;
+
+import org.nerdynerd.clubs.ClubManagement;
+import org.nerdynerd.clubs.ClubRecord;
+import org.nerdynerd.clubs.ClubVersion;
+import org.nerdynerd.clubs.journal.ClubJournal;
+import org.nerdynerd.clubs.journal.ClubMutation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Streams the journal of a {@link ClubManagement} to {@link ReplicationFollower}s
+ * over TCP.
+ * <p>
+ * The leader is the journal of its club management. Every appended batch
+ * is encoded once, under the lock of the club management, and kept in a
+ * log of the latest batches; each follower is served by its own thread
+ * reading that log, so a slow follower never delays changes on the leader.
+ * A follower that connects for the first time, or has fallen behind the
+ * oldest batch kept, first receives a snapshot of all clubs read from a
+ * {@link ClubVersion}, and then every batch after it.
+ * <p>
+ * The order of the clubs, as changed by sorting, is not replicated.
+ */
+public class ReplicationLeader implements ClubJournal, Closeable
+{
+    private final ClubManagement clubManagement;
+
+    private final ServerSocket serverSocket;
+
+    private final int retainedBatches;
+
+    private final long heartbeatMillis;
+
+    private final long leaderId = new Random().nextLong();
+
+    private final ArrayDeque<Batch> log = new ArrayDeque<>();
+
+    /**
+     * The version before the oldest batch in the log: a follower that applied
+     * this version or a later one can be sent the rest from the log.
+     */
+    private long logStart;
+
+    private long lastVersion;
+
+    private final List<Socket> followers = new ArrayList<>();
+
+    private volatile boolean closed;
+
+    private long snapshotsSent;
+
+    /**
+     * Starts leading, listening for followers on the given address. The
+     * leader replaces the journal of the club management.
+     *
+     * @param clubManagement  the club management to replicate
+     * @param address         the address to listen on, with port 0 for any free port
+     * @param retainedBatches the number of latest batches kept for followers catching up
+     * @param heartbeatMillis the time after which an idle follower is sent the current version
+     * @throws IOException if the address cannot be listened on
+     */
+    public ReplicationLeader(ClubManagement clubManagement, InetSocketAddress address, int retainedBatches, long heartbeatMillis) throws IOException
+    {
+        if(retainedBatches < 1 || heartbeatMillis < 1)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ReplicationLeader.ReplicationLeader: " + " retained batches and heartbeat interval must be positive.");
+        }
+        this.clubManagement = clubManagement;
+        this.retainedBatches = retainedBatches;
+        this.heartbeatMillis = heartbeatMillis;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+        synchronized (clubManagement)
+        {
+            logStart = clubManagement.getVersion();
+            lastVersion = logStart;
+            clubManagement.setJournal(this);
+        }
+        Thread acceptor = new Thread(this::acceptFollowers, "club-replication-leader");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Gets the address followers connect to.
+     *
+     * @return the bound address
+     */
+    public InetSocketAddress getAddress()
+    {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /**
+     * Returns the number of connected followers.
+     *
+     * @return the number of followers
+     */
+    public synchronized int getFollowerCount()
+    {
+        return followers.size();
+    }
+
+    /**
+     * Returns the number of snapshots sent to followers that could not
+     * be caught up from the log.
+     *
+     * @return the number of snapshots sent
+     */
+    public synchronized long getSnapshotsSent()
+    {
+        return snapshotsSent;
+    }
+
+    /**
+     * Returns the version of the latest journaled batch.
+     *
+     * @return the latest version
+     */
+    public synchronized long getLastVersion()
+    {
+        return lastVersion;
+    }
+
+    @Override
+    public void append(long version, List<ClubMutation> mutations)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * mutations.size());
+        try
+        {
+            ReplicationProtocol.writeBatch(new DataOutputStream(bytes), version, System.currentTimeMillis(), mutations);
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+        synchronized (this)
+        {
+            log.addLast(new Batch(version, bytes.toByteArray()));
+            lastVersion = version;
+            while(log.size() > retainedBatches)
+            {
+                logStart = log.removeFirst().version;
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Stops leading: stops listening, disconnects all followers
+     * and detaches from the club management.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (clubManagement)
+        {
+            if(clubManagement.getJournal() == this)
+            {
+                clubManagement.setJournal(null);
+            }
+        }
+        synchronized (this)
+        {
+            closed = true;
+            for(Socket follower : followers)
+            {
+                follower.close();
+            }
+            notifyAll();
+        }
+        serverSocket.close();
+    }
+
+    private void acceptFollowers()
+    {
+        while(!closed)
+        {
+            Socket socket;
+            try
+            {
+                socket = serverSocket.accept();
+            }
+            catch (IOException ex)
+            {
+                return;
+            }
+            synchronized (this)
+            {
+                if(closed)
+                {
+                    closeQuietly(socket);
+                    return;
+                }
+                followers.add(socket);
+            }
+            Thread sender = new Thread(() -> serve(socket), "club-replication-sender");
+            sender.setDaemon(true);
+            sender.start();
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        try
+        {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            if(in.readInt() != ReplicationProtocol.HELLO)
+            {
+                return;
+            }
+            long followerLeader = in.readLong();
+            long applied = in.readLong();
+            boolean caughtUp;
+            synchronized (this)
+            {
+                caughtUp = followerLeader == leaderId && applied >= logStart;
+            }
+            if(!caughtUp)
+            {
+                applied = sendSnapshot(out);
+            }
+            while(!closed)
+            {
+                List<Batch> pending = new ArrayList<>();
+                long heartbeatVersion;
+                synchronized (this)
+                {
+                    if(lastVersion <= applied)
+                    {
+                        wait(heartbeatMillis);
+                    }
+                    if(applied < logStart)
+                    {
+                        pending = null;
+                    }
+                    else
+                    {
+                        for(Batch batch : log)
+                        {
+                            if(batch.version > applied)
+                            {
+                                pending.add(batch);
+                            }
+                        }
+                    }
+                    heartbeatVersion = lastVersion;
+                }
+                if(pending == null)
+                {
+                    // fell behind the log while sending
+                    applied = sendSnapshot(out);
+                    continue;
+                }
+                for(Batch batch : pending)
+                {
+                    out.write(batch.bytes);
+                    applied = batch.version;
+                }
+                if(pending.isEmpty())
+                {
+                    out.writeByte(ReplicationProtocol.HEARTBEAT);
+                    out.writeLong(Math.max(heartbeatVersion, applied));
+                    out.writeLong(System.currentTimeMillis());
+                }
+                out.flush();
+            }
+        }
+        catch (IOException | InterruptedException ex)
+        {
+            // the follower disconnected or the leader was closed
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                followers.remove(socket);
+            }
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Sends all clubs as of the current version, read from a
+     * version of the club management so writers are not blocked.
+     *
+     * @return the version sent
+     */
+    private long sendSnapshot(DataOutputStream out) throws IOException
+    {
+        try (ClubVersion clubs = clubManagement.openVersion())
+        {
+            synchronized (this)
+            {
+                snapshotsSent++;
+            }
+            out.writeByte(ReplicationProtocol.SNAPSHOT);
+            out.writeLong(leaderId);
+            out.writeLong(clubs.getVersion());
+            out.writeInt(clubs.size());
+            for(ClubRecord club : clubs)
+            {
+                ReplicationProtocol.writeRecord(out, club);
+            }
+            out.flush();
+            return clubs.getVersion();
+        }
+    }
+
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException ex)
+        {
+            // already closed
+        }
+    }
+
+    /**
+     * An encoded batch of the log.
+     */
+    private static final class Batch
+    {
+        final long version;
+
+        final byte[] bytes;
+
+        Batch(long version, byte[] bytes)
+        {
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+}
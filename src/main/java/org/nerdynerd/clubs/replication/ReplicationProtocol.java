@@ -0,0 +1,167 @@
+package org.nerdynerd.clubs.replication;
+
+import org.nerdynerd.clubs.ClubRecord;
+import org.nerdynerd.clubs.PresidentRecord;
+import org.nerdynerd.clubs.journal.ClubMutation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The messages exchanged by a {@link ReplicationLeader} and its followers.
+ * <p>
+ * A follower opens the connection with {@value #HELLO}, the id of the
+ * leader it replicated before and the last version it applied from it.
+ * The leader answers with a {@value #SNAPSHOT} of all clubs if it cannot
+ * send every batch after that version, and then sends every journaled
+ * {@value #BATCH} as it is appended, and a {@value #HEARTBEAT} whenever
+ * it has nothing else to send.
+ */
+final class ReplicationProtocol
+{
+    static final int HELLO = 0x434C5250;
+
+    static final byte SNAPSHOT = 1;
+
+    static final byte BATCH = 2;
+
+    static final byte HEARTBEAT = 3;
+
+    private static final byte HAS_PRESIDENT = 1;
+
+    private static final byte HAS_START_DATE = 2;
+
+    private static final byte HAS_END_DATE = 4;
+
+    private ReplicationProtocol()
+    {
+    }
+
+    static void writeBatch(DataOutput out, long version, long timestamp, List<ClubMutation> mutations) throws IOException
+    {
+        out.writeByte(BATCH);
+        out.writeLong(version);
+        out.writeLong(timestamp);
+        out.writeInt(mutations.size());
+        for(ClubMutation mutation : mutations)
+        {
+            out.writeByte(mutation.getType().ordinal());
+            if(mutation.getType() != ClubMutation.Type.CLEAR)
+            {
+                out.writeUTF(mutation.getClubName() == null ? "" : mutation.getClubName());
+            }
+            if(mutation.getClub() != null)
+            {
+                writeRecord(out, mutation.getClub());
+            }
+        }
+    }
+
+    /**
+     * Reads the mutations of a batch, after its type, version and timestamp.
+     */
+    static List<ClubMutation> readMutations(DataInput in, long version) throws IOException
+    {
+        int count = in.readInt();
+        List<ClubMutation> mutations = new ArrayList<>(count);
+        for(int i = 0; i < count; i++)
+        {
+            int type = in.readByte();
+            if(type < 0 || type >= ClubMutation.Type.values().length)
+            {
+                throw new IOException("IOException on ReplicationProtocol.readMutations: " + " unknown mutation type " + type + ".");
+            }
+            switch (ClubMutation.Type.values()[type])
+            {
+                case ADD:
+                    in.readUTF();
+                    mutations.add(ClubMutation.added(readRecord(in, version)));
+                    break;
+                case REMOVE:
+                    mutations.add(ClubMutation.removed(in.readUTF()));
+                    break;
+                case UPDATE:
+                    mutations.add(ClubMutation.updated(in.readUTF(), readRecord(in, version)));
+                    break;
+                default:
+                    mutations.add(ClubMutation.cleared());
+                    break;
+            }
+        }
+        return mutations;
+    }
+
+    static void writeRecord(DataOutput out, ClubRecord club) throws IOException
+    {
+        out.writeInt(club.getId());
+        out.writeUTF(club.getClubName());
+        out.writeInt(club.getMemberNumber());
+        PresidentRecord president = club.getPresident();
+        if(president == null)
+        {
+            out.writeByte(0);
+            return;
+        }
+        Date startDate = president.getStartDate();
+        Date endDate = president.getEndDate();
+        out.writeByte(HAS_PRESIDENT | (startDate == null ? 0 : HAS_START_DATE) | (endDate == null ? 0 : HAS_END_DATE));
+        out.writeInt(president.getId());
+        writeNullable(out, president.getFirstName());
+        out.writeChar(president.getMiddleInitial());
+        writeNullable(out, president.getLastName());
+        if(startDate != null)
+        {
+            out.writeLong(startDate.getTime());
+        }
+        if(endDate != null)
+        {
+            out.writeLong(endDate.getTime());
+        }
+    }
+
+    static ClubRecord readRecord(DataInput in, long version) throws IOException
+    {
+        ClubRecord.Builder club = ClubRecord.builder()
+                .id(in.readInt())
+                .clubName(in.readUTF())
+                .memberNumber(in.readInt())
+                .version(version);
+        byte flags = in.readByte();
+        if((flags & HAS_PRESIDENT) != 0)
+        {
+            PresidentRecord.Builder president = PresidentRecord.builder()
+                    .id(in.readInt())
+                    .firstName(readNullable(in))
+                    .middleInitial(in.readChar())
+                    .lastName(readNullable(in));
+            if((flags & HAS_START_DATE) != 0)
+            {
+                president.startDate(new Date(in.readLong()));
+            }
+            if((flags & HAS_END_DATE) != 0)
+            {
+                president.endDate(new Date(in.readLong()));
+            }
+            club.president(president.build());
+        }
+        return club.build();
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if(value != null)
+        {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInput in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
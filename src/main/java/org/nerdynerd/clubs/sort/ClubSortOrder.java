@@ -0,0 +1,143 @@
+package org.nerdynerd.clubs.sort;
+
+import org.nerdynerd.clubs.Club;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An immutable chain of {@link SortKey}s. Clubs are ordered by the
+ * first key, ties are broken by the second key, and so on.
+ * <p>
+ * For example, president last name then member count descending:
+ * <pre>
+ * ClubSortOrder.by(SortKey.presidentLastName())
+ *              .then(SortKey.memberNumber().reversed());
+ * </pre>
+ *
+ * @see ClubSorter
+ */
+public final class ClubSortOrder
+{
+    private final SortKey<?>[] keys;
+
+    private ClubSortOrder(SortKey<?>[] keys)
+    {
+        this.keys = keys;
+    }
+
+    /**
+     * Creates a sort order with a single key.
+     *
+     * @param key the primary sort key
+     * @return the sort order
+     */
+    public static ClubSortOrder by(SortKey<?> key)
+    {
+        if(key == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubSortOrder.by: " + " key must not be null.");
+        }
+        return new ClubSortOrder(new SortKey<?>[] {key});
+    }
+
+    /**
+     * Returns a new sort order that breaks ties of this order with the given key.
+     *
+     * @param key the next sort key
+     * @return the extended sort order
+     */
+    public ClubSortOrder then(SortKey<?> key)
+    {
+        if(key == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on ClubSortOrder.then: " + " key must not be null.");
+        }
+        SortKey<?>[] extended = Arrays.copyOf(keys, keys.length + 1);
+        extended[keys.length] = key;
+        return new ClubSortOrder(extended);
+    }
+
+    /**
+     * Gets the number of keys in this order.
+     *
+     * @return the number of keys
+     */
+    public int getKeyCount()
+    {
+        return keys.length;
+    }
+
+    /**
+     * Gets the key at the given position.
+     *
+     * @param index the position of the key, zero being the primary key
+     * @return the sort key
+     */
+    public SortKey<?> getKey(int index)
+    {
+        return keys[index];
+    }
+
+    /**
+     * Returns a comparator imposing this order. Unlike {@link ClubSorter},
+     * the comparator extracts the keys on every comparison, so it is meant
+     * for a small number of comparisons, such as merging sorted runs.
+     *
+     * @return the comparator
+     */
+    public Comparator<Club> toComparator()
+    {
+        return (first, second) ->
+        {
+            for(SortKey<?> key : keys)
+            {
+                int result = key.compareKeys(key.extract(first), key.extract(second));
+                if(result != 0)
+                {
+                    return result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Extracts the keys of a club under this order, so the club can be
+     * compared with {@link #compareKeys(Object[], Object[])} without
+     * extracting them again, for example as the key of an ordered index.
+     *
+     * @param club the club
+     * @return the keys, one per sort key
+     */
+    public Object[] extractKeys(Club club)
+    {
+        Object[] extracted = new Object[keys.length];
+        for(int i = 0; i < keys.length; i++)
+        {
+            extracted[i] = keys[i].extract(club);
+        }
+        return extracted;
+    }
+
+    /**
+     * Compares the keys of two clubs extracted by {@link #extractKeys(Club)}.
+     *
+     * @param first  the keys of the first club
+     * @param second the keys of the second club
+     * @return a negative integer, zero, or a positive integer as the
+     * first club sorts before, together with, or after the second.
+     */
+    public int compareKeys(Object[] first, Object[] second)
+    {
+        for(int i = 0; i < keys.length; i++)
+        {
+            int result = keys[i].compareKeys(first[i], second[i]);
+            if(result != 0)
+            {
+                return result;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,246 @@
+package org.nerdynerd.clubs.sort;
+
+import org.nerdynerd.clubs.Club;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The sort engine used by {@link org.nerdynerd.clubs.ClubManagement}.
+ * <p>
+ * Sort keys are extracted once per club before sorting rather than on
+ * every comparison, only the live prefix of the club array is sorted, and
+ * large arrays are sorted with {@link Arrays#parallelSort}. Orders made of
+ * a single primitive int key, such as the member count, skip comparisons
+ * entirely and use an LSD radix sort. All sorts are stable.
+ */
+public final class ClubSorter
+{
+    /**
+     * The number of clubs from which sorts run in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /**
+     * The number of clubs below which int keys are sorted by insertion
+     * sort, as the radix passes do not pay off for so few clubs.
+     */
+    private static final int INSERTION_THRESHOLD = 48;
+
+    private static final int RADIX_BITS = 8;
+
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private static final int RADIX_PASSES = Integer.SIZE / RADIX_BITS;
+
+    private ClubSorter()
+    {
+    }
+
+    /**
+     * Sorts the first {@code length} clubs of the given array by the given order.
+     *
+     * @param clubs  the clubs
+     * @param length the number of live clubs at the start of the array
+     * @param order  the sort order
+     */
+    public static void sort(Club[] clubs, int length, ClubSortOrder order)
+    {
+        checkLength(clubs, length);
+        if(length < 2)
+        {
+            return;
+        }
+        int keyCount = order.getKeyCount();
+        if(keyCount == 1 && order.getKey(0).isIntKey())
+        {
+            sortByInt(clubs, length, order.getKey(0));
+            return;
+        }
+        SortKey<?>[] keys = new SortKey<?>[keyCount];
+        for(int k = 0; k < keyCount; k++)
+        {
+            keys[k] = order.getKey(k);
+        }
+        KeyedClub[] keyedClubs = new KeyedClub[length];
+        for(int i = 0; i < length; i++)
+        {
+            Object[] extracted = new Object[keyCount];
+            for(int k = 0; k < keyCount; k++)
+            {
+                extracted[k] = keys[k].extract(clubs[i]);
+            }
+            keyedClubs[i] = new KeyedClub(clubs[i], extracted);
+        }
+        Comparator<KeyedClub> comparator = (first, second) ->
+        {
+            for(int k = 0; k < keys.length; k++)
+            {
+                int result = keys[k].compareKeys(first.keys[k], second.keys[k]);
+                if(result != 0)
+                {
+                    return result;
+                }
+            }
+            return 0;
+        };
+        sortArray(keyedClubs, comparator);
+        for(int i = 0; i < length; i++)
+        {
+            clubs[i] = keyedClubs[i].club;
+        }
+    }
+
+    /**
+     * Sorts the first {@code length} clubs of the given array with a comparator.
+     * The comparator is called directly, so comparator chains such as
+     * {@link Comparator#thenComparing(Comparator)} are accepted as is.
+     *
+     * @param clubs      the clubs
+     * @param length     the number of live clubs at the start of the array
+     * @param comparator the comparator
+     */
+    public static void sort(Club[] clubs, int length, Comparator<? super Club> comparator)
+    {
+        checkLength(clubs, length);
+        if(length < 2)
+        {
+            return;
+        }
+        if(length >= PARALLEL_THRESHOLD)
+        {
+            Arrays.parallelSort(clubs, 0, length, comparator);
+        }
+        else
+        {
+            Arrays.sort(clubs, 0, length, comparator);
+        }
+    }
+
+    /**
+     * Sorts by a single int key in O(n) time. The keys are mapped to
+     * unsigned values whose natural order matches the requested direction,
+     * then sorted by an LSD radix sort over {@value #RADIX_BITS} bit digits
+     * that permutes the club references along with their keys.
+     */
+    private static void sortByInt(Club[] clubs, int length, SortKey<?> key)
+    {
+        int flip = key.isDescending() ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+        int[] keys = new int[length];
+        for(int i = 0; i < length; i++)
+        {
+            keys[i] = key.extractInt(clubs[i]) ^ flip;
+        }
+        if(length < INSERTION_THRESHOLD)
+        {
+            insertionSort(clubs, keys, length);
+            return;
+        }
+        int[] counts = new int[RADIX_PASSES * RADIX];
+        for(int i = 0; i < length; i++)
+        {
+            int value = keys[i];
+            for(int pass = 0; pass < RADIX_PASSES; pass++)
+            {
+                counts[pass * RADIX + ((value >>> (pass * RADIX_BITS)) & (RADIX - 1))]++;
+            }
+        }
+        Club[] sourceClubs = clubs;
+        int[] sourceKeys = keys;
+        Club[] targetClubs = null;
+        int[] targetKeys = null;
+        for(int pass = 0; pass < RADIX_PASSES; pass++)
+        {
+            int base = pass * RADIX;
+            int shift = pass * RADIX_BITS;
+            if(counts[base + ((sourceKeys[0] >>> shift) & (RADIX - 1))] == length)
+            {
+                // every key has the same digit, so this pass would not move anything
+                continue;
+            }
+            if(targetClubs == null)
+            {
+                targetClubs = new Club[length];
+                targetKeys = new int[length];
+            }
+            int offset = 0;
+            for(int digit = 0; digit < RADIX; digit++)
+            {
+                int count = counts[base + digit];
+                counts[base + digit] = offset;
+                offset += count;
+            }
+            for(int i = 0; i < length; i++)
+            {
+                int value = sourceKeys[i];
+                int position = counts[base + ((value >>> shift) & (RADIX - 1))]++;
+                targetKeys[position] = value;
+                targetClubs[position] = sourceClubs[i];
+            }
+            Club[] swapClubs = sourceClubs;
+            sourceClubs = targetClubs;
+            targetClubs = swapClubs;
+            int[] swapKeys = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = swapKeys;
+        }
+        if(sourceClubs != clubs)
+        {
+            System.arraycopy(sourceClubs, 0, clubs, 0, length);
+        }
+    }
+
+    private static void insertionSort(Club[] clubs, int[] keys, int length)
+    {
+        for(int i = 1; i < length; i++)
+        {
+            int value = keys[i];
+            Club club = clubs[i];
+            int j = i - 1;
+            while(j >= 0 && Integer.compareUnsigned(keys[j], value) > 0)
+            {
+                keys[j + 1] = keys[j];
+                clubs[j + 1] = clubs[j];
+                j--;
+            }
+            keys[j + 1] = value;
+            clubs[j + 1] = club;
+        }
+    }
+
+    private static <T> void sortArray(T[] array, Comparator<? super T> comparator)
+    {
+        if(array.length >= PARALLEL_THRESHOLD)
+        {
+            Arrays.parallelSort(array, comparator);
+        }
+        else
+        {
+            Arrays.sort(array, comparator);
+        }
+    }
+
+    private static void checkLength(Club[] clubs, int length)
+    {
+        if(length < 0 || length > clubs.length)
+        {
+            throw new IndexOutOfBoundsException("IndexOutOfBoundsException on ClubSorter.sort: " + "length of " + length + " outside of array size.");
+        }
+    }
+
+    /**
+     * A club paired with its extracted sort keys.
+     */
+    private static final class KeyedClub
+    {
+        private final Club club;
+
+        private final Object[] keys;
+
+        private KeyedClub(Club club, Object[] keys)
+        {
+            this.club = club;
+            this.keys = keys;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package org.nerdynerd.clubs.sort;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+import org.nerdynerd.clubs.comparator.ClubNameCollator;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A single key of a {@link ClubSortOrder}. A sort key knows how to
+ * extract a value from a club and how to order two extracted values,
+ * including where clubs without a value (null keys) are placed.
+ *
+ * @param <K> the type of the extracted key
+ * @see ClubSortOrder
+ * @see ClubSorter
+ */
+public final class SortKey<K>
+{
+    private final Function<Club, K> extractor;
+
+    private final Comparator<? super K> comparator;
+
+    private final ToIntFunction<Club> intExtractor;
+
+    private final boolean descending;
+
+    private final boolean nullsFirst;
+
+    private SortKey(Function<Club, K> extractor, Comparator<? super K> comparator, ToIntFunction<Club> intExtractor,
+                    boolean descending, boolean nullsFirst)
+    {
+        if(extractor == null || comparator == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on SortKey: " + " extractor and comparator must not be null.");
+        }
+        this.extractor = extractor;
+        this.comparator = comparator;
+        this.intExtractor = intExtractor;
+        this.descending = descending;
+        this.nullsFirst = nullsFirst;
+    }
+
+    /**
+     * Creates an ascending sort key over a naturally ordered value.
+     * Clubs without a value are placed last.
+     *
+     * @param <K>       the type of the extracted key
+     * @param extractor the function extracting the key from a club
+     * @return the sort key
+     */
+    public static <K extends Comparable<? super K>> SortKey<K> of(Function<Club, K> extractor)
+    {
+        return new SortKey<>(extractor, Comparator.naturalOrder(), null, false, false);
+    }
+
+    /**
+     * Creates an ascending sort key ordered by the given comparator.
+     * Clubs without a value are placed last.
+     *
+     * @param <K>        the type of the extracted key
+     * @param extractor  the function extracting the key from a club
+     * @param comparator the comparator used to order extracted keys
+     * @return the sort key
+     */
+    public static <K> SortKey<K> of(Function<Club, K> extractor, Comparator<? super K> comparator)
+    {
+        return new SortKey<>(extractor, comparator, null, false, false);
+    }
+
+    /**
+     * Creates an ascending sort key over a primitive {@code int} value.
+     * When an order consists of a single int key, {@link ClubSorter}
+     * sorts it with a linear time radix sort instead of comparisons.
+     *
+     * @param extractor the function extracting the key from a club
+     * @return the sort key
+     */
+    public static SortKey<Integer> ofInt(ToIntFunction<Club> extractor)
+    {
+        if(extractor == null)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on SortKey.ofInt: " + " extractor must not be null.");
+        }
+        return new SortKey<>(extractor::applyAsInt, Comparator.naturalOrder(), extractor, false, false);
+    }
+
+    /**
+     * Sort key over the number of members of a club.
+     *
+     * @return the sort key
+     */
+    public static SortKey<Integer> memberNumber()
+    {
+        return ofInt(Club::getMemberNumber);
+    }
+
+    /**
+     * Sort key over the name of a club, collated for the default locale.
+     *
+     * @return the sort key
+     */
+    public static SortKey<byte[]> clubName()
+    {
+        return clubName(Locale.getDefault());
+    }
+
+    /**
+     * Sort key over the name of a club, collated for the given locale.
+     * The key of a club is its cached collation key, so names are only
+     * collated once and then compared as bytes.
+     *
+     * @param locale the locale
+     * @return the sort key
+     */
+    public static SortKey<byte[]> clubName(Locale locale)
+    {
+        ClubNameCollator collator = ClubNameCollator.forLocale(locale);
+        return of(club -> club.getNameCollationKey(collator), ClubNameCollator::compareKeys);
+    }
+
+    /**
+     * Sort key over the last name of the current club president.
+     * Clubs without a president have a null key.
+     *
+     * @return the sort key
+     */
+    public static SortKey<String> presidentLastName()
+    {
+        return of(club ->
+        {
+            ClubPresident clubPresident = club.getClubPresident();
+            return clubPresident == null ? null : clubPresident.getLastName();
+        });
+    }
+
+    /**
+     * Returns a copy of this key with the opposite direction.
+     * The placement of null keys is not affected.
+     *
+     * @return the reversed sort key
+     */
+    public SortKey<K> reversed()
+    {
+        return new SortKey<>(extractor, comparator, intExtractor, !descending, nullsFirst);
+    }
+
+    /**
+     * Returns a copy of this key that places null keys first.
+     *
+     * @return the sort key
+     */
+    public SortKey<K> nullsFirst()
+    {
+        return new SortKey<>(extractor, comparator, intExtractor, descending, true);
+    }
+
+    /**
+     * Returns a copy of this key that places null keys last.
+     *
+     * @return the sort key
+     */
+    public SortKey<K> nullsLast()
+    {
+        return new SortKey<>(extractor, comparator, intExtractor, descending, false);
+    }
+
+    /**
+     * Returns if this key orders from the greatest to the smallest value.
+     *
+     * @return true if descending, else false.
+     */
+    public boolean isDescending()
+    {
+        return descending;
+    }
+
+    /**
+     * Returns if null keys are placed before any other key.
+     *
+     * @return true if nulls are placed first, else false.
+     */
+    public boolean isNullsFirst()
+    {
+        return nullsFirst;
+    }
+
+    /**
+     * Returns if this key is a primitive int key created by {@link #ofInt(ToIntFunction)}.
+     *
+     * @return true if this is an int key, else false.
+     */
+    public boolean isIntKey()
+    {
+        return intExtractor != null;
+    }
+
+    /**
+     * Extracts the primitive key of the given club.
+     * Only valid for int keys.
+     *
+     * @param club the club
+     * @return the key
+     */
+    int extractInt(Club club)
+    {
+        return intExtractor.applyAsInt(club);
+    }
+
+    /**
+     * Extracts the key of the given club.
+     *
+     * @param club the club
+     * @return the key, may be null
+     */
+    K extract(Club club)
+    {
+        return extractor.apply(club);
+    }
+
+    /**
+     * Compares two keys previously produced by {@link #extract(Club)}.
+     *
+     * @param first  the first key
+     * @param second the second key
+     * @return a negative integer, zero, or a positive integer as the
+     * first key sorts before, together with, or after the second.
+     */
+    @SuppressWarnings("unchecked")
+    int compareKeys(Object first, Object second)
+    {
+        if(first == null || second == null)
+        {
+            if(first == second)
+            {
+                return 0;
+            }
+            return (first == null) == nullsFirst ? -1 : 1;
+        }
+        int result = comparator.compare((K) first, (K) second);
+        return descending ? -Integer.signum(result) : result;
+    }
+}
@@ -0,0 +1,221 @@
+package org.nerdynerd.clubs.storage;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubNames;
+import org.nerdynerd.clubs.ClubPresident;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * The fixed-width club record layout shared by {@link OffHeapClubStore},
+ * snapshot files and {@link MappedClubStore}.
+ * <p>
+ * A record holds the club and its president. Strings are stored as an
+ * offset and a length into a separate buffer of UTF-8 name bytes, with a
+ * length of -1 for null.
+ */
+final class ClubRecords
+{
+    static final int RECORD_SIZE = 56;
+
+    static final int ID = 0;
+
+    static final int MEMBER_NUMBER = 4;
+
+    static final int CLUB_NAME = 8;
+
+    static final int FLAGS = 16;
+
+    static final int MIDDLE_INITIAL = 18;
+
+    static final int PRESIDENT_ID = 20;
+
+    static final int FIRST_NAME = 24;
+
+    static final int LAST_NAME = 32;
+
+    static final int START_DATE = 40;
+
+    static final int END_DATE = 48;
+
+    static final byte HAS_PRESIDENT = 1;
+
+    static final byte HAS_START_DATE = 2;
+
+    static final byte HAS_END_DATE = 4;
+
+    private ClubRecords()
+    {
+    }
+
+    /**
+     * Receives the UTF-8 bytes of the strings of a record being written.
+     */
+    interface NameSink
+    {
+        /**
+         * Appends name bytes.
+         *
+         * @param bytes the UTF-8 bytes
+         * @return the offset the bytes were written at
+         */
+        int append(byte[] bytes);
+    }
+
+    static void writeClub(ByteBuffer records, int base, Club club, NameSink names)
+    {
+        int id = club.getId();
+        int memberNumber = club.getMemberNumber();
+        String clubName = club.getClubName();
+        ClubPresident clubPresident = club.getClubPresident();
+        records.putInt(base + ID, id);
+        records.putInt(base + MEMBER_NUMBER, memberNumber);
+        writeString(records, base + CLUB_NAME, clubName, names);
+        writePresident(records, base, clubPresident, names);
+    }
+
+    static void writePresident(ByteBuffer records, int base, ClubPresident clubPresident, NameSink names)
+    {
+        if(clubPresident == null)
+        {
+            records.put(base + FLAGS, (byte) 0);
+            records.putInt(base + FIRST_NAME + 4, -1);
+            records.putInt(base + LAST_NAME + 4, -1);
+            return;
+        }
+        Date startDate = clubPresident.getStartDate();
+        Date endDate = clubPresident.getEndDate();
+        byte flags = HAS_PRESIDENT;
+        if(startDate != null)
+        {
+            flags |= HAS_START_DATE;
+            records.putLong(base + START_DATE, startDate.getTime());
+        }
+        if(endDate != null)
+        {
+            flags |= HAS_END_DATE;
+            records.putLong(base + END_DATE, endDate.getTime());
+        }
+        records.put(base + FLAGS, flags);
+        records.putChar(base + MIDDLE_INITIAL, clubPresident.getMiddleInitial());
+        records.putInt(base + PRESIDENT_ID, clubPresident.getId());
+        writeString(records, base + FIRST_NAME, clubPresident.getFirstName(), names);
+        writeString(records, base + LAST_NAME, clubPresident.getLastName(), names);
+    }
+
+    static void writeString(ByteBuffer records, int position, String value, NameSink names)
+    {
+        if(value == null)
+        {
+            records.putInt(position, 0);
+            records.putInt(position + 4, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        records.putInt(position, names.append(bytes));
+        records.putInt(position + 4, bytes.length);
+    }
+
+    static Club readClub(ByteBuffer records, ByteBuffer names, int base)
+    {
+        Club club = new Club(records.getInt(base + ID), readString(records, names, base + CLUB_NAME));
+        ClubPresident clubPresident = readPresident(records, names, base);
+        if(clubPresident != null)
+        {
+            club.setClubPresident(clubPresident);
+        }
+        int memberNumber = records.getInt(base + MEMBER_NUMBER);
+        if(memberNumber > 0)
+        {
+            club.setMemberNumber(memberNumber);
+        }
+        return club;
+    }
+
+    static ClubPresident readPresident(ByteBuffer records, ByteBuffer names, int base)
+    {
+        byte flags = records.get(base + FLAGS);
+        if((flags & HAS_PRESIDENT) == 0)
+        {
+            return null;
+        }
+        Date startDate = (flags & HAS_START_DATE) == 0 ? null : new Date(records.getLong(base + START_DATE));
+        Date endDate = (flags & HAS_END_DATE) == 0 ? null : new Date(records.getLong(base + END_DATE));
+        return new ClubPresident(records.getInt(base + PRESIDENT_ID), readString(records, names, base + FIRST_NAME),
+                records.getChar(base + MIDDLE_INITIAL), readString(records, names, base + LAST_NAME), startDate, endDate);
+    }
+
+    /**
+     * Reads a string, given the position of its offset and length in the record buffer.
+     */
+    static String readString(ByteBuffer records, ByteBuffer names, int position)
+    {
+        int length = records.getInt(position + 4);
+        if(length < 0)
+        {
+            return null;
+        }
+        int offset = records.getInt(position);
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++)
+        {
+            bytes[i] = names.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares a stored name with a club name in place, ignoring case
+     * and surrounding whitespace. Names made of ASCII characters are
+     * compared byte by byte; any other name is decoded first.
+     */
+    static boolean nameMatches(ByteBuffer records, ByteBuffer names, int position, String clubName)
+    {
+        int length = records.getInt(position + 4);
+        if(length < 0)
+        {
+            return false;
+        }
+        int offset = records.getInt(position);
+        int start = offset;
+        int end = offset + length;
+        while(start < end && (names.get(start) & 0xFF) <= ' ')
+        {
+            start++;
+        }
+        while(end > start && (names.get(end - 1) & 0xFF) <= ' ')
+        {
+            end--;
+        }
+        int queryStart = 0;
+        int queryEnd = clubName.length();
+        while(queryStart < queryEnd && clubName.charAt(queryStart) <= ' ')
+        {
+            queryStart++;
+        }
+        while(queryEnd > queryStart && clubName.charAt(queryEnd - 1) <= ' ')
+        {
+            queryEnd--;
+        }
+        for(int i = start, j = queryStart; i < end; i++, j++)
+        {
+            byte b = names.get(i);
+            if(b < 0)
+            {
+                return ClubNames.sameName(readString(records, names, position), clubName);
+            }
+            if(j >= queryEnd)
+            {
+                return false;
+            }
+            char c = clubName.charAt(j);
+            if(c != b && Character.toLowerCase(Character.toUpperCase(c)) != Character.toLowerCase(Character.toUpperCase((char) b)))
+            {
+                return false;
+            }
+        }
+        return end - start == queryEnd - queryStart;
+    }
+}
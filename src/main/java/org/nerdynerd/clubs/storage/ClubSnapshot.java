@@ -0,0 +1,171 @@
+package org.nerdynerd.clubs.storage;
+
+import org.nerdynerd.clubs.Club;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes snapshot files of a list of clubs.
+ * <p>
+ * A snapshot is a {@value #HEADER_SIZE} byte header followed by one
+ * fixed-width record per club, in the layout used by {@link OffHeapClubStore},
+ * and then the UTF-8 bytes of all names, each distinct name written once.
+ * Because every record has the same size, a snapshot can be memory-mapped
+ * and any club read without decoding the others; see {@link MappedClubStore}.
+ */
+public final class ClubSnapshot
+{
+    /**
+     * The first four bytes of every snapshot, {@code CLUB} in ASCII.
+     */
+    public static final int MAGIC = 0x434C5542;
+
+    /**
+     * The version of the snapshot format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The size of the snapshot header in bytes.
+     */
+    public static final int HEADER_SIZE = 16;
+
+    static final int RECORD_COUNT = 8;
+
+    static final int NAME_BYTES = 12;
+
+    private static final int RECORDS_PER_WRITE = 1024;
+
+    private ClubSnapshot()
+    {
+    }
+
+    /**
+     * Writes all given clubs to a snapshot file, replacing the file if it exists.
+     *
+     * @param clubs the clubs, such as a {@link org.nerdynerd.clubs.ClubManagement}
+     * @param file  the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(List<? extends Club> clubs, Path file) throws IOException
+    {
+        int count = clubs.size();
+        long namesStart = HEADER_SIZE + (long) count * ClubRecords.RECORD_SIZE;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            NameWriter names = new NameWriter(channel, namesStart);
+            ByteBuffer records = ByteBuffer.allocateDirect(RECORDS_PER_WRITE * ClubRecords.RECORD_SIZE);
+            long recordPosition = HEADER_SIZE;
+            try
+            {
+                for(int i = 0; i < count; i++)
+                {
+                    int slot = i % RECORDS_PER_WRITE;
+                    ClubRecords.writeClub(records, slot * ClubRecords.RECORD_SIZE, clubs.get(i), names);
+                    if(slot == RECORDS_PER_WRITE - 1 || i == count - 1)
+                    {
+                        records.clear().limit((slot + 1) * ClubRecords.RECORD_SIZE);
+                        recordPosition += writeFully(channel, records, recordPosition);
+                        records.clear();
+                    }
+                }
+            }
+            catch (UncheckedIOException ex)
+            {
+                throw ex.getCause();
+            }
+            names.flush();
+            if(names.length > Integer.MAX_VALUE)
+            {
+                throw new IOException("IOException on ClubSnapshot.write: " + " names take more than " + Integer.MAX_VALUE + " bytes.");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt((int) names.length).flip();
+            writeFully(channel, header, 0);
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        int written = 0;
+        while(buffer.hasRemaining())
+        {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * Buffers name bytes and writes them after the records,
+     * writing repeated names only once.
+     */
+    private static final class NameWriter implements ClubRecords.NameSink
+    {
+        private final FileChannel channel;
+
+        private final long start;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+        private final Map<ByteBuffer, Integer> written = new HashMap<>();
+
+        private long flushed;
+
+        private long length;
+
+        private NameWriter(FileChannel channel, long start)
+        {
+            this.channel = channel;
+            this.start = start;
+        }
+
+        @Override
+        public int append(byte[] bytes)
+        {
+            Integer existing = written.get(ByteBuffer.wrap(bytes));
+            if(existing != null)
+            {
+                return existing;
+            }
+            int offset = (int) length;
+            written.put(ByteBuffer.wrap(bytes), offset);
+            try
+            {
+                if(bytes.length > buffer.remaining())
+                {
+                    flush();
+                }
+                if(bytes.length > buffer.remaining())
+                {
+                    flushed += writeFully(channel, ByteBuffer.wrap(bytes), start + flushed);
+                }
+                else
+                {
+                    buffer.put(bytes);
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+            length += bytes.length;
+            return offset;
+        }
+
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            flushed += writeFully(channel, buffer, start + flushed);
+            buffer.clear();
+        }
+    }
+}
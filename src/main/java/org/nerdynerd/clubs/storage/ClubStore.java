@@ -0,0 +1,178 @@
+package org.nerdynerd.clubs.storage;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+import org.nerdynerd.clubs.sort.ClubSortOrder;
+
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * The storage backend of a {@link org.nerdynerd.clubs.ClubManagement}.
+ * <p>
+ * A store holds up to {@link #getCapacity()} clubs at the positions
+ * {@code 0} to {@code size() - 1}. Removing a club moves the following
+ * clubs down by one position, so the stored clubs always form a
+ * contiguous prefix. Stores are not thread safe; the owning club
+ * management is responsible for any locking.
+ *
+ * @see HeapClubStore
+ * @see OffHeapClubStore
+ */
+public interface ClubStore
+{
+    /**
+     * Returns the maximum number of clubs this store can hold.
+     *
+     * @return the capacity
+     */
+    int getCapacity();
+
+    /**
+     * Returns the number of stored clubs.
+     *
+     * @return the number of clubs
+     */
+    int size();
+
+    /**
+     * Returns the club at the given position.
+     *
+     * @param index the position, between zero and {@code size() - 1}
+     * @return the club
+     * @throws IndexOutOfBoundsException if there is no club at the position
+     */
+    Club get(int index);
+
+    /**
+     * Returns the member count of the club at the given position. Stores
+     * not holding club objects read it without creating one.
+     *
+     * @param index the position, between zero and {@code size() - 1}
+     * @return the member count
+     * @throws IndexOutOfBoundsException if there is no club at the position
+     */
+    default int getMemberNumber(int index)
+    {
+        return get(index).getMemberNumber();
+    }
+
+    /**
+     * Returns the name of the club at the given position. Stores
+     * not holding club objects read it without creating one.
+     *
+     * @param index the position, between zero and {@code size() - 1}
+     * @return the club name
+     * @throws IndexOutOfBoundsException if there is no club at the position
+     */
+    default String getClubName(int index)
+    {
+        return get(index).getClubName();
+    }
+
+    /**
+     * Returns the president of the club at the given position. Stores
+     * not holding club objects read it without creating the club.
+     *
+     * @param index the position, between zero and {@code size() - 1}
+     * @return the president, or null if the club has none.
+     * @throws IndexOutOfBoundsException if there is no club at the position
+     */
+    default ClubPresident getClubPresident(int index)
+    {
+        return get(index).getClubPresident();
+    }
+
+    /**
+     * Appends a club after the last stored club.
+     *
+     * @param club the club
+     * @throws IllegalStateException if the store is full
+     */
+    void add(Club club);
+
+    /**
+     * Replaces the club at the given position.
+     *
+     * @param index the position
+     * @param club  the new club
+     * @throws IndexOutOfBoundsException if there is no club at the position
+     */
+    void set(int index, Club club);
+
+    /**
+     * Removes the club at the given position and moves the
+     * following clubs down by one position.
+     *
+     * @param index the position
+     * @throws IndexOutOfBoundsException if there is no club at the position
+     */
+    void remove(int index);
+
+    /**
+     * Removes the clubs at the given positions and moves the remaining clubs
+     * down, keeping their order. Stores override this to remove all clubs in
+     * one pass instead of one pass per club.
+     *
+     * @param positions the positions, all between zero and {@code size() - 1}
+     * @throws IndexOutOfBoundsException if there is no club at one of the positions
+     */
+    default void removeAll(BitSet positions)
+    {
+        for(int i = positions.length() - 1; i >= 0; i = positions.previousSetBit(i - 1))
+        {
+            remove(i);
+        }
+    }
+
+    /**
+     * Removes all clubs.
+     */
+    void clear();
+
+    /**
+     * Returns the share of the memory held by this store that no stored
+     * club needs any more, such as the bytes of names no club references.
+     *
+     * @return the share, between zero and one
+     */
+    default double getGarbageRatio()
+    {
+        return 0;
+    }
+
+    /**
+     * Starts compacting the store step by step, dropping the memory no
+     * stored club needs. Positions, and views of stored clubs, stay valid.
+     * Only one compaction runs at a time; starting one aborts the previous.
+     *
+     * @return the compaction, or null if this store does not compact.
+     */
+    default StoreCompaction startCompaction()
+    {
+        return null;
+    }
+
+    /**
+     * Returns the position of the club with the given name, ignoring
+     * case and surrounding whitespace.
+     *
+     * @param clubName the club name
+     * @return the position of the club, or -1 if there is none.
+     */
+    int indexOf(String clubName);
+
+    /**
+     * Sorts the stored clubs by a chain of sort keys.
+     *
+     * @param order the sort order
+     */
+    void sort(ClubSortOrder order);
+
+    /**
+     * Sorts the stored clubs with a comparator.
+     *
+     * @param comparator the comparator
+     */
+    void sort(Comparator<? super Club> comparator);
+}
@@ -0,0 +1,525 @@
+package org.nerdynerd.clubs.storage;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+import org.nerdynerd.clubs.codec.Encodings;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Writes and reads compressed snapshot files of a list of clubs.
+ * <p>
+ * Unlike a {@link ClubSnapshot}, whose fixed-width records can be read in
+ * any order, a compressed snapshot is read from start to end, and takes a
+ * fraction of the space: a club with a president typically takes 15 to 25
+ * bytes plus the names seen for the first time.
+ * <p>
+ * A compressed snapshot is the four bytes {@code CLBZ}, a version byte and
+ * the number of clubs, followed by the clubs sorted by id. Numbers are
+ * variable-length, seven bits per byte; every number that can be negative
+ * is zigzag encoded. Per club:
+ * <ul>
+ * <li>the id, as the difference to the id of the previous club;</li>
+ * <li>the member count, as the difference to that of the previous club;</li>
+ * <li>the club name;</li>
+ * <li>a flags byte telling whether a president, a start date and an end
+ * date follow;</li>
+ * <li>the president id, as the difference to the previous president id;
+ * the first name, middle initial and last name;</li>
+ * <li>the start date, as the difference to the previous start date, and
+ * the end date, as the difference to the start date of the same president
+ * or to the previous end date without one.</li>
+ * </ul>
+ * Names are dictionary encoded: a name seen before is written as its
+ * number in the order names were first seen, so every distinct name is
+ * written once, and clubs read from a snapshot share name strings.
+ */
+public final class CompressedClubSnapshot
+{
+    /**
+     * The first four bytes of every compressed snapshot, {@code CLBZ} in ASCII.
+     */
+    public static final int MAGIC = 0x434C425A;
+
+    /**
+     * The version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Flag set if the club has a president.
+     */
+    public static final int HAS_PRESIDENT = 1;
+
+    /**
+     * Flag set if the president has a start date.
+     */
+    public static final int HAS_START_DATE = 2;
+
+    /**
+     * Flag set if the president has an end date.
+     */
+    public static final int HAS_END_DATE = 4;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private CompressedClubSnapshot()
+    {
+    }
+
+    /**
+     * Writes all given clubs to a compressed snapshot file, replacing the
+     * file if it exists.
+     *
+     * @param clubs the clubs, such as a {@link org.nerdynerd.clubs.ClubManagement}
+     * @param file  the snapshot file
+     * @return the size of the snapshot in bytes
+     * @throws IOException if the file cannot be written
+     */
+    public static long write(List<? extends Club> clubs, Path file) throws IOException
+    {
+        // sort positions by id without boxing: the id in the high half, the position in the low half
+        long[] order = new long[clubs.size()];
+        for(int i = 0; i < order.length; i++)
+        {
+            order[i] = (long) clubs.get(i).getId() << 32 | i;
+        }
+        Arrays.sort(order);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            Output out = new Output(channel);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeVarLong(order.length);
+            Previous previous = new Previous();
+            for(long entry : order)
+            {
+                writeClub(out, clubs.get((int) entry), previous);
+            }
+            out.flush();
+            return out.written;
+        }
+    }
+
+    private static void writeClub(Output out, Club club, Previous previous) throws IOException
+    {
+        out.writeVarLong(Encodings.zigzag((long) club.getId() - previous.id));
+        out.writeVarLong(Encodings.zigzag((long) club.getMemberNumber() - previous.memberNumber));
+        out.writeName(club.getClubName());
+        previous.id = club.getId();
+        previous.memberNumber = club.getMemberNumber();
+        ClubPresident clubPresident = club.getClubPresident();
+        if(clubPresident == null)
+        {
+            out.writeByte(0);
+            return;
+        }
+        Date startDate = clubPresident.getStartDate();
+        Date endDate = clubPresident.getEndDate();
+        out.writeByte(HAS_PRESIDENT | (startDate == null ? 0 : HAS_START_DATE) | (endDate == null ? 0 : HAS_END_DATE));
+        out.writeVarLong(Encodings.zigzag((long) clubPresident.getId() - previous.presidentId));
+        out.writeName(clubPresident.getFirstName());
+        out.writeVarLong(clubPresident.getMiddleInitial());
+        out.writeName(clubPresident.getLastName());
+        previous.presidentId = clubPresident.getId();
+        if(startDate != null)
+        {
+            out.writeVarLong(Encodings.zigzag(startDate.getTime() - previous.startTime));
+            previous.startTime = startDate.getTime();
+        }
+        if(endDate != null)
+        {
+            long base = startDate != null ? startDate.getTime() : previous.endTime;
+            out.writeVarLong(Encodings.zigzag(endDate.getTime() - base));
+            previous.endTime = endDate.getTime();
+        }
+    }
+
+    /**
+     * Reads every club of a compressed snapshot file, in id order.
+     *
+     * @param file     the snapshot file
+     * @param consumer receives each club, newly created
+     * @return the number of clubs read
+     * @throws IOException if the file cannot be read or is not a compressed snapshot
+     */
+    public static long read(Path file, Consumer<? super Club> consumer) throws IOException
+    {
+        try (Reader reader = open(file))
+        {
+            long count = 0;
+            while(reader.hasNext())
+            {
+                consumer.accept(reader.next());
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Opens a compressed snapshot file for reading one club at a time.
+     *
+     * @param file the snapshot file
+     * @return the reader, to be closed
+     * @throws IOException if the file cannot be read or is not a compressed snapshot
+     */
+    public static Reader open(Path file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try
+        {
+            return new Reader(channel);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * The values the next club is encoded relative to.
+     */
+    private static final class Previous
+    {
+        long id;
+
+        long memberNumber;
+
+        long presidentId;
+
+        long startTime;
+
+        long endTime;
+    }
+
+    /**
+     * Reads the clubs of a compressed snapshot in order. Reading a club
+     * that is not complete throws an {@link java.io.UncheckedIOException}
+     * wrapping an {@link EOFException}.
+     */
+    public static final class Reader implements Iterator<Club>, Closeable
+    {
+        private final ReadableByteChannel channel;
+
+        private final byte[] bytes = new byte[BUFFER_SIZE];
+
+        private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        private int position;
+
+        private int limit;
+
+        private final long count;
+
+        private long read;
+
+        private String[] names = new String[256];
+
+        private int nameCount;
+
+        private final Previous previous = new Previous();
+
+        private Reader(ReadableByteChannel channel) throws IOException
+        {
+            this.channel = channel;
+            if(readInt() != MAGIC)
+            {
+                throw new IOException("IOException on CompressedClubSnapshot.open: " + " not a compressed snapshot.");
+            }
+            int version = readByte();
+            if(version != VERSION)
+            {
+                throw new IOException("IOException on CompressedClubSnapshot.open: " + " unsupported version " + version + ".");
+            }
+            count = readVarLong();
+        }
+
+        /**
+         * Gets the number of clubs in the snapshot.
+         *
+         * @return the number of clubs
+         */
+        public long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return read < count;
+        }
+
+        @Override
+        public Club next()
+        {
+            if(read >= count)
+            {
+                throw new NoSuchElementException("NoSuchElementException on CompressedClubSnapshot.Reader.next: " + " no more clubs in this snapshot.");
+            }
+            try
+            {
+                Club club = readClub();
+                read++;
+                return club;
+            }
+            catch (IOException ex)
+            {
+                throw new java.io.UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+
+        private Club readClub() throws IOException
+        {
+            previous.id += Encodings.unzigzag(readVarLong());
+            previous.memberNumber += Encodings.unzigzag(readVarLong());
+            String clubName = readName();
+            int flags = readByte();
+            ClubPresident clubPresident = null;
+            if((flags & HAS_PRESIDENT) != 0)
+            {
+                previous.presidentId += Encodings.unzigzag(readVarLong());
+                String firstName = readName();
+                char middleInitial = (char) readVarLong();
+                String lastName = readName();
+                Date startDate = null;
+                Date endDate = null;
+                if((flags & HAS_START_DATE) != 0)
+                {
+                    previous.startTime += Encodings.unzigzag(readVarLong());
+                    startDate = new Date(previous.startTime);
+                }
+                if((flags & HAS_END_DATE) != 0)
+                {
+                    long base = startDate != null ? previous.startTime : previous.endTime;
+                    previous.endTime = base + Encodings.unzigzag(readVarLong());
+                    endDate = new Date(previous.endTime);
+                }
+                clubPresident = new ClubPresident((int) previous.presidentId, firstName, middleInitial, lastName, startDate, endDate);
+            }
+            return new Club((int) previous.id, clubName, clubPresident, (int) previous.memberNumber);
+        }
+
+        /**
+         * Reads a name: zero for null, an odd number for a new name of
+         * that number shifted right by one UTF-8 bytes, or an even number
+         * for the name of that number halved, less one.
+         */
+        private String readName() throws IOException
+        {
+            long code = readVarLong();
+            if(code == 0)
+            {
+                return null;
+            }
+            if((code & 1) == 0)
+            {
+                long number = (code >>> 1) - 1;
+                if(number >= nameCount)
+                {
+                    throw new IOException("IOException on CompressedClubSnapshot.Reader.next: " + " unknown name " + number + ".");
+                }
+                return names[(int) number];
+            }
+            int length = (int) (code >>> 1);
+            String name;
+            if(length <= bytes.length)
+            {
+                fill(length);
+                name = new String(bytes, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+            else
+            {
+                byte[] large = new byte[length];
+                int copied = 0;
+                while(copied < length)
+                {
+                    fill(1);
+                    int chunk = Math.min(length - copied, limit - position);
+                    System.arraycopy(bytes, position, large, copied, chunk);
+                    position += chunk;
+                    copied += chunk;
+                }
+                name = new String(large, StandardCharsets.UTF_8);
+            }
+            if(nameCount == names.length)
+            {
+                names = Arrays.copyOf(names, nameCount * 2);
+            }
+            names[nameCount++] = name;
+            return name;
+        }
+
+        private int readByte() throws IOException
+        {
+            fill(1);
+            return bytes[position++] & 0xFF;
+        }
+
+        private int readInt() throws IOException
+        {
+            fill(4);
+            int value = (bytes[position] & 0xFF) << 24 | (bytes[position + 1] & 0xFF) << 16 | (bytes[position + 2] & 0xFF) << 8 | (bytes[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        private long readVarLong() throws IOException
+        {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                if(position == limit)
+                {
+                    fill(1);
+                }
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while(b < 0);
+            return value;
+        }
+
+        /**
+         * Makes sure at least the given number of bytes are buffered.
+         */
+        private void fill(int wanted) throws IOException
+        {
+            if(limit - position >= wanted)
+            {
+                return;
+            }
+            System.arraycopy(bytes, position, bytes, 0, limit - position);
+            limit -= position;
+            position = 0;
+            while(limit < wanted)
+            {
+                buffer.clear().position(limit);
+                int n = channel.read(buffer);
+                if(n < 0)
+                {
+                    throw new EOFException("EOFException on CompressedClubSnapshot.Reader.next: " + " snapshot ends within a club.");
+                }
+                limit += n;
+            }
+        }
+    }
+
+    /**
+     * Buffers the bytes of a snapshot and assigns names their numbers.
+     */
+    private static final class Output
+    {
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private final Map<String, Integer> names = new HashMap<>();
+
+        private long written;
+
+        private Output(FileChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        void writeByte(int b) throws IOException
+        {
+            ensure(1);
+            buffer.put((byte) b);
+        }
+
+        void writeInt(int value) throws IOException
+        {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void writeVarLong(long value) throws IOException
+        {
+            ensure(Encodings.MAX_VAR_LONG_SIZE);
+            Encodings.writeVarLong(buffer, value);
+        }
+
+        void writeName(String name) throws IOException
+        {
+            if(name == null)
+            {
+                writeVarLong(0);
+                return;
+            }
+            Integer number = names.get(name);
+            if(number != null)
+            {
+                writeVarLong((number + 1L) << 1);
+                return;
+            }
+            names.put(name, names.size());
+            byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+            writeVarLong((long) utf8.length << 1 | 1);
+            if(utf8.length > buffer.remaining())
+            {
+                flush();
+            }
+            if(utf8.length > buffer.remaining())
+            {
+                ByteBuffer large = ByteBuffer.wrap(utf8);
+                while(large.hasRemaining())
+                {
+                    written += channel.write(large);
+                }
+            }
+            else
+            {
+                buffer.put(utf8);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException
+        {
+            if(buffer.remaining() < bytes)
+            {
+                flush();
+            }
+        }
+
+        void flush() throws IOException
+        {
+            buffer.flip();
+            while(buffer.hasRemaining())
+            {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
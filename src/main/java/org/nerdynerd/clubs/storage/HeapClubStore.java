@@ -0,0 +1,142 @@
+package org.nerdynerd.clubs.storage;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubNames;
+import org.nerdynerd.clubs.sort.ClubSortOrder;
+import org.nerdynerd.clubs.sort.ClubSorter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * The default {@link ClubStore}, holding the clubs themselves in an array on the heap.
+ * <p>
+ * The clubs keep the name strings they were created with, so repeated
+ * names, such as common last names of presidents, take memory once per
+ * club. Only {@link OffHeapClubStore} and snapshot files store every
+ * distinct name once; {@link CompressedClubSnapshot} also shares the name
+ * strings of the clubs it reads.
+ */
+public class HeapClubStore implements ClubStore
+{
+    private final Club[] clubList;
+
+    private int numberOfClubs;
+
+    /**
+     * Instantiates a new Heap club store.
+     *
+     * @param capacity the maximum number of clubs
+     */
+    public HeapClubStore(int capacity)
+    {
+        clubList = new Club[capacity];
+        numberOfClubs = 0;
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return clubList.length;
+    }
+
+    @Override
+    public int size()
+    {
+        return numberOfClubs;
+    }
+
+    @Override
+    public Club get(int index)
+    {
+        checkIndex(index, "get");
+        return clubList[index];
+    }
+
+    @Override
+    public void add(Club club)
+    {
+        if(numberOfClubs == clubList.length)
+        {
+            throw new IllegalStateException("IllegalStateException on HeapClubStore.add : " + " not enough room for new element." );
+        }
+        clubList[numberOfClubs] = club;
+        numberOfClubs++;
+    }
+
+    @Override
+    public void set(int index, Club club)
+    {
+        checkIndex(index, "set");
+        clubList[index] = club;
+    }
+
+    @Override
+    public void remove(int index)
+    {
+        checkIndex(index, "remove");
+        System.arraycopy(clubList, index + 1, clubList, index, numberOfClubs - index - 1);
+        numberOfClubs--;
+        clubList[numberOfClubs] = null;
+    }
+
+    @Override
+    public void removeAll(BitSet positions)
+    {
+        if(positions.length() > numberOfClubs)
+        {
+            checkIndex(positions.length() - 1, "removeAll");
+        }
+        int kept = 0;
+        for(int i = 0; i < numberOfClubs; i++)
+        {
+            if(!positions.get(i))
+            {
+                clubList[kept++] = clubList[i];
+            }
+        }
+        Arrays.fill(clubList, kept, numberOfClubs, null);
+        numberOfClubs = kept;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(clubList, 0, numberOfClubs, null);
+        numberOfClubs = 0;
+    }
+
+    @Override
+    public int indexOf(String clubName)
+    {
+        for(int i = 0; i < numberOfClubs; i++)
+        {
+            if(ClubNames.sameName(clubList[i].getClubName(), clubName))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void sort(ClubSortOrder order)
+    {
+        ClubSorter.sort(clubList, numberOfClubs, order);
+    }
+
+    @Override
+    public void sort(Comparator<? super Club> comparator)
+    {
+        ClubSorter.sort(clubList, numberOfClubs, comparator);
+    }
+
+    private void checkIndex(int index, String method)
+    {
+        if(index < 0 || index >= numberOfClubs)
+        {
+            throw new IndexOutOfBoundsException("IndexOutOfBoundsException on HeapClubStore." + method + ": " + "index of " + index + " outside of stored clubs.");
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package org.nerdynerd.clubs.storage;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+import org.nerdynerd.clubs.ClubNames;
+import org.nerdynerd.clubs.sort.ClubSortOrder;
+import org.nerdynerd.clubs.sort.ClubSorter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * A {@link ClubStore} opened from a memory-mapped {@link ClubSnapshot}.
+ * <p>
+ * Opening a snapshot only maps the file and reads its header. A club, and
+ * its president, is decoded into a heap object the first time it is read,
+ * and kept from then on. Name lookups compare against the mapped name
+ * bytes and do not decode any club. Changes are kept on the heap; the
+ * snapshot file itself is never written.
+ */
+public class MappedClubStore implements ClubStore
+{
+    private final ByteBuffer records;
+
+    private final ByteBuffer names;
+
+    private static final int INITIAL_CLUBS = 16;
+
+    private final int capacity;
+
+    /**
+     * The decoded or added club of every position, grown as clubs are
+     * decoded or added: opening a store allocates nothing per club.
+     * Positions past its length hold no decoded club yet.
+     */
+    private Club[] clubs;
+
+    /**
+     * The snapshot record of every position. While null, position i holds
+     * record i for every position below {@code mappedClubs}.
+     */
+    private int[] recordOf;
+
+    private int mappedClubs;
+
+    private int numberOfClubs;
+
+    private int decodedClubs;
+
+    private MappedClubStore(ByteBuffer records, ByteBuffer names, int count, int capacity)
+    {
+        this.records = records;
+        this.names = names;
+        this.capacity = capacity;
+        this.clubs = new Club[Math.min(capacity, INITIAL_CLUBS)];
+        this.mappedClubs = count;
+        this.numberOfClubs = count;
+    }
+
+    /**
+     * Opens a snapshot file. Clubs are decoded on first use.
+     *
+     * @param file     the snapshot file
+     * @param capacity the maximum number of clubs, at least the number of clubs in the snapshot
+     * @return the store
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static MappedClubStore open(Path file, int capacity) throws IOException
+    {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if(channel.size() < ClubSnapshot.HEADER_SIZE)
+            {
+                throw new IOException("IOException on MappedClubStore.open: " + file + " is not a club snapshot.");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if(mapped.getInt(0) != ClubSnapshot.MAGIC || mapped.getInt(4) != ClubSnapshot.VERSION)
+        {
+            throw new IOException("IOException on MappedClubStore.open: " + file + " is not a version " + ClubSnapshot.VERSION + " club snapshot.");
+        }
+        int count = mapped.getInt(ClubSnapshot.RECORD_COUNT);
+        int nameBytes = mapped.getInt(ClubSnapshot.NAME_BYTES);
+        long namesStart = ClubSnapshot.HEADER_SIZE + (long) count * ClubRecords.RECORD_SIZE;
+        if(count < 0 || nameBytes < 0 || namesStart + nameBytes > mapped.capacity())
+        {
+            throw new IOException("IOException on MappedClubStore.open: " + file + " is truncated.");
+        }
+        if(count > capacity)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on MappedClubStore.open: " + " snapshot holds " + count + " clubs, more than the capacity of " + capacity + ".");
+        }
+        return new MappedClubStore(slice(mapped, ClubSnapshot.HEADER_SIZE, (int) namesStart),
+                slice(mapped, (int) namesStart, (int) namesStart + nameBytes), count, capacity);
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public int size()
+    {
+        return numberOfClubs;
+    }
+
+    @Override
+    public Club get(int index)
+    {
+        checkIndex(index, "get");
+        Club club = decoded(index);
+        if(club == null)
+        {
+            club = ClubRecords.readClub(records, names, recordAt(index) * ClubRecords.RECORD_SIZE);
+            ensureRoom(index + 1);
+            clubs[index] = club;
+            decodedClubs++;
+        }
+        return club;
+    }
+
+    @Override
+    public int getMemberNumber(int index)
+    {
+        checkIndex(index, "getMemberNumber");
+        Club club = decoded(index);
+        if(club != null)
+        {
+            return club.getMemberNumber();
+        }
+        return records.getInt(recordAt(index) * ClubRecords.RECORD_SIZE + ClubRecords.MEMBER_NUMBER);
+    }
+
+    @Override
+    public String getClubName(int index)
+    {
+        checkIndex(index, "getClubName");
+        Club club = decoded(index);
+        if(club != null)
+        {
+            return club.getClubName();
+        }
+        return ClubRecords.readString(records, names, recordAt(index) * ClubRecords.RECORD_SIZE + ClubRecords.CLUB_NAME);
+    }
+
+    @Override
+    public ClubPresident getClubPresident(int index)
+    {
+        checkIndex(index, "getClubPresident");
+        Club club = decoded(index);
+        if(club != null)
+        {
+            return club.getClubPresident();
+        }
+        return ClubRecords.readPresident(records, names, recordAt(index) * ClubRecords.RECORD_SIZE);
+    }
+
+    @Override
+    public void add(Club club)
+    {
+        if(numberOfClubs == capacity)
+        {
+            throw new IllegalStateException("IllegalStateException on MappedClubStore.add : " + " not enough room for new element." );
+        }
+        ensureRoom(numberOfClubs + 1);
+        clubs[numberOfClubs] = club;
+        if(recordOf != null)
+        {
+            recordOf[numberOfClubs] = -1;
+        }
+        numberOfClubs++;
+    }
+
+    @Override
+    public void set(int index, Club club)
+    {
+        checkIndex(index, "set");
+        ensureRoom(index + 1);
+        clubs[index] = club;
+    }
+
+    @Override
+    public void remove(int index)
+    {
+        checkIndex(index, "remove");
+        ensureRoom(numberOfClubs);
+        if(index < mappedClubs || recordOf != null)
+        {
+            ensureRecordMap();
+            System.arraycopy(recordOf, index + 1, recordOf, index, numberOfClubs - index - 1);
+        }
+        System.arraycopy(clubs, index + 1, clubs, index, numberOfClubs - index - 1);
+        numberOfClubs--;
+        clubs[numberOfClubs] = null;
+    }
+
+    @Override
+    public void removeAll(BitSet positions)
+    {
+        if(positions.length() > numberOfClubs)
+        {
+            checkIndex(positions.length() - 1, "removeAll");
+        }
+        ensureRoom(numberOfClubs);
+        ensureRecordMap();
+        int kept = 0;
+        for(int i = 0; i < numberOfClubs; i++)
+        {
+            if(!positions.get(i))
+            {
+                clubs[kept] = clubs[i];
+                recordOf[kept] = recordOf[i];
+                kept++;
+            }
+        }
+        Arrays.fill(clubs, kept, numberOfClubs, null);
+        numberOfClubs = kept;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(clubs, 0, Math.min(numberOfClubs, clubs.length), null);
+        numberOfClubs = 0;
+        mappedClubs = 0;
+        recordOf = null;
+    }
+
+    @Override
+    public int indexOf(String clubName)
+    {
+        for(int i = 0; i < numberOfClubs; i++)
+        {
+            Club club = decoded(i);
+            boolean matches = club != null
+                    ? ClubNames.sameName(club.getClubName(), clubName)
+                    : ClubRecords.nameMatches(records, names, recordAt(i) * ClubRecords.RECORD_SIZE + ClubRecords.CLUB_NAME, clubName);
+            if(matches)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void sort(ClubSortOrder order)
+    {
+        decodeAll();
+        ClubSorter.sort(clubs, numberOfClubs, order);
+    }
+
+    @Override
+    public void sort(Comparator<? super Club> comparator)
+    {
+        decodeAll();
+        ClubSorter.sort(clubs, numberOfClubs, comparator);
+    }
+
+    /**
+     * Returns the number of clubs decoded from the snapshot so far.
+     *
+     * @return the number of decoded clubs
+     */
+    public int getDecodedClubs()
+    {
+        return decodedClubs;
+    }
+
+    private void decodeAll()
+    {
+        for(int i = 0; i < numberOfClubs; i++)
+        {
+            get(i);
+        }
+    }
+
+    private Club decoded(int index)
+    {
+        return index < clubs.length ? clubs[index] : null;
+    }
+
+    /**
+     * Grows the positions held on the heap to at least the given number,
+     * doubling them so adding clubs one by one takes amortized constant time.
+     */
+    private void ensureRoom(int size)
+    {
+        if(size > clubs.length)
+        {
+            int length = (int) Math.min(capacity, Math.max(size, clubs.length * 2L));
+            clubs = Arrays.copyOf(clubs, length);
+            if(recordOf != null)
+            {
+                recordOf = Arrays.copyOf(recordOf, length);
+            }
+        }
+    }
+
+    private int recordAt(int index)
+    {
+        return recordOf == null ? index : recordOf[index];
+    }
+
+    private void ensureRecordMap()
+    {
+        if(recordOf == null)
+        {
+            ensureRoom(numberOfClubs);
+            recordOf = new int[clubs.length];
+            for(int i = 0; i < numberOfClubs; i++)
+            {
+                recordOf[i] = i < mappedClubs ? i : -1;
+            }
+        }
+    }
+
+    private void checkIndex(int index, String method)
+    {
+        if(index < 0 || index >= numberOfClubs)
+        {
+            throw new IndexOutOfBoundsException("IndexOutOfBoundsException on MappedClubStore." + method + ": " + "index of " + index + " outside of stored clubs.");
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int from, int to)
+    {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(from);
+        duplicate.limit(to);
+        return duplicate.slice();
+    }
+}
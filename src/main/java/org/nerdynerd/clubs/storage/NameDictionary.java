@@ -0,0 +1,302 @@
+package org.nerdynerd.clubs.storage;
+
+import org.nerdynerd.clubs.ClubNames;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A dictionary of the UTF-8 name bytes referenced by club records.
+ * <p>
+ * Every distinct byte sequence is stored once, so repeated names such as
+ * common last names share their bytes, and records refer to them by offset
+ * and length as before. Each entry counts the strings referencing it; its
+ * bytes become garbage once the last reference is released. Entries are
+ * found through an open addressing table of entry numbers, so neither
+ * storing nor releasing a name allocates once the table has grown.
+ */
+final class NameDictionary implements ClubRecords.NameSink
+{
+    private static final int INITIAL_BYTES = 1 << 12;
+
+    private static final int INITIAL_ENTRIES = 64;
+
+    private ByteBuffer bytes;
+
+    private int bytesUsed;
+
+    private long garbageBytes;
+
+    /**
+     * Entry numbers plus one by hash slot, zero for an empty slot.
+     */
+    private int[] table;
+
+    private int[] offsets;
+
+    private int[] lengths;
+
+    private int[] hashes;
+
+    private int[] references;
+
+    private int entryCount;
+
+    private int[] freeEntries;
+
+    private int freeEntryCount;
+
+    private int liveEntries;
+
+    NameDictionary()
+    {
+        bytes = allocate(INITIAL_BYTES);
+        table = new int[INITIAL_ENTRIES * 2];
+        offsets = new int[INITIAL_ENTRIES];
+        lengths = new int[INITIAL_ENTRIES];
+        hashes = new int[INITIAL_ENTRIES];
+        references = new int[INITIAL_ENTRIES];
+        freeEntries = new int[INITIAL_ENTRIES];
+    }
+
+    /**
+     * Returns the buffer holding the name bytes. The buffer is replaced when
+     * it grows, so it must not be kept across calls to {@link #append(byte[])}.
+     */
+    ByteBuffer buffer()
+    {
+        return bytes;
+    }
+
+    int getBytesUsed()
+    {
+        return bytesUsed;
+    }
+
+    long getGarbageBytes()
+    {
+        return garbageBytes;
+    }
+
+    int getDistinctNames()
+    {
+        return liveEntries;
+    }
+
+    /**
+     * Adds a reference to a byte sequence, storing the bytes if
+     * no equal sequence is stored yet.
+     *
+     * @return the offset of the stored bytes
+     */
+    @Override
+    public int append(byte[] name)
+    {
+        int hash = hash(name);
+        int mask = table.length - 1;
+        for(int slot = hash & mask; ; slot = (slot + 1) & mask)
+        {
+            int entry = table[slot] - 1;
+            if(entry < 0)
+            {
+                break;
+            }
+            if(hashes[entry] == hash && lengths[entry] == name.length && equalBytes(offsets[entry], name))
+            {
+                references[entry]++;
+                return offsets[entry];
+            }
+        }
+        int offset = store(name);
+        insert(offset, name.length, hash);
+        return offset;
+    }
+
+    /**
+     * Releases a reference to the bytes at the given offset, as written by a record.
+     *
+     * @param offset the offset
+     * @param length the length, or -1 for a null string
+     */
+    void release(int offset, int length)
+    {
+        if(length < 0)
+        {
+            return;
+        }
+        int hash = hash(offset, length);
+        int mask = table.length - 1;
+        for(int slot = hash & mask; ; slot = (slot + 1) & mask)
+        {
+            int entry = table[slot] - 1;
+            if(entry < 0)
+            {
+                return;
+            }
+            if(offsets[entry] == offset && lengths[entry] == length)
+            {
+                if(--references[entry] == 0)
+                {
+                    garbageBytes += length;
+                    delete(slot);
+                    freeEntry(entry);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes all names.
+     */
+    void clear()
+    {
+        Arrays.fill(table, 0);
+        bytesUsed = 0;
+        garbageBytes = 0;
+        entryCount = 0;
+        freeEntryCount = 0;
+        liveEntries = 0;
+    }
+
+    private int store(byte[] name)
+    {
+        if((long) bytesUsed + name.length > bytes.capacity())
+        {
+            long grown = Math.max((long) bytesUsed + name.length, bytes.capacity() * 2L);
+            ByteBuffer larger = allocate(Math.min(grown, Integer.MAX_VALUE));
+            ByteBuffer source = bytes.duplicate();
+            source.clear().limit(bytesUsed);
+            larger.put(source);
+            larger.clear();
+            bytes = larger;
+        }
+        int offset = bytesUsed;
+        for(int i = 0; i < name.length; i++)
+        {
+            bytes.put(offset + i, name[i]);
+        }
+        bytesUsed += name.length;
+        return offset;
+    }
+
+    private void insert(int offset, int length, int hash)
+    {
+        if((liveEntries + 1) * 2 > table.length)
+        {
+            resizeTable(table.length * 2);
+        }
+        int entry = freeEntryCount > 0 ? freeEntries[--freeEntryCount] : newEntry();
+        offsets[entry] = offset;
+        lengths[entry] = length;
+        hashes[entry] = hash;
+        references[entry] = 1;
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while(table[slot] != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry + 1;
+        liveEntries++;
+    }
+
+    private int newEntry()
+    {
+        if(entryCount == offsets.length)
+        {
+            int size = offsets.length * 2;
+            offsets = Arrays.copyOf(offsets, size);
+            lengths = Arrays.copyOf(lengths, size);
+            hashes = Arrays.copyOf(hashes, size);
+            references = Arrays.copyOf(references, size);
+            freeEntries = Arrays.copyOf(freeEntries, size);
+        }
+        return entryCount++;
+    }
+
+    private void freeEntry(int entry)
+    {
+        freeEntries[freeEntryCount++] = entry;
+        liveEntries--;
+    }
+
+    /**
+     * Empties a slot and moves later entries of the same probe run back,
+     * so lookups never need to skip deleted slots.
+     */
+    private void delete(int slot)
+    {
+        int mask = table.length - 1;
+        int hole = slot;
+        table[hole] = 0;
+        for(int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask)
+        {
+            int home = hashes[table[next] - 1] & mask;
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if(movable)
+            {
+                table[hole] = table[next];
+                table[next] = 0;
+                hole = next;
+            }
+        }
+    }
+
+    private void resizeTable(int size)
+    {
+        int[] old = table;
+        table = new int[size];
+        int mask = size - 1;
+        for(int value : old)
+        {
+            if(value != 0)
+            {
+                int slot = hashes[value - 1] & mask;
+                while(table[slot] != 0)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+            }
+        }
+    }
+
+    private boolean equalBytes(int offset, byte[] name)
+    {
+        for(int i = 0; i < name.length; i++)
+        {
+            if(bytes.get(offset + i) != name[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] name)
+    {
+        int hash = 1;
+        for(byte b : name)
+        {
+            hash = 31 * hash + b;
+        }
+        return ClubNames.mix(hash);
+    }
+
+    private int hash(int offset, int length)
+    {
+        int hash = 1;
+        for(int i = 0; i < length; i++)
+        {
+            hash = 31 * hash + bytes.get(offset + i);
+        }
+        return ClubNames.mix(hash);
+    }
+
+    private static ByteBuffer allocate(long size)
+    {
+        return ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,148 @@
+package org.nerdynerd.clubs.storage;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+import org.nerdynerd.clubs.comparator.ClubNameCollator;
+
+/**
+ * A flyweight view of a club record held by an {@link OffHeapClubStore}.
+ * <p>
+ * All getters read from the record and all setters write to it, so a view
+ * holds no club data of its own. The president returned by
+ * {@link #getClubPresident()} is decoded on every call; changes to it are
+ * only stored by passing it to {@link #setClubPresident(ClubPresident)}.
+ * <p>
+ * Once its club is removed or the store is cleared, a view throws an
+ * {@link IllegalStateException} on every getter and setter, so it never
+ * reads or writes the club later stored in the same record.
+ */
+public final class OffHeapClub extends Club
+{
+    private final OffHeapClubStore store;
+
+    private final int record;
+
+    private final int allocation;
+
+    private byte[] key;
+
+    private ClubNameCollator keyCollator;
+
+    private int keyOffset;
+
+    private int keyEpoch;
+
+    /**
+     * Instantiates a new view of a record.
+     *
+     * @param store  the store holding the record
+     * @param record the record number
+     */
+    OffHeapClub(OffHeapClubStore store, int record)
+    {
+        this.store = store;
+        this.record = record;
+        this.allocation = store.allocationOf(record);
+    }
+
+    OffHeapClubStore getStore()
+    {
+        return store;
+    }
+
+    int getRecord()
+    {
+        return record;
+    }
+
+    /**
+     * Returns the record of the view, checking that it still holds the
+     * club the view was bound to.
+     */
+    private int record(String method)
+    {
+        if(store.allocationOf(record) != allocation)
+        {
+            throw new IllegalStateException("IllegalStateException on OffHeapClub." + method + ": " + " the club was removed from its store.");
+        }
+        return record;
+    }
+
+    @Override
+    public String getClubName()
+    {
+        return store.readString(record("getClubName"), ClubRecords.CLUB_NAME);
+    }
+
+    @Override
+    public void setClubName(String clubName)
+    {
+        String oldClubName = getClubName();
+        store.replaceString(record("setClubName"), ClubRecords.CLUB_NAME, clubName);
+        clubNameChanged(oldClubName);
+    }
+
+    /**
+     * Gets the collation key of the club name, cached by the view until the
+     * record it reads holds another name.
+     */
+    @Override
+    protected byte[] nameCollationKey(ClubNameCollator collator)
+    {
+        int offset = store.nameOffset(record("getNameCollationKey"));
+        int epoch = store.getNameEpoch();
+        if(key == null || keyCollator != collator || keyOffset != offset || keyEpoch != epoch)
+        {
+            key = collator.collationKey(getClubName());
+            keyCollator = collator;
+            keyOffset = offset;
+            keyEpoch = epoch;
+        }
+        return key;
+    }
+
+    @Override
+    public int getId()
+    {
+        return store.readInt(record("getId"), ClubRecords.ID);
+    }
+
+    @Override
+    public void setId(int id)
+    {
+        store.writeInt(record("setId"), ClubRecords.ID, id);
+    }
+
+    @Override
+    public int getMemberNumber()
+    {
+        return store.readInt(record("getMemberNumber"), ClubRecords.MEMBER_NUMBER);
+    }
+
+    @Override
+    public void setMemberNumber(int memberNumber) throws IllegalArgumentException
+    {
+        if(memberNumber <= 0)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on OffHeapClub.setMemberNumber: " + " member count must be greater than or equal to zero.");
+        }
+        int oldMemberNumber = getMemberNumber();
+        store.writeInt(record("setMemberNumber"), ClubRecords.MEMBER_NUMBER, memberNumber);
+        memberNumberChanged(oldMemberNumber, memberNumber);
+    }
+
+    @Override
+    public ClubPresident getClubPresident()
+    {
+        return store.readPresident(record("getClubPresident"));
+    }
+
+    @Override
+    public void setClubPresident(ClubPresident clubPresident)
+    {
+        int record = record("setClubPresident");
+        clubPresidentChanging(clubPresident);
+        store.replacePresident(record, clubPresident);
+        clubPresidentChanged();
+    }
+}
@@ -0,0 +1,646 @@
+package org.nerdynerd.clubs.storage;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+import org.nerdynerd.clubs.sort.ClubSortOrder;
+import org.nerdynerd.clubs.sort.ClubSorter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * A {@link ClubStore} keeping clubs and their presidents outside of the
+ * garbage collected heap.
+ * <p>
+ * Every club is a fixed-width record of {@value #RECORD_SIZE} bytes in a
+ * direct buffer, and names are UTF-8 bytes in a second direct buffer in
+ * which every distinct name is stored once. The
+ * only per-club data on the heap is one {@code int} mapping a position to
+ * its record, so the garbage collector does not see the stored clubs at all.
+ * <p>
+ * Clubs are read through {@link OffHeapClub} flyweight views. A view is
+ * bound to a record, not a position: it stays valid while its club is
+ * stored, even when clubs are removed or sorted, and writes through to
+ * the record. Once no club references a name any more, for example after
+ * renaming or removing clubs, its bytes are left behind as garbage, until
+ * a {@linkplain #startCompaction() compaction} copies the records and the
+ * names they reference into new buffers. Record numbers do not change, so
+ * views stay valid across compactions.
+ */
+public class OffHeapClubStore implements ClubStore
+{
+    /**
+     * The size of a club record in bytes.
+     */
+    public static final int RECORD_SIZE = ClubRecords.RECORD_SIZE;
+
+    /**
+     * Flag set on a record on the free list.
+     */
+    private static final byte FREE = 8;
+
+    private final int capacity;
+
+    private ByteBuffer records;
+
+    private NameDictionary names = new NameDictionary();
+
+    private final int[] recordOf;
+
+    /**
+     * Counts the allocations and releases of every record, so a view can
+     * tell that the club it was bound to is gone.
+     */
+    private final int[] allocations;
+
+    private int numberOfClubs;
+
+    private int recordsUsed;
+
+    private int[] freeRecords;
+
+    private int freeRecordCount;
+
+    private Compaction compaction;
+
+    /**
+     * Counts the replacements of the name dictionary, so that an offset
+     * into it only identifies a name together with this count.
+     */
+    private int nameEpoch;
+
+    /**
+     * Instantiates a new Off heap club store.
+     *
+     * @param capacity the maximum number of clubs
+     */
+    public OffHeapClubStore(int capacity)
+    {
+        this.capacity = capacity;
+        recordOf = new int[capacity];
+        allocations = new int[capacity];
+        freeRecords = new int[0];
+        records = allocate(Math.max(1, Math.min(capacity, 1 << 10)) * (long) RECORD_SIZE);
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public int size()
+    {
+        return numberOfClubs;
+    }
+
+    /**
+     * Returns a new view of the club at a position. The view reports its
+     * changes to the club management that stores it once that management
+     * hands it out; change clubs through {@link org.nerdynerd.clubs.ClubManagement#get(int)},
+     * not through views read from the store directly.
+     *
+     * @param index the position
+     * @return the view
+     */
+    @Override
+    public Club get(int index)
+    {
+        checkIndex(index, "get");
+        return new OffHeapClub(this, recordOf[index]);
+    }
+
+    @Override
+    public int getMemberNumber(int index)
+    {
+        checkIndex(index, "getMemberNumber");
+        return readInt(recordOf[index], ClubRecords.MEMBER_NUMBER);
+    }
+
+    @Override
+    public String getClubName(int index)
+    {
+        checkIndex(index, "getClubName");
+        return readString(recordOf[index], ClubRecords.CLUB_NAME);
+    }
+
+    @Override
+    public ClubPresident getClubPresident(int index)
+    {
+        checkIndex(index, "getClubPresident");
+        return readPresident(recordOf[index]);
+    }
+
+    @Override
+    public void add(Club club)
+    {
+        if(numberOfClubs == capacity)
+        {
+            throw new IllegalStateException("IllegalStateException on OffHeapClubStore.add : " + " not enough room for new element." );
+        }
+        int record = allocateRecord();
+        ClubRecords.writeClub(records, record * RECORD_SIZE, club, names);
+        touched(record);
+        recordOf[numberOfClubs] = record;
+        numberOfClubs++;
+    }
+
+    @Override
+    public void set(int index, Club club)
+    {
+        checkIndex(index, "set");
+        int record = recordOf[index];
+        if(club instanceof OffHeapClub && ((OffHeapClub) club).getStore() == this && ((OffHeapClub) club).getRecord() == record)
+        {
+            return;
+        }
+        int base = record * RECORD_SIZE;
+        long oldClubName = stringAt(base + ClubRecords.CLUB_NAME);
+        long oldFirstName = stringAt(base + ClubRecords.FIRST_NAME);
+        long oldLastName = stringAt(base + ClubRecords.LAST_NAME);
+        boolean hadPresident = hasPresident(base);
+        ClubRecords.writeClub(records, base, club, names);
+        release(oldClubName);
+        if(hadPresident)
+        {
+            release(oldFirstName);
+            release(oldLastName);
+        }
+        touched(record);
+    }
+
+    @Override
+    public void remove(int index)
+    {
+        checkIndex(index, "remove");
+        int record = recordOf[index];
+        releaseNames(record * RECORD_SIZE);
+        System.arraycopy(recordOf, index + 1, recordOf, index, numberOfClubs - index - 1);
+        numberOfClubs--;
+        freeRecord(record);
+    }
+
+    private void freeRecord(int record)
+    {
+        if(freeRecordCount == freeRecords.length)
+        {
+            int[] grown = new int[Math.max(16, freeRecords.length * 2)];
+            System.arraycopy(freeRecords, 0, grown, 0, freeRecordCount);
+            freeRecords = grown;
+        }
+        freeRecords[freeRecordCount++] = record;
+        allocations[record]++;
+        records.put(record * RECORD_SIZE + ClubRecords.FLAGS, FREE);
+        touched(record);
+    }
+
+    @Override
+    public void removeAll(BitSet positions)
+    {
+        if(positions.length() > numberOfClubs)
+        {
+            checkIndex(positions.length() - 1, "removeAll");
+        }
+        int kept = 0;
+        for(int i = 0; i < numberOfClubs; i++)
+        {
+            int record = recordOf[i];
+            if(positions.get(i))
+            {
+                releaseNames(record * RECORD_SIZE);
+                freeRecord(record);
+            }
+            else
+            {
+                recordOf[kept++] = record;
+            }
+        }
+        numberOfClubs = kept;
+    }
+
+    @Override
+    public void clear()
+    {
+        for(int i = 0; i < numberOfClubs; i++)
+        {
+            allocations[recordOf[i]]++;
+        }
+        numberOfClubs = 0;
+        recordsUsed = 0;
+        freeRecordCount = 0;
+        names.clear();
+        nameEpoch++;
+        if(compaction != null)
+        {
+            compaction.restart();
+        }
+    }
+
+    @Override
+    public int indexOf(String clubName)
+    {
+        ByteBuffer nameBytes = names.buffer();
+        for(int i = 0; i < numberOfClubs; i++)
+        {
+            if(ClubRecords.nameMatches(records, nameBytes, recordOf[i] * RECORD_SIZE + ClubRecords.CLUB_NAME, clubName))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void sort(ClubSortOrder order)
+    {
+        Club[] views = views();
+        ClubSorter.sort(views, views.length, order);
+        applyOrder(views);
+    }
+
+    @Override
+    public void sort(Comparator<? super Club> comparator)
+    {
+        Club[] views = views();
+        ClubSorter.sort(views, views.length, comparator);
+        applyOrder(views);
+    }
+
+    /**
+     * Returns the number of bytes of the name buffer in use,
+     * including names no longer referenced by any club.
+     *
+     * @return the number of name bytes
+     */
+    public int getNameBytesUsed()
+    {
+        return names.getBytesUsed();
+    }
+
+    /**
+     * Returns the number of bytes of the name buffer that are no longer
+     * referenced by any club, left behind by renamed or removed clubs.
+     *
+     * @return the number of garbage name bytes
+     */
+    public long getGarbageNameBytes()
+    {
+        return names.getGarbageBytes();
+    }
+
+    @Override
+    public double getGarbageRatio()
+    {
+        return names.getBytesUsed() == 0 ? 0 : (double) names.getGarbageBytes() / names.getBytesUsed();
+    }
+
+    /**
+     * Starts copying the records and the names they reference into new
+     * buffers, leaving out the bytes of names no club references. Every
+     * step copies a bounded number of records, so the store can be used
+     * between steps; the new buffers replace the current ones in the step
+     * that copies the last record, and hold the same records under the
+     * same numbers.
+     *
+     * @return the compaction
+     */
+    @Override
+    public StoreCompaction startCompaction()
+    {
+        compaction = new Compaction();
+        return compaction;
+    }
+
+    /**
+     * Returns the number of distinct names stored. Club names, first
+     * names and last names that are equal byte for byte are stored once.
+     *
+     * @return the number of distinct names
+     */
+    public int getDistinctNames()
+    {
+        return names.getDistinctNames();
+    }
+
+    private Club[] views()
+    {
+        Club[] views = new Club[numberOfClubs];
+        for(int i = 0; i < numberOfClubs; i++)
+        {
+            views[i] = new OffHeapClub(this, recordOf[i]);
+        }
+        return views;
+    }
+
+    private void applyOrder(Club[] sortedViews)
+    {
+        for(int i = 0; i < sortedViews.length; i++)
+        {
+            recordOf[i] = ((OffHeapClub) sortedViews[i]).getRecord();
+        }
+    }
+
+    private int allocateRecord()
+    {
+        if(freeRecordCount > 0)
+        {
+            int record = freeRecords[--freeRecordCount];
+            allocations[record]++;
+            return record;
+        }
+        int record = recordsUsed++;
+        allocations[record]++;
+        long required = (long) recordsUsed * RECORD_SIZE;
+        if(required > records.capacity())
+        {
+            long grown = Math.min((long) capacity * RECORD_SIZE, Math.max(required, records.capacity() * 2L));
+            records = grow(records, grown, (long) record * RECORD_SIZE);
+        }
+        return record;
+    }
+
+    void replacePresident(int record, ClubPresident clubPresident)
+    {
+        int base = record * RECORD_SIZE;
+        long oldFirstName = stringAt(base + ClubRecords.FIRST_NAME);
+        long oldLastName = stringAt(base + ClubRecords.LAST_NAME);
+        boolean hadPresident = hasPresident(base);
+        ClubRecords.writePresident(records, base, clubPresident, names);
+        if(hadPresident)
+        {
+            release(oldFirstName);
+            release(oldLastName);
+        }
+        touched(record);
+    }
+
+    ClubPresident readPresident(int record)
+    {
+        return ClubRecords.readPresident(records, names.buffer(), record * RECORD_SIZE);
+    }
+
+    /**
+     * Returns the number of times a record was allocated or released,
+     * which changes once the club stored in it is removed.
+     */
+    int allocationOf(int record)
+    {
+        return allocations[record];
+    }
+
+    int readInt(int record, int field)
+    {
+        return records.getInt(record * RECORD_SIZE + field);
+    }
+
+    void writeInt(int record, int field, int value)
+    {
+        records.putInt(record * RECORD_SIZE + field, value);
+        touched(record);
+    }
+
+    String readString(int record, int field)
+    {
+        return ClubRecords.readString(records, names.buffer(), record * RECORD_SIZE + field);
+    }
+
+    /**
+     * Returns the offset of the club name of a record, or -1 if it has
+     * none. Within a {@linkplain #getNameEpoch() name epoch} name bytes
+     * are never reused, so equal offsets mean equal names.
+     */
+    int nameOffset(int record)
+    {
+        int position = record * RECORD_SIZE + ClubRecords.CLUB_NAME;
+        return records.getInt(position + 4) < 0 ? -1 : records.getInt(position);
+    }
+
+    int getNameEpoch()
+    {
+        return nameEpoch;
+    }
+
+    void replaceString(int record, int field, String value)
+    {
+        int position = record * RECORD_SIZE + field;
+        long oldValue = stringAt(position);
+        ClubRecords.writeString(records, position, value, names);
+        release(oldValue);
+        touched(record);
+    }
+
+    /**
+     * Tells a running compaction that a record was written.
+     */
+    private void touched(int record)
+    {
+        if(compaction != null)
+        {
+            compaction.touched(record);
+        }
+    }
+
+    /**
+     * Returns the offset and length of a string of a record, packed into a long.
+     */
+    private long stringAt(int position)
+    {
+        return ((long) records.getInt(position) << 32) | (records.getInt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    private void release(long string)
+    {
+        names.release((int) (string >>> 32), (int) string);
+    }
+
+    private boolean hasPresident(int base)
+    {
+        return (records.get(base + ClubRecords.FLAGS) & ClubRecords.HAS_PRESIDENT) != 0;
+    }
+
+    private void releaseNames(int base)
+    {
+        release(stringAt(base + ClubRecords.CLUB_NAME));
+        if(hasPresident(base))
+        {
+            release(stringAt(base + ClubRecords.FIRST_NAME));
+            release(stringAt(base + ClubRecords.LAST_NAME));
+        }
+    }
+
+    private void checkIndex(int index, String method)
+    {
+        if(index < 0 || index >= numberOfClubs)
+        {
+            throw new IndexOutOfBoundsException("IndexOutOfBoundsException on OffHeapClubStore." + method + ": " + "index of " + index + " outside of stored clubs.");
+        }
+    }
+
+    /**
+     * Copies records in record number order into new buffers, together
+     * with the names they reference. A record written after it was copied
+     * is copied again, releasing the names of its first copy.
+     */
+    private final class Compaction implements StoreCompaction
+    {
+        private NameDictionary copiedNames = new NameDictionary();
+
+        private ByteBuffer copiedRecords = allocate(records.capacity());
+
+        /**
+         * The records below this number were copied.
+         */
+        private int next;
+
+        private final BitSet changed = new BitSet();
+
+        @Override
+        public boolean step(int maxRecords)
+        {
+            if(compaction != this)
+            {
+                throw new IllegalStateException("IllegalStateException on OffHeapClubStore.Compaction.step: " + " compaction was aborted.");
+            }
+            int copied = 0;
+            for(int record = changed.nextSetBit(0); record >= 0 && copied < maxRecords; record = changed.nextSetBit(record + 1))
+            {
+                changed.clear(record);
+                releaseCopy(record);
+                copy(record);
+                copied++;
+            }
+            for(; copied < maxRecords && next < recordsUsed; copied++)
+            {
+                copy(next++);
+            }
+            if(next < recordsUsed || !changed.isEmpty())
+            {
+                return false;
+            }
+            if(copiedRecords.capacity() < records.capacity())
+            {
+                copiedRecords = grow(copiedRecords, records.capacity(), copiedRecords.capacity());
+            }
+            records = copiedRecords;
+            names = copiedNames;
+            nameEpoch++;
+            compaction = null;
+            return true;
+        }
+
+        @Override
+        public boolean isCatchingUp()
+        {
+            return next >= recordsUsed;
+        }
+
+        @Override
+        public void abort()
+        {
+            if(compaction == this)
+            {
+                compaction = null;
+            }
+        }
+
+        private void touched(int record)
+        {
+            if(record < next)
+            {
+                changed.set(record);
+            }
+        }
+
+        private void restart()
+        {
+            copiedNames = new NameDictionary();
+            next = 0;
+            changed.clear();
+        }
+
+        private void copy(int record)
+        {
+            int base = record * RECORD_SIZE;
+            if(copiedRecords.capacity() < base + RECORD_SIZE)
+            {
+                long grown = Math.min((long) capacity * RECORD_SIZE, Math.max(base + RECORD_SIZE, copiedRecords.capacity() * 2L));
+                copiedRecords = grow(copiedRecords, grown, copiedRecords.capacity());
+            }
+            for(int i = 0; i < RECORD_SIZE; i += 8)
+            {
+                copiedRecords.putLong(base + i, records.getLong(base + i));
+            }
+            byte flags = records.get(base + ClubRecords.FLAGS);
+            if((flags & FREE) != 0)
+            {
+                return;
+            }
+            copyString(base + ClubRecords.CLUB_NAME);
+            if((flags & ClubRecords.HAS_PRESIDENT) != 0)
+            {
+                copyString(base + ClubRecords.FIRST_NAME);
+                copyString(base + ClubRecords.LAST_NAME);
+            }
+        }
+
+        private void copyString(int position)
+        {
+            int offset = records.getInt(position);
+            int length = records.getInt(position + 4);
+            if(length < 0)
+            {
+                return;
+            }
+            ByteBuffer nameBytes = names.buffer();
+            byte[] bytes = new byte[length];
+            for(int i = 0; i < length; i++)
+            {
+                bytes[i] = nameBytes.get(offset + i);
+            }
+            copiedRecords.putInt(position, copiedNames.append(bytes));
+        }
+
+        private void releaseCopy(int record)
+        {
+            int base = record * RECORD_SIZE;
+            byte flags = copiedRecords.get(base + ClubRecords.FLAGS);
+            if((flags & FREE) != 0)
+            {
+                return;
+            }
+            releaseCopiedString(base + ClubRecords.CLUB_NAME);
+            if((flags & ClubRecords.HAS_PRESIDENT) != 0)
+            {
+                releaseCopiedString(base + ClubRecords.FIRST_NAME);
+                releaseCopiedString(base + ClubRecords.LAST_NAME);
+            }
+        }
+
+        private void releaseCopiedString(int position)
+        {
+            copiedNames.release(copiedRecords.getInt(position), copiedRecords.getInt(position + 4));
+        }
+    }
+
+    private static ByteBuffer allocate(long size)
+    {
+        if(size > Integer.MAX_VALUE)
+        {
+            throw new IllegalStateException("IllegalStateException on OffHeapClubStore.allocate: " + " buffer of " + size + " bytes is too large.");
+        }
+        return ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, long size, long used)
+    {
+        ByteBuffer grown = allocate(size);
+        ByteBuffer source = buffer.duplicate();
+        source.clear().limit((int) used);
+        grown.put(source);
+        grown.clear();
+        return grown;
+    }
+}
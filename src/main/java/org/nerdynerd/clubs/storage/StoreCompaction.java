@@ -0,0 +1,35 @@
+package org.nerdynerd.clubs.storage;
+
+/**
+ * A compaction of a {@link ClubStore} in progress, run step by step by the
+ * owner of the store while holding the same lock as for any other access
+ * to the store. Between steps the store is read and written as usual;
+ * clubs changed after they were copied are copied again by later steps.
+ *
+ * @see ClubStore#startCompaction()
+ */
+public interface StoreCompaction
+{
+    /**
+     * Copies the next clubs into the compacted storage, and swaps it in
+     * once every club is copied and none changed since.
+     *
+     * @param maxRecords the largest number of clubs to copy in this step
+     * @return true if the compacted storage was swapped in, ending the compaction.
+     */
+    boolean step(int maxRecords);
+
+    /**
+     * Tells whether every club was copied once, so that further steps only
+     * copy clubs changed since they were copied.
+     *
+     * @return true if the compaction is catching up with changes
+     */
+    boolean isCatchingUp();
+
+    /**
+     * Ends the compaction without swapping anything in. The store keeps
+     * its current storage.
+     */
+    void abort();
+}
@@ -0,0 +1,638 @@
+package org.nerdynerd.clubs.workload;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubManagement;
+import org.nerdynerd.clubs.ClubRecord;
+import org.nerdynerd.clubs.ClubVersion;
+import org.nerdynerd.clubs.index.ClubNameBloomFilter;
+import org.nerdynerd.clubs.storage.OffHeapClubStore;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A soak test of a {@link ClubManagement}: several threads run a mix of
+ * operations on synthetic clubs for a while, and throughput, latency
+ * percentiles, heap use and garbage collections are reported at every
+ * interval and for the whole run.
+ * <p>
+ * Run it with options of the form {@code --name=value}:
+ * <pre>
+ * java org.nerdynerd.clubs.workload.ClubWorkload --threads=8 --duration=600 --clubs=100000 \
+ *      --keys=200000 --distribution=zipfian:0.99 --mix=add:10,remove:10,exists:75,list:4,sort:1 \
+ *      --store=offheap --filter=true --report=10
+ * </pre>
+ * Durations are in seconds. Keys name the clubs; the first {@code clubs}
+ * keys are added before the run, so operations hit both stored and
+ * missing clubs. {@code list} reads all clubs from a {@link ClubVersion},
+ * and {@code sort} sorts all clubs by name or by member count.
+ */
+public class ClubWorkload
+{
+    /**
+     * The operations of a workload.
+     */
+    public enum Operation
+    {
+        /**
+         * Adds the club of a key.
+         */
+        ADD,
+
+        /**
+         * Removes the club of a key.
+         */
+        REMOVE,
+
+        /**
+         * Checks if the club of a key exists.
+         */
+        EXISTS,
+
+        /**
+         * Reads all clubs.
+         */
+        LIST,
+
+        /**
+         * Sorts all clubs.
+         */
+        SORT
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final int threads;
+
+    private final long durationMillis;
+
+    private final long reportMillis;
+
+    private final int clubs;
+
+    private final KeyDistribution keys;
+
+    private final int[] weights;
+
+    private final boolean offHeap;
+
+    private final boolean nameFilter;
+
+    private final long seed;
+
+    private volatile boolean stopped;
+
+    private ClubWorkload(Builder builder)
+    {
+        threads = builder.threads;
+        durationMillis = builder.durationMillis;
+        reportMillis = builder.reportMillis;
+        clubs = builder.clubs;
+        keys = builder.keys;
+        weights = builder.weights.clone();
+        offHeap = builder.offHeap;
+        nameFilter = builder.nameFilter;
+        seed = builder.seed;
+    }
+
+    /**
+     * Creates a builder of workloads, set up for a short run of four threads.
+     *
+     * @return the builder
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Runs a workload configured by command line options.
+     *
+     * @param args options of the form {@code --name=value}
+     * @throws InterruptedException if interrupted while running
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        Builder builder = builder();
+        for(String arg : args)
+        {
+            int equals = arg.indexOf('=');
+            if(!arg.startsWith("--") || equals < 0)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubWorkload.main: " + " expected --name=value but got " + arg + ".");
+            }
+            builder.option(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        builder.build().run(System.out);
+    }
+
+    /**
+     * Runs the workload, printing a report at every interval and at the end.
+     *
+     * @param out the stream to report to
+     * @return the result of the whole run
+     * @throws InterruptedException if interrupted while running
+     */
+    public Result run(PrintStream out) throws InterruptedException
+    {
+        ClubManagement clubManagement = offHeap
+                ? new ClubManagement(new OffHeapClubStore(keys.getKeys()))
+                : new ClubManagement(keys.getKeys());
+        if(nameFilter)
+        {
+            clubManagement.setNameFilter(new ClubNameBloomFilter(keys.getKeys(), 0.01));
+        }
+        for(int key = 0; key < Math.min(clubs, keys.getKeys()); key++)
+        {
+            clubManagement.add(SyntheticClubs.club(key));
+        }
+        out.printf(Locale.ROOT, "%d threads, %s keys of %d, %d clubs stored, %s store%s%n", threads, keys, keys.getKeys(),
+                clubManagement.size(), offHeap ? "off-heap" : "heap", nameFilter ? " with name filter" : "");
+
+        LatencyHistogram[][] histograms = new LatencyHistogram[threads][OPERATIONS.length];
+        Thread[] workers = new Thread[threads];
+        stopped = false;
+        for(int i = 0; i < threads; i++)
+        {
+            LatencyHistogram[] own = histograms[i];
+            for(int o = 0; o < OPERATIONS.length; o++)
+            {
+                own[o] = new LatencyHistogram();
+            }
+            Random random = new Random(seed + i);
+            workers[i] = new Thread(() -> work(clubManagement, random, own), "club-workload-" + i);
+            workers[i].start();
+        }
+
+        long start = System.nanoTime();
+        long[][] previous = new long[OPERATIONS.length][LatencyHistogram.BUCKETS];
+        Sample previousSample = new Sample(start);
+        Sample firstSample = previousSample;
+        long end = start + durationMillis * 1_000_000;
+        try
+        {
+            while(System.nanoTime() < end)
+            {
+                long next = Math.min(end, previousSample.nanos + reportMillis * 1_000_000);
+                Thread.sleep(Math.max(0, (next - System.nanoTime()) / 1_000_000));
+                Sample sample = new Sample(System.nanoTime());
+                long[][] current = counts(histograms);
+                report(out, "[" + format(sample.nanos - start, 1e9, "s") + "]", previous, current, previousSample, sample);
+                previous = current;
+                previousSample = sample;
+            }
+        }
+        finally
+        {
+            stopped = true;
+            for(Thread worker : workers)
+            {
+                worker.join();
+            }
+        }
+        Sample last = new Sample(System.nanoTime());
+        long[][] total = counts(histograms);
+        report(out, "total", new long[OPERATIONS.length][LatencyHistogram.BUCKETS], total, firstSample, last);
+        return new Result(total, last.nanos - start);
+    }
+
+    private void work(ClubManagement clubManagement, Random random, LatencyHistogram[] histograms)
+    {
+        int totalWeight = 0;
+        for(int weight : weights)
+        {
+            totalWeight += weight;
+        }
+        while(!stopped)
+        {
+            int pick = random.nextInt(totalWeight);
+            int operation = 0;
+            while(pick >= weights[operation])
+            {
+                pick -= weights[operation];
+                operation++;
+            }
+            int key = keys.next(random);
+            long started = System.nanoTime();
+            switch (OPERATIONS[operation])
+            {
+                case ADD:
+                    clubManagement.add(SyntheticClubs.club(key));
+                    break;
+                case REMOVE:
+                    clubManagement.remove(new Club(key, SyntheticClubs.clubName(key)));
+                    break;
+                case EXISTS:
+                    clubManagement.clubExists(SyntheticClubs.clubName(key));
+                    break;
+                case LIST:
+                    try (ClubVersion version = clubManagement.openVersion())
+                    {
+                        long members = 0;
+                        for(ClubRecord club : version)
+                        {
+                            members += club.getMemberNumber();
+                        }
+                        if(members < 0)
+                        {
+                            throw new IllegalStateException("IllegalStateException on ClubWorkload.work: " + " negative member count.");
+                        }
+                    }
+                    break;
+                default:
+                    if(random.nextBoolean())
+                    {
+                        clubManagement.sortByClubNames();
+                    }
+                    else
+                    {
+                        clubManagement.sortByMemberNumbers();
+                    }
+                    break;
+            }
+            histograms[operation].record(System.nanoTime() - started);
+        }
+    }
+
+    private static long[][] counts(LatencyHistogram[][] histograms)
+    {
+        long[][] counts = new long[OPERATIONS.length][LatencyHistogram.BUCKETS];
+        long[] thread = new long[LatencyHistogram.BUCKETS];
+        for(LatencyHistogram[] own : histograms)
+        {
+            for(int o = 0; o < OPERATIONS.length; o++)
+            {
+                own[o].copyCounts(thread);
+                for(int b = 0; b < thread.length; b++)
+                {
+                    counts[o][b] += thread[b];
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static void report(PrintStream out, String label, long[][] previous, long[][] current, Sample from, Sample to)
+    {
+        double seconds = Math.max(1, to.nanos - from.nanos) / 1e9;
+        long[][] interval = new long[OPERATIONS.length][LatencyHistogram.BUCKETS];
+        long operations = 0;
+        for(int o = 0; o < OPERATIONS.length; o++)
+        {
+            for(int b = 0; b < LatencyHistogram.BUCKETS; b++)
+            {
+                interval[o][b] = current[o][b] - previous[o][b];
+            }
+            operations += LatencyHistogram.total(interval[o]);
+        }
+        out.printf(Locale.ROOT, "%s %.0f ops/s, heap %d MB used of %d MB, %d collections taking %d ms%n", label, operations / seconds,
+                to.heapUsed >> 20, to.heapCommitted >> 20, to.collections - from.collections, to.collectionMillis - from.collectionMillis);
+        for(int o = 0; o < OPERATIONS.length; o++)
+        {
+            long count = LatencyHistogram.total(interval[o]);
+            if(count == 0)
+            {
+                continue;
+            }
+            out.printf(Locale.ROOT, "  %-6s %10.0f ops/s  p50 %8s  p90 %8s  p99 %8s  p99.9 %8s  max %8s%n",
+                    OPERATIONS[o].name().toLowerCase(Locale.ROOT), count / seconds,
+                    nanos(LatencyHistogram.percentile(interval[o], 50)), nanos(LatencyHistogram.percentile(interval[o], 90)),
+                    nanos(LatencyHistogram.percentile(interval[o], 99)), nanos(LatencyHistogram.percentile(interval[o], 99.9)),
+                    nanos(LatencyHistogram.percentile(interval[o], 100)));
+        }
+    }
+
+    private static String nanos(long nanos)
+    {
+        if(nanos < 1_000)
+        {
+            return nanos + "ns";
+        }
+        if(nanos < 1_000_000)
+        {
+            return format(nanos, 1e3, "us");
+        }
+        if(nanos < 1_000_000_000)
+        {
+            return format(nanos, 1e6, "ms");
+        }
+        return format(nanos, 1e9, "s");
+    }
+
+    private static String format(long value, double unit, String suffix)
+    {
+        return String.format(Locale.ROOT, "%.1f%s", value / unit, suffix);
+    }
+
+    /**
+     * The heap and garbage collections at one point of a run.
+     */
+    private static final class Sample
+    {
+        final long nanos;
+
+        final long heapUsed;
+
+        final long heapCommitted;
+
+        final long collections;
+
+        final long collectionMillis;
+
+        Sample(long nanos)
+        {
+            this.nanos = nanos;
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            heapUsed = heap.getUsed();
+            heapCommitted = heap.getCommitted();
+            long count = 0;
+            long millis = 0;
+            for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+            {
+                count += Math.max(0, collector.getCollectionCount());
+                millis += Math.max(0, collector.getCollectionTime());
+            }
+            collections = count;
+            collectionMillis = millis;
+        }
+    }
+
+    /**
+     * The operations run by a workload and their latencies.
+     */
+    public static final class Result
+    {
+        private final long[][] counts;
+
+        private final long nanos;
+
+        private Result(long[][] counts, long nanos)
+        {
+            this.counts = counts;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Returns how often an operation was run.
+         *
+         * @param operation the operation
+         * @return the number of runs
+         */
+        public long getCount(Operation operation)
+        {
+            return LatencyHistogram.total(counts[operation.ordinal()]);
+        }
+
+        /**
+         * Returns the latency below or at which a share of the runs of an operation took.
+         *
+         * @param operation  the operation
+         * @param percentile the share in percent, such as 99.9
+         * @return the latency in nanoseconds
+         */
+        public long getLatencyNanos(Operation operation, double percentile)
+        {
+            return LatencyHistogram.percentile(counts[operation.ordinal()], percentile);
+        }
+
+        /**
+         * Returns the number of operations run per second.
+         *
+         * @return the throughput
+         */
+        public double getThroughput()
+        {
+            long total = 0;
+            for(Operation operation : OPERATIONS)
+            {
+                total += getCount(operation);
+            }
+            return total / (nanos / 1e9);
+        }
+    }
+
+    /**
+     * A builder of {@link ClubWorkload}s.
+     */
+    public static final class Builder
+    {
+        private int threads = 4;
+
+        private long durationMillis = 10_000;
+
+        private long reportMillis = 1_000;
+
+        private int clubs = 10_000;
+
+        private KeyDistribution keys;
+
+        private int keyCount = 20_000;
+
+        private double exponent = 0.99;
+
+        private final int[] weights = {10, 10, 75, 4, 1};
+
+        private boolean offHeap;
+
+        private boolean nameFilter = true;
+
+        private long seed = 42;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Sets the number of threads running operations.
+         *
+         * @param threads the number of threads
+         * @return this builder
+         */
+        public Builder threads(int threads)
+        {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets how long the workload runs.
+         *
+         * @param durationMillis the duration in milliseconds
+         * @return this builder
+         */
+        public Builder duration(long durationMillis)
+        {
+            this.durationMillis = durationMillis;
+            return this;
+        }
+
+        /**
+         * Sets the interval between reports.
+         *
+         * @param reportMillis the interval in milliseconds
+         * @return this builder
+         */
+        public Builder reportInterval(long reportMillis)
+        {
+            this.reportMillis = reportMillis;
+            return this;
+        }
+
+        /**
+         * Sets the number of clubs added before the run.
+         *
+         * @param clubs the number of clubs
+         * @return this builder
+         */
+        public Builder clubs(int clubs)
+        {
+            this.clubs = clubs;
+            return this;
+        }
+
+        /**
+         * Sets the distribution of the keys of the clubs operated on,
+         * which also sets the capacity of the club management. By default,
+         * 20,000 keys are Zipfian distributed with an exponent of 0.99.
+         *
+         * @param keys the key distribution
+         * @return this builder
+         */
+        public Builder keys(KeyDistribution keys)
+        {
+            this.keys = keys;
+            return this;
+        }
+
+        /**
+         * Sets how often an operation is run relative to the others.
+         *
+         * @param operation the operation
+         * @param weight    the weight, zero to not run it
+         * @return this builder
+         */
+        public Builder weight(Operation operation, int weight)
+        {
+            weights[operation.ordinal()] = weight;
+            return this;
+        }
+
+        /**
+         * Sets whether clubs are stored off the heap.
+         *
+         * @param offHeap true for an {@link OffHeapClubStore}
+         * @return this builder
+         */
+        public Builder offHeap(boolean offHeap)
+        {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * Sets whether lookups are filtered by a {@link ClubNameBloomFilter}.
+         *
+         * @param nameFilter true to filter lookups
+         * @return this builder
+         */
+        public Builder nameFilter(boolean nameFilter)
+        {
+            this.nameFilter = nameFilter;
+            return this;
+        }
+
+        /**
+         * Sets the seed of the random choices of the threads.
+         *
+         * @param seed the seed
+         * @return this builder
+         */
+        public Builder seed(long seed)
+        {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets an option by its command line name.
+         *
+         * @param name  the option name
+         * @param value the option value
+         * @return this builder
+         * @throws IllegalArgumentException if the option is unknown or its value invalid
+         */
+        public Builder option(String name, String value)
+        {
+            switch (name)
+            {
+                case "threads":
+                    return threads(Integer.parseInt(value));
+                case "duration":
+                    return duration(Long.parseLong(value) * 1000);
+                case "report":
+                    return reportInterval(Long.parseLong(value) * 1000);
+                case "clubs":
+                    return clubs(Integer.parseInt(value));
+                case "keys":
+                    keys = null;
+                    keyCount = Integer.parseInt(value);
+                    return this;
+                case "distribution":
+                    keys = null;
+                    exponent = value.equals("uniform") ? 0 : value.startsWith("zipfian:") ? Double.parseDouble(value.substring(8)) : 0.99;
+                    return this;
+                case "mix":
+                    for(Operation operation : OPERATIONS)
+                    {
+                        weights[operation.ordinal()] = 0;
+                    }
+                    for(String part : value.split(","))
+                    {
+                        String[] weight = part.split(":");
+                        weight(Operation.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(weight[1].trim()));
+                    }
+                    return this;
+                case "store":
+                    return offHeap(value.equals("offheap"));
+                case "filter":
+                    return nameFilter(Boolean.parseBoolean(value));
+                case "seed":
+                    return seed(Long.parseLong(value));
+                default:
+                    throw new IllegalArgumentException("IllegalArgumentException on ClubWorkload.option: " + " unknown option " + name + ".");
+            }
+        }
+
+        /**
+         * Builds the workload.
+         *
+         * @return the workload
+         * @throws IllegalArgumentException if no operation has a weight or a setting is not positive
+         */
+        public ClubWorkload build()
+        {
+            int totalWeight = 0;
+            for(int weight : weights)
+            {
+                if(weight < 0)
+                {
+                    throw new IllegalArgumentException("IllegalArgumentException on ClubWorkload.build: " + " weights must not be negative.");
+                }
+                totalWeight += weight;
+            }
+            if(totalWeight == 0 || threads < 1 || durationMillis < 1 || reportMillis < 1)
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on ClubWorkload.build: " + " weights, threads, duration and report interval must be positive.");
+            }
+            if(keys == null)
+            {
+                keys = exponent == 0 ? KeyDistribution.uniform(keyCount) : KeyDistribution.zipfian(keyCount, exponent);
+            }
+            return new ClubWorkload(this);
+        }
+    }
+}
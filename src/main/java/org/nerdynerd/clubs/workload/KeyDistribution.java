@@ -0,0 +1,158 @@
+package org.nerdynerd.clubs.workload;
+
+import org.nerdynerd.clubs.ClubNames;
+
+import java.util.Random;
+
+/**
+ * Picks the keys of the clubs a workload operates on, from {@code 0} to
+ * {@code keys - 1}.
+ */
+public abstract class KeyDistribution
+{
+    private final int keys;
+
+    KeyDistribution(int keys)
+    {
+        if(keys < 1)
+        {
+            throw new IllegalArgumentException("IllegalArgumentException on KeyDistribution.KeyDistribution: " + " there must be at least one key.");
+        }
+        this.keys = keys;
+    }
+
+    /**
+     * Returns a distribution picking every key equally often.
+     *
+     * @param keys the number of keys
+     * @return the distribution
+     */
+    public static KeyDistribution uniform(int keys)
+    {
+        return new Uniform(keys);
+    }
+
+    /**
+     * Returns a distribution picking the key of rank {@code r} with a
+     * probability proportional to {@code 1 / r^exponent}. Ranks are spread
+     * over the keys by a hash, so popular keys are not all small.
+     *
+     * @param keys     the number of keys
+     * @param exponent the skew, such as 0.99, between zero and one exclusive; larger values concentrate on fewer keys
+     * @return the distribution
+     * @throws IllegalArgumentException if the exponent is not between zero and one exclusive
+     */
+    public static KeyDistribution zipfian(int keys, double exponent)
+    {
+        return new Zipfian(keys, exponent);
+    }
+
+    /**
+     * Gets the number of keys.
+     *
+     * @return the number of keys
+     */
+    public int getKeys()
+    {
+        return keys;
+    }
+
+    /**
+     * Picks a key.
+     *
+     * @param random the source of randomness, used by one thread
+     * @return the key
+     */
+    public abstract int next(Random random);
+
+    private static final class Uniform extends KeyDistribution
+    {
+        private Uniform(int keys)
+        {
+            super(keys);
+        }
+
+        @Override
+        public int next(Random random)
+        {
+            return random.nextInt(getKeys());
+        }
+
+        @Override
+        public String toString()
+        {
+            return "uniform";
+        }
+    }
+
+    /**
+     * Samples ranks in constant time after computing the zeta constant once,
+     * as described by Gray et al. in "Quickly generating billion-record
+     * synthetic databases". Their closed form only approximates the
+     * distribution for exponents below one.
+     */
+    private static final class Zipfian extends KeyDistribution
+    {
+        private final double exponent;
+
+        private final double zetaN;
+
+        private final double alpha;
+
+        private final double eta;
+
+        private final double secondRankThreshold;
+
+        private Zipfian(int keys, double exponent)
+        {
+            super(keys);
+            if(!(exponent > 0 && exponent < 1))
+            {
+                throw new IllegalArgumentException("IllegalArgumentException on KeyDistribution.zipfian: " + " exponent must be between zero and one exclusive.");
+            }
+            this.exponent = exponent;
+            double zeta2 = zeta(2, exponent);
+            zetaN = zeta(keys, exponent);
+            alpha = 1 / (1 - exponent);
+            eta = (1 - Math.pow(2.0 / keys, 1 - exponent)) / (1 - zeta2 / zetaN);
+            secondRankThreshold = 1 + Math.pow(0.5, exponent);
+        }
+
+        @Override
+        public int next(Random random)
+        {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            int rank;
+            if(uz < 1)
+            {
+                rank = 0;
+            }
+            else if(uz < secondRankThreshold)
+            {
+                rank = 1;
+            }
+            else
+            {
+                rank = (int) Math.min(getKeys() - 1, (long) (getKeys() * Math.pow(eta * u - eta + 1, alpha)));
+            }
+            return Math.floorMod(ClubNames.mix(rank), getKeys());
+        }
+
+        private static double zeta(int n, double exponent)
+        {
+            double sum = 0;
+            for(int i = 1; i <= n; i++)
+            {
+                sum += 1 / Math.pow(i, exponent);
+            }
+            return sum;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "zipfian(" + exponent + ")";
+        }
+    }
+}
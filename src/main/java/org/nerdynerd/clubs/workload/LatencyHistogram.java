@@ -0,0 +1,132 @@
+package org.nerdynerd.clubs.workload;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds, with a relative error below
+ * one in {@value #SUB_BUCKETS}.
+ * <p>
+ * Values below {@value #SUB_BUCKETS} have a bucket each; larger values
+ * fall into one of {@value #SUB_BUCKETS} buckets per power of two. A
+ * histogram is written by one thread and can be read by others at any
+ * time, so a reporter can take interval snapshots without stopping the
+ * thread recording.
+ */
+public final class LatencyHistogram
+{
+    /**
+     * The number of buckets per power of two.
+     */
+    public static final int SUB_BUCKETS = 16;
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * The number of buckets, enough for any positive long.
+     */
+    public static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Records a latency. Only one thread may record into a histogram.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos)
+    {
+        int bucket = bucketOf(Math.max(0, nanos));
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+    }
+
+    /**
+     * Copies the counts of all buckets.
+     *
+     * @param into the array to copy into, of {@link #BUCKETS} elements
+     * @return the array
+     */
+    public long[] copyCounts(long[] into)
+    {
+        for(int i = 0; i < BUCKETS; i++)
+        {
+            into[i] = counts.get(i);
+        }
+        return into;
+    }
+
+    /**
+     * Returns the bucket of a latency.
+     *
+     * @param nanos the latency in nanoseconds, not negative
+     * @return the bucket
+     */
+    public static int bucketOf(long nanos)
+    {
+        if(nanos < SUB_BUCKETS)
+        {
+            return (int) nanos;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos)) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the largest latency falling into a bucket.
+     *
+     * @param bucket the bucket
+     * @return the largest latency in nanoseconds
+     */
+    public static long highestOf(int bucket)
+    {
+        if(bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long low = ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS)) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    /**
+     * Returns the number of latencies in bucket counts.
+     *
+     * @param counts the bucket counts
+     * @return the number of latencies
+     */
+    public static long total(long[] counts)
+    {
+        long total = 0;
+        for(long count : counts)
+        {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the latency below or at which a share of all latencies fall.
+     *
+     * @param counts     the bucket counts
+     * @param percentile the share in percent, such as 99.9
+     * @return the latency in nanoseconds, or zero if there are none.
+     */
+    public static long percentile(long[] counts, double percentile)
+    {
+        long total = total(counts);
+        if(total == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+            if(seen >= rank)
+            {
+                return highestOf(i);
+            }
+        }
+        return highestOf(counts.length - 1);
+    }
+}
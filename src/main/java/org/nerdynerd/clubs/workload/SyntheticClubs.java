@@ -0,0 +1,63 @@
+package org.nerdynerd.clubs.workload;
+
+import org.nerdynerd.clubs.Club;
+import org.nerdynerd.clubs.ClubPresident;
+
+import java.util.Date;
+import java.util.SplittableRandom;
+
+/**
+ * Creates made-up clubs and presidents for workloads. The club of a key is
+ * always the same, so a key can be looked up or removed by its name.
+ */
+public final class SyntheticClubs
+{
+    private static final String[] ACTIVITIES = {
+            "Chess", "Hiking", "Rowing", "Go", "Robotics", "Choir", "Debate", "Cycling", "Pottery", "Astronomy",
+            "Fencing", "Origami", "Poetry", "Climbing", "Baking", "Birdwatching"
+    };
+
+    private static final String[] FIRST_NAMES = {
+            "Anna", "Ben", "Chloe", "David", "Emma", "Felix", "Grace", "Hugo", "Ines", "Jonas", "Karin", "Liam"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Smith", "M\u00fcller", "Garcia", "Novak", "Kowalski", "Rossi", "Jensen", "Dubois", "Silva", "Tanaka"
+    };
+
+    private static final long YEAR_MILLIS = 365L * 24 * 60 * 60 * 1000;
+
+    private SyntheticClubs()
+    {
+    }
+
+    /**
+     * Returns the name of the club of a key.
+     *
+     * @param key the key
+     * @return the club name
+     */
+    public static String clubName(int key)
+    {
+        return ACTIVITIES[key % ACTIVITIES.length] + " club " + key;
+    }
+
+    /**
+     * Creates the club of a key, with a president for most keys.
+     *
+     * @param key the key
+     * @return a new club
+     */
+    public static Club club(int key)
+    {
+        SplittableRandom random = new SplittableRandom(key);
+        ClubPresident clubPresident = null;
+        if(random.nextInt(10) != 0)
+        {
+            long start = 20 * YEAR_MILLIS + random.nextLong(30 * YEAR_MILLIS);
+            clubPresident = new ClubPresident(key, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)], (char) ('A' + random.nextInt(26)),
+                    LAST_NAMES[random.nextInt(LAST_NAMES.length)], new Date(start), null);
+        }
+        return new Club(key, clubName(key), clubPresident, 1 + random.nextInt(500));
+    }
+}
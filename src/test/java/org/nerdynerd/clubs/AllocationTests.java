@@ -0,0 +1,274 @@
+package org.nerdynerd.clubs;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.nerdynerd.clubs.cache.LruClubCache;
+import org.nerdynerd.clubs.codec.ClubCodec;
+import org.nerdynerd.clubs.codec.ClubPresidentView;
+import org.nerdynerd.clubs.codec.ClubView;
+import org.nerdynerd.clubs.comparator.ClubNameComparator;
+import org.nerdynerd.clubs.comparator.CurrentPresidentComparator;
+import org.nerdynerd.clubs.comparator.MemberNumberComparator;
+import org.nerdynerd.clubs.index.ClubNameBloomFilter;
+import org.nerdynerd.clubs.storage.OffHeapClubStore;
+import org.nerdynerd.clubs.workload.SyntheticClubs;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+
+/**
+ * Allocation budgets for the hot paths of the club management system.
+ * <p>
+ * Every test warms an operation up until it is compiled, then counts the
+ * bytes the test thread allocates over many calls of it, as reported by
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}.
+ * A budget is given per call, so an operation that starts allocating even
+ * a small object per call exceeds it. Tests are skipped on virtual
+ * machines that do not count allocated bytes per thread.
+ */
+public class AllocationTests
+{
+    private static final int CLUBS = 64;
+
+    private static final int WARM_UP_CALLS = 100_000;
+
+    private static final int MEASURED_CALLS = 10_000;
+
+    /**
+     * Bytes a measurement may allocate no matter how many calls it makes,
+     * such as for a class loaded or a counter created on the first call.
+     */
+    private static final long SLACK_BYTES = 1024;
+
+    /**
+     * Bytes an iterator may take, in case the compiler does not
+     * eliminate its allocation.
+     */
+    private static final long ITERATOR_BYTES = 64;
+
+    /**
+     * Bytes the normalized form of a club name of these tests may take:
+     * a string of up to twenty characters, its array and one intermediate
+     * copy while normalizing.
+     */
+    private static final long NORMALIZED_NAME_BYTES = 128;
+
+    /**
+     * Bytes an off-heap store may take to hand out a view of a club.
+     */
+    private static final long VIEW_BYTES = 96;
+
+    private static final String MISSING_CLUB_NAME = "No such club";
+
+    private static volatile Object sink;
+
+    private static int checksum;
+
+    /**
+     * Asserts that checking if a club exists does not allocate,
+     * with and without a name filter, for stored and missing names.
+     */
+    @Test
+    public void ShouldCheckClubExistenceWithoutAllocating()
+    {
+        ClubManagement clubManagement = clubManagement();
+        String[] clubNames = clubNames();
+        assertBudget("clubExists", 0, i -> checksum += clubManagement.clubExists(clubNames[i % CLUBS]) ? 1 : 0);
+        assertBudget("clubExists of a missing club", 0, i -> checksum += clubManagement.clubExists(MISSING_CLUB_NAME) ? 1 : 0);
+
+        ClubManagement filtered = clubManagement();
+        filtered.setNameFilter(new ClubNameBloomFilter(CLUBS, 0.01));
+        assertBudget("clubExists with a name filter", 0, i -> checksum += filtered.clubExists(clubNames[i % CLUBS]) ? 1 : 0);
+        assertBudget("clubExists of a missing club with a name filter", 0, i -> checksum += filtered.clubExists(MISSING_CLUB_NAME) ? 1 : 0);
+    }
+
+    /**
+     * Asserts that a cached look-up allocates no more than the normalized
+     * name it looks the club up by.
+     */
+    @Test
+    public void ShouldLookUpCachedClubsAllocatingOnlyTheNormalizedName()
+    {
+        ClubManagement clubManagement = clubManagement();
+        clubManagement.setCache(new LruClubCache(CLUBS));
+        String[] clubNames = clubNames();
+        assertBudget("clubExists with a cache", NORMALIZED_NAME_BYTES, i -> checksum += clubManagement.clubExists(clubNames[i % CLUBS]) ? 1 : 0);
+    }
+
+    /**
+     * Asserts that getting a club by its position does not allocate.
+     */
+    @Test
+    public void ShouldGetClubsWithoutAllocating()
+    {
+        ClubManagement clubManagement = clubManagement();
+        assertBudget("get", 0, i -> sink = clubManagement.get(i % CLUBS));
+    }
+
+    /**
+     * Asserts that checking if a club is contained does not allocate.
+     */
+    @Test
+    public void ShouldCheckContainsWithoutAllocating()
+    {
+        ClubManagement clubManagement = clubManagement();
+        Club stored = clubManagement.get(CLUBS / 2);
+        Club missing = new Club(-1, MISSING_CLUB_NAME);
+        assertBudget("contains", 0, i -> checksum += clubManagement.contains(stored) ? 1 : 0);
+        assertBudget("contains of a missing club", 0, i -> checksum += clubManagement.contains(missing) ? 1 : 0);
+    }
+
+    /**
+     * Asserts that iterating over all clubs allocates at most the iterator.
+     */
+    @Test
+    public void ShouldIterateClubsWithoutAllocating()
+    {
+        ClubManagement clubManagement = clubManagement();
+        assertBudget("iteration", ITERATOR_BYTES, i ->
+        {
+            for(Club club : clubManagement)
+            {
+                checksum += club.getMemberNumber();
+            }
+        });
+    }
+
+    /**
+     * Asserts that a system backed by an off-heap store checks if a club
+     * exists without allocating, and gets a club allocating only its view.
+     */
+    @Test
+    public void ShouldGetAndFindOffHeapClubsAllocatingOnlyViews()
+    {
+        ClubManagement clubManagement = new ClubManagement(new OffHeapClubStore(CLUBS));
+        for(int i = 0; i < CLUBS; i++)
+        {
+            clubManagement.add(SyntheticClubs.club(i));
+        }
+        String[] clubNames = clubNames();
+        assertBudget("off-heap get", VIEW_BYTES, i -> sink = clubManagement.get(i % CLUBS));
+        assertBudget("off-heap clubExists", 0, i -> checksum += clubManagement.clubExists(clubNames[i % CLUBS]) ? 1 : 0);
+        assertBudget("off-heap clubExists of a missing club", 0, i -> checksum += clubManagement.clubExists(MISSING_CLUB_NAME) ? 1 : 0);
+    }
+
+    /**
+     * Asserts that the binary codec encodes into a buffer and reads
+     * messages in place through reused views without allocating.
+     */
+    @Test
+    public void ShouldEncodeAndViewClubsWithoutAllocating()
+    {
+        ClubManagement clubManagement = clubManagement();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CLUBS * 128);
+        assertBudget("encode", 0, i ->
+        {
+            buffer.clear();
+            checksum += ClubCodec.encode(clubManagement.get(i % CLUBS), buffer);
+        });
+
+        buffer.clear();
+        for(Club club : clubManagement)
+        {
+            ClubCodec.encode(club, buffer);
+        }
+        buffer.flip();
+        ClubView view = new ClubView();
+        String[] clubNames = clubNames();
+        assertBudget("view", 0, i ->
+        {
+            for(int offset = 0; offset < buffer.limit(); offset += view.getLength())
+            {
+                view.wrap(buffer, offset);
+                checksum += view.getMemberNumber() + (view.clubNameEquals(clubNames[i % CLUBS]) ? 1 : 0);
+                ClubPresidentView clubPresident = view.getClubPresident();
+                if(clubPresident != null)
+                {
+                    checksum += clubPresident.getId() + (int) clubPresident.getStartTime() + (clubPresident.lastNameEquals("Novak") ? 1 : 0);
+                }
+            }
+        });
+    }
+
+    /**
+     * Asserts that the comparators do not allocate once the collation
+     * keys of the names were generated.
+     */
+    @Test
+    public void ShouldCompareClubsWithoutAllocating()
+    {
+        ClubManagement clubManagement = clubManagement();
+        List<Comparator<Club>> comparators = Arrays.asList(new ClubNameComparator(), new MemberNumberComparator(), new CurrentPresidentComparator());
+        for(Comparator<Club> comparator : comparators)
+        {
+            assertBudget(comparator.getClass().getSimpleName(), 0,
+                    i -> checksum += comparator.compare(clubManagement.get(i % CLUBS), clubManagement.get((i + 1) % CLUBS)));
+        }
+    }
+
+    private static ClubManagement clubManagement()
+    {
+        ClubManagement clubManagement = new ClubManagement(CLUBS);
+        for(int i = 0; i < CLUBS; i++)
+        {
+            clubManagement.add(SyntheticClubs.club(i));
+        }
+        return clubManagement;
+    }
+
+    private static String[] clubNames()
+    {
+        String[] clubNames = new String[CLUBS];
+        for(int i = 0; i < CLUBS; i++)
+        {
+            // in another case, so names are compared ignoring case
+            clubNames[i] = SyntheticClubs.clubName(i).toUpperCase(Locale.ROOT);
+        }
+        return clubNames;
+    }
+
+    private static void assertBudget(String operation, long bytesPerCall, IntConsumer call)
+    {
+        long allocated = allocatedBytes(call);
+        long budget = bytesPerCall * MEASURED_CALLS + SLACK_BYTES;
+        Assert.assertTrue(operation + " allocated " + allocated + " bytes in " + MEASURED_CALLS + " calls, more than its budget of " + budget + " bytes.",
+                allocated <= budget);
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread over
+     * {@value #MEASURED_CALLS} calls, after warming the calls up.
+     */
+    private static long allocatedBytes(IntConsumer call)
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        for(int i = 0; i < WARM_UP_CALLS; i++)
+        {
+            call.accept(i);
+        }
+        // reading the counter may allocate itself; measure that first
+        long first = allocations.getThreadAllocatedBytes(thread);
+        long second = allocations.getThreadAllocatedBytes(thread);
+        long start = allocations.getThreadAllocatedBytes(thread);
+        for(int i = 0; i < MEASURED_CALLS; i++)
+        {
+            call.accept(i);
+        }
+        long end = allocations.getThreadAllocatedBytes(thread);
+        return Math.max(0, end - start - (second - first));
+    }
+}
@@ -2,6 +2,57 @@ package org.nerdynerd.clubs;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.nerdynerd.clubs.cache.LruClubCache;
+import org.nerdynerd.clubs.cache.TinyLfuClubCache;
+import org.nerdynerd.clubs.codec.ClubCodec;
+import org.nerdynerd.clubs.codec.ClubPresidentView;
+import org.nerdynerd.clubs.codec.ClubView;
+import org.nerdynerd.clubs.comparator.MemberNumberComparator;
+import org.nerdynerd.clubs.flow.ClubPublisher;
+import org.nerdynerd.clubs.flow.Flow;
+import org.nerdynerd.clubs.index.ClubNameBloomFilter;
+import org.nerdynerd.clubs.index.MembershipHistory;
+import org.nerdynerd.clubs.index.MembershipStatistics;
+import org.nerdynerd.clubs.io.BinaryClubExporter;
+import org.nerdynerd.clubs.io.ClubExporter;
+import org.nerdynerd.clubs.io.CsvClubExporter;
+import org.nerdynerd.clubs.io.JsonLinesClubExporter;
+import org.nerdynerd.clubs.journal.ClubMutation;
+import org.nerdynerd.clubs.replication.ReplicationFollower;
+import org.nerdynerd.clubs.replication.ReplicationLeader;
+import org.nerdynerd.clubs.sort.ClubSortOrder;
+import org.nerdynerd.clubs.sort.SortKey;
+import org.nerdynerd.clubs.storage.MappedClubStore;
+import org.nerdynerd.clubs.storage.OffHeapClubStore;
+import org.nerdynerd.clubs.workload.ClubWorkload;
+import org.nerdynerd.clubs.workload.KeyDistribution;
+import org.nerdynerd.clubs.workload.LatencyHistogram;
+import org.nerdynerd.clubs.workload.SyntheticClubs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
 
 
 /**
@@ -233,4 +284,1368 @@ public class ClubManagementTests
         Assert.assertEquals(club1,clubManagement.get(3));
         Assert.assertEquals(club5,clubManagement.get(4));
     }
+
+    /**
+     * Asserts that a chain of sort keys breaks ties of the first key
+     * with the next one, and that clubs without a president are placed
+     * last instead of failing the sort.
+     */
+    @Test
+    public void ShouldSortByPresidentThenMemberCountDescending()
+    {
+        ClubManagement clubManagement = new ClubManagement(10);
+        ClubPresident president1 = new ClubPresident(1,"Rebecca",'U',"Johnson");
+        Club club1 = new Club(1,"Videogame club",president1,6);
+        clubManagement.add(club1);
+        ClubPresident president2 = new ClubPresident(2,"Ryan",'T',"Johnson");
+        Club club2 = new Club(2,"Chess club",president2,9);
+        clubManagement.add(club2);
+        Club club3 = new Club(3,"Cooking club");
+        clubManagement.add(club3);
+        ClubPresident president4 = new ClubPresident(4,"Isabella",'C',"Garland");
+        Club club4 = new Club(4,"Martial Arts Club",president4,10);
+        clubManagement.add(club4);
+        clubManagement.sort(ClubSortOrder.by(SortKey.presidentLastName())
+                .then(SortKey.memberNumber().reversed()));
+        Assert.assertEquals(club4,clubManagement.get(0));
+        Assert.assertEquals(club2,clubManagement.get(1));
+        Assert.assertEquals(club1,clubManagement.get(2));
+        Assert.assertEquals(club3,clubManagement.get(3));
+    }
+
+    /**
+     * Asserts that sorting a partially filled system only touches
+     * the stored clubs, including after a club has been removed.
+     */
+    @Test
+    public void ShouldSortPartiallyFilledClubManagement()
+    {
+        ClubManagement clubManagement = new ClubManagement(10);
+        Club club1 = new Club(1,"Doki Doki Literature Club");
+        clubManagement.add(club1);
+        Club club2 = new Club(2,"Videogame club");
+        clubManagement.add(club2);
+        Club club3 = new Club(3,"Cooking club");
+        clubManagement.add(club3);
+        clubManagement.remove(club1);
+        clubManagement.sortByClubNames();
+        clubManagement.sortByClubPresidents();
+        Assert.assertEquals(2,clubManagement.getNumberOfClubs());
+        Assert.assertEquals(club3,clubManagement.get(0));
+        Assert.assertEquals(club2,clubManagement.get(1));
+        Assert.assertTrue(clubManagement.clubExists(club2.getClubName()));
+    }
+
+    /**
+     * Asserts that sorting many clubs by member count gives the same
+     * stable order as the member number comparator, in both directions.
+     */
+    @Test
+    public void ShouldSortManyClubsByMemberCountLikeComparator()
+    {
+        int count = 5000;
+        ClubManagement clubManagement = new ClubManagement(count);
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++)
+        {
+            clubManagement.add(new Club(i, "Club " + i, null, 1 + random.nextInt(i % 2 == 0 ? 50 : 1 << 20)));
+        }
+        Club[] expected = storedClubs(clubManagement);
+        Arrays.sort(expected, new MemberNumberComparator());
+        clubManagement.sortByMemberNumbers();
+        Assert.assertArrayEquals(expected, storedClubs(clubManagement));
+
+        Arrays.sort(expected, new MemberNumberComparator().reversed());
+        clubManagement.sort(ClubSortOrder.by(SortKey.memberNumber().reversed()));
+        Assert.assertArrayEquals(expected, storedClubs(clubManagement));
+    }
+
+    private static Club[] storedClubs(ClubManagement clubManagement)
+    {
+        Club[] clubs = new Club[clubManagement.getNumberOfClubs()];
+        for (int i = 0; i < clubs.length; i++)
+        {
+            clubs[i] = clubManagement.get(i);
+        }
+        return clubs;
+    }
+
+    /**
+     * Asserts that sorting by club name ignores case, the same way
+     * club names are compared when adding clubs, and that renaming
+     * a club is reflected by the next sort.
+     */
+    @Test
+    public void ShouldSortClubNamesIgnoringCase()
+    {
+        ClubManagement clubManagement = new ClubManagement(5);
+        Club club1 = new Club(1,"cherry club");
+        clubManagement.add(club1);
+        Club club2 = new Club(2,"Banana Club");
+        clubManagement.add(club2);
+        Club club3 = new Club(3,"apple club");
+        clubManagement.add(club3);
+        clubManagement.sort(ClubSortOrder.by(SortKey.clubName(Locale.ENGLISH)));
+        Assert.assertEquals(club3,clubManagement.get(0));
+        Assert.assertEquals(club2,clubManagement.get(1));
+        Assert.assertEquals(club1,clubManagement.get(2));
+        club1.setClubName("Avocado club");
+        clubManagement.sort(ClubSortOrder.by(SortKey.clubName(Locale.ENGLISH)));
+        Assert.assertEquals(club3,clubManagement.get(0));
+        Assert.assertEquals(club1,clubManagement.get(1));
+        Assert.assertEquals(club2,clubManagement.get(2));
+    }
+
+    /**
+     * Asserts that a sharded system routes clubs by name, rejects the same
+     * name in a different case, and merges sorted shards into one order.
+     */
+    @Test
+    public void ShouldRouteAndMergeClubsAcrossShards()
+    {
+        ShardedClubManagement clubManagement = new ShardedClubManagement(4, 100);
+        for (int i = 0; i < 100; i++)
+        {
+            Assert.assertTrue(clubManagement.add(new Club(i, "Club " + i, null, 100 - i)));
+        }
+        Assert.assertFalse(clubManagement.add(new Club(200, "  CLUB 7 ")));
+        Assert.assertTrue(clubManagement.clubExists("club 42"));
+        Assert.assertEquals(100, clubManagement.getNumberOfClubs());
+        Assert.assertEquals(5050L, clubManagement.getTotalMemberNumber());
+
+        List<Club> sorted = clubManagement.sortedClubs(ClubSortOrder.by(SortKey.memberNumber()));
+        Assert.assertEquals(100, sorted.size());
+        for (int i = 0; i < sorted.size(); i++)
+        {
+            Assert.assertEquals(i + 1, sorted.get(i).getMemberNumber());
+        }
+        Assert.assertTrue(clubManagement.remove(new Club(0, "club 99")));
+        Assert.assertFalse(clubManagement.clubExists("Club 99"));
+        Assert.assertEquals(99, clubManagement.listClubs().size());
+    }
+
+    /**
+     * Asserts that a sharded system moves clubs renamed by their setters or
+     * by an update of their shard to the shard owning the new name.
+     */
+    @Test
+    public void ShouldMoveRenamedClubsAcrossShards()
+    {
+        ShardedClubManagement clubManagement = new ShardedClubManagement(4, 100);
+        Club club = new Club(1, "Chess club", null, 10);
+        Assert.assertTrue(clubManagement.add(club));
+        int shard = clubManagement.shardIndex("Chess club");
+        String renamed = "Go club";
+        for (int i = 2; clubManagement.shardIndex(renamed) == shard; i++)
+        {
+            renamed = "Go club " + i;
+        }
+        club.setClubName(renamed);
+        Assert.assertTrue(clubManagement.clubExists(renamed));
+        Assert.assertFalse(clubManagement.clubExists("Chess club"));
+        Assert.assertFalse(clubManagement.add(new Club(2, renamed)));
+        Assert.assertEquals(0, clubManagement.getShard(shard).getNumberOfClubs());
+
+        int moved = clubManagement.shardIndex(renamed);
+        String updated = "Hiking club";
+        for (int i = 2; clubManagement.shardIndex(updated) == moved; i++)
+        {
+            updated = "Hiking club " + i;
+        }
+        String newName = updated;
+        synchronized (clubManagement.getShard(moved))
+        {
+            clubManagement.getShard(moved).update(renamed, record -> record.toBuilder().clubName(newName).build());
+        }
+        Assert.assertTrue(clubManagement.clubExists(newName));
+        Assert.assertFalse(clubManagement.clubExists(renamed));
+        Assert.assertFalse(clubManagement.add(new Club(3, newName)));
+        Assert.assertEquals(1, clubManagement.getNumberOfClubs());
+        Assert.assertEquals(10, clubManagement.getTotalMemberNumber());
+    }
+
+    /**
+     * Asserts that a system backed by off-heap storage stores, finds,
+     * updates, sorts and removes clubs like the default one.
+     */
+    @Test
+    public void ShouldManageClubsStoredOffHeap()
+    {
+        ClubManagement clubManagement = new ClubManagement(new OffHeapClubStore(5));
+        ClubPresident president1 = new ClubPresident(1,"Just",'F',"Monika");
+        Club club1 = new Club(1,"Doki Doki Literature Club",president1,4);
+        Club club2 = new Club(2,"Videogame club",null,6);
+        Club club3 = new Club(3,"Caf\u00e9 club",null,2);
+        Assert.assertTrue(clubManagement.add(club1));
+        Assert.assertTrue(clubManagement.add(club2));
+        Assert.assertTrue(clubManagement.add(club3));
+        Assert.assertFalse(clubManagement.add(new Club(4," VIDEOGAME CLUB ")));
+        Assert.assertTrue(clubManagement.clubExists("CAF\u00c9 CLUB"));
+        Assert.assertTrue(clubManagement.currentPresidentExists("doki doki literature club", president1));
+        Assert.assertEquals(club1, clubManagement.get(0));
+
+        Club stored = clubManagement.get(1);
+        stored.setMemberNumber(1);
+        clubManagement.sortByMemberNumbers();
+        Assert.assertEquals("Videogame club", clubManagement.get(0).getClubName());
+        Assert.assertEquals(1, stored.getMemberNumber());
+
+        Club removed = clubManagement.get(2);
+        Assert.assertEquals("Doki Doki Literature Club", removed.getClubName());
+        Assert.assertTrue(clubManagement.remove(club1));
+        Assert.assertEquals(2, clubManagement.getNumberOfClubs());
+        Assert.assertFalse(clubManagement.clubExists(club1.getClubName()));
+        Assert.assertTrue(clubManagement.add(new Club(5, "Chess club", null, 3)));
+        Assert.assertEquals("Chess club", clubManagement.get(2).getClubName());
+        try
+        {
+            removed.setMemberNumber(50);
+            Assert.fail("a view of a removed club must not write to the club reusing its record");
+        }
+        catch (IllegalStateException ex)
+        {
+            Assert.assertEquals(3, clubManagement.get(2).getMemberNumber());
+        }
+        Assert.assertEquals(6, clubManagement.getMembershipStatistics().getTotalMembers());
+
+        Club cleared = clubManagement.get(0);
+        clubManagement.clear();
+        try
+        {
+            cleared.getClubName();
+            Assert.fail("a view of a cleared club must not read its record");
+        }
+        catch (IllegalStateException ex)
+        {
+            Assert.assertEquals(0, clubManagement.getNumberOfClubs());
+        }
+        Assert.assertTrue(clubManagement.add(new Club(6, "Go club", null, 7)));
+        try
+        {
+            cleared.setClubName("Zeta club");
+            Assert.fail("a view of a cleared club must not write to the club reusing its record");
+        }
+        catch (IllegalStateException ex)
+        {
+            Assert.assertEquals("Go club", clubManagement.get(0).getClubName());
+            Assert.assertFalse(clubManagement.clubExists("Zeta club"));
+        }
+    }
+
+    /**
+     * Asserts that a system opened from a snapshot holds the same clubs,
+     * and only decodes a club once it is read.
+     */
+    @Test
+    public void ShouldOpenSnapshotAndDecodeClubsOnDemand() throws IOException
+    {
+        ClubManagement original = new ClubManagement(10);
+        ClubPresident president1 = new ClubPresident(1,"Just",'F',"Monika");
+        original.add(new Club(1,"Doki Doki Literature Club",president1,4));
+        original.add(new Club(2,"Videogame club",null,6));
+        original.add(new Club(3,"Cooking club"));
+        Path snapshot = Files.createTempFile("clubs", ".snapshot");
+        try
+        {
+            original.writeSnapshot(snapshot);
+            ClubManagement opened = ClubManagement.openSnapshot(snapshot, 10);
+            MappedClubStore store = (MappedClubStore) opened.getStore();
+            Assert.assertEquals(3, opened.getNumberOfClubs());
+            Assert.assertTrue(opened.clubExists("COOKING CLUB"));
+            Assert.assertFalse(opened.clubExists("Chess club"));
+            Assert.assertEquals(0, store.getDecodedClubs());
+
+            Assert.assertEquals(original.get(1), opened.get(1));
+            Assert.assertEquals(1, store.getDecodedClubs());
+            Assert.assertTrue(opened.currentPresidentExists("Doki Doki Literature Club", president1));
+
+            Assert.assertTrue(opened.add(new Club(4, "Chess club")));
+            Assert.assertEquals(1, opened.getPresidents().size());
+            Assert.assertEquals("Monika", opened.getPresidents().getPresidentOf("Doki Doki Literature Club").getLastName());
+            Assert.assertEquals(2, store.getDecodedClubs());
+            Assert.assertTrue(opened.remove(new Club(0, "Doki Doki Literature Club")));
+            int count = 0;
+            for (Club club : opened)
+            {
+                Assert.assertNotNull(club);
+                count++;
+            }
+            Assert.assertEquals(3, count);
+            Assert.assertEquals(original.get(2), opened.get(1));
+        }
+        finally
+        {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    /**
+     * Asserts that repeated lookups are served by the cache, and that
+     * removed or renamed clubs are not reported by stale cache entries.
+     */
+    @Test
+    public void ShouldServeRepeatedLookupsFromCache()
+    {
+        ClubManagement clubManagement = new ClubManagement(5);
+        clubManagement.setCache(new LruClubCache(2));
+        Club club1 = new Club(1,"Cooking club");
+        clubManagement.add(club1);
+        clubManagement.add(new Club(2,"Chess club"));
+        Assert.assertTrue(clubManagement.clubExists("Cooking club"));
+        Assert.assertTrue(clubManagement.clubExists(" COOKING CLUB "));
+        Assert.assertEquals(1, clubManagement.getCache().getHitCount());
+        Assert.assertEquals(1, clubManagement.getCache().getMissCount());
+
+        club1.setClubName("Baking club");
+        Assert.assertFalse(clubManagement.clubExists("Cooking club"));
+        Assert.assertTrue(clubManagement.clubExists("Baking club"));
+        Assert.assertTrue(clubManagement.remove(club1));
+        Assert.assertFalse(clubManagement.clubExists("Baking club"));
+        Assert.assertTrue(clubManagement.clubExists("Chess club"));
+    }
+
+    /**
+     * Asserts that the TinyLFU admission policy keeps a popular club
+     * cached while many clubs are looked up only once.
+     */
+    @Test
+    public void ShouldKeepPopularClubCachedDuringScan()
+    {
+        ClubManagement clubManagement = new ClubManagement(60);
+        TinyLfuClubCache cache = new TinyLfuClubCache(10);
+        clubManagement.setCache(cache);
+        for (int i = 0; i < 60; i++)
+        {
+            clubManagement.add(new Club(i, "Club " + i));
+        }
+        for (int i = 0; i < 5; i++)
+        {
+            clubManagement.clubExists("Club 0");
+        }
+        for (int i = 1; i < 60; i++)
+        {
+            clubManagement.clubExists("Club " + i);
+        }
+        long hits = cache.getHitCount();
+        Assert.assertTrue(clubManagement.clubExists("Club 0"));
+        Assert.assertEquals(hits + 1, cache.getHitCount());
+        Assert.assertTrue(cache.getRejectionCount() > 0);
+    }
+
+    /**
+     * Asserts that the membership statistics follow added and removed
+     * clubs and changed member counts, on the heap and off the heap.
+     */
+    @Test
+    public void ShouldMaintainMembershipStatistics()
+    {
+        for (ClubManagement clubManagement : Arrays.asList(new ClubManagement(5), new ClubManagement(new OffHeapClubStore(5))))
+        {
+            MembershipStatistics statistics = clubManagement.getMembershipStatistics();
+            clubManagement.add(new Club(1, "Cooking club", null, 10));
+            clubManagement.add(new Club(2, "Chess club", null, 3));
+            clubManagement.add(new Club(3, "Hiking club", null, 30));
+            Assert.assertEquals(43, statistics.getTotalMembers());
+            Assert.assertEquals(3, statistics.getMinimumMembers());
+            Assert.assertEquals(30, statistics.getMaximumMembers());
+            Assert.assertEquals(1, statistics.getHistogram()[MembershipStatistics.bucketOf(30)]);
+
+            clubManagement.remove(new Club(0, "Chess club"));
+            Assert.assertEquals(10, statistics.getMinimumMembers());
+            Assert.assertEquals(20.0, statistics.getMeanMembers(), 0.0);
+
+            clubManagement.get(1).setMemberNumber(5);
+            Assert.assertEquals(15, statistics.getTotalMembers());
+            Assert.assertEquals(5, statistics.getMinimumMembers());
+            Assert.assertEquals(10, statistics.getMaximumMembers());
+
+            clubManagement.clear();
+            Assert.assertEquals(0, statistics.getNumberOfClubs());
+            Assert.assertEquals(0, statistics.getTotalMembers());
+        }
+    }
+
+    /**
+     * Asserts that a club removed from the system no longer changes its statistics.
+     */
+    @Test
+    public void ShouldIgnoreMemberChangesOfRemovedClubs()
+    {
+        ClubManagement clubManagement = new ClubManagement(5);
+        Club club = new Club(1, "Cooking club", null, 10);
+        clubManagement.add(club);
+        club.setMemberNumber(12);
+        Assert.assertEquals(12, clubManagement.getMembershipStatistics().getTotalMembers());
+        clubManagement.clear();
+        club.setMemberNumber(20);
+        Assert.assertEquals(0, clubManagement.getMembershipStatistics().getTotalMembers());
+    }
+
+    /**
+     * Asserts that updating a club swaps in a new club built from the changed
+     * record, and that records are shared until the version changes.
+     */
+    @Test
+    public void ShouldUpdateClubsThroughRecords()
+    {
+        ClubManagement clubManagement = new ClubManagement(5);
+        clubManagement.add(new Club(1, "Cooking club", null, 10));
+        clubManagement.add(new Club(2, "Chess club", null, 3));
+        List<ClubRecord> records = clubManagement.getRecords();
+        Assert.assertSame(records, clubManagement.getRecords());
+        long version = clubManagement.getVersion();
+
+        ClubRecord updated = clubManagement.update("cooking club", record -> record.toBuilder()
+                .clubName("Baking club")
+                .memberNumber(12)
+                .build());
+        Assert.assertEquals(version + 1, updated.getVersion());
+        Assert.assertFalse(clubManagement.clubExists("Cooking club"));
+        Assert.assertEquals(12, clubManagement.getRecord("Baking club").getMemberNumber());
+        Assert.assertEquals(15, clubManagement.getMembershipStatistics().getTotalMembers());
+        Assert.assertNotSame(records, clubManagement.getRecords());
+        Assert.assertEquals("Cooking club", records.get(0).getClubName());
+
+        clubManagement.get(1).setClubName("Go club");
+        Assert.assertEquals(version + 2, clubManagement.getVersion());
+        Assert.assertNull(clubManagement.update("Chess club", record -> record));
+    }
+
+    /**
+     * Asserts that a record cannot rename a club to the name of another club.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldNotUpdateClubToExistingName()
+    {
+        ClubManagement clubManagement = new ClubManagement(5);
+        clubManagement.add(new Club(1, "Cooking club"));
+        clubManagement.add(new Club(2, "Chess club"));
+        clubManagement.update("Cooking club", record -> record.toBuilder().clubName("CHESS CLUB").build());
+    }
+
+    /**
+     * Asserts that names repeated across clubs are stored once off the heap,
+     * and only become garbage once no club references them.
+     */
+    @Test
+    public void ShouldStoreRepeatedNamesOnce()
+    {
+        OffHeapClubStore store = new OffHeapClubStore(100);
+        ClubManagement clubManagement = new ClubManagement(store);
+        for (int i = 0; i < 100; i++)
+        {
+            clubManagement.add(new Club(i, "Club " + i, new ClubPresident(i, "Anna", 'M', "Smith"), 1));
+        }
+        Assert.assertEquals(102, store.getDistinctNames());
+        Assert.assertEquals("Smith", clubManagement.get(99).getClubPresident().getLastName());
+
+        for (int i = 0; i < 99; i++)
+        {
+            clubManagement.remove(new Club(0, "Club " + i));
+        }
+        Assert.assertEquals(10 * "Club 0".length() + 89 * "Club 10".length(), store.getGarbageNameBytes());
+        Assert.assertEquals(3, store.getDistinctNames());
+        clubManagement.get(0).setClubPresident(new ClubPresident(1, "Anna", 'M', "Jones"));
+        Assert.assertEquals(3, store.getDistinctNames());
+        Assert.assertEquals("Jones", clubManagement.get(0).getClubPresident().getLastName());
+        Assert.assertTrue(clubManagement.clubExists("club 99"));
+    }
+
+    /**
+     * Asserts that the name filter never rejects a stored club, rejects
+     * almost all other names, and is rebuilt after removals.
+     */
+    @Test
+    public void ShouldFilterLookupsOfUnknownNames()
+    {
+        ClubManagement clubManagement = new ClubManagement(1000);
+        ClubNameBloomFilter filter = new ClubNameBloomFilter(1000, 0.01);
+        clubManagement.add(new Club(0, "Existing club"));
+        clubManagement.setNameFilter(filter);
+        for (int i = 1; i < 1000; i++)
+        {
+            clubManagement.add(new Club(i, "Club " + i));
+        }
+        for (int i = 1; i < 1000; i++)
+        {
+            Assert.assertTrue(filter.mightContain(" CLUB " + i));
+        }
+        Assert.assertTrue(clubManagement.clubExists("existing club"));
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++)
+        {
+            if (filter.mightContain("Signup " + i))
+            {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue(falsePositives < 300);
+
+        int rebuilds = filter.getRebuildCount();
+        for (int i = 1; i < 500; i++)
+        {
+            clubManagement.remove(new Club(0, "Club " + i));
+        }
+        Assert.assertTrue(filter.getRebuildCount() > rebuilds);
+        Assert.assertFalse(clubManagement.clubExists("Club 1"));
+        Assert.assertTrue(clubManagement.clubExists("Club 999"));
+    }
+
+    /**
+     * Asserts that misspelled names find the closest stored club names,
+     * and that removed or renamed clubs are no longer found.
+     */
+    @Test
+    public void ShouldFindSimilarClubNames()
+    {
+        ClubManagement clubManagement = new ClubManagement(10);
+        clubManagement.add(new Club(1, "Chess club"));
+        clubManagement.add(new Club(2, "Chest club"));
+        clubManagement.add(new Club(3, "Cooking club"));
+        clubManagement.add(new Club(4, "Hiking club"));
+        Assert.assertEquals(Arrays.asList("Chess club", "Chest club"), clubManagement.findSimilarClubNames(" CHESS CLUB", 1, 5));
+        Assert.assertEquals(Arrays.asList("Cooking club"), clubManagement.findSimilarClubNames("Coking clb", 2, 5));
+        Assert.assertEquals(1, clubManagement.findSimilarClubNames("Chess club", 1, 1).size());
+
+        clubManagement.remove(new Club(0, "Chest club"));
+        clubManagement.get(0).setClubName("Checkers club");
+        Assert.assertTrue(clubManagement.findSimilarClubNames("Chess club", 1, 5).isEmpty());
+        Assert.assertEquals(Arrays.asList("Checkers club"), clubManagement.findSimilarClubNames("Checker club", 1, 5));
+        clubManagement.add(new Club(5, "Chess club"));
+        Assert.assertEquals(Arrays.asList("Chess club"), clubManagement.findSimilarClubNames("Chess club", 0, 5));
+    }
+
+    /**
+     * Asserts that pages read with cursors list every club once, in order,
+     * even when clubs are added and removed between pages.
+     */
+    @Test
+    public void ShouldPageThroughClubsWithCursors()
+    {
+        ClubSortOrder byMembers = ClubSortOrder.by(SortKey.memberNumber());
+        ClubManagement clubManagement = new ClubManagement(new OffHeapClubStore(20));
+        for (int i = 1; i <= 10; i++)
+        {
+            clubManagement.add(new Club(i, "Club " + i, null, i * 10));
+        }
+        ClubPage page = clubManagement.page(byMembers, null, 4);
+        Assert.assertEquals(Arrays.asList("Club 1", "Club 2", "Club 3", "Club 4"), namesOf(page));
+        Assert.assertTrue(page.hasNext());
+
+        clubManagement.remove(new Club(0, "Club 4"));
+        clubManagement.add(new Club(11, "Club 11", null, 5));
+        clubManagement.add(new Club(12, "Club 12", null, 55));
+        clubManagement.get(0).setMemberNumber(95);
+        page = clubManagement.page(byMembers, page.getNext(), 4);
+        Assert.assertEquals(Arrays.asList("Club 5", "Club 12", "Club 6", "Club 7"), namesOf(page));
+        page = clubManagement.page(byMembers, page.getNext(), 4);
+        Assert.assertEquals(Arrays.asList("Club 8", "Club 9", "Club 1", "Club 10"), namesOf(page));
+        Assert.assertFalse(page.hasNext());
+        Assert.assertEquals(95, page.getClubs().get(2).getMemberNumber());
+
+        int indexCount = clubManagement.getIndexes().size();
+        for (int i = 0; i < 20; i++)
+        {
+            clubManagement.page(ClubSortOrder.by(SortKey.memberNumber().reversed()), null, 1);
+        }
+        Assert.assertTrue(clubManagement.getIndexes().size() < indexCount + 8);
+        Assert.assertEquals(Arrays.asList("Club 11", "Club 2", "Club 3", "Club 5"), namesOf(clubManagement.page(byMembers, null, 4)));
+    }
+
+    private static List<String> namesOf(ClubPage page)
+    {
+        List<String> names = new ArrayList<>();
+        for (ClubRecord club : page.getClubs())
+        {
+            names.add(club.getClubName());
+        }
+        return names;
+    }
+
+    /**
+     * Asserts that clubs are exported as CSV, JSON lines and binary records,
+     * and that compressed exports hold the same bytes.
+     */
+    @Test
+    public void ShouldExportClubsToChannels() throws IOException
+    {
+        ClubManagement clubManagement = new ClubManagement(5);
+        clubManagement.add(new Club(1, "Chess, \"Go\" club", new ClubPresident(3, "Anna", 'M', "Sm\u00eft\u00e9", new Date(0), null), 12));
+        clubManagement.add(new Club(2, "Hiking club"));
+
+        String csv = new String(exportBytes(clubManagement, new CsvClubExporter()), StandardCharsets.UTF_8);
+        Assert.assertEquals("id,club_name,member_number,president_id,president_first_name,president_middle_initial,"
+                + "president_last_name,president_start_date,president_end_date\r\n"
+                + "1,\"Chess, \"\"Go\"\" club\",12,3,Anna,M,Sm\u00eft\u00e9,1970-01-01T00:00:00Z,\r\n"
+                + "2,Hiking club,0,,,,,,\r\n", csv);
+
+        String json = new String(exportBytes(clubManagement, new JsonLinesClubExporter()), StandardCharsets.UTF_8);
+        Assert.assertEquals("{\"id\":1,\"clubName\":\"Chess, \\\"Go\\\" club\",\"memberNumber\":12,\"president\":{\"id\":3,"
+                + "\"firstName\":\"Anna\",\"middleInitial\":\"M\",\"lastName\":\"Sm\u00eft\u00e9\",\"startDate\":\"1970-01-01T00:00:00Z\","
+                + "\"endDate\":null}}\n"
+                + "{\"id\":2,\"clubName\":\"Hiking club\",\"memberNumber\":0,\"president\":null}\n", json);
+
+        byte[] binary = exportBytes(clubManagement, new BinaryClubExporter());
+        Assert.assertEquals("CLBX", new String(binary, 0, 4, StandardCharsets.US_ASCII));
+        Assert.assertEquals(BinaryClubExporter.END, binary[binary.length - 1]);
+
+        byte[] compressed = exportBytes(clubManagement, new BinaryClubExporter(true));
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        byte[] chunk = new byte[256];
+        for (int read; (read = in.read(chunk)) > 0; )
+        {
+            decompressed.write(chunk, 0, read);
+        }
+        Assert.assertArrayEquals(binary, decompressed.toByteArray());
+    }
+
+    private static byte[] exportBytes(ClubManagement clubManagement, ClubExporter exporter) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(clubManagement.size(), exporter.export(clubManagement, Channels.newChannel(out)));
+        return out.toByteArray();
+    }
+
+    /**
+     * Asserts that a transaction applies all of its changes as one batch,
+     * and that a rejected transaction applies none of them.
+     */
+    @Test
+    public void ShouldCommitTransactionsAtomically()
+    {
+        ClubManagement clubManagement = new ClubManagement(new OffHeapClubStore(4));
+        clubManagement.setNameFilter(new ClubNameBloomFilter(100, 0.01));
+        clubManagement.add(new Club(1, "Chess club", null, 10));
+        clubManagement.add(new Club(2, "Checkers club", null, 20));
+        List<List<ClubMutation>> batches = new ArrayList<>();
+        clubManagement.setJournal((version, mutations) -> batches.add(mutations));
+        long version = clubManagement.getVersion();
+
+        try
+        {
+            clubManagement.begin()
+                          .remove("Chess club")
+                          .rename("Checkers club", "Go club")
+                          .add(new Club(3, "go CLUB"))
+                          .commit();
+            Assert.fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+            Assert.assertTrue(clubManagement.clubExists("Chess club"));
+            Assert.assertTrue(clubManagement.clubExists("Checkers club"));
+            Assert.assertFalse(clubManagement.clubExists("Go club"));
+            Assert.assertEquals(version, clubManagement.getVersion());
+            Assert.assertTrue(batches.isEmpty());
+        }
+
+        long committed = clubManagement.begin()
+                                       .rename("Chess club", "Checkers club 2")
+                                       .rename("Checkers club", "Chess club")
+                                       .update("Chess club", record -> record.toBuilder().memberNumber(25).build())
+                                       .add(new Club(3, "Go club", null, 5))
+                                       .remove("Checkers club 2")
+                                       .commit();
+        Assert.assertEquals(version + 1, committed);
+        Assert.assertEquals(committed, clubManagement.getVersion());
+        Assert.assertEquals(2, clubManagement.size());
+        Assert.assertEquals(2, clubManagement.getRecord("Chess club").getId());
+        Assert.assertEquals(25, clubManagement.getRecord("Chess club").getMemberNumber());
+        Assert.assertFalse(clubManagement.clubExists("Checkers club"));
+        Assert.assertFalse(clubManagement.clubExists("Checkers club 2"));
+        Assert.assertEquals(30, clubManagement.getMembershipStatistics().getTotalMembers());
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(5, batches.get(0).size());
+        Assert.assertEquals(ClubMutation.Type.REMOVE, batches.get(0).get(4).getType());
+
+        try
+        {
+            clubManagement.begin().add(new Club(4, "Hiking club")).add(new Club(5, "Rowing club")).add(new Club(6, "Polo club")).commit();
+            Assert.fail();
+        }
+        catch (IllegalStateException ex)
+        {
+            Assert.assertEquals(2, clubManagement.size());
+            Assert.assertFalse(clubManagement.clubExists("Hiking club"));
+        }
+    }
+
+    /**
+     * Asserts that an open version keeps the clubs it was opened at while
+     * clubs are added, removed, updated and changed, and that versions
+     * opened later see the changes.
+     */
+    @Test
+    public void ShouldReadConsistentVersionsWhileClubsChange()
+    {
+        ClubManagement clubManagement = new ClubManagement(2000);
+        for (int i = 0; i < 1200; i++)
+        {
+            clubManagement.add(new Club(i, "Club " + i, null, 1));
+        }
+        ClubVersion first = clubManagement.openVersion();
+        clubManagement.remove(new Club(0, "Club 0"));
+        clubManagement.add(new Club(1200, "Club 1200"));
+        clubManagement.update("Club 700", record -> record.toBuilder().memberNumber(70).build());
+        clubManagement.begin().remove("Club 5").rename("Club 6", "Club 6b").commit();
+        ClubVersion second = clubManagement.openVersion();
+        clubManagement.get(0).setMemberNumber(99);
+
+        Assert.assertEquals(1200, first.size());
+        int index = 0;
+        for (ClubRecord club : first)
+        {
+            Assert.assertEquals("Club " + index, club.getClubName());
+            Assert.assertEquals(1, club.getMemberNumber());
+            index++;
+        }
+        Assert.assertEquals(1200, index);
+
+        Assert.assertEquals(1199, second.size());
+        Assert.assertEquals("Club 1", second.get(0).getClubName());
+        Assert.assertEquals(70, second.get(698).getMemberNumber());
+        Assert.assertEquals("Club 6b", second.get(4).getClubName());
+        Assert.assertEquals("Club 1200", second.get(second.size() - 1).getClubName());
+        Assert.assertEquals(1, second.get(0).getMemberNumber());
+        Assert.assertTrue(second.getVersion() > first.getVersion());
+
+        first.close();
+        second.close();
+        Assert.assertTrue(first.isClosed());
+        try (ClubVersion third = clubManagement.openVersion())
+        {
+            Assert.assertEquals(clubManagement.size(), third.size());
+            Assert.assertEquals(99, third.get(0).getMemberNumber());
+            Assert.assertEquals(clubManagement.getVersion(), third.getVersion());
+        }
+    }
+
+    /**
+     * Asserts that followers connected over loopback load a snapshot of the
+     * leader and then apply its changes, and report no lag once caught up.
+     */
+    @Test
+    public void ShouldReplicateClubsToFollowers() throws Exception
+    {
+        ClubManagement clubManagement = new ClubManagement(100);
+        clubManagement.add(new Club(1, "Chess club", new ClubPresident(3, "Anna", 'M', "Smith", new Date(0), null), 12));
+        clubManagement.add(new Club(2, "Hiking club"));
+        try (ReplicationLeader leader = new ReplicationLeader(clubManagement, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 16, 20);
+             ReplicationFollower first = new ReplicationFollower(new ClubManagement(100), leader.getAddress(), 20))
+        {
+            awaitReplica(clubManagement, first);
+            Assert.assertEquals(1, first.getSnapshotsLoaded());
+
+            clubManagement.add(new Club(3, "Go club"));
+            clubManagement.remove(new Club(2, "Hiking club"));
+            clubManagement.update("Chess club", record -> record.toBuilder().memberNumber(15).build());
+            clubManagement.begin().rename("Go club", "Board games club").add(new Club(4, "Rowing club")).commit();
+            clubManagement.get(0).setMemberNumber(20);
+            try (ReplicationFollower second = new ReplicationFollower(new ClubManagement(100), leader.getAddress(), 20))
+            {
+                awaitReplica(clubManagement, first);
+                awaitReplica(clubManagement, second);
+                Assert.assertEquals(1, first.getSnapshotsLoaded());
+                Assert.assertEquals(5, first.getBatchesApplied());
+                Assert.assertEquals("Smith", first.getReplica().getRecord("Chess club").getPresident().getLastName());
+                Assert.assertEquals(2, leader.getFollowerCount());
+            }
+            Thread.sleep(200);
+            Assert.assertEquals(0, first.getVersionLag());
+            Assert.assertEquals(0, first.getLagMillis());
+        }
+    }
+
+    /**
+     * Asserts that a follower reconnects to a leader that stops sending
+     * anything, heartbeats included, without closing the connection.
+     */
+    @Test
+    public void ShouldReconnectToSilentLeader() throws Exception
+    {
+        try (ServerSocket silentLeader = new ServerSocket(0, 50, InetAddress.getLoopbackAddress()))
+        {
+            silentLeader.setSoTimeout(10000);
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), silentLeader.getLocalPort());
+            try (ReplicationFollower follower = new ReplicationFollower(new ClubManagement(10), address, 10, 50);
+                 Socket first = silentLeader.accept();
+                 Socket second = silentLeader.accept())
+            {
+                first.setSoTimeout(10000);
+                DataInputStream in = new DataInputStream(first.getInputStream());
+                in.readInt();
+                in.readLong();
+                Assert.assertEquals(-1, in.readLong());
+                Assert.assertEquals(-1, in.read());
+                Assert.assertNotNull(second);
+                Assert.assertEquals(-1, follower.getAppliedVersion());
+            }
+        }
+    }
+
+    private static void awaitReplica(ClubManagement leader, ReplicationFollower follower) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 10000;
+        while(follower.getAppliedVersion() < leader.getVersion() && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(leader.getRecords(), follower.getReplica().getRecords());
+    }
+
+    /**
+     * Asserts that member counts are recorded over time, can be queried at
+     * any time and take a few bytes per daily sample.
+     */
+    @Test
+    public void ShouldRecordMembershipHistory()
+    {
+        long day = 24 * 60 * 60 * 1000L;
+        AtomicLong now = new AtomicLong(10 * day);
+        MembershipHistory history = new MembershipHistory(now::get, 1000);
+        ClubManagement clubManagement = new ClubManagement(5);
+        clubManagement.add(new Club(1, "Chess club", null, 10));
+        clubManagement.addIndex(history);
+
+        now.set(11 * day);
+        clubManagement.get(0).setMemberNumber(14);
+        now.set(12 * day);
+        clubManagement.add(new Club(2, "Go club", null, 3));
+        now.set(13 * day);
+        clubManagement.get(0).setClubName("Board games club");
+        clubManagement.get(0).setMemberNumber(9);
+
+        Assert.assertEquals(-1, history.getMemberNumberAt("Board games club", 9 * day));
+        Assert.assertEquals(10, history.getMemberNumberAt("Board games club", 10 * day));
+        Assert.assertEquals(10, history.getMemberNumberAt("board games club", 11 * day - 1));
+        Assert.assertEquals(14, history.getMemberNumberAt("Board games club", 12 * day));
+        Assert.assertEquals(9, history.getMemberNumberAt("Board games club", 20 * day));
+        Assert.assertEquals(-1, history.getMemberNumberAt("Chess club", 20 * day));
+        Assert.assertEquals(4, history.getGrowth("Board games club", 10 * day, 12 * day));
+        Assert.assertEquals(3, history.getGrowth("Go club", 0, 12 * day));
+
+        for (int i = 1; i <= 3650; i++)
+        {
+            history.record("Go club", (12 + i) * day, 3 + i / 7);
+        }
+        history.trimToSize();
+        Assert.assertEquals(3 + 1000 / 7, history.getMemberNumberAt("Go club", 1012 * day + 1));
+        Assert.assertEquals(3 + 3650 / 7 - 3, history.getGrowth("Go club", 12 * day, 3662 * day));
+        Assert.assertEquals(3650 / 7 + 1, history.getSampleCount("Go club"));
+        Assert.assertTrue(history.getHistoryBytes() < 4 * 3650);
+        try
+        {
+            history.record("Go club", 100 * day, 1);
+            Assert.fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+            Assert.assertTrue(history.forget("Go club"));
+            Assert.assertEquals(-1, history.getMemberNumberAt("Go club", 3662 * day));
+        }
+
+        now.set(14 * day);
+        clubManagement.update("Board games club", record -> record.toBuilder().clubName("Strategy club").memberNumber(11).build());
+        now.set(15 * day);
+        clubManagement.add(new Club(3, "Rowing club", null, 7));
+        clubManagement.begin().rename("Strategy club", "Chess club").remove("Rowing club").commit();
+        Assert.assertEquals(10, history.getMemberNumberAt("Chess club", 10 * day));
+        Assert.assertEquals(9, history.getMemberNumberAt("Chess club", 14 * day - 1));
+        Assert.assertEquals(11, history.getMemberNumberAt("Chess club", 20 * day));
+        Assert.assertEquals(-1, history.getMemberNumberAt("Strategy club", 20 * day));
+        Assert.assertEquals(7, history.getMemberNumberAt("Rowing club", 20 * day));
+    }
+
+    /**
+     * Asserts that latency percentiles are within the histogram precision,
+     * that Zipfian keys are skewed, and that a short workload runs every
+     * operation of its mix.
+     */
+    @Test
+    public void ShouldRunSyntheticWorkloads() throws InterruptedException
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++)
+        {
+            histogram.record(i * 1000L);
+        }
+        long[] counts = histogram.copyCounts(new long[LatencyHistogram.BUCKETS]);
+        Assert.assertEquals(1000, LatencyHistogram.total(counts));
+        Assert.assertEquals(500_000, LatencyHistogram.percentile(counts, 50), 500_000 / LatencyHistogram.SUB_BUCKETS);
+        Assert.assertEquals(990_000, LatencyHistogram.percentile(counts, 99), 990_000 / LatencyHistogram.SUB_BUCKETS);
+
+        int[] hits = new int[1000];
+        KeyDistribution zipfian = KeyDistribution.zipfian(hits.length, 0.99);
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++)
+        {
+            hits[zipfian.next(random)]++;
+        }
+        Arrays.sort(hits);
+        Assert.assertTrue(hits[hits.length - 1] > 100 * hits[hits.length / 2]);
+        for (double exponent : new double[] {0, 1, 1.5})
+        {
+            try
+            {
+                KeyDistribution.zipfian(hits.length, exponent);
+                Assert.fail();
+            }
+            catch (IllegalArgumentException ex)
+            {
+                Assert.assertTrue(ex.getMessage().contains("exponent"));
+            }
+        }
+
+        ClubWorkload.Result result = ClubWorkload.builder()
+                                                 .threads(2)
+                                                 .duration(300)
+                                                 .reportInterval(100)
+                                                 .clubs(500)
+                                                 .keys(KeyDistribution.uniform(1000))
+                                                 .weight(ClubWorkload.Operation.SORT, 5)
+                                                 .build()
+                                                 .run(new PrintStream(new ByteArrayOutputStream()));
+        for (ClubWorkload.Operation operation : ClubWorkload.Operation.values())
+        {
+            Assert.assertTrue(result.getCount(operation) > 0);
+        }
+        Assert.assertTrue(result.getThroughput() > 0);
+    }
+
+    /**
+     * Asserts that a publisher sends clubs only as they are requested,
+     * filters and sorts them, and stops once the subscription is cancelled.
+     */
+    @Test
+    public void ShouldStreamClubsHonoringDemand() throws InterruptedException
+    {
+        ClubManagement clubManagement = new ClubManagement(1000);
+        for (int i = 0; i < 1000; i++)
+        {
+            clubManagement.add(new Club(i, "Club " + i, null, i + 1));
+        }
+
+        RecordingSubscriber all = new RecordingSubscriber(0, -1);
+        ClubPublisher.builder(clubManagement).chunkSize(64).executor(Runnable::run).build().subscribe(all);
+        Assert.assertEquals(0, all.clubs.size());
+        all.subscription.request(10);
+        Assert.assertEquals(10, all.clubs.size());
+        Assert.assertFalse(all.done.getCount() == 0);
+        // the stream reads the version opened by the first request
+        clubManagement.remove(clubManagement.get(999));
+        all.subscription.request(Long.MAX_VALUE);
+        Assert.assertEquals(1000, all.clubs.size());
+        Assert.assertEquals("Club 999", all.clubs.get(999).getClubName());
+        Assert.assertEquals(0, all.done.getCount());
+        Assert.assertNull(all.error);
+
+        RecordingSubscriber sorted = new RecordingSubscriber(Long.MAX_VALUE, -1);
+        clubManagement.publish(ClubSortOrder.by(SortKey.memberNumber().reversed()), club -> club.getMemberNumber() % 2 == 0).subscribe(sorted);
+        Assert.assertTrue(sorted.done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(499, sorted.clubs.size());
+        Assert.assertEquals(998, sorted.clubs.get(0).getMemberNumber());
+        Assert.assertEquals(2, sorted.clubs.get(498).getMemberNumber());
+
+        RecordingSubscriber cancelling = new RecordingSubscriber(1, 5);
+        ClubPublisher.builder(clubManagement).executor(Runnable::run).build().subscribe(cancelling);
+        Assert.assertEquals(5, cancelling.clubs.size());
+        Assert.assertFalse(cancelling.done.getCount() == 0);
+
+        RecordingSubscriber invalid = new RecordingSubscriber(0, -1);
+        ClubPublisher.builder(clubManagement).executor(Runnable::run).build().subscribe(invalid);
+        invalid.subscription.request(0);
+        Assert.assertTrue(invalid.error instanceof IllegalArgumentException);
+        Assert.assertEquals(0, invalid.clubs.size());
+    }
+
+    /**
+     * Asserts that the president registry joins clubs and presidents both
+     * ways, that a president's names are changed for all their clubs at
+     * once, and that storing other names for a president of other clubs is rejected.
+     */
+    @Test
+    public void ShouldKeepOnePresidentRecordPerPresident()
+    {
+        ClubManagement clubManagement = new ClubManagement(10);
+        ClubPresident smith = new ClubPresident(7, "Anna", 'M', "Smith", new Date(0), null);
+        clubManagement.add(new Club(1, "Chess club", smith, 12));
+        clubManagement.add(new Club(2, "Go club", new ClubPresident(7, "Anna", 'M', "Smith", new Date(1000), null), 8));
+        clubManagement.add(new Club(3, "Rowing club", new ClubPresident(8, "Ben", 'T', "Novak", new Date(0), null), 20));
+        clubManagement.add(new Club(4, "Choir"));
+        PresidentRegistry presidents = clubManagement.getPresidents();
+        Assert.assertEquals(2, presidents.size());
+        Assert.assertEquals(Arrays.asList("Chess club", "Go club"), presidents.getClubNames(7));
+        Assert.assertEquals(7, presidents.getPresidentOf("go CLUB").getId());
+        Assert.assertEquals(new Date(1000), presidents.getPresidentOf("Go club").getStartDate());
+        Assert.assertNull(presidents.getPresident(7).getStartDate());
+        Assert.assertNull(presidents.getPresidentOf("Choir"));
+        Assert.assertEquals(2, clubManagement.getClubsOf(7).size());
+        Assert.assertEquals("Rowing club", clubManagement.getClubsOf(8).get(0).getClubName());
+        Assert.assertEquals(new Date(0), clubManagement.get(0).getClubPresident().getStartDate());
+
+        long version = clubManagement.getVersion();
+        Assert.assertEquals(2, clubManagement.updatePresident(presidents.getPresident(7).toBuilder().lastName("Jones").build()));
+        Assert.assertEquals(version + 1, clubManagement.getVersion());
+        Assert.assertEquals("Jones", clubManagement.get(0).getClubPresident().getLastName());
+        Assert.assertEquals("Jones", clubManagement.get(1).getClubPresident().getLastName());
+        Assert.assertEquals(new Date(0), clubManagement.get(0).getClubPresident().getStartDate());
+        Assert.assertEquals(new Date(1000), clubManagement.get(1).getClubPresident().getStartDate());
+        Assert.assertEquals("Jones", presidents.getPresident(7).getLastName());
+
+        // a club storing other names for a president leading other clubs is rejected
+        version = clubManagement.getVersion();
+        ClubPresident rossi = new ClubPresident(7, "Anna", 'M', "Rossi", new Date(2000), null);
+        try
+        {
+            clubManagement.add(new Club(5, "Poetry club", rossi, 3));
+            Assert.fail("a president must keep one identity across their clubs");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            Assert.assertFalse(clubManagement.clubExists("Poetry club"));
+        }
+        try
+        {
+            clubManagement.get(0).setClubPresident(rossi);
+            Assert.fail("a president must keep one identity across their clubs");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            Assert.assertEquals("Jones", clubManagement.get(0).getClubPresident().getLastName());
+        }
+        try
+        {
+            clubManagement.update("Go club", record -> record.toBuilder().president(PresidentRecord.of(rossi)).build());
+            Assert.fail("a president must keep one identity across their clubs");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            Assert.assertEquals("Jones", presidents.getPresidentOf("Go club").getLastName());
+        }
+        Assert.assertEquals(version, clubManagement.getVersion());
+        Assert.assertEquals("Jones", presidents.getPresident(7).getLastName());
+        Assert.assertTrue(clubManagement.add(new Club(5, "Poetry club", new ClubPresident(7, "Anna", 'M', "Jones", new Date(2000), null), 3)));
+        Assert.assertEquals(new Date(2000), presidents.getPresidentOf("Poetry club").getStartDate());
+        Assert.assertEquals(3, clubManagement.getClubsOf(7).size());
+
+        // a president leading a single club is renamed with it
+        clubManagement.get(2).setClubPresident(new ClubPresident(8, "Ben", 'T', "Novak-Ruiz", new Date(0), null));
+        Assert.assertEquals("Novak-Ruiz", presidents.getPresident(8).getLastName());
+
+        clubManagement.remove(new Club(0, "Chess club"));
+        clubManagement.remove(new Club(0, "Go club"));
+        clubManagement.remove(new Club(0, "Poetry club"));
+        Assert.assertNull(presidents.getPresident(7));
+        Assert.assertEquals(1, presidents.size());
+    }
+
+    /**
+     * Asserts that a compressed snapshot loads the same clubs in id order,
+     * with shared presidents, dates and names that are not ASCII, and is
+     * smaller than a snapshot of fixed-width records.
+     */
+    @Test
+    public void ShouldRoundTripCompressedSnapshot() throws IOException
+    {
+        ClubManagement original = new ClubManagement(1000);
+        original.setNameFilter(new ClubNameBloomFilter(1000, 0.01));
+        List<Club> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            ClubPresident president = null;
+            if (i % 5 != 0)
+            {
+                Date start = new Date(1500000000000L + i % 40 * 86400000L);
+                Date end = i % 40 % 3 == 0 ? new Date(start.getTime() + 31536000000L) : null;
+                president = new ClubPresident(i % 40, "First" + i % 40, (char) ('A' + i % 40 % 26), "Na\u00efve " + i % 40, start, end);
+            }
+            Club club = new Club(5000 - i * 3, "Club \u00e9 " + i, president, i % 50 + 1);
+            Assert.assertTrue(original.add(club));
+            expected.add(0, club);
+        }
+        Path compressed = Files.createTempFile("clubs", ".clbz");
+        Path snapshot = Files.createTempFile("clubs", ".snapshot");
+        try
+        {
+            long size = original.writeCompressedSnapshot(compressed);
+            original.writeSnapshot(snapshot);
+            Assert.assertEquals(Files.size(compressed), size);
+            Assert.assertTrue(size * 2 < Files.size(snapshot));
+
+            ClubManagement loaded = ClubManagement.loadCompressedSnapshot(compressed, 1000);
+            Assert.assertEquals(1000, loaded.getNumberOfClubs());
+            for (int i = 0; i < expected.size(); i++)
+            {
+                Club club = loaded.get(i);
+                Assert.assertEquals(expected.get(i), club);
+                Assert.assertEquals(expected.get(i).getClubPresident(), club.getClubPresident());
+            }
+            Assert.assertSame(loaded.get(0).getClubPresident().getFirstName(), loaded.get(40).getClubPresident().getFirstName());
+            Assert.assertTrue(loaded.clubExists("CLUB \u00c9 7"));
+        }
+        finally
+        {
+            Files.deleteIfExists(compressed);
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    /**
+     * Asserts that clubs and presidents survive the binary codec, are read
+     * in place through views, and that messages of newer versions with
+     * unknown fields and of older versions with missing fields are read.
+     */
+    @Test
+    public void ShouldEncodeClubsReadableAcrossVersions()
+    {
+        ClubPresident president = new ClubPresident(-3, "Zo\u00eb", 'Q', "Smile \ud83d\ude00", null, new Date(-86400000L));
+        Club[] clubs = {
+                new Club(1, "Doki Doki Literature Club", new ClubPresident(1, "Just", 'F', "Monika", new Date(1500000000000L), null), 4),
+                new Club(-2, "Caf\u00e9 club", president, 100000),
+                new Club(3, "Cooking club"),
+                new Club(0, "", null, 1)
+        };
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        int total = 0;
+        for (Club club : clubs)
+        {
+            total += ClubCodec.encode(club, buffer);
+        }
+        Assert.assertEquals(buffer.position(), total);
+        buffer.flip();
+        ClubView view = new ClubView();
+        int offset = 0;
+        for (Club club : clubs)
+        {
+            view.wrap(buffer, offset);
+            Assert.assertEquals(ClubCodec.VERSION, view.getVersion());
+            Assert.assertEquals(ClubCodec.encodedSize(club), view.getLength());
+            Assert.assertEquals(club.getId(), view.getId());
+            Assert.assertTrue(view.clubNameEquals(club.getClubName()));
+            Assert.assertFalse(view.clubNameEquals(club.getClubName() + "s"));
+            Assert.assertEquals(club, view.toClub());
+            Assert.assertEquals(club.getClubPresident(), view.toClub().getClubPresident());
+            offset += view.getLength();
+        }
+        Assert.assertEquals(total, offset);
+        Assert.assertEquals(clubs[1], ClubCodec.decodeClub(ByteBuffer.wrap(ClubCodec.encode(clubs[1]))));
+        ClubPresidentView presidentView = view.wrap(buffer, ClubCodec.encodedSize(clubs[0])).getClubPresident();
+        Assert.assertTrue(presidentView.lastNameEquals("Smile \ud83d\ude00"));
+        Assert.assertFalse(presidentView.hasStartDate());
+        Assert.assertEquals(-86400000L, presidentView.getEndTime());
+
+        ByteBuffer presidents = ByteBuffer.allocate(ClubCodec.encodedSize(president));
+        ClubCodec.encode(president, presidents);
+        presidents.flip();
+        Assert.assertEquals(president, ClubCodec.decodePresident(presidents));
+        Assert.assertFalse(presidents.hasRemaining());
+
+        // a newer version with fields of every wire type this version does not know
+        ByteBuffer newer = ByteBuffer.allocate(64);
+        newer.put((byte) 2).put((byte) 0);
+        newer.put((byte) (ClubCodec.CLUB_ID << 3 | ClubCodec.VARINT)).put((byte) 14);
+        newer.put((byte) (9 << 3 | ClubCodec.FIXED64)).putLong(-1L);
+        newer.put((byte) (ClubCodec.CLUB_NAME << 3 | ClubCodec.BYTES)).put((byte) 5).put("Chess".getBytes(StandardCharsets.UTF_8));
+        newer.put((byte) (10 << 3 | ClubCodec.BYTES)).put((byte) 3).put(new byte[3]);
+        newer.put((byte) (11 << 3 | ClubCodec.FIXED32)).putInt(-1);
+        newer.put((byte) (12 << 3 | ClubCodec.VARINT)).put((byte) 0xAC).put((byte) 0x02);
+        newer.put((byte) (ClubCodec.CLUB_PRESIDENT << 3 | ClubCodec.BYTES)).put((byte) 11);
+        newer.put((byte) (ClubCodec.PRESIDENT_ID << 3 | ClubCodec.VARINT)).put((byte) 6);
+        newer.put((byte) (7 << 3 | ClubCodec.VARINT)).put((byte) 1);
+        newer.put((byte) (ClubCodec.LAST_NAME << 3 | ClubCodec.BYTES)).put((byte) 5).put("Novak".getBytes(StandardCharsets.UTF_8));
+        newer.put((byte) (ClubCodec.MEMBER_NUMBER << 3 | ClubCodec.VARINT)).put((byte) 12);
+        newer.put(1, (byte) (newer.position() - 2));
+        newer.flip();
+        Club club = ClubCodec.decodeClub(newer);
+        Assert.assertEquals(new Club(7, "Chess", null, 12), club);
+        Assert.assertEquals(3, club.getClubPresident().getId());
+        Assert.assertEquals("Novak", club.getClubPresident().getLastName());
+        Assert.assertNull(club.getClubPresident().getFirstName());
+        Assert.assertFalse(newer.hasRemaining());
+
+        // an older version without member count and president
+        ByteBuffer older = ByteBuffer.wrap(new byte[] { 1, 7, ClubCodec.CLUB_NAME << 3 | ClubCodec.BYTES, 5, 'C', 'h', 'e', 's', 's' });
+        Club olderClub = ClubCodec.decodeClub(older);
+        Assert.assertEquals(new Club(0, "Chess"), olderClub);
+        Assert.assertNull(olderClub.getClubPresident());
+
+        try
+        {
+            view.wrap(ByteBuffer.wrap(new byte[] { 1, 9, ClubCodec.CLUB_NAME << 3 | ClubCodec.BYTES, 5, 'C' }), 0);
+            Assert.fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected: the message is truncated
+        }
+    }
+
+    /**
+     * Asserts that many clubs encoded into one buffer by the binary codec
+     * can be scanned in place and decoded again.
+     */
+    @Test
+    public void ShouldEncodeScanAndDecodeManyClubs()
+    {
+        int count = 100_000;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(count * 64);
+        for (int i = 0; i < count; i++)
+        {
+            ClubCodec.encode(SyntheticClubs.club(i), buffer);
+        }
+        buffer.flip();
+        ClubView view = new ClubView();
+        long members = 0;
+        int scanned = 0;
+        for (int offset = 0; offset < buffer.limit(); offset += view.getLength())
+        {
+            members += view.wrap(buffer, offset).getMemberNumber();
+            scanned++;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            Club club = ClubCodec.decodeClub(buffer);
+            Assert.assertEquals(SyntheticClubs.club(i), club);
+            members -= club.getMemberNumber();
+        }
+        Assert.assertEquals(count, scanned);
+        Assert.assertEquals(0, members);
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    /**
+     * Asserts that maintenance compacts an off-heap store and rebuilds the
+     * name filter and the index of similar names while a writer keeps
+     * changing clubs, keeping views of stored clubs valid and lookups right.
+     */
+    @Test
+    public void ShouldCompactAndRebuildIndexesWhileClubsChange() throws InterruptedException
+    {
+        OffHeapClubStore store = new OffHeapClubStore(10000);
+        ClubManagement clubManagement = new ClubManagement(store);
+        ClubNameBloomFilter filter = new ClubNameBloomFilter(10000, 0.01);
+        clubManagement.setNameFilter(filter);
+        for (int i = 0; i < 3000; i++)
+        {
+            clubManagement.add(new Club(i, "Club " + i, new ClubPresident(i, "First " + i, 'M', "Last " + i), 1));
+        }
+        Club view = clubManagement.get(2999);
+        Assert.assertEquals(Arrays.asList("Club 1"), clubManagement.findSimilarClubNames("Club 1", 0, 5));
+        for (int i = 0; i < 500; i++)
+        {
+            clubManagement.remove(new Club(0, "Club " + i));
+        }
+        Assert.assertTrue(store.getGarbageNameBytes() > 0);
+        Assert.assertEquals(500, filter.getStaleNames());
+
+        ClubMaintenance maintenance = ClubMaintenance.builder(clubManagement).garbageRatio(0).stepSize(64).catchUpRounds(1000).build();
+        AtomicLong writes = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread writer = new Thread(() ->
+        {
+            for (int j = 0; done.getCount() > 0 || j < 100; j++)
+            {
+                clubManagement.add(new Club(10000 + j, "Extra " + j, null, 1));
+                if (j > 0)
+                {
+                    clubManagement.remove(new Club(0, "Extra " + (j - 1)));
+                }
+                clubManagement.update("Club 2000", record -> record.toBuilder().clubName("Club 2000").build());
+                writes.incrementAndGet();
+            }
+        });
+        writer.start();
+        maintenance.runOnce();
+        done.countDown();
+        writer.join();
+        Assert.assertEquals(1, maintenance.getCompactions());
+        Assert.assertEquals(2, maintenance.getIndexRebuilds());
+        Assert.assertEquals(0, maintenance.getAbortedPasses());
+        Assert.assertTrue(writes.get() >= 100);
+
+        maintenance.runOnce();
+        Assert.assertEquals(0, store.getGarbageNameBytes());
+        Assert.assertEquals(0, filter.getStaleNames());
+        Assert.assertEquals("Club 2999", view.getClubName());
+        Assert.assertEquals("Last 2999", view.getClubPresident().getLastName());
+        for (int i = 0; i < 3000; i++)
+        {
+            Assert.assertEquals(i >= 500, clubManagement.clubExists("Club " + i));
+        }
+        for (int i = 0; i < clubManagement.size(); i++)
+        {
+            Club club = clubManagement.get(i);
+            Assert.assertTrue(filter.mightContain(club.getClubName()));
+            if (club.getId() < 10000)
+            {
+                Assert.assertEquals("Club " + club.getId(), club.getClubName());
+                Assert.assertEquals("First " + club.getId(), club.getClubPresident().getFirstName());
+            }
+        }
+        Assert.assertEquals(Arrays.asList("Club 2999"), clubManagement.findSimilarClubNames("Club 2999", 0, 5));
+        Assert.assertTrue(clubManagement.findSimilarClubNames("Club 1", 0, 5).isEmpty());
+    }
+
+    /**
+     * Records the clubs a publisher sends, requesting a number of clubs on
+     * subscribing and one more per club once it got only one.
+     */
+    private static final class RecordingSubscriber implements Flow.Subscriber<Club>
+    {
+        private final List<Club> clubs = new ArrayList<>();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private final long initialRequest;
+
+        private final int cancelAfter;
+
+        private Flow.Subscription subscription;
+
+        private volatile Throwable error;
+
+        private RecordingSubscriber(long initialRequest, int cancelAfter)
+        {
+            this.initialRequest = initialRequest;
+            this.cancelAfter = cancelAfter;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+            if (initialRequest > 0)
+            {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(Club club)
+        {
+            clubs.add(club);
+            if (clubs.size() == cancelAfter)
+            {
+                subscription.cancel();
+            }
+            else if (initialRequest == 1)
+            {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            done.countDown();
+        }
+    }
 }